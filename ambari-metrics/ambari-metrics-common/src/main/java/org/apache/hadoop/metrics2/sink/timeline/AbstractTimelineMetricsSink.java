@@ -17,12 +17,24 @@
  */
 package org.apache.hadoop.metrics2.sink.timeline;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.ConnectException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.codehaus.jackson.map.AnnotationIntrospector;
@@ -30,15 +42,45 @@ import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
 
+/**
+ * Base class of the sinks that post metrics to the timeline metrics
+ * collector.
+ *
+ * Metrics are serialized straight into a gzip compressed request body and
+ * posted over pooled persistent connections. When several collectors are
+ * configured the posts are spread over them round robin, and a collector
+ * that refuses the connection is skipped. Metrics that could not be posted
+ * to any collector are spooled and replayed once a collector accepts
+ * metrics again.
+ */
 public abstract class AbstractTimelineMetricsSink {
   public static final String TAGS_FOR_PREFIX_PROPERTY_PREFIX = "tagsForPrefix.";
   public static final String MAX_METRIC_ROW_CACHE_SIZE = "maxRowCacheSize";
+  public static final String MAX_METRIC_VALUES_PER_NAME = "maxValuesPerName";
   public static final String METRICS_SEND_INTERVAL = "sendInterval";
   public static final String COLLECTOR_HOST_PROPERTY = "collector";
   public static final String COLLECTOR_PORT_PROPERTY = "port";
+  public static final String SPOOL_DIR_PROPERTY = "spoolDir";
+  public static final String SPOOL_SIZE_PROPERTY = "spoolSize";
+
+  public static final long SPOOL_SIZE_DEFAULT = 16 * 1024 * 1024;
+  public static final int MAX_CONNECTIONS_PER_COLLECTOR = 2;
+  public static final int CONNECT_TIMEOUT_MILLIS = 10000;
+  public static final int SOCKET_TIMEOUT_MILLIS = 30000;
+
+  /**
+   * The maximum number of spooled payloads replayed after a successful post,
+   * so that replaying a large spool does not hold up the sink.
+   */
+  private static final int MAX_REPLAYS_PER_POST = 10;
+  private static final int GZIP_BUFFER_SIZE = 8192;
 
   protected final Log LOG;
-  private HttpClient httpClient = new HttpClient();
+  private HttpClient httpClient = createHttpClient();
+  private TimelineMetricsSpool spool =
+    new TimelineMetricsSpool(null, SPOOL_SIZE_DEFAULT);
+  private final AtomicInteger nextCollector = new AtomicInteger();
+  private final ReentrantLock replayLock = new ReentrantLock();
 
   protected static ObjectMapper mapper;
 
@@ -55,13 +97,44 @@ public abstract class AbstractTimelineMetricsSink {
   }
 
   protected void emitMetrics(TimelineMetrics metrics) throws IOException {
-    String connectUrl = getCollectorUri();
-    try {
-      String jsonData = mapper.writeValueAsString(metrics);
+    List<String> collectorUris = getCollectorUris();
+    if (collectorUris.isEmpty()) {
+      throw new UnableToConnectException("No metrics collector configured");
+    }
 
-      StringRequestEntity requestEntity = new StringRequestEntity(jsonData, "application/json", "UTF-8");
+    String connectUrl = null;
+    ConnectException connectException = null;
+    RequestEntity requestEntity = new TimelineMetricsRequestEntity(metrics);
+    int first = (nextCollector.getAndIncrement() & Integer.MAX_VALUE) %
+      collectorUris.size();
 
-      PostMethod postMethod = new PostMethod(connectUrl);
+    for (int i = 0; i < collectorUris.size(); i++) {
+      connectUrl = collectorUris.get((first + i) % collectorUris.size());
+      try {
+        post(connectUrl, requestEntity);
+        replaySpooled(connectUrl);
+        return;
+      } catch (ConnectException e) {
+        LOG.debug("Unable to connect to collector " + connectUrl, e);
+        connectException = e;
+      }
+    }
+
+    spool.add(toGzipJson(metrics));
+    throw new UnableToConnectException(connectException).setConnectUrl(connectUrl);
+  }
+
+  /**
+   * Post a request body to a collector. Metrics the collector rejects are
+   * not retried.
+   *
+   * @throws ConnectException if the collector refused the connection
+   */
+  private void post(String connectUrl, RequestEntity requestEntity)
+    throws IOException {
+    PostMethod postMethod = new PostMethod(connectUrl);
+    try {
+      postMethod.setRequestHeader("Content-Encoding", "gzip");
       postMethod.setRequestEntity(requestEntity);
       int statusCode = httpClient.executeMethod(postMethod);
       if (statusCode != 200) {
@@ -69,8 +142,37 @@ public abstract class AbstractTimelineMetricsSink {
       } else {
         LOG.debug("Metrics posted to Collector " + connectUrl);
       }
-    } catch (ConnectException e) {
-      throw new UnableToConnectException(e).setConnectUrl(connectUrl);
+    } finally {
+      // consumes the response so that the connection can be reused
+      postMethod.releaseConnection();
+    }
+  }
+
+  /**
+   * Post the spooled metrics, oldest first, to a collector that is known to
+   * be accepting connections.
+   */
+  private void replaySpooled(String connectUrl) {
+    if (spool.isEmpty() || !replayLock.tryLock()) {
+      return;
+    }
+    try {
+      for (int i = 0; i < MAX_REPLAYS_PER_POST; i++) {
+        byte[] payload = spool.peek();
+        if (payload == null) {
+          break;
+        }
+        try {
+          post(connectUrl, new ByteArrayRequestEntity(payload, "application/json"));
+        } catch (IOException e) {
+          LOG.debug("Unable to replay spooled metrics to " + connectUrl, e);
+          break;
+        }
+        // a payload dropped meanwhile by a full spool is not removed again
+        spool.remove(payload);
+      }
+    } finally {
+      replayLock.unlock();
     }
   }
 
@@ -78,5 +180,114 @@ public abstract class AbstractTimelineMetricsSink {
     this.httpClient = httpClient;
   }
 
+  /**
+   * Configure where metrics that can't be posted are spooled.
+   *
+   * @param spoolDir       the spool directory or null to spool in memory
+   * @param spoolSize      the maximum size of the spooled metrics in bytes;
+   *                       0 disables spooling
+   */
+  protected void initSpool(String spoolDir, long spoolSize) {
+    spool = new TimelineMetricsSpool(spoolDir == null || spoolDir.trim().isEmpty() ?
+      null : new File(spoolDir.trim()), spoolSize);
+  }
+
+  /**
+   * @return the number of metric payloads waiting to be replayed
+   */
+  public int getSpooledCount() {
+    return spool.size();
+  }
+
+  /**
+   * @return the collector URIs to spread the posts over; by default the
+   * single {@link #getCollectorUri()}
+   */
+  protected List<String> getCollectorUris() {
+    String collectorUri = getCollectorUri();
+    return collectorUri == null ? Collections.<String>emptyList() :
+      Collections.singletonList(collectorUri);
+  }
+
   abstract protected String getCollectorUri();
+
+  static byte[] toGzipJson(TimelineMetrics metrics) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeGzipJson(metrics, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * Serialize the metrics as gzip compressed JSON without closing the
+   * underlying stream.
+   */
+  private static void writeGzipJson(TimelineMetrics metrics, OutputStream out)
+    throws IOException {
+    // closing the gzip stream finishes it and releases the deflater
+    mapper.writeValue(new GZIPOutputStream(new NonClosingOutputStream(out),
+      GZIP_BUFFER_SIZE), metrics);
+  }
+
+  private static HttpClient createHttpClient() {
+    MultiThreadedHttpConnectionManager connectionManager =
+      new MultiThreadedHttpConnectionManager();
+    HttpConnectionManagerParams params = connectionManager.getParams();
+    params.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_COLLECTOR);
+    params.setConnectionTimeout(CONNECT_TIMEOUT_MILLIS);
+    params.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+    params.setStaleCheckingEnabled(true);
+    return new HttpClient(connectionManager);
+  }
+
+  /**
+   * Passes writes through but only flushes on close, so that the request
+   * stream stays open for the HTTP client to finish.
+   */
+  private static class NonClosingOutputStream extends FilterOutputStream {
+    NonClosingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+
+  /**
+   * Request body that serializes the metrics while it is written, so that
+   * the JSON is never held in memory as a whole. The body is sent chunked.
+   */
+  static class TimelineMetricsRequestEntity implements RequestEntity {
+    private final TimelineMetrics metrics;
+
+    TimelineMetricsRequestEntity(TimelineMetrics metrics) {
+      this.metrics = metrics;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return true;
+    }
+
+    @Override
+    public void writeRequest(OutputStream out) throws IOException {
+      writeGzipJson(metrics, out);
+    }
+
+    @Override
+    public long getContentLength() {
+      return -1;
+    }
+
+    @Override
+    public String getContentType() {
+      return "application/json";
+    }
+  }
 }
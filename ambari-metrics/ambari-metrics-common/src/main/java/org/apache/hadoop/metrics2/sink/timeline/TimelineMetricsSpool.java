@@ -0,0 +1,258 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Bounded buffer of metric payloads that could not be sent to any
+ * collector. Payloads are kept in memory, or as files in a spool directory
+ * when one is configured so that they survive a restart of the sink. When
+ * the spool is full the oldest payloads are dropped.
+ */
+class TimelineMetricsSpool {
+
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsSpool.class);
+
+  private static final String FILE_PREFIX = "metrics-";
+  private static final String FILE_SUFFIX = ".json.gz";
+
+  private final File directory;
+  private final long maxSizeInBytes;
+
+  private final Deque<Entry> entries = new ArrayDeque<Entry>();
+  private long sizeInBytes = 0;
+  private long nextSequence = 0;
+  private long droppedCount = 0;
+
+  /**
+   * The entry whose payload was last returned by {@link #peek()}
+   */
+  private Entry peekedEntry = null;
+  private byte[] peekedPayload = null;
+
+  /**
+   * @param directory      the spool directory or null to spool in memory
+   * @param maxSizeInBytes the maximum total size of the spooled payloads;
+   *                       0 disables spooling
+   */
+  TimelineMetricsSpool(File directory, long maxSizeInBytes) {
+    this.maxSizeInBytes = maxSizeInBytes;
+    this.directory = directory != null && initDirectory(directory) ?
+      directory : null;
+  }
+
+  /**
+   * Spool a payload, dropping the oldest payloads if the spool is full.
+   */
+  synchronized void add(byte[] payload) {
+    if (payload.length > maxSizeInBytes) {
+      droppedCount++;
+      return;
+    }
+    while (sizeInBytes + payload.length > maxSizeInBytes && !entries.isEmpty()) {
+      removeFirst();
+      droppedCount++;
+    }
+
+    Entry entry = new Entry(payload);
+    if (directory != null) {
+      File file = new File(directory, FILE_PREFIX + nextSequence++ + FILE_SUFFIX);
+      try {
+        write(file, payload);
+        entry = new Entry(file, payload.length);
+      } catch (IOException e) {
+        LOG.warn("Unable to spool metrics to " + file + ", keeping them in memory", e);
+      }
+    }
+    entries.addLast(entry);
+    sizeInBytes += entry.size;
+  }
+
+  /**
+   * @return the oldest spooled payload or null if the spool is empty
+   */
+  synchronized byte[] peek() {
+    while (!entries.isEmpty()) {
+      Entry entry = entries.peekFirst();
+      try {
+        peekedEntry = entry;
+        peekedPayload = entry.read();
+        return peekedPayload;
+      } catch (IOException e) {
+        LOG.warn("Unable to read spooled metrics from " + entry.file, e);
+        removeFirst();
+        droppedCount++;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Remove the payload returned by {@link #peek()}, unless it was dropped
+   * meanwhile because the spool was full.
+   *
+   * @param payload the payload returned by {@link #peek()}
+   * @return true if the payload was removed
+   */
+  synchronized boolean remove(byte[] payload) {
+    if (payload == null || payload != peekedPayload ||
+      entries.isEmpty() || entries.peekFirst() != peekedEntry) {
+      return false;
+    }
+    removeFirst();
+    return true;
+  }
+
+  synchronized boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  synchronized long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /**
+   * @return the number of payloads dropped because the spool was full
+   */
+  synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+
+  private void removeFirst() {
+    Entry entry = entries.removeFirst();
+    if (entry == peekedEntry) {
+      peekedEntry = null;
+      peekedPayload = null;
+    }
+    sizeInBytes -= entry.size;
+    if (entry.file != null && !entry.file.delete()) {
+      LOG.warn("Unable to delete spooled metrics " + entry.file);
+    }
+  }
+
+  /**
+   * Create the spool directory or pick up the payloads spooled to it
+   * before a restart.
+   */
+  private boolean initDirectory(File directory) {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      LOG.warn("Unable to create metrics spool directory " + directory +
+        ", spooling in memory");
+      return false;
+    }
+
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return true;
+    }
+    long[] sequences = new long[files.length];
+    int count = 0;
+    for (File file : files) {
+      String name = file.getName();
+      if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+        try {
+          sequences[count] = Long.parseLong(name.substring(FILE_PREFIX.length(),
+            name.length() - FILE_SUFFIX.length()));
+          count++;
+        } catch (NumberFormatException e) {
+          // not a spool file
+        }
+      }
+    }
+    Arrays.sort(sequences, 0, count);
+
+    for (int i = 0; i < count; i++) {
+      File file = new File(directory, FILE_PREFIX + sequences[i] + FILE_SUFFIX);
+      entries.addLast(new Entry(file, (int) file.length()));
+      sizeInBytes += file.length();
+      nextSequence = sequences[i] + 1;
+    }
+    while (sizeInBytes > maxSizeInBytes && !entries.isEmpty()) {
+      removeFirst();
+      droppedCount++;
+    }
+    if (!entries.isEmpty()) {
+      LOG.info("Found " + entries.size() + " spooled metric payloads in " + directory);
+    }
+    return true;
+  }
+
+  private static void write(File file, byte[] payload) throws IOException {
+    File tmpFile = new File(file.getPath() + ".tmp");
+    FileOutputStream out = new FileOutputStream(tmpFile);
+    try {
+      out.write(payload);
+    } finally {
+      out.close();
+    }
+    if (!tmpFile.renameTo(file)) {
+      tmpFile.delete();
+      throw new IOException("Unable to rename " + tmpFile + " to " + file);
+    }
+  }
+
+  /**
+   * A spooled payload, held either in memory or in a file.
+   */
+  private static class Entry {
+    private final byte[] payload;
+    private final File file;
+    private final int size;
+
+    Entry(byte[] payload) {
+      this.payload = payload;
+      this.file = null;
+      this.size = payload.length;
+    }
+
+    Entry(File file, int size) {
+      this.payload = null;
+      this.file = file;
+      this.size = size;
+    }
+
+    byte[] read() throws IOException {
+      if (payload != null) {
+        return payload;
+      }
+      byte[] bytes = new byte[size];
+      DataInputStream in = new DataInputStream(new FileInputStream(file));
+      try {
+        in.readFully(bytes);
+      } finally {
+        in.close();
+      }
+      return bytes;
+    }
+  }
+}
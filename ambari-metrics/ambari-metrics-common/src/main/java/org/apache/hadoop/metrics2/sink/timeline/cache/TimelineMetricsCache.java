@@ -23,157 +23,483 @@ import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Buffers metric values until it is time to send them to the collector.
+ *
+ * Values are kept per metric name in primitive timestamp / value ring
+ * buffers rather than boxed maps. The cache is safe for concurrent use; the
+ * name to buffer map is a concurrent map and each buffer is only locked by
+ * the threads putting to or taking from that metric.
+ *
+ * The cache is bounded by both the number of metric names and the
+ * approximate size of the buffers in bytes. When either bound is exceeded
+ * the metrics that were least recently put are evicted and their buffered
+ * values are dropped. The last value of an evicted counter is kept, so the
+ * next difference put for the counter is still correct.
+ *
+ * The number of values buffered per metric is bounded as well (default
+ * {@link #MAX_VALUES_PER_NAME_DEFAULT}, rounded up to a power of two). Once a
+ * metric is full its oldest values are overwritten. Overwritten and evicted
+ * values are counted, see {@link #getDroppedValueCount()}.
+ */
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
 public class TimelineMetricsCache {
 
-  private final TimelineMetricHolder timelineMetricCache = new TimelineMetricHolder();
   private static final Log LOG = LogFactory.getLog(TimelineMetric.class);
   public static final int MAX_RECS_PER_NAME_DEFAULT = 10000;
   public static final int MAX_EVICTION_TIME_MILLIS = 59000; // ~ 1 min
+  /**
+   * Size budget per metric name used when no size bound is given.
+   */
+  public static final int BYTES_PER_NAME_DEFAULT = 2048;
+  /**
+   * The default number of values buffered per metric before the oldest
+   * values are overwritten.
+   */
+  public static final int MAX_VALUES_PER_NAME_DEFAULT = 4096;
+
+  private static final int INITIAL_CAPACITY = 8;
+  /**
+   * Approximate size of a buffer excluding the value arrays and the name.
+   */
+  private static final int BUFFER_OVERHEAD_BYTES = 160;
+
   private final int maxRecsPerName;
   private final int maxEvictionTimeInMillis;
-  private final Map<String, Double> counterMetricLastValue = new HashMap<String, Double>();
+  private final long maxSizeInBytes;
+  private final int maxValuesPerName;
+
+  private final ConcurrentMap<String, MetricBuffer> buffers =
+    new ConcurrentHashMap<String, MetricBuffer>();
+  private final AtomicLong sizeInBytes = new AtomicLong();
+  private final AtomicLong droppedValues = new AtomicLong();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private volatile boolean gotOverflow = false;
+  private volatile boolean gotValueOverflow = false;
+
+  /**
+   * The last value of the evicted counters, guarded by itself. Bounded by the
+   * number of metric names; the least recently evicted values are discarded.
+   */
+  private final Map<String, Double> evictedCounterValues;
 
   public TimelineMetricsCache(int maxRecsPerName, int maxEvictionTimeInMillis) {
+    this(maxRecsPerName, maxEvictionTimeInMillis,
+      (long) maxRecsPerName * BYTES_PER_NAME_DEFAULT);
+  }
+
+  public TimelineMetricsCache(int maxRecsPerName, int maxEvictionTimeInMillis,
+                              long maxSizeInBytes) {
+    this(maxRecsPerName, maxEvictionTimeInMillis, maxSizeInBytes,
+      MAX_VALUES_PER_NAME_DEFAULT);
+  }
+
+  /**
+   * @param maxRecsPerName          the maximum number of metric names
+   * @param maxEvictionTimeInMillis how long values are buffered before they
+   *                                are sent
+   * @param maxSizeInBytes          the approximate maximum size of the buffers
+   * @param maxValuesPerName        the maximum number of values buffered per
+   *                                metric, rounded up to a power of two
+   */
+  public TimelineMetricsCache(int maxRecsPerName, int maxEvictionTimeInMillis,
+                              long maxSizeInBytes, int maxValuesPerName) {
     this.maxRecsPerName = maxRecsPerName;
     this.maxEvictionTimeInMillis = maxEvictionTimeInMillis;
+    this.maxSizeInBytes = maxSizeInBytes;
+    this.maxValuesPerName =
+      Integer.highestOneBit(Math.max(INITIAL_CAPACITY, maxValuesPerName) - 1) << 1;
+    final int maxCounterValues = Math.max(1, maxRecsPerName);
+    this.evictedCounterValues = new LinkedHashMap<String, Double>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+        return size() > maxCounterValues;
+      }
+    };
   }
 
-  class TimelineMetricWrapper {
-    private long timeDiff = -1;
-    private long oldestTimestamp = -1;
-    private TimelineMetric timelineMetric;
+  /**
+   * Take the buffered values of a metric if they span at least the eviction
+   * time.
+   *
+   * @param metricName the metric name
+   * @return the metric with its buffered values or null if it is not yet
+   * time to send them
+   */
+  public TimelineMetric getTimelineMetric(String metricName) {
+    MetricBuffer buffer = buffers.get(metricName);
+    return buffer == null ? null : buffer.take(maxEvictionTimeInMillis);
+  }
 
-    TimelineMetricWrapper(TimelineMetric timelineMetric) {
-      this.timelineMetric = timelineMetric;
-      this.oldestTimestamp = timelineMetric.getStartTime();
-    }
+  /**
+   * Getter method to help testing eviction
+   * @return @int
+   */
+  public int getMaxEvictionTimeInMillis() {
+    return maxEvictionTimeInMillis;
+  }
 
-    private void updateTimeDiff(long timestamp) {
-      if (oldestTimestamp != -1 && timestamp > oldestTimestamp) {
-        timeDiff = timestamp - oldestTimestamp;
-      } else {
-        oldestTimestamp = timestamp;
+  /**
+   * @return the approximate size of the buffered metrics in bytes
+   */
+  public long getSizeInBytes() {
+    return sizeInBytes.get();
+  }
+
+  /**
+   * @return the number of buffered metric names
+   */
+  public int size() {
+    return buffers.size();
+  }
+
+  /**
+   * @return the maximum number of values buffered per metric
+   */
+  public int getMaxValuesPerName() {
+    return maxValuesPerName;
+  }
+
+  /**
+   * @return the number of values that were overwritten because their metric
+   * was full, or that were evicted before they could be sent
+   */
+  public long getDroppedValueCount() {
+    return droppedValues.get();
+  }
+
+  public void putTimelineMetric(TimelineMetric timelineMetric) {
+    putTimelineMetric(timelineMetric, false);
+  }
+
+  /**
+   * Buffer the values of a metric.
+   *
+   * @param timelineMetric the metric
+   * @param isCounter      true if the values are a monotonic counter, in
+   *                       which case the differences between consecutive
+   *                       values are buffered
+   */
+  public void putTimelineMetric(TimelineMetric timelineMetric, boolean isCounter) {
+    String metricName = timelineMetric.getMetricName();
+
+    while (true) {
+      MetricBuffer buffer = buffers.get(metricName);
+      if (buffer == null) {
+        MetricBuffer newBuffer = new MetricBuffer(metricName);
+        Double counterValue = getEvictedCounterValue(metricName);
+        if (counterValue != null) {
+          newBuffer.restoreCounterValue(counterValue);
+        }
+        buffer = buffers.putIfAbsent(metricName, newBuffer);
+        if (buffer == null) {
+          buffer = newBuffer;
+          sizeInBytes.addAndGet(newBuffer.getSizeInBytes());
+          if (counterValue != null) {
+            removeEvictedCounterValue(metricName);
+          }
+        }
+      }
+
+      long added = buffer.put(timelineMetric, isCounter);
+      if (added > 0) {
+        sizeInBytes.addAndGet(added);
+      }
+      if (added >= 0) {
+        break;
       }
+      // the buffer was evicted concurrently, use a new one
+    }
+
+    if (isOverLimit()) {
+      evictEldest();
     }
+  }
 
-    public void putMetric(TimelineMetric metric) {
-      this.timelineMetric.addMetricValues(metric.getMetricValues());
-      updateTimeDiff(metric.getStartTime());
+  private Double getEvictedCounterValue(String metricName) {
+    synchronized (evictedCounterValues) {
+      return evictedCounterValues.isEmpty() ? null :
+        evictedCounterValues.get(metricName);
     }
+  }
 
-    public long getTimeDiff() {
-      return timeDiff;
+  private void removeEvictedCounterValue(String metricName) {
+    synchronized (evictedCounterValues) {
+      evictedCounterValues.remove(metricName);
     }
+  }
 
-    public TimelineMetric getTimelineMetric() {
-      return timelineMetric;
+  private void saveEvictedCounterValue(String metricName, double value) {
+    synchronized (evictedCounterValues) {
+      evictedCounterValues.put(metricName, value);
     }
   }
 
-  // TODO: Change to ConcurentHashMap with weighted eviction
-  class TimelineMetricHolder extends LinkedHashMap<String, TimelineMetricWrapper> {
-    private static final long serialVersionUID = 1L;
-    private boolean gotOverflow = false;
-    // To avoid duplication at the end of the buffer and beginning of the next
-    // segment of values
-    private Map<String, Long> endOfBufferTimestamps = new HashMap<String, Long>();
+  private boolean isOverLimit() {
+    return buffers.size() > maxRecsPerName || sizeInBytes.get() > maxSizeInBytes;
+  }
 
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<String, TimelineMetricWrapper> eldest) {
-      boolean overflow = size() > maxRecsPerName;
-      if (overflow && !gotOverflow) {
-        LOG.warn("Metrics cache overflow at "+ size() +" for "+ eldest);
+  /**
+   * Evict the least recently put metrics until the cache is at 90% of its
+   * bounds, so that the eviction cost is spread over many puts.
+   */
+  private void evictEldest() {
+    if (!evictionLock.tryLock()) {
+      // another thread is evicting
+      return;
+    }
+    try {
+      if (!isOverLimit()) {
+        return;
+      }
+      if (!gotOverflow) {
+        LOG.warn("Metrics cache overflow at " + buffers.size() + " metrics, " +
+          sizeInBytes.get() + " bytes");
         gotOverflow = true;
       }
-      return overflow;
-    }
 
-    public TimelineMetric evict(String metricName) {
-      TimelineMetricWrapper metricWrapper = this.get(metricName);
+      List<EvictionCandidate> candidates =
+        new ArrayList<EvictionCandidate>(buffers.size());
+      for (MetricBuffer buffer : buffers.values()) {
+        candidates.add(new EvictionCandidate(buffer));
+      }
+      Collections.sort(candidates, EvictionCandidate.ELDEST_FIRST);
+
+      int targetCount = maxRecsPerName - maxRecsPerName / 10;
+      long targetSize = maxSizeInBytes - maxSizeInBytes / 10;
 
-      if (metricWrapper == null
-        || metricWrapper.getTimeDiff() < getMaxEvictionTimeInMillis()) {
-        return null;
+      for (EvictionCandidate candidate : candidates) {
+        if (buffers.size() <= targetCount && sizeInBytes.get() <= targetSize) {
+          break;
+        }
+        MetricBuffer buffer = candidate.buffer;
+        long size = buffer.markEvicted();
+        if (buffers.remove(buffer.metricName, buffer)) {
+          sizeInBytes.addAndGet(-size);
+        }
       }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * The buffered values of one metric. The timestamps and values are kept in
+   * parallel ring buffers whose capacity is a power of two, grown on demand
+   * up to the maximum number of values per metric.
+   */
+  private class MetricBuffer {
+    private final String metricName;
+
+    // the first metric put since the last take, which is returned with the
+    // buffered values
+    private TimelineMetric template;
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int head = 0;
+    private int count = 0;
+
+    private long oldestStartTime = -1;
+    private long timeDiff = -1;
+    private boolean empty = true;
 
-      TimelineMetric timelineMetric = metricWrapper.getTimelineMetric();
-      this.remove(metricName);
+    // the start time of the last metric put, used to drop duplicates at the
+    // end of one send interval and the beginning of the next
+    private volatile long lastStartTime = Long.MIN_VALUE;
 
-      return timelineMetric;
+    // the last raw value of a counter metric
+    private boolean hasCounterValue = false;
+    private double lastCounterValue;
+
+    private boolean evicted = false;
+
+    MetricBuffer(String metricName) {
+      this.metricName = metricName;
     }
 
-    public void put(String metricName, TimelineMetric timelineMetric) {
-      if (isDuplicate(timelineMetric)) {
-        return;
+    long getSizeInBytes() {
+      return BUFFER_OVERHEAD_BYTES + 2L * metricName.length() +
+        16L * timestamps.length;
+    }
+
+    /**
+     * @return the number of bytes the buffer grew by, or -1 if the buffer
+     * was evicted
+     */
+    synchronized long put(TimelineMetric metric, boolean isCounter) {
+      if (evicted) {
+        return -1;
+      }
+      long metricStartTime = metric.getStartTime();
+      if (lastStartTime == metricStartTime) {
+        return 0;
       }
-      TimelineMetricWrapper metric = this.get(metricName);
-      if (metric == null) {
-        this.put(metricName, new TimelineMetricWrapper(timelineMetric));
+      lastStartTime = metricStartTime;
+
+      if (empty) {
+        template = metric;
+        oldestStartTime = metricStartTime;
+        timeDiff = -1;
+        empty = false;
+      } else if (oldestStartTime != -1 && metricStartTime > oldestStartTime) {
+        timeDiff = metricStartTime - oldestStartTime;
       } else {
-        metric.putMetric(timelineMetric);
+        oldestStartTime = metricStartTime;
       }
-      // Buffer last ts value
-      endOfBufferTimestamps.put(metricName, timelineMetric.getStartTime());
+
+      long sizeBefore = 16L * timestamps.length;
+      Map<Long, Double> metricValues = metric.getMetricValues();
+
+      if (isCounter) {
+        double previousValue = 0;
+        boolean first = true;
+        for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+          if (entry.getValue() == null) {
+            continue;
+          }
+          double value = entry.getValue();
+          if (first) {
+            previousValue = hasCounterValue ? lastCounterValue : value;
+            first = false;
+          }
+          add(entry.getKey(), value - previousValue);
+          previousValue = value;
+        }
+        if (!first) {
+          lastCounterValue = previousValue;
+          hasCounterValue = true;
+        }
+      } else {
+        for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+          if (entry.getValue() != null) {
+            add(entry.getKey(), entry.getValue());
+          }
+        }
+      }
+      return 16L * timestamps.length - sizeBefore;
     }
 
     /**
-     * Test whether last buffered timestamp is same as the newly received.
-     * @param timelineMetric @TimelineMetric
-     * @return true/false
+     * Continue the differences of a counter from the last value put before
+     * the counter was evicted.
      */
-    private boolean isDuplicate(TimelineMetric timelineMetric) {
-      return endOfBufferTimestamps.containsKey(timelineMetric.getMetricName())
-        && endOfBufferTimestamps.get(timelineMetric.getMetricName()).equals(timelineMetric.getStartTime());
+    synchronized void restoreCounterValue(double value) {
+      lastCounterValue = value;
+      hasCounterValue = true;
     }
-  }
 
-  public TimelineMetric getTimelineMetric(String metricName) {
-    if (timelineMetricCache.containsKey(metricName)) {
-      return timelineMetricCache.evict(metricName);
+    private void add(long ts, double value) {
+      if (count == timestamps.length) {
+        if (timestamps.length < maxValuesPerName) {
+          grow();
+        } else {
+          // overwrite the oldest value
+          head = (head + 1) & (timestamps.length - 1);
+          count--;
+          droppedValues.incrementAndGet();
+          if (!gotValueOverflow) {
+            LOG.warn("Metric " + metricName + " has more than " +
+              maxValuesPerName + " values to send, overwriting the oldest " +
+              "values. Further overwrites are only counted.");
+            gotValueOverflow = true;
+          }
+        }
+      }
+      int tail = (head + count) & (timestamps.length - 1);
+      timestamps[tail] = ts;
+      values[tail] = value;
+      count++;
     }
 
-    return null;
-  }
+    private void grow() {
+      long[] newTimestamps = new long[timestamps.length * 2];
+      double[] newValues = new double[values.length * 2];
+      for (int i = 0; i < count; i++) {
+        int index = (head + i) & (timestamps.length - 1);
+        newTimestamps[i] = timestamps[index];
+        newValues[i] = values[index];
+      }
+      timestamps = newTimestamps;
+      values = newValues;
+      head = 0;
+    }
 
-  /**
-   * Getter method to help testing eviction
-   * @return @int
-   */
-  public int getMaxEvictionTimeInMillis() {
-    return maxEvictionTimeInMillis;
-  }
+    /**
+     * Take the buffered values if they span at least the eviction time,
+     * leaving the buffer empty for the next interval.
+     */
+    synchronized TimelineMetric take(int maxEvictionTimeInMillis) {
+      if (empty || timeDiff < maxEvictionTimeInMillis) {
+        return null;
+      }
 
-  public void putTimelineMetric(TimelineMetric timelineMetric) {
-    timelineMetricCache.put(timelineMetric.getMetricName(), timelineMetric);
-  }
+      TimelineMetric metric = template;
+      template = null;
 
-  private void transformMetricValuesToDerivative(TimelineMetric timelineMetric) {
-    String metricName = timelineMetric.getMetricName();
-    double firstValue = timelineMetric.getMetricValues().size() > 0
-        ? timelineMetric.getMetricValues().entrySet().iterator().next().getValue() : 0;
-    Double value = counterMetricLastValue.get(metricName);
-    double previousValue = value != null ? value : firstValue;
-    Map<Long, Double> metricValues = timelineMetric.getMetricValues();
-    Map<Long, Double>   newMetricValues = new TreeMap<Long, Double>();
-    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
-      newMetricValues.put(entry.getKey(), entry.getValue() - previousValue);
-      previousValue = entry.getValue();
+      // later values for the same timestamp replace earlier ones
+      Map<Long, Double> metricValues = new TreeMap<Long, Double>();
+      for (int i = 0; i < count; i++) {
+        int index = (head + i) & (timestamps.length - 1);
+        metricValues.put(timestamps[index], values[index]);
+      }
+      metric.setMetricValues(metricValues);
+
+      head = 0;
+      count = 0;
+      empty = true;
+      return metric;
+    }
+
+    /**
+     * Mark the buffer evicted so that no more values are put to it. Its
+     * values are counted as dropped and the last counter value is kept.
+     *
+     * @return the size of the buffer in bytes
+     */
+    synchronized long markEvicted() {
+      evicted = true;
+      droppedValues.addAndGet(count);
+      if (hasCounterValue) {
+        saveEvictedCounterValue(metricName, lastCounterValue);
+      }
+      return getSizeInBytes();
     }
-    timelineMetric.setMetricValues(newMetricValues);
-    counterMetricLastValue.put(metricName, previousValue);
   }
 
-  public void putTimelineMetric(TimelineMetric timelineMetric, boolean isCounter) {
-    if (isCounter) {
-      transformMetricValuesToDerivative(timelineMetric);
+  /**
+   * A buffer and the time it was last put to, captured so that the sort
+   * order doesn't change while sorting.
+   */
+  private static class EvictionCandidate {
+    static final Comparator<EvictionCandidate> ELDEST_FIRST =
+      new Comparator<EvictionCandidate>() {
+        @Override
+        public int compare(EvictionCandidate c1, EvictionCandidate c2) {
+          return c1.lastStartTime < c2.lastStartTime ? -1 :
+            (c1.lastStartTime == c2.lastStartTime ? 0 : 1);
+        }
+      };
+
+    private final MetricBuffer buffer;
+    private final long lastStartTime;
+
+    EvictionCandidate(MetricBuffer buffer) {
+      this.buffer = buffer;
+      this.lastStartTime = buffer.lastStartTime;
     }
-    putTimelineMetric(timelineMetric);
   }
 }
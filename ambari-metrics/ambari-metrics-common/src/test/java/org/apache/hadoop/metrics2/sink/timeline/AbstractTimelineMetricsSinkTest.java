@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class AbstractTimelineMetricsSinkTest {
+
+  private static final String COLLECTOR_1 = "http://collector1:6188/ws/v1/timeline/metrics";
+  private static final String COLLECTOR_2 = "http://collector2:6188/ws/v1/timeline/metrics";
+
+  private HttpClient client;
+  private TestTimelineMetricsSink sink;
+  private final List<String> down = new ArrayList<String>();
+  private final List<String> posted = new ArrayList<String>();
+  private final List<PostMethod> methods = new ArrayList<PostMethod>();
+
+  @Before
+  public void init() throws Exception {
+    client = Mockito.mock(HttpClient.class);
+    Mockito.when(client.executeMethod(Mockito.<HttpMethod>any())).thenAnswer(
+      new Answer<Integer>() {
+        @Override
+        public Integer answer(InvocationOnMock invocation) throws Throwable {
+          PostMethod method = (PostMethod) invocation.getArguments()[0];
+          String uri = method.getURI().toString();
+          if (down.contains(uri)) {
+            throw new ConnectException();
+          }
+          posted.add(uri);
+          methods.add(method);
+          return 200;
+        }
+      });
+    sink = new TestTimelineMetricsSink(Arrays.asList(COLLECTOR_1, COLLECTOR_2));
+    sink.setHttpClient(client);
+  }
+
+  @Test
+  public void testRoundRobin() throws Exception {
+    sink.emitMetrics(createMetrics(1));
+    sink.emitMetrics(createMetrics(2));
+    sink.emitMetrics(createMetrics(3));
+
+    Assert.assertEquals(Arrays.asList(COLLECTOR_1, COLLECTOR_2, COLLECTOR_1), posted);
+  }
+
+  @Test
+  public void testFailover() throws Exception {
+    down.add(COLLECTOR_1);
+
+    sink.emitMetrics(createMetrics(1));
+    sink.emitMetrics(createMetrics(2));
+
+    Assert.assertEquals(Arrays.asList(COLLECTOR_2, COLLECTOR_2), posted);
+    Assert.assertEquals(0, sink.getSpooledCount());
+  }
+
+  @Test
+  public void testSpoolAndReplay() throws Exception {
+    down.add(COLLECTOR_1);
+    down.add(COLLECTOR_2);
+
+    try {
+      sink.emitMetrics(createMetrics(1));
+      Assert.fail("Expected UnableToConnectException");
+    } catch (UnableToConnectException e) {
+      Assert.assertNotNull(e.getConnectUrl());
+    }
+    Assert.assertEquals(1, sink.getSpooledCount());
+    Assert.assertTrue(posted.isEmpty());
+
+    down.clear();
+    sink.emitMetrics(createMetrics(2));
+
+    Assert.assertEquals(0, sink.getSpooledCount());
+    Assert.assertEquals(2, posted.size());
+    Assert.assertTrue(methods.get(1).getRequestEntity() instanceof ByteArrayRequestEntity);
+    byte[] replayed = ((ByteArrayRequestEntity) methods.get(1).getRequestEntity()).getContent();
+    Assert.assertEquals(1L, (long) readGzipJson(replayed).getMetrics().get(0).getStartTime());
+    Assert.assertEquals("gzip",
+      methods.get(1).getRequestHeader("Content-Encoding").getValue());
+  }
+
+  @Test
+  public void testNoCollector() throws Exception {
+    sink = new TestTimelineMetricsSink(Collections.<String>emptyList());
+    sink.setHttpClient(client);
+    try {
+      sink.emitMetrics(createMetrics(1));
+      Assert.fail("Expected UnableToConnectException");
+    } catch (UnableToConnectException e) {
+      // expected
+    }
+    Assert.assertEquals(0, sink.getSpooledCount());
+  }
+
+  @Test
+  public void testStreamingRequestEntity() throws Exception {
+    TimelineMetrics metrics = createMetrics(5);
+    AbstractTimelineMetricsSink.TimelineMetricsRequestEntity entity =
+      new AbstractTimelineMetricsSink.TimelineMetricsRequestEntity(metrics);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    entity.writeRequest(out);
+    // the entity can be written again for a retry
+    ByteArrayOutputStream again = new ByteArrayOutputStream();
+    entity.writeRequest(again);
+
+    Assert.assertTrue(entity.isRepeatable());
+    Assert.assertArrayEquals(out.toByteArray(), again.toByteArray());
+    TimelineMetric metric = readGzipJson(out.toByteArray()).getMetrics().get(0);
+    Assert.assertEquals("metric", metric.getMetricName());
+    Assert.assertEquals(Double.valueOf(5.0), metric.getMetricValues().get(5L));
+  }
+
+  private static TimelineMetrics createMetrics(long startTime) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("metric");
+    metric.setHostName("host");
+    metric.setAppId("app");
+    metric.setStartTime(startTime);
+    metric.getMetricValues().put(startTime, (double) startTime);
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(metric);
+    return metrics;
+  }
+
+  private static TimelineMetrics readGzipJson(byte[] payload) throws IOException {
+    return AbstractTimelineMetricsSink.mapper.readValue(
+      new GZIPInputStream(new ByteArrayInputStream(payload)), TimelineMetrics.class);
+  }
+
+  private static class TestTimelineMetricsSink extends AbstractTimelineMetricsSink {
+    private final List<String> collectorUris;
+
+    TestTimelineMetricsSink(List<String> collectorUris) {
+      this.collectorUris = collectorUris;
+    }
+
+    @Override
+    protected String getCollectorUri() {
+      return collectorUris.isEmpty() ? null : collectorUris.get(0);
+    }
+
+    @Override
+    protected List<String> getCollectorUris() {
+      return collectorUris;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TimelineMetricsSpoolTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testInMemoryDropsOldest() throws Exception {
+    TimelineMetricsSpool spool = new TimelineMetricsSpool(null, 10);
+    spool.add(new byte[] {1, 1, 1, 1});
+    spool.add(new byte[] {2, 2, 2, 2});
+    spool.add(new byte[] {3, 3, 3, 3});
+
+    Assert.assertEquals(2, spool.size());
+    Assert.assertEquals(8, spool.getSizeInBytes());
+    Assert.assertEquals(1, spool.getDroppedCount());
+
+    byte[] payload = spool.peek();
+    Assert.assertArrayEquals(new byte[] {2, 2, 2, 2}, payload);
+    Assert.assertTrue(spool.remove(payload));
+    payload = spool.peek();
+    Assert.assertArrayEquals(new byte[] {3, 3, 3, 3}, payload);
+    Assert.assertTrue(spool.remove(payload));
+    Assert.assertNull(spool.peek());
+    Assert.assertTrue(spool.isEmpty());
+    Assert.assertEquals(0, spool.getSizeInBytes());
+  }
+
+  @Test
+  public void testPeekedPayloadDroppedBeforeRemove() throws Exception {
+    TimelineMetricsSpool spool = new TimelineMetricsSpool(null, 8);
+    spool.add(new byte[] {1, 1, 1, 1});
+    spool.add(new byte[] {2, 2, 2, 2});
+
+    byte[] payload = spool.peek();
+    Assert.assertArrayEquals(new byte[] {1, 1, 1, 1}, payload);
+
+    // the peeked payload is dropped while it is replayed
+    spool.add(new byte[] {3, 3, 3, 3});
+
+    // the payload which is now the oldest is kept
+    Assert.assertFalse(spool.remove(payload));
+    Assert.assertEquals(2, spool.size());
+    Assert.assertArrayEquals(new byte[] {2, 2, 2, 2}, spool.peek());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    TimelineMetricsSpool spool = new TimelineMetricsSpool(null, 0);
+    spool.add(new byte[] {1});
+
+    Assert.assertTrue(spool.isEmpty());
+    Assert.assertEquals(1, spool.getDroppedCount());
+  }
+
+  @Test
+  public void testDirectorySurvivesRestart() throws Exception {
+    File directory = new File(folder.getRoot(), "spool");
+    TimelineMetricsSpool spool = new TimelineMetricsSpool(directory, 1024);
+    spool.add(new byte[] {1, 2});
+    spool.add(new byte[] {3, 4, 5});
+    Assert.assertEquals(2, directory.list().length);
+
+    spool = new TimelineMetricsSpool(directory, 1024);
+    Assert.assertEquals(2, spool.size());
+    Assert.assertEquals(5, spool.getSizeInBytes());
+    byte[] payload = spool.peek();
+    Assert.assertArrayEquals(new byte[] {1, 2}, payload);
+    spool.remove(payload);
+    Assert.assertEquals(1, directory.list().length);
+
+    // new payloads are replayed after the recovered ones
+    spool.add(new byte[] {6});
+    payload = spool.peek();
+    Assert.assertArrayEquals(new byte[] {3, 4, 5}, payload);
+    spool.remove(payload);
+    payload = spool.peek();
+    Assert.assertArrayEquals(new byte[] {6}, payload);
+    spool.remove(payload);
+    Assert.assertEquals(0, directory.list().length);
+  }
+}
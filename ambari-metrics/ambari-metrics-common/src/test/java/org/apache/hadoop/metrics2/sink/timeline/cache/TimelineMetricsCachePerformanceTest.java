@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline.cache;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the throughput and allocation of {@link TimelineMetricsCache}
+ * with the previous {@link LinkedHashMapTimelineMetricsCache} using the
+ * access pattern of the sinks: every period each metric is put with one
+ * value and then asked for, and its values are returned once a minute.
+ *
+ * The new cache is also run with several threads; the previous one is not
+ * safe for concurrent use.
+ */
+@Ignore
+public class TimelineMetricsCachePerformanceTest {
+
+  private static final long PERIOD_MILLIS = 10000;
+  private static final int ITERATIONS = 5;
+  private static final int NAMES = 2000;
+  private static final int PERIODS = 120;
+  private static final int THREADS = 4;
+
+  /**
+   * The operations of the sinks, implemented by both caches.
+   */
+  private interface Cache {
+    void put(TimelineMetric metric);
+    TimelineMetric get(String metricName);
+  }
+
+  @Test
+  public void testPutAndGet() throws Exception {
+    int names = NAMES;
+    int periods = PERIODS;
+    int threads = THREADS;
+
+    System.out.println(names + " metrics, " + periods + " periods");
+
+    // the first iteration warms up the JIT
+    for (int i = 0; i <= ITERATIONS; i++) {
+      boolean report = i > 0;
+      run("LinkedHashMap cache", createLegacyCache(), names, periods, 1, report);
+      run("ring buffer cache  ", createCache(), names, periods, 1, report);
+      run("ring buffer cache, " + threads + " threads", createCache(), names,
+        periods, threads, report);
+    }
+  }
+
+  private static Cache createLegacyCache() {
+    final LinkedHashMapTimelineMetricsCache cache =
+      new LinkedHashMapTimelineMetricsCache(
+        TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT,
+        TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    return new Cache() {
+      @Override
+      public void put(TimelineMetric metric) {
+        cache.putTimelineMetric(metric, false);
+      }
+
+      @Override
+      public TimelineMetric get(String metricName) {
+        return cache.getTimelineMetric(metricName);
+      }
+    };
+  }
+
+  private static Cache createCache() {
+    final TimelineMetricsCache cache = new TimelineMetricsCache(
+      TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT,
+      TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    return new Cache() {
+      @Override
+      public void put(TimelineMetric metric) {
+        cache.putTimelineMetric(metric, false);
+      }
+
+      @Override
+      public TimelineMetric get(String metricName) {
+        return cache.getTimelineMetric(metricName);
+      }
+    };
+  }
+
+  private static void run(String label, final Cache cache, final int names,
+                          final int periods, int threadCount,
+                          boolean report) throws InterruptedException {
+    final String[] metricNames = new String[names];
+    for (int i = 0; i < names; i++) {
+      metricNames[i] = "jvm.JvmMetrics.ProcessName=DataNode.metric" + i;
+    }
+
+    final long[] allocated = new long[threadCount];
+    List<Thread> workers = new ArrayList<Thread>(threadCount);
+    for (int t = 0; t < threadCount; t++) {
+      final int thread = t;
+      final int threads = threadCount;
+      workers.add(new Thread() {
+        @Override
+        public void run() {
+          long allocatedBefore = getAllocatedBytes();
+          for (int period = 0; period < periods; period++) {
+            long time = 1416445244801L + period * PERIOD_MILLIS;
+            for (int i = thread; i < names; i += threads) {
+              TimelineMetric metric = new TimelineMetric();
+              metric.setMetricName(metricNames[i]);
+              metric.setHostName("host");
+              metric.setAppId("datanode");
+              metric.setStartTime(time);
+              metric.getMetricValues().put(time, (double) period);
+              cache.put(metric);
+              cache.get(metricNames[i]);
+            }
+          }
+          allocated[thread] = getAllocatedBytes() - allocatedBefore;
+        }
+      });
+    }
+
+    long start = System.nanoTime();
+    for (Thread worker : workers) {
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    long elapsed = System.nanoTime() - start;
+
+    if (report) {
+      long operations = (long) names * periods;
+      long allocatedBytes = 0;
+      for (long bytes : allocated) {
+        allocatedBytes += bytes;
+      }
+      System.out.println(String.format("%s: %.0f puts/s, %d bytes allocated/put",
+        label, operations * 1e9 / elapsed,
+        allocatedBytes < 0 ? -1 : allocatedBytes / operations));
+    }
+  }
+
+  /**
+   * @return the bytes allocated by the current thread, or a negative value
+   * if the JVM doesn't report it
+   */
+  private static long getAllocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean)
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return Long.MIN_VALUE / 1024;
+  }
+}
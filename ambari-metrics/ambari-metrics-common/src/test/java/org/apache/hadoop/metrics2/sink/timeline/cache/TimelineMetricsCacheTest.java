@@ -20,10 +20,16 @@ package org.apache.hadoop.metrics2.sink.timeline.cache;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class TimelineMetricsCacheTest {
 
@@ -72,6 +78,174 @@ public class TimelineMetricsCacheTest {
     assertEquals(70, cachedMetric.getMetricValues().get(8L), delta);
   }
 
+  @Test
+  public void testGetBeforeEvictionTime() throws Exception {
+    timelineMetricsCache.putTimelineMetric(createTimelineMetric(
+      Collections.singletonMap(1L, 1.0), DEFAULT_START_TIME));
+    assertNull(timelineMetricsCache.getTimelineMetric(METRIC_NAME));
+
+    // same start time is dropped as a duplicate
+    timelineMetricsCache.putTimelineMetric(createTimelineMetric(
+      Collections.singletonMap(2L, 2.0), DEFAULT_START_TIME));
+    timelineMetricsCache.putTimelineMetric(createTimelineMetric(
+      Collections.singletonMap(3L, 3.0), DEFAULT_START_TIME + 1));
+    assertNull(timelineMetricsCache.getTimelineMetric(METRIC_NAME));
+
+    timelineMetricsCache.putTimelineMetric(createTimelineMetric(
+      Collections.singletonMap(4L, 4.0),
+      DEFAULT_START_TIME + TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS));
+    TimelineMetric cachedMetric = timelineMetricsCache.getTimelineMetric(METRIC_NAME);
+
+    assertEquals(DEFAULT_START_TIME, cachedMetric.getStartTime());
+    assertEquals("Test hostName", cachedMetric.getHostName());
+    assertEquals(3, cachedMetric.getMetricValues().size());
+    assertFalse(cachedMetric.getMetricValues().containsKey(2L));
+    assertEquals(4.0, cachedMetric.getMetricValues().get(4L), delta);
+
+    // the values were taken
+    assertNull(timelineMetricsCache.getTimelineMetric(METRIC_NAME));
+  }
+
+  @Test
+  public void testOverwriteOldestValues() throws Exception {
+    for (int i = 0; i <= TimelineMetricsCache.MAX_VALUES_PER_NAME_DEFAULT; i++) {
+      timelineMetricsCache.putTimelineMetric(createTimelineMetric(
+        Collections.singletonMap((long) i, (double) i), DEFAULT_START_TIME + i * 1000L));
+    }
+    TimelineMetric cachedMetric = timelineMetricsCache.getTimelineMetric(METRIC_NAME);
+
+    Map<Long, Double> values = cachedMetric.getMetricValues();
+    assertEquals(TimelineMetricsCache.MAX_VALUES_PER_NAME_DEFAULT, values.size());
+    assertFalse(values.containsKey(0L));
+    assertEquals(TimelineMetricsCache.MAX_VALUES_PER_NAME_DEFAULT,
+      values.get((long) TimelineMetricsCache.MAX_VALUES_PER_NAME_DEFAULT), delta);
+    assertEquals(1, timelineMetricsCache.getDroppedValueCount());
+  }
+
+  @Test
+  public void testMaxValuesPerName() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(
+      TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT,
+      TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS, Long.MAX_VALUE, 12);
+    assertEquals(16, cache.getMaxValuesPerName());
+
+    for (int i = 0; i < 20; i++) {
+      cache.putTimelineMetric(createTimelineMetric(
+        Collections.singletonMap((long) i, (double) i),
+        DEFAULT_START_TIME + i * 10000L));
+    }
+    TimelineMetric cachedMetric = cache.getTimelineMetric(METRIC_NAME);
+
+    assertEquals(16, cachedMetric.getMetricValues().size());
+    assertFalse(cachedMetric.getMetricValues().containsKey(3L));
+    assertEquals(4, cache.getDroppedValueCount());
+  }
+
+  @Test
+  public void testCounterValueKeptOnEviction() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(1,
+      TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    cache.putTimelineMetric(createTimelineMetric(
+      Collections.singletonMap(1L, 100.0), DEFAULT_START_TIME), true);
+
+    // evicts the counter and its first value
+    TimelineMetric other = createTimelineMetric(
+      Collections.singletonMap(1L, 1.0), DEFAULT_START_TIME + 1);
+    other.setMetricName("other");
+    cache.putTimelineMetric(other);
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getDroppedValueCount());
+
+    cache.putTimelineMetric(createTimelineMetric(
+      Collections.singletonMap(2L, 130.0), DEFAULT_START_TIME + 2), true);
+    cache.putTimelineMetric(createTimelineMetric(
+      Collections.singletonMap(3L, 150.0),
+      DEFAULT_START_TIME + 2 + TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS), true);
+    TimelineMetric cachedMetric = cache.getTimelineMetric(METRIC_NAME);
+
+    // the differences continue from the value put before the eviction
+    assertEquals(30.0, cachedMetric.getMetricValues().get(2L), delta);
+    assertEquals(20.0, cachedMetric.getMetricValues().get(3L), delta);
+  }
+
+  @Test
+  public void testEvictEldestByCount() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(10,
+      TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    for (int i = 0; i < 11; i++) {
+      TimelineMetric metric = createTimelineMetric(
+        Collections.singletonMap(1L, 1.0), DEFAULT_START_TIME + i);
+      metric.setMetricName("metric" + i);
+      cache.putTimelineMetric(metric);
+    }
+    assertTrue(cache.size() <= 10);
+
+    // the eldest metric was evicted, the newest one is still buffered
+    TimelineMetric metric = createTimelineMetric(
+      Collections.singletonMap(2L, 2.0), DEFAULT_START_TIME + 10 +
+        TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    metric.setMetricName("metric0");
+    cache.putTimelineMetric(metric);
+    assertNull(cache.getTimelineMetric("metric0"));
+
+    metric.setMetricName("metric10");
+    cache.putTimelineMetric(metric);
+    assertEquals(2, cache.getTimelineMetric("metric10").getMetricValues().size());
+  }
+
+  @Test
+  public void testEvictEldestBySize() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(
+      TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT,
+      TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS, 4096);
+    for (int i = 0; i < 100; i++) {
+      TimelineMetric metric = createTimelineMetric(
+        Collections.singletonMap(1L, 1.0), DEFAULT_START_TIME + i);
+      metric.setMetricName("metric" + i);
+      cache.putTimelineMetric(metric);
+    }
+    assertTrue(cache.getSizeInBytes() <= 4096);
+    assertTrue(cache.size() < 100);
+  }
+
+  @Test
+  public void testConcurrentPut() throws Exception {
+    final TimelineMetricsCache cache = new TimelineMetricsCache(
+      TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT, 0);
+    final int threads = 4;
+    final int puts = 1000;
+
+    List<Thread> writers = new ArrayList<Thread>();
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      writers.add(new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < puts; i++) {
+            long time = i * threads + thread;
+            TimelineMetric metric = createTimelineMetric(
+              Collections.singletonMap(time, 1.0), time);
+            metric.setMetricName("metric" + (i % 10));
+            cache.putTimelineMetric(metric);
+          }
+        }
+      });
+    }
+    for (Thread writer : writers) {
+      writer.start();
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+
+    int values = 0;
+    for (int i = 0; i < 10; i++) {
+      TimelineMetric metric = cache.getTimelineMetric("metric" + i);
+      values += metric.getMetricValues().size();
+    }
+    assertEquals(threads * puts, values);
+  }
+
   private TimelineMetric createTimelineMetric(Map<Long, Double> metricValues,
                                               long startTime) {
     TimelineMetric timelineMetric = new TimelineMetric();
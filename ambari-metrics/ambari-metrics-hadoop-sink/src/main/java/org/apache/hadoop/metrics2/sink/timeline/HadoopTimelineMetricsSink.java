@@ -18,7 +18,7 @@
 package org.apache.hadoop.metrics2.sink.timeline;
 
 import java.io.IOException;
-import java.net.SocketAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -52,8 +52,8 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
   private TimelineMetricsCache metricsCache;
   private String hostName = "UNKNOWN.example.com";
   private String serviceName = "";
-  private List<? extends SocketAddress> metricsServers;
-  private String collectorUri;
+  private List<InetSocketAddress> metricsServers;
+  private List<String> collectorUris = new ArrayList<String>();
   private static final String SERVICE_NAME_PREFIX = "serviceName-prefix";
   private static final String SERVICE_NAME = "serviceName";
 
@@ -85,17 +85,27 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
     if (metricsServers == null || metricsServers.isEmpty()) {
       LOG.error("No Metric collector configured.");
     } else {
-      collectorUri = "http://" + conf.getString(COLLECTOR_HOST_PROPERTY).trim()
-          + "/ws/v1/timeline/metrics";
+      // posts are spread over the collectors round robin
+      for (InetSocketAddress server : metricsServers) {
+        collectorUris.add("http://" + server.getHostString() + ":" +
+          server.getPort() + "/ws/v1/timeline/metrics");
+      }
     }
 
-    LOG.info("Collector Uri: " + collectorUri);
+    LOG.info("Collector Uri: " + collectorUris);
+
+    initSpool(conf.getString(SPOOL_DIR_PROPERTY),
+      conf.getLong(SPOOL_SIZE_PROPERTY, SPOOL_SIZE_DEFAULT));
 
     int maxRowCacheSize = conf.getInt(MAX_METRIC_ROW_CACHE_SIZE,
       TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT);
     int metricsSendInterval = conf.getInt(METRICS_SEND_INTERVAL,
       TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS); // ~ 1 min
-    metricsCache = new TimelineMetricsCache(maxRowCacheSize, metricsSendInterval);
+    int maxValuesPerName = conf.getInt(MAX_METRIC_VALUES_PER_NAME,
+      TimelineMetricsCache.MAX_VALUES_PER_NAME_DEFAULT);
+    metricsCache = new TimelineMetricsCache(maxRowCacheSize, metricsSendInterval,
+      (long) maxRowCacheSize * TimelineMetricsCache.BYTES_PER_NAME_DEFAULT,
+      maxValuesPerName);
 
     conf.setListDelimiter(',');
     Iterator<String> it = (Iterator<String>) conf.getKeys();
@@ -147,7 +157,12 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
 
   @Override
   protected String getCollectorUri() {
-    return collectorUri;
+    return collectorUris.isEmpty() ? null : collectorUris.get(0);
+  }
+
+  @Override
+  protected List<String> getCollectorUris() {
+    return collectorUris;
   }
 
   @Override
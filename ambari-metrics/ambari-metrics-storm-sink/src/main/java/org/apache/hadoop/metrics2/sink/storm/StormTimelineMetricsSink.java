@@ -63,7 +63,10 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
         String.valueOf(TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT)));
     int metricsSendInterval = Integer.parseInt(configuration.getProperty(METRICS_SEND_INTERVAL,
         String.valueOf(TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS)));
-    metricsCache = new TimelineMetricsCache(maxRowCacheSize, metricsSendInterval);
+    int maxValuesPerName = Integer.parseInt(configuration.getProperty(MAX_METRIC_VALUES_PER_NAME,
+        String.valueOf(TimelineMetricsCache.MAX_VALUES_PER_NAME_DEFAULT)));
+    metricsCache = new TimelineMetricsCache(maxRowCacheSize, metricsSendInterval,
+        (long) maxRowCacheSize * TimelineMetricsCache.BYTES_PER_NAME_DEFAULT, maxValuesPerName);
     collectorUri = "http://" + configuration.getProperty(COLLECTOR_HOST_PROPERTY) + ":" + configuration.getProperty(COLLECTOR_PORT_PROPERTY) + "/ws/v1/timeline/metrics";
   }
 
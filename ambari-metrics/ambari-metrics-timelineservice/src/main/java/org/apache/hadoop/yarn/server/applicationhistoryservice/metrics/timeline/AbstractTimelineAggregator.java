@@ -18,9 +18,16 @@
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.apache.hadoop.yarn.util.Clock;
 import org.apache.hadoop.yarn.util.SystemClock;
 
@@ -30,13 +37,49 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.GET_METRIC_NAMES_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_CHECKPOINT_DELAY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_PARTITIONS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_PARTITION_REFRESH_CYCLES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_THREADS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.RESULTSET_FETCH_SIZE;
 
-public abstract class AbstractTimelineAggregator implements Runnable {
+/**
+ * Base class of the aggregators. Every cycle reads the metrics written since
+ * the last checkpoint and saves their aggregates.
+ *
+ * When more than one partition is configured, a cycle is split into metric
+ * name ranges holding roughly the same number of metric names. Each range is
+ * queried, aggregated and saved on its own thread, so no single result set
+ * or aggregate map holds the whole cycle. The aggregators key their
+ * aggregates by metric name, so the ranges never share an aggregate. The
+ * ranges are recomputed every few cycles from the metric names in the input
+ * table; the first and last range are open ended so stale ranges still
+ * cover every metric.
+ *
+ * The cycle duration and the duration and lag of every partition are
+ * published as a metrics source.
+ *
+ * An aggregator can run as a repair pass over the aggregates computed at
+ * ingest, see {@link #setRepairDelayMillis(long)}.
+ */
+public abstract class AbstractTimelineAggregator implements Runnable,
+  MetricsSource {
   protected final PhoenixHBaseAccessor hBaseAccessor;
   private final Log LOG;
 
@@ -45,6 +88,27 @@ public abstract class AbstractTimelineAggregator implements Runnable {
   protected final Integer resultsetFetchSize;
   protected Configuration metricsConf;
 
+  private final int partitions;
+  private final int threads;
+  private final int partitionRefreshCycles;
+  private ExecutorService executor;
+  private List<String> partitionBoundaries;
+  private int cyclesSincePartitionRefresh;
+
+  private final MetricsRegistry registry =
+    new MetricsRegistry("TimelineMetricAggregator");
+  private final MutableRate cycleDuration = registry.newRate("CycleDuration",
+    "Time to aggregate a cycle in ms", false);
+  private volatile int activePartitions = 1;
+  private final AtomicLongArray partitionDuration;
+  private final AtomicLongArray partitionAggregatedUpTo;
+
+  /**
+   * How long after a window ended it is aggregated, 0 unless the aggregator
+   * is a repair pass.
+   */
+  private volatile long repairDelayMillis = 0;
+
   public AbstractTimelineAggregator(PhoenixHBaseAccessor hBaseAccessor,
                                     Configuration metricsConf) {
     this(hBaseAccessor, metricsConf, new SystemClock());
@@ -59,32 +123,80 @@ public abstract class AbstractTimelineAggregator implements Runnable {
     this.resultsetFetchSize = metricsConf.getInt(RESULTSET_FETCH_SIZE, 2000);
     this.LOG = LogFactory.getLog(this.getClass());
     this.clock = clk;
+    this.partitions = Math.max(1, metricsConf.getInt(AGGREGATOR_PARTITIONS, 1));
+    this.threads = Math.max(1, Math.min(partitions,
+      metricsConf.getInt(AGGREGATOR_THREADS, 4)));
+    this.partitionRefreshCycles = Math.max(1,
+      metricsConf.getInt(AGGREGATOR_PARTITION_REFRESH_CYCLES, 10));
+    this.partitionDuration = new AtomicLongArray(partitions);
+    this.partitionAggregatedUpTo = new AtomicLongArray(partitions);
   }
 
   @Override
   public void run() {
     LOG.info("Started Timeline aggregator thread @ " + new Date());
+    String sourceName = TimelineMetricsSources.register(getSourceName(),
+      "Timeline metrics aggregator", this);
     Long SLEEP_INTERVAL = getSleepIntervalMillis();
 
-    while (true) {
-      long sleepTime = runOnce(SLEEP_INTERVAL);
+    try {
+      while (true) {
+        long sleepTime = runOnce(SLEEP_INTERVAL);
 
-      try {
-        Thread.sleep(sleepTime);
-      } catch (InterruptedException e) {
-        LOG.info("Sleep interrupted, continuing with aggregation.");
+        try {
+          Thread.sleep(sleepTime);
+        } catch (InterruptedException e) {
+          LOG.info("Sleep interrupted, continuing with aggregation.");
+        }
       }
+    } finally {
+      TimelineMetricsSources.unregister(sourceName);
     }
   }
 
+  /**
+   * Run as a repair pass over the windows already aggregated at ingest. The
+   * windows start at a multiple of {@link #getRepairAlignmentMillis()}, like
+   * the slices of the ingest aggregator, and are only aggregated once they
+   * ended more than the given delay ago. The aggregates read back from the
+   * store then replace the ones saved at ingest, including the values that
+   * were posted late or lost to a restart.
+   *
+   * @param repairDelayMillis delay after the end of a window, longer than the
+   *                          time the ingest aggregator takes to save it
+   */
+  public void setRepairDelayMillis(long repairDelayMillis) {
+    this.repairDelayMillis = repairDelayMillis;
+  }
+
+  protected boolean isRepairPass() {
+    return repairDelayMillis > 0;
+  }
+
+  /**
+   * Alignment of the windows of a repair pass, the sleep interval by default.
+   */
+  protected long getRepairAlignmentMillis() {
+    return getSleepIntervalMillis();
+  }
+
   /**
    * Access relaxed for tests
    */
   protected long runOnce(Long SLEEP_INTERVAL) {
-    long currentTime = clock.getTime();
+    long currentTime = clock.getTime() - repairDelayMillis;
     long lastCheckPointTime = readLastCheckpointSavingOnFirstRun(currentTime);
     long sleepTime = SLEEP_INTERVAL;
 
+    if (lastCheckPointTime != -1 && isRepairPass()) {
+      long alignment = getRepairAlignmentMillis();
+      lastCheckPointTime -= lastCheckPointTime % alignment;
+      if (lastCheckPointTime + SLEEP_INTERVAL > currentTime) {
+        // Not past the repair delay yet, wait for the end of the window
+        return lastCheckPointTime + SLEEP_INTERVAL - currentTime;
+      }
+    }
+
     if (lastCheckPointTime != -1) {
       LOG.info("Last check point time: " + lastCheckPointTime + ", lagBy: "
         + ((clock.getTime() - lastCheckPointTime) / 1000)
@@ -155,7 +267,7 @@ public abstract class AbstractTimelineAggregator implements Runnable {
     // first checkpoint is saved checkpointDelayMillis in the past,
     // so here we also need to take it into account
     return checkpoint != -1 &&
-      ((clock.getTime() - checkpoint - checkpointDelayMillis) >
+      ((clock.getTime() - repairDelayMillis - checkpoint - checkpointDelayMillis) >
         getCheckpointCutOffIntervalMillis());
   }
 
@@ -193,13 +305,64 @@ public abstract class AbstractTimelineAggregator implements Runnable {
    * @param startTime Sample start time
    * @param endTime Sample end time
    */
-  protected boolean doWork(long startTime, long endTime) {
+  protected boolean doWork(final long startTime, final long endTime) {
     LOG.info("Start aggregation cycle @ " + new Date() + ", " +
       "startTime = " + new Date(startTime) + ", endTime = " + new Date(endTime));
 
+    long cycleStart = clock.getTime();
+    List<String> boundaries = getPartitionBoundaries(startTime, endTime);
+    activePartitions = boundaries.size() + 1;
+
+    boolean success = true;
+    if (boundaries.isEmpty()) {
+      success = aggregatePartition(0, null, null, startTime, endTime);
+    } else {
+      List<Future<Boolean>> results =
+        new ArrayList<Future<Boolean>>(boundaries.size() + 1);
+      for (int i = 0; i <= boundaries.size(); i++) {
+        final int partition = i;
+        final String from = i == 0 ? null : boundaries.get(i - 1);
+        final String to = i == boundaries.size() ? null : boundaries.get(i);
+        results.add(getExecutor().submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return aggregatePartition(partition, from, to, startTime, endTime);
+          }
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        try {
+          success &= result.get();
+        } catch (InterruptedException e) {
+          LOG.info("Interrupted waiting for aggregation to complete.");
+          Thread.currentThread().interrupt();
+          success = false;
+        } catch (ExecutionException e) {
+          LOG.error("Exception during aggregating metrics.", e.getCause());
+          success = false;
+        }
+      }
+    }
+
+    cycleDuration.add(clock.getTime() - cycleStart);
+    LOG.info("End aggregation cycle @ " + new Date());
+    return success;
+  }
+
+  /**
+   * Read, aggregate and save the metrics of one metric name range.
+   *
+   * @param partition index of the range
+   * @param from first metric name of the range, null for no lower bound
+   * @param to metric name ending the range, null for no upper bound
+   */
+  private boolean aggregatePartition(int partition, String from, String to,
+                                     long startTime, long endTime) {
+    long partitionStart = clock.getTime();
     boolean success = true;
     PhoenixTransactSQL.Condition condition =
       prepareMetricQueryCondition(startTime, endTime);
+    condition.setMetricNameRange(from, to);
 
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -215,7 +378,6 @@ public abstract class AbstractTimelineAggregator implements Runnable {
       LOG.debug("Query returned @: " + new Date());
 
       aggregate(rs, startTime, endTime);
-      LOG.info("End aggregation cycle @ " + new Date());
 
     } catch (SQLException e) {
       LOG.error("Exception during aggregating metrics.", e);
@@ -247,10 +409,168 @@ public abstract class AbstractTimelineAggregator implements Runnable {
       }
     }
 
-    LOG.info("End aggregation cycle @ " + new Date());
+    partitionDuration.set(partition, clock.getTime() - partitionStart);
+    if (success) {
+      partitionAggregatedUpTo.set(partition, endTime);
+    }
+    if (from != null || to != null) {
+      LOG.debug("Aggregated metric names [" + from + ", " + to + ") in " +
+        partitionDuration.get(partition) + " ms, success = " + success);
+    }
     return success;
   }
 
+  /**
+   * Metric names splitting the cycle into ranges, recomputed every
+   * {@link TimelineMetricConfiguration#AGGREGATOR_PARTITION_REFRESH_CYCLES}
+   * cycles. Empty when the cycle is not split.
+   */
+  private List<String> getPartitionBoundaries(long startTime, long endTime) {
+    if (partitions == 1 || getInputTableName() == null) {
+      return Collections.emptyList();
+    }
+    if (partitionBoundaries == null ||
+        ++cyclesSincePartitionRefresh >= partitionRefreshCycles) {
+      try {
+        List<String> boundaries = getPartitionBoundaries(
+          readMetricNames(startTime, endTime), partitions);
+        LOG.info("Aggregating " + (boundaries.size() + 1) +
+          " metric name ranges, boundaries = " + boundaries);
+        partitionBoundaries = boundaries;
+      } catch (SQLException e) {
+        LOG.warn("Unable to read metric names, keeping metric name ranges " +
+          partitionBoundaries, e);
+        if (partitionBoundaries == null) {
+          partitionBoundaries = Collections.emptyList();
+        }
+      }
+      cyclesSincePartitionRefresh = 0;
+    }
+    return partitionBoundaries;
+  }
+
+  /**
+   * Split the sorted distinct metric names into at most partitions ranges
+   * holding the same number of names.
+   *
+   * @return the first metric name of every range but the first
+   */
+  static List<String> getPartitionBoundaries(List<String> sortedMetricNames,
+                                             int partitions) {
+    List<String> boundaries = new ArrayList<String>(partitions - 1);
+    int size = sortedMetricNames.size();
+    for (int i = 1; i < partitions; i++) {
+      int index = (int) ((long) i * size / partitions);
+      if (index > 0 && index < size) {
+        String boundary = sortedMetricNames.get(index);
+        if (boundaries.isEmpty() ||
+            !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+          boundaries.add(boundary);
+        }
+      }
+    }
+    return boundaries;
+  }
+
+  private List<String> readMetricNames(long startTime, long endTime)
+    throws SQLException {
+    TreeSet<String> metricNames = new TreeSet<String>();
+    Connection conn = null;
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+
+    try {
+      conn = hBaseAccessor.getConnection();
+      stmt = conn.prepareStatement(String.format(GET_METRIC_NAMES_SQL,
+        getInputTableName()));
+      stmt.setLong(1, startTime);
+      stmt.setLong(2, endTime);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        metricNames.add(rs.getString("METRIC_NAME"));
+      }
+    } finally {
+      if (rs != null) {
+        try {
+          rs.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      if (stmt != null) {
+        try {
+          stmt.close();
+        } catch (SQLException e) {
+          // Ignore
+        }
+      }
+      if (conn != null) {
+        try {
+          conn.close();
+        } catch (SQLException sql) {
+          // Ignore
+        }
+      }
+    }
+    return new ArrayList<String>(metricNames);
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      final String prefix = getSourceName() + "-";
+      executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, prefix + count.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    long now = clock.getTime();
+    long checkpoint = readCheckPoint();
+    MetricsRecordBuilder builder = collector.addRecord(getSourceName())
+      .setContext("timeline")
+      .addGauge(Interns.info("Lag", "Time since the last checkpoint in ms"),
+        checkpoint == -1 ? 0 : now - checkpoint)
+      .addGauge(Interns.info("Partitions", "Number of metric name ranges"),
+        activePartitions);
+    for (int i = 0; i < activePartitions; i++) {
+      long aggregatedUpTo = partitionAggregatedUpTo.get(i);
+      builder.addGauge(Interns.info("Partition" + i + "Lag",
+          "Time since the end of the last cycle aggregated in ms"),
+          aggregatedUpTo == 0 ? 0 : now - aggregatedUpTo)
+        .addGauge(Interns.info("Partition" + i + "Duration",
+          "Time to aggregate the last cycle in ms"),
+          partitionDuration.get(i));
+    }
+    registry.snapshot(builder, all);
+  }
+
+  /**
+   * Name of the metrics source, derived from the checkpoint file name which
+   * is unique per aggregator.
+   */
+  protected String getSourceName() {
+    return FilenameUtils.getBaseName(getCheckpointLocation())
+      .replace("-checkpoint", "");
+  }
+
+  /**
+   * Table read by the aggregator, used to split a cycle into metric name
+   * ranges. Cycles are not split when null.
+   */
+  protected String getInputTableName() {
+    return null;
+  }
+
   protected abstract PhoenixTransactSQL.Condition
   prepareMetricQueryCondition(long startTime, long endTime);
 
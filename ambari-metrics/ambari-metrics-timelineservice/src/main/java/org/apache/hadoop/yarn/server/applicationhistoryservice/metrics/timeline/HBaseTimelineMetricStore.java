@@ -35,6 +35,11 @@ import java.util.Map;
 import java.util.TreeMap;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.Condition;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.DefaultCondition;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_AGGREGATION_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_AGGREGATION_FLUSH_DELAY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_AGGREGATION_REPAIR_DELAY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_QUEUE_ENABLED;
 
 public class HBaseTimelineMetricStore extends AbstractService
     implements TimelineMetricStore {
@@ -42,6 +47,8 @@ public class HBaseTimelineMetricStore extends AbstractService
   static final Log LOG = LogFactory.getLog(HBaseTimelineMetricStore.class);
   private final TimelineMetricConfiguration configuration;
   private PhoenixHBaseAccessor hBaseAccessor;
+  private TimelineMetricsIngestQueue ingestQueue;
+  private TimelineMetricsIngestAggregator ingestAggregator;
 
   /**
    * Construct the service.
@@ -63,10 +70,43 @@ public class HBaseTimelineMetricStore extends AbstractService
     hBaseAccessor = new PhoenixHBaseAccessor(hbaseConf, metricsConf);
     hBaseAccessor.initMetricSchema();
 
+    // Start the writers of posted metrics
+    if (metricsConf.getBoolean(INGEST_QUEUE_ENABLED, true)) {
+      ingestQueue = new TimelineMetricsIngestQueue(hBaseAccessor, metricsConf);
+      ingestQueue.start();
+    }
+
+    // Aggregate posted metrics into the minute tables, the re-read minute
+    // aggregators then run behind it as a repair pass
+    long repairDelayMillis = 0;
+    if (metricsConf.getBoolean(INGEST_AGGREGATION_ENABLED, false)) {
+      ingestAggregator =
+        new TimelineMetricsIngestAggregator(hBaseAccessor, metricsConf);
+      ingestAggregator.start();
+
+      long flushDelayMillis = SECONDS.toMillis(metricsConf.getLong(
+        INGEST_AGGREGATION_FLUSH_DELAY, 120l));
+      repairDelayMillis = SECONDS.toMillis(metricsConf.getLong(
+        INGEST_AGGREGATION_REPAIR_DELAY, 600l));
+      if (repairDelayMillis <= flushDelayMillis) {
+        long defaultDelayMillis = flushDelayMillis + SECONDS.toMillis(600);
+        LOG.warn(INGEST_AGGREGATION_REPAIR_DELAY + " must be longer than " +
+          INGEST_AGGREGATION_FLUSH_DELAY + ", using " +
+          defaultDelayMillis + " ms.");
+        repairDelayMillis = defaultDelayMillis;
+      }
+    }
+
     // Start the cluster aggregator
     TimelineMetricClusterAggregator minuteClusterAggregator =
       new TimelineMetricClusterAggregator(hBaseAccessor, metricsConf);
     if (!minuteClusterAggregator.isDisabled()) {
+      if (repairDelayMillis > 0) {
+        LOG.info("Cluster minute aggregates are computed at ingest, the " +
+          "cluster minute aggregator repairs them after " +
+          repairDelayMillis + " ms.");
+        minuteClusterAggregator.setRepairDelayMillis(repairDelayMillis);
+      }
       Thread aggregatorThread = new Thread(minuteClusterAggregator);
       aggregatorThread.start();
     }
@@ -84,6 +124,12 @@ public class HBaseTimelineMetricStore extends AbstractService
       TimelineMetricAggregatorFactory.createTimelineMetricAggregatorMinute
         (hBaseAccessor, metricsConf);
     if (!minuteHostAggregator.isDisabled()) {
+      if (repairDelayMillis > 0) {
+        LOG.info("Host minute aggregates are computed at ingest, the " +
+          "host minute aggregator repairs them after " +
+          repairDelayMillis + " ms.");
+        minuteHostAggregator.setRepairDelayMillis(repairDelayMillis);
+      }
       Thread minuteAggregatorThread = new Thread(minuteHostAggregator);
       minuteAggregatorThread.start();
     }
@@ -100,6 +146,12 @@ public class HBaseTimelineMetricStore extends AbstractService
 
   @Override
   protected void serviceStop() throws Exception {
+    if (ingestQueue != null) {
+      ingestQueue.stop(30000);
+    }
+    if (ingestAggregator != null) {
+      ingestAggregator.stop(30000);
+    }
     super.serviceStop();
   }
 
@@ -262,11 +314,26 @@ public class HBaseTimelineMetricStore extends AbstractService
   public TimelinePutResponse putMetrics(TimelineMetrics metrics)
     throws SQLException, IOException {
 
+    if (ingestQueue != null) {
+      if (ingestAggregator == null) {
+        return ingestQueue.put(metrics);
+      }
+      // Only aggregate the metrics that will be written
+      List<TimelineMetric> accepted = new ArrayList<TimelineMetric>();
+      TimelinePutResponse response = ingestQueue.put(metrics, accepted);
+      ingestAggregator.add(accepted);
+      return response;
+    }
+
     // Error indicated by the Sql exception
     TimelinePutResponse response = new TimelinePutResponse();
 
     hBaseAccessor.insertMetricRecords(metrics);
 
+    if (ingestAggregator != null) {
+      ingestAggregator.add(metrics);
+    }
+
     return response;
   }
 }
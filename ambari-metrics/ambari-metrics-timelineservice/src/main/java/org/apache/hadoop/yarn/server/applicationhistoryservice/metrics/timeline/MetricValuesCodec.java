@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Binary encoding of the values of a metric record, i.e. a time ordered map
+ * of timestamp to value.
+ *
+ * The first byte is the format version. Version 1 is followed by a bit
+ * stream holding the number of values, the first timestamp and value in
+ * full, and then for every following value:
+ * <ul>
+ *   <li>the delta of the delta between consecutive timestamps, zigzag
+ *   encoded into a bucket of 0, 7, 9, 12, 32 or 64 bits; for regularly
+ *   collected metrics this is usually a single 0 bit.</li>
+ *   <li>the XOR of the value with the previous value, storing only the
+ *   meaningful bits between the leading and trailing zeros; an unchanged
+ *   value is a single 0 bit.</li>
+ * </ul>
+ */
+public class MetricValuesCodec {
+
+  public static final byte VERSION_1 = 1;
+
+  /**
+   * Bit widths of the delta of delta buckets after the 0 bucket.
+   */
+  private static final int[] DOD_BUCKET_BITS = {7, 9, 12, 32, 64};
+
+  private MetricValuesCodec() {
+  }
+
+  /**
+   * Encode the metric values.
+   *
+   * @param values the values keyed by timestamp
+   * @return the encoded values or null if the values can't be encoded
+   * because they contain a null timestamp or value
+   */
+  public static byte[] encode(Map<Long, Double> values) {
+    SortedMap<Long, Double> sorted = values instanceof SortedMap &&
+      ((SortedMap<Long, Double>) values).comparator() == null ?
+      (SortedMap<Long, Double>) values : new TreeMap<Long, Double>(values);
+
+    int size = sorted.size();
+    BitOutput out = new BitOutput(16 + size * 4);
+    out.writeBits(VERSION_1, 8);
+    out.writeBits(size, 32);
+
+    long prevTimestamp = 0;
+    long prevDelta = 0;
+    long prevBits = 0;
+    int prevLeading = Integer.MAX_VALUE;
+    int prevTrailing = 0;
+    boolean first = true;
+
+    for (Map.Entry<Long, Double> entry : sorted.entrySet()) {
+      if (entry.getKey() == null || entry.getValue() == null) {
+        return null;
+      }
+      long timestamp = entry.getKey();
+      long bits = Double.doubleToRawLongBits(entry.getValue());
+
+      if (first) {
+        out.writeBits(timestamp, 64);
+        out.writeBits(bits, 64);
+        first = false;
+      } else {
+        long delta = timestamp - prevTimestamp;
+        writeDeltaOfDelta(out, delta - prevDelta);
+        prevDelta = delta;
+
+        long xor = bits ^ prevBits;
+        if (xor == 0) {
+          out.writeBits(0, 1);
+        } else {
+          int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+          int trailing = Long.numberOfTrailingZeros(xor);
+
+          if (leading >= prevLeading && trailing >= prevTrailing) {
+            // fits in the previous window of meaningful bits
+            out.writeBits(2, 2);
+            int length = 64 - prevLeading - prevTrailing;
+            out.writeBits(xor >>> prevTrailing, length);
+          } else {
+            out.writeBits(3, 2);
+            int length = 64 - leading - trailing;
+            out.writeBits(leading, 5);
+            // a length of 64 is stored as 0
+            out.writeBits(length & 63, 6);
+            out.writeBits(xor >>> trailing, length);
+            prevLeading = leading;
+            prevTrailing = trailing;
+          }
+        }
+      }
+      prevTimestamp = timestamp;
+      prevBits = bits;
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decode metric values encoded by {@link #encode(Map)}.
+   *
+   * @param encoded the encoded values
+   * @return the values keyed by timestamp
+   * @throws IOException if the values are not in a supported format
+   */
+  public static TreeMap<Long, Double> decode(byte[] encoded)
+    throws IOException {
+    if (encoded == null || encoded.length == 0) {
+      throw new IOException("Empty metric values");
+    }
+    if (encoded[0] != VERSION_1) {
+      throw new IOException("Unsupported metric values format version " +
+        encoded[0]);
+    }
+
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    try {
+      BitInput in = new BitInput(encoded);
+      in.readBits(8);
+      int size = (int) in.readBits(32);
+      if (size == 0) {
+        return values;
+      }
+
+      long timestamp = in.readBits(64);
+      long bits = in.readBits(64);
+      values.put(timestamp, Double.longBitsToDouble(bits));
+
+      long delta = 0;
+      int leading = 0;
+      int length = 0;
+
+      for (int i = 1; i < size; i++) {
+        delta += readDeltaOfDelta(in);
+        timestamp += delta;
+
+        if (in.readBits(1) != 0) {
+          if (in.readBits(1) != 0) {
+            leading = (int) in.readBits(5);
+            length = (int) in.readBits(6);
+            if (length == 0) {
+              length = 64;
+            }
+          }
+          int trailing = 64 - leading - length;
+          bits ^= in.readBits(length) << trailing;
+        }
+        values.put(timestamp, Double.longBitsToDouble(bits));
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated metric values", e);
+    }
+    return values;
+  }
+
+  private static void writeDeltaOfDelta(BitOutput out, long dod) {
+    if (dod == 0) {
+      out.writeBits(0, 1);
+      return;
+    }
+    long zigzag = (dod << 1) ^ (dod >> 63);
+    for (int i = 0; i < DOD_BUCKET_BITS.length; i++) {
+      int bucketBits = DOD_BUCKET_BITS[i];
+      if (bucketBits == 64 || (zigzag >>> bucketBits) == 0) {
+        // i + 1 one bits followed by a zero bit, except for the last bucket
+        if (i == DOD_BUCKET_BITS.length - 1) {
+          out.writeBits((1L << (i + 1)) - 1, i + 1);
+        } else {
+          out.writeBits(((1L << (i + 1)) - 1) << 1, i + 2);
+        }
+        out.writeBits(zigzag, bucketBits);
+        return;
+      }
+    }
+  }
+
+  private static long readDeltaOfDelta(BitInput in) {
+    int bucket = -1;
+    while (bucket < DOD_BUCKET_BITS.length - 1 && in.readBits(1) != 0) {
+      bucket++;
+    }
+    if (bucket < 0) {
+      return 0;
+    }
+    long zigzag = in.readBits(DOD_BUCKET_BITS[bucket]);
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  /**
+   * Writes bits most significant first into a growing byte array.
+   */
+  private static class BitOutput {
+    private byte[] buffer;
+    private int position = 0;
+
+    BitOutput(int capacity) {
+      buffer = new byte[capacity];
+    }
+
+    /**
+     * Write the low order bits of the value.
+     */
+    void writeBits(long value, int bits) {
+      int required = (position + bits + 7) >>> 3;
+      if (required > buffer.length) {
+        byte[] grown = new byte[Math.max(required, buffer.length * 2)];
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        buffer = grown;
+      }
+      while (bits > 0) {
+        int free = 8 - (position & 7);
+        int n = Math.min(free, bits);
+        int chunk = (int) (value >>> (bits - n)) & ((1 << n) - 1);
+        buffer[position >>> 3] |= chunk << (free - n);
+        position += n;
+        bits -= n;
+      }
+    }
+
+    byte[] toByteArray() {
+      byte[] bytes = new byte[(position + 7) >>> 3];
+      System.arraycopy(buffer, 0, bytes, 0, bytes.length);
+      return bytes;
+    }
+  }
+
+  /**
+   * Reads bits written by {@link BitOutput}.
+   */
+  private static class BitInput {
+    private final byte[] buffer;
+    private int position = 0;
+
+    BitInput(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    long readBits(int bits) {
+      long value = 0;
+      while (bits > 0) {
+        int available = 8 - (position & 7);
+        int n = Math.min(available, bits);
+        int chunk = ((buffer[position >>> 3] & 0xFF) >>> (available - n)) &
+          ((1 << n) - 1);
+        value = (value << n) | chunk;
+        position += n;
+        bits -= n;
+      }
+      return value;
+    }
+  }
+}
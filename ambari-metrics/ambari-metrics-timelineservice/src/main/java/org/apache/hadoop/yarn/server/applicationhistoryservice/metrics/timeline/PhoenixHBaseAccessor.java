@@ -34,13 +34,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Collections;
+import java.sql.Types;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.ADD_METRICS_ENCODED_COLUMN_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.ALTER_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.CREATE_METRICS_AGGREGATE_HOURLY_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.CREATE_METRICS_AGGREGATE_MINUTE_TABLE_SQL;
@@ -60,6 +61,7 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.UPSERT_CLUSTER_AGGREGATE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.UPSERT_CLUSTER_AGGREGATE_TIME_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.UPSERT_METRICS_SQL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.BINARY_VALUES_ENCODING_ENABLED;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_HOUR_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_MINUTE_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.GLOBAL_MAX_RETRIES;
@@ -81,6 +83,7 @@ public class PhoenixHBaseAccessor {
   private final Configuration hbaseConf;
   private final Configuration metricsConf;
   private final RetryCounterFactory retryCounterFactory;
+  private final boolean binaryValuesEncoding;
 
   static final int PHOENIX_MAX_MUTATION_STATE_SIZE = 50000;
   /**
@@ -116,6 +119,8 @@ public class PhoenixHBaseAccessor {
     this.retryCounterFactory = new RetryCounterFactory(
       metricsConf.getInt(GLOBAL_MAX_RETRIES, 10),
       (int) SECONDS.toMillis(metricsConf.getInt(GLOBAL_RETRY_INTERVAL, 5)));
+    this.binaryValuesEncoding =
+      metricsConf.getBoolean(BINARY_VALUES_ENCODING_ENABLED, true);
   }
 
 
@@ -153,7 +158,7 @@ public class PhoenixHBaseAccessor {
     throws SQLException, IOException {
     TimelineMetric metric = timelineMetricReader
       .getTimelineMetricCommonsFromResultSet(rs);
-    metric.setMetricValues(readLastMetricValueFromJSON(rs.getString("METRICS")));
+    metric.setMetricValues(readLastMetricValue(rs));
 
     return metric;
   }
@@ -198,16 +203,30 @@ public class PhoenixHBaseAccessor {
     return metric;
   }
 
-  private static Map<Long, Double> readLastMetricValueFromJSON(String json)
-    throws IOException {
-    Map<Long, Double> values = readMetricFromJSON(json);
-    Long lastTimeStamp = Collections.max(values.keySet());
+  private static Map<Long, Double> readLastMetricValue(ResultSet rs)
+    throws SQLException, IOException {
+    TreeMap<Long, Double> values = readMetricValues(rs);
+    Long lastTimeStamp = values.lastKey();
 
     HashMap<Long, Double> valueMap = new HashMap<Long, Double>(1);
     valueMap.put(lastTimeStamp, values.get(lastTimeStamp));
     return valueMap;
   }
 
+  /**
+   * Read the values of a metric record, which are either binary encoded by
+   * {@link MetricValuesCodec} or, for records written before the binary
+   * encoding or with it disabled, stored as JSON.
+   */
+  public static TreeMap<Long, Double> readMetricValues(ResultSet rs)
+    throws SQLException, IOException {
+    byte[] encoded = rs.getBytes("METRICS_ENCODED");
+    if (encoded != null) {
+      return MetricValuesCodec.decode(encoded);
+    }
+    return new TreeMap<Long, Double>(readMetricFromJSON(rs.getString("METRICS")));
+  }
+
   @SuppressWarnings("unchecked")
   public static Map<Long, Double>  readMetricFromJSON(String json)
     throws IOException {
@@ -270,6 +289,7 @@ public class PhoenixHBaseAccessor {
 
       stmt.executeUpdate(String.format(CREATE_METRICS_TABLE_SQL,
         encoding, precisionTtl, compression));
+      stmt.executeUpdate(ADD_METRICS_ENCODED_COLUMN_SQL);
       stmt.executeUpdate(String.format(CREATE_METRICS_AGGREGATE_HOURLY_TABLE_SQL,
         encoding, hostHourTtl, compression));
       stmt.executeUpdate(String.format(CREATE_METRICS_AGGREGATE_MINUTE_TABLE_SQL,
@@ -328,24 +348,33 @@ public class PhoenixHBaseAccessor {
     }
   }
 
-  public void insertMetricRecords(TimelineMetrics metrics)
+  /**
+   * Write the metric records. A metric whose upsert fails is logged and
+   * skipped, the others are still written.
+   *
+   * @return the number of metrics that could not be written
+   */
+  public int insertMetricRecords(TimelineMetrics metrics)
     throws SQLException, IOException {
 
     List<TimelineMetric> timelineMetrics = metrics.getMetrics();
     if (timelineMetrics == null || timelineMetrics.isEmpty()) {
       LOG.debug("Empty metrics insert request.");
-      return;
+      return 0;
     }
 
     Connection conn = getConnection();
     PreparedStatement metricRecordStmt = null;
     long currentTime = System.currentTimeMillis();
+    int rowCount = 0;
+    int failedRows = 0;
 
     try {
       metricRecordStmt = conn.prepareStatement(String.format(
         UPSERT_METRICS_SQL, METRICS_RECORD_TABLE_NAME));
 
       for (TimelineMetric metric : timelineMetrics) {
+        rowCount++;
         metricRecordStmt.clearParameters();
 
         if (LOG.isTraceEnabled()) {
@@ -367,18 +396,33 @@ public class PhoenixHBaseAccessor {
         metricRecordStmt.setDouble(9, aggregates[1]);
         metricRecordStmt.setDouble(10, aggregates[2]);
         metricRecordStmt.setLong(11, (long)aggregates[3]);
-        String json =
-          TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-        metricRecordStmt.setString(12, json);
+        byte[] encoded = binaryValuesEncoding ?
+          MetricValuesCodec.encode(metric.getMetricValues()) : null;
+        if (encoded != null) {
+          metricRecordStmt.setNull(12, Types.VARCHAR);
+          metricRecordStmt.setBytes(13, encoded);
+        } else {
+          String json =
+            TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
+          metricRecordStmt.setString(12, json);
+          metricRecordStmt.setNull(13, Types.VARBINARY);
+        }
 
         try {
           metricRecordStmt.executeUpdate();
         } catch (SQLException sql) {
+          failedRows++;
           LOG.error(sql);
         }
+
+        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
+          conn.commit();
+          rowCount = 0;
+        }
       }
 
       conn.commit();
+      return failedRows;
 
     } finally {
       if (metricRecordStmt != null) {
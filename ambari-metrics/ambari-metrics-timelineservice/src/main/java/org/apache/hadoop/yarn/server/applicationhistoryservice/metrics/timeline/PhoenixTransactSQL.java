@@ -49,7 +49,8 @@ public class PhoenixTransactSQL {
     "METRIC_COUNT UNSIGNED_INT, " +
     "METRIC_MAX DOUBLE, " +
     "METRIC_MIN DOUBLE, " +
-    "METRICS VARCHAR CONSTRAINT pk " +
+    "METRICS VARCHAR, " +
+    "METRICS_ENCODED VARBINARY CONSTRAINT pk " +
     "PRIMARY KEY (METRIC_NAME, HOSTNAME, SERVER_TIME, APP_ID, " +
     "INSTANCE_ID)) DATA_BLOCK_ENCODING='%s', IMMUTABLE_ROWS=true, " +
     "TTL=%s, COMPRESSION='%s'";
@@ -121,6 +122,13 @@ public class PhoenixTransactSQL {
    */
   public static final String ALTER_SQL = "ALTER TABLE %s SET TTL=%s";
 
+  /**
+   * Add the binary values column to a metric records table created before
+   * the column was introduced.
+   */
+  public static final String ADD_METRICS_ENCODED_COLUMN_SQL = "ALTER TABLE " +
+    "METRIC_RECORD ADD IF NOT EXISTS METRICS_ENCODED VARBINARY";
+
   /**
    * Insert into metric records table.
    */
@@ -131,8 +139,9 @@ public class PhoenixTransactSQL {
     "METRIC_MAX, " +
     "METRIC_MIN, " +
     "METRIC_COUNT, " +
-    "METRICS) VALUES " +
-    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    "METRICS, " +
+    "METRICS_ENCODED) VALUES " +
+    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
   public static final String UPSERT_CLUSTER_AGGREGATE_SQL = "UPSERT INTO " +
     "METRIC_AGGREGATE (METRIC_NAME, APP_ID, INSTANCE_ID, SERVER_TIME, " +
@@ -172,7 +181,8 @@ public class PhoenixTransactSQL {
     "METRIC_MAX, " +
     "METRIC_MIN, " +
     "METRIC_COUNT, " +
-    "METRICS " +
+    "METRICS, " +
+    "METRICS_ENCODED " +
     "FROM %s";
 
   public static final String GET_METRIC_AGGREGATE_ONLY_SQL = "SELECT %s " +
@@ -204,6 +214,13 @@ public class PhoenixTransactSQL {
       "METRIC_MIN " +
       "FROM %s";
 
+  /**
+   * Distinct metric names written to a table in a time range, used to split
+   * the aggregator queries into metric name ranges.
+   */
+  public static final String GET_METRIC_NAMES_SQL = "SELECT DISTINCT " +
+    "METRIC_NAME FROM %s WHERE SERVER_TIME >= ? AND SERVER_TIME < ?";
+
   public static final String METRICS_RECORD_TABLE_NAME = "METRIC_RECORD";
   public static final String METRICS_AGGREGATE_MINUTE_TABLE_NAME =
     "METRIC_RECORD_MINUTE";
@@ -307,6 +324,18 @@ public class PhoenixTransactSQL {
         stmt.setString(pos, condition.getMetricNames().get(pos - 1));
       }
     }
+    if (condition.getMetricNameFrom() != null) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Setting pos: " + pos + ", value: " + condition.getMetricNameFrom());
+      }
+      stmt.setString(pos++, condition.getMetricNameFrom());
+    }
+    if (condition.getMetricNameTo() != null) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Setting pos: " + pos + ", value: " + condition.getMetricNameTo());
+      }
+      stmt.setString(pos++, condition.getMetricNameTo());
+    }
     if (condition.getHostname() != null) {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Setting pos: " + pos + ", value: " + condition.getHostname());
@@ -590,6 +619,14 @@ public class PhoenixTransactSQL {
     void setFetchSize(Integer fetchSize);
     void addOrderByColumn(String column);
     void setNoLimit();
+    String getMetricNameFrom();
+    String getMetricNameTo();
+    /**
+     * Restrict the condition to metric names in [from, to). A null bound
+     * leaves that side of the range open. Only bound by
+     * {@link #prepareGetMetricsSqlStmt(Connection, Condition)}.
+     */
+    void setMetricNameRange(String from, String to);
   }
 
   static class DefaultCondition implements Condition {
@@ -605,6 +642,8 @@ public class PhoenixTransactSQL {
     boolean noLimit = false;
     Integer fetchSize;
     String statement;
+    String metricNameFrom;
+    String metricNameTo;
     Set<String> orderByColumns = new LinkedHashSet<String>();
 
     DefaultCondition(List<String> metricNames, String hostname, String appId,
@@ -676,6 +715,8 @@ public class PhoenixTransactSQL {
         }
       }
 
+      appendConjunction = append(sb, appendConjunction, getMetricNameFrom(), " METRIC_NAME >= ?");
+      appendConjunction = append(sb, appendConjunction, getMetricNameTo(), " METRIC_NAME < ?");
       appendConjunction = append(sb, appendConjunction, getHostname(), " HOSTNAME = ?");
       appendConjunction = append(sb, appendConjunction, getAppId(), " APP_ID = ?");
       appendConjunction = append(sb, appendConjunction, getInstanceId(), " INSTANCE_ID = ?");
@@ -754,6 +795,19 @@ public class PhoenixTransactSQL {
       this.noLimit = true;
     }
 
+    public String getMetricNameFrom() {
+      return metricNameFrom;
+    }
+
+    public String getMetricNameTo() {
+      return metricNameTo;
+    }
+
+    public void setMetricNameRange(String from, String to) {
+      this.metricNameFrom = from;
+      this.metricNameTo = to;
+    }
+
     public Integer getLimit() {
       if (noLimit) {
         return null;
@@ -820,6 +874,8 @@ public class PhoenixTransactSQL {
         ", endTime=" + endTime +
         ", limit=" + limit +
         ", grouped=" + grouped +
+        ", metricNameFrom='" + metricNameFrom + '\'' +
+        ", metricNameTo='" + metricNameTo + '\'' +
         ", orderBy=" + orderByColumns +
         ", noLimit=" + noLimit +
         '}';
@@ -900,6 +956,10 @@ public class PhoenixTransactSQL {
         appendConjunction = true;
       }
 
+      appendConjunction = DefaultCondition.append(sb, appendConjunction,
+        getMetricNameFrom(), " METRIC_NAME >= ?");
+      appendConjunction = DefaultCondition.append(sb, appendConjunction,
+        getMetricNameTo(), " METRIC_NAME < ?");
       appendConjunction = DefaultCondition.append(sb, appendConjunction,
         getHostname(), " HOSTNAME = ?");
       appendConjunction = DefaultCondition.append(sb, appendConjunction,
@@ -959,6 +1019,21 @@ public class PhoenixTransactSQL {
       adaptee.setNoLimit();
     }
 
+    @Override
+    public String getMetricNameFrom() {
+      return adaptee.getMetricNameFrom();
+    }
+
+    @Override
+    public String getMetricNameTo() {
+      return adaptee.getMetricNameTo();
+    }
+
+    @Override
+    public void setMetricNameRange(String from, String to) {
+      adaptee.setMetricNameRange(from, to);
+    }
+
     public List<String> getOriginalMetricNames() {
       return adaptee.getMetricNames();
     }
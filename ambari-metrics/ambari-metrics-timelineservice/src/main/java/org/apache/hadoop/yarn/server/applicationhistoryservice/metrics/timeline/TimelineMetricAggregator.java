@@ -66,11 +66,16 @@ public class TimelineMetricAggregator extends AbstractTimelineAggregator {
     return checkpointLocation;
   }
 
+  @Override
+  protected String getInputTableName() {
+    return tableName;
+  }
+
   @Override
   protected void aggregate(ResultSet rs, long startTime, long endTime)
     throws IOException, SQLException {
     Map<TimelineMetric, MetricHostAggregate> hostAggregateMap =
-      aggregateMetricsFromResultSet(rs);
+      aggregateMetricsFromResultSet(rs, isRepairPass() ? startTime : null);
 
     LOG.info("Saving " + hostAggregateMap.size() + " metric aggregates.");
     hBaseAccessor.saveHostAggregateRecords(hostAggregateMap,
@@ -94,8 +99,12 @@ public class TimelineMetricAggregator extends AbstractTimelineAggregator {
     return condition;
   }
 
+  /**
+   * @param timestamp time stamp of the aggregates, null to use the server
+   *                  time of the first record of each metric
+   */
   private Map<TimelineMetric, MetricHostAggregate> aggregateMetricsFromResultSet
-      (ResultSet rs) throws IOException, SQLException {
+      (ResultSet rs, Long timestamp) throws IOException, SQLException {
     TimelineMetric existingMetric = null;
     MetricHostAggregate hostAggregate = null;
     Map<TimelineMetric, MetricHostAggregate> hostAggregateMap =
@@ -104,6 +113,10 @@ public class TimelineMetricAggregator extends AbstractTimelineAggregator {
     while (rs.next()) {
       TimelineMetric currentMetric =
         PhoenixHBaseAccessor.getTimelineMetricKeyFromResultSet(rs);
+      if (timestamp != null) {
+        // Same time stamp as the aggregate of the slice saved at ingest
+        currentMetric.setTimestamp(timestamp);
+      }
       MetricHostAggregate currentHostAggregate =
         PhoenixHBaseAccessor.getMetricHostAggregateFromResultSet(rs);
 
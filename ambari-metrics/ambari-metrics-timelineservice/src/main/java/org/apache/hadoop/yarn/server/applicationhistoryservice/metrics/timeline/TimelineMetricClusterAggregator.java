@@ -41,6 +41,7 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_MINUTE_SLEEP_INTERVAL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.DEFAULT_CHECKPOINT_LOCATION;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_AGGREGATION_FLUSH_DELAY;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_AGGREGATOR_CHECKPOINT_DIR;
 
 /**
@@ -55,6 +56,7 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
   private final Long sleepIntervalMillis;
   public final int timeSliceIntervalMillis;
   private final Integer checkpointCutOffMultiplier;
+  private final long ingestFlushDelayMillis;
   private TimelineMetricReader timelineMetricReader =
     new TimelineMetricReader(true);
 
@@ -74,6 +76,8 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
       (CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL, 15));
     checkpointCutOffMultiplier =
       metricsConf.getInt(CLUSTER_AGGREGATOR_MINUTE_CHECKPOINT_CUTOFF_MULTIPLIER, 2);
+    ingestFlushDelayMillis = SECONDS.toMillis(metricsConf.getLong(
+      INGEST_AGGREGATION_FLUSH_DELAY, 120l));
   }
 
   @Override
@@ -81,6 +85,11 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
     return checkpointLocation;
   }
 
+  @Override
+  protected String getInputTableName() {
+    return METRICS_RECORD_TABLE_NAME;
+  }
+
   @Override
   protected void aggregate(ResultSet rs, long startTime, long endTime)
     throws SQLException, IOException {
@@ -94,8 +103,11 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
 
   @Override
   protected Condition prepareMetricQueryCondition(long startTime, long endTime) {
+    // A repair pass also reads the metrics posted during the flush delay
+    // after the window, which the ingest aggregator added to its slices
+    long readUpTo = isRepairPass() ? endTime + ingestFlushDelayMillis : endTime;
     Condition condition = new DefaultCondition(null, null, null, null, startTime,
-      endTime, null, null, true);
+      readUpTo, null, null, true);
     condition.setNoLimit();
     condition.setFetchSize(resultsetFetchSize);
     condition.setStatement(String.format(GET_METRIC_SQL,
@@ -160,6 +172,11 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
     return sleepIntervalMillis;
   }
 
+  @Override
+  protected long getRepairAlignmentMillis() {
+    return timeSliceIntervalMillis;
+  }
+
   @Override
   protected Integer getCheckpointCutOffMultiplier() {
     return checkpointCutOffMultiplier;
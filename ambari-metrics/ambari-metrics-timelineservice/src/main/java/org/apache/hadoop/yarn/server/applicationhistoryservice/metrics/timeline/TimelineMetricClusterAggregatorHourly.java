@@ -78,6 +78,11 @@ public class TimelineMetricClusterAggregatorHourly extends
     return checkpointLocation;
   }
 
+  @Override
+  protected String getInputTableName() {
+    return METRICS_CLUSTER_AGGREGATE_TABLE_NAME;
+  }
+
   @Override
   protected void aggregate(ResultSet rs, long startTime, long endTime)
     throws SQLException, IOException {
@@ -71,6 +71,15 @@ public class TimelineMetricConfiguration {
   public static final String RESULTSET_FETCH_SIZE =
     "timeline.metrics.service.resultset.fetchSize";
 
+  public static final String AGGREGATOR_PARTITIONS =
+    "timeline.metrics.service.aggregator.partitions";
+
+  public static final String AGGREGATOR_THREADS =
+    "timeline.metrics.service.aggregator.threads";
+
+  public static final String AGGREGATOR_PARTITION_REFRESH_CYCLES =
+    "timeline.metrics.service.aggregator.partition.refresh.cycles";
+
   public static final String HOST_AGGREGATOR_MINUTE_SLEEP_INTERVAL =
     "timeline.metrics.host.aggregator.minute.interval";
 
@@ -119,6 +128,36 @@ public class TimelineMetricConfiguration {
   public static final String CLUSTER_AGGREGATOR_HOUR_DISABLED =
     "timeline.metrics.cluster.aggregator.hourly.disabled";
 
+  public static final String BINARY_VALUES_ENCODING_ENABLED =
+    "timeline.metrics.service.binary.values.encoding.enabled";
+
+  public static final String INGEST_QUEUE_ENABLED =
+    "timeline.metrics.service.ingest.queue.enabled";
+
+  public static final String INGEST_QUEUE_SIZE =
+    "timeline.metrics.service.ingest.queue.size";
+
+  public static final String INGEST_QUEUE_OVERFLOW_POLICY =
+    "timeline.metrics.service.ingest.queue.overflow.policy";
+
+  public static final String INGEST_QUEUE_OFFER_TIMEOUT =
+    "timeline.metrics.service.ingest.queue.offer.timeout";
+
+  public static final String INGEST_WRITER_THREADS =
+    "timeline.metrics.service.ingest.writer.threads";
+
+  public static final String INGEST_WRITER_BATCH_SIZE =
+    "timeline.metrics.service.ingest.writer.batch.size";
+
+  public static final String INGEST_AGGREGATION_ENABLED =
+    "timeline.metrics.service.ingest.aggregation.enabled";
+
+  public static final String INGEST_AGGREGATION_FLUSH_DELAY =
+    "timeline.metrics.service.ingest.aggregation.flush.delay";
+
+  public static final String INGEST_AGGREGATION_REPAIR_DELAY =
+    "timeline.metrics.service.ingest.aggregation.repair.delay";
+
   public static final String DISABLE_APPLICATION_TIMELINE_STORE =
     "timeline.service.disable.application.timeline.store";
 
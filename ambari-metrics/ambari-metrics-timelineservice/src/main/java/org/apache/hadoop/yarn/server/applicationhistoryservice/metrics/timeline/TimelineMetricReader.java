@@ -24,7 +24,6 @@ import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
-import java.util.TreeMap;
 
 public class TimelineMetricReader {
 
@@ -39,8 +38,8 @@ public class TimelineMetricReader {
   public TimelineMetric getTimelineMetricFromResultSet(ResultSet rs)
     throws SQLException, IOException {
     TimelineMetric metric = getTimelineMetricCommonsFromResultSet(rs);
-    Map<Long, Double> sortedByTimeMetrics = new TreeMap<Long, Double>(
-        PhoenixHBaseAccessor.readMetricFromJSON(rs.getString("METRICS")));
+    Map<Long, Double> sortedByTimeMetrics =
+        PhoenixHBaseAccessor.readMetricValues(rs);
     metric.setMetricValues(sortedByTimeMetrics);
     return metric;
   }
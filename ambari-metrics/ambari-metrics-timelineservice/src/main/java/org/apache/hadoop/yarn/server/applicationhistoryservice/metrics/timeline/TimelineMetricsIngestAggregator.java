@@ -0,0 +1,403 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.util.Clock;
+import org.apache.hadoop.yarn.util.SystemClock;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.METRICS_AGGREGATE_MINUTE_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_AGGREGATOR_MINUTE_SLEEP_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_AGGREGATION_FLUSH_DELAY;
+
+/**
+ * Computes the host minute and cluster minute aggregates from the posted
+ * metrics, instead of reading the metric records back from the store.
+ *
+ * Host aggregates are accumulated per host minute aggregator interval, by
+ * arrival time, the way the metric records are stamped with their server
+ * time. Cluster aggregates are accumulated per cluster time slice of the
+ * metric values, each posted metric counting as one host like in
+ * {@link TimelineMetricClusterAggregator}. A slice is saved once it ended
+ * more than the flush delay ago. Values for a slice already saved are
+ * counted as late and not added.
+ *
+ * Only metrics accepted by the store are to be added. On stop all open
+ * slices are saved, including the partial ones; after a restart the
+ * aggregates of a slice that was open at the stop are replaced by the ones
+ * computed from the metrics posted after the restart.
+ *
+ * The re-read minute aggregators keep running as a repair pass, see
+ * {@link AbstractTimelineAggregator#setRepairDelayMillis(long)}: once the
+ * repair delay passed they aggregate each slice again from the metric
+ * records, replacing its aggregates with ones that include the late values
+ * and the metrics posted before a restart.
+ */
+public class TimelineMetricsIngestAggregator implements MetricsSource {
+
+  static final Log LOG = LogFactory.getLog(TimelineMetricsIngestAggregator.class);
+
+  static final String SOURCE_NAME = "TimelineMetricsIngestAggregator";
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+  private final Clock clock;
+  private final long hostSliceMillis;
+  private final long clusterSliceMillis;
+  private final long flushDelayMillis;
+  private final Thread flusher;
+  private volatile boolean running = false;
+  private String sourceName;
+
+  /**
+   * Open slices by slice start time, guarded by this.
+   */
+  private final TreeMap<Long, Map<TimelineMetric, MetricHostAggregate>>
+    hostSlices = new TreeMap<Long, Map<TimelineMetric, MetricHostAggregate>>();
+  private final TreeMap<Long, Map<TimelineClusterMetric, MetricClusterAggregate>>
+    clusterSlices =
+    new TreeMap<Long, Map<TimelineClusterMetric, MetricClusterAggregate>>();
+
+  /**
+   * Start of the first cluster slice that is not saved yet, guarded by this.
+   */
+  private long clusterSlicesFlushedUpTo;
+
+  private final MetricsRegistry registry = new MetricsRegistry(SOURCE_NAME);
+  private final MutableRate flushLatency = registry.newRate("FlushLatency",
+    "Time to save the completed slices in ms", false);
+  private final MutableCounterLong flushedAggregates = registry.newCounter(
+    "FlushedAggregates", "Number of aggregates saved", 0L);
+  private final MutableCounterLong failedFlushes = registry.newCounter(
+    "FailedFlushes", "Number of slices that could not be saved", 0L);
+  private final MutableCounterLong lateValues = registry.newCounter(
+    "LateValues", "Number of values posted for a slice already saved", 0L);
+
+  public TimelineMetricsIngestAggregator(PhoenixHBaseAccessor hBaseAccessor,
+                                         Configuration metricsConf) {
+    this(hBaseAccessor, metricsConf, new SystemClock());
+  }
+
+  TimelineMetricsIngestAggregator(PhoenixHBaseAccessor hBaseAccessor,
+                                  Configuration metricsConf, Clock clock) {
+    this.hBaseAccessor = hBaseAccessor;
+    this.clock = clock;
+    this.hostSliceMillis = SECONDS.toMillis(metricsConf.getLong(
+      HOST_AGGREGATOR_MINUTE_SLEEP_INTERVAL, 300l));
+    this.clusterSliceMillis = SECONDS.toMillis(metricsConf.getInt(
+      CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL, 15));
+    this.flushDelayMillis = SECONDS.toMillis(metricsConf.getLong(
+      INGEST_AGGREGATION_FLUSH_DELAY, 120l));
+    this.clusterSlicesFlushedUpTo =
+      sliceStart(clock.getTime() - flushDelayMillis, clusterSliceMillis);
+
+    this.flusher = new Thread(new Flusher(), "timeline-metrics-ingest-aggregator");
+    flusher.setDaemon(true);
+  }
+
+  /**
+   * Start saving the completed slices and register the metrics source.
+   */
+  public void start() {
+    running = true;
+    flusher.start();
+    sourceName = TimelineMetricsSources.register(SOURCE_NAME,
+      "Timeline metrics ingest aggregator", this);
+    LOG.info("Started ingest aggregation, host slice = " + hostSliceMillis +
+      " ms, cluster slice = " + clusterSliceMillis + " ms, flush delay = " +
+      flushDelayMillis + " ms");
+  }
+
+  /**
+   * Stop the flusher and save all slices, including the ones still open.
+   */
+  public void stop(long timeout) throws InterruptedException {
+    running = false;
+    flusher.interrupt();
+    flusher.join(timeout);
+    flush(true);
+    TimelineMetricsSources.unregister(sourceName);
+    sourceName = null;
+  }
+
+  /**
+   * Add the posted metrics to the open slices.
+   */
+  public void add(TimelineMetrics metrics) {
+    add(metrics.getMetrics());
+  }
+
+  /**
+   * Add the posted metrics to the open slices.
+   */
+  public void add(List<TimelineMetric> timelineMetrics) {
+    if (timelineMetrics == null || timelineMetrics.isEmpty()) {
+      return;
+    }
+
+    long hostSlice = sliceStart(clock.getTime(), hostSliceMillis);
+    int late = 0;
+
+    synchronized (this) {
+      Map<TimelineMetric, MetricHostAggregate> hostAggregates =
+        hostSlices.get(hostSlice);
+      if (hostAggregates == null) {
+        hostAggregates = new HashMap<TimelineMetric, MetricHostAggregate>();
+        hostSlices.put(hostSlice, hostAggregates);
+      }
+
+      for (TimelineMetric metric : timelineMetrics) {
+        addHostAggregate(hostAggregates, metric, hostSlice);
+        late += addClusterAggregates(metric);
+      }
+    }
+
+    if (late > 0) {
+      lateValues.incr(late);
+    }
+  }
+
+  private void addHostAggregate(
+    Map<TimelineMetric, MetricHostAggregate> hostAggregates,
+    TimelineMetric metric, long hostSlice) {
+
+    TimelineMetric key = new TimelineMetric();
+    key.setMetricName(metric.getMetricName());
+    key.setHostName(metric.getHostName());
+    key.setAppId(metric.getAppId());
+    key.setInstanceId(metric.getInstanceId());
+    key.setType(metric.getType());
+    key.setTimestamp(hostSlice);
+
+    // Same totals as the metric record written for the metric
+    double[] aggregates =
+      AggregatorUtils.calculateAggregates(metric.getMetricValues());
+    MetricHostAggregate recordAggregate = new MetricHostAggregate(
+      aggregates[0], (int) aggregates[3], 0.0, aggregates[1], aggregates[2]);
+
+    MetricHostAggregate hostAggregate = hostAggregates.get(key);
+    if (hostAggregate == null) {
+      hostAggregate = new MetricHostAggregate();
+      hostAggregates.put(key, hostAggregate);
+    }
+    hostAggregate.updateAggregates(recordAggregate);
+  }
+
+  /**
+   * @return the number of late values
+   */
+  private int addClusterAggregates(TimelineMetric metric) {
+    Map<Long, Double> metricValues = metric.getMetricValues();
+    if (metricValues == null || metricValues.isEmpty()) {
+      return 0;
+    }
+
+    // The value of the metric in each slice, averaged like
+    // TimelineMetricClusterAggregator does
+    Map<Long, Double> sliceValues = new HashMap<Long, Double>();
+    int late = 0;
+    for (Map.Entry<Long, Double> value : metricValues.entrySet()) {
+      if (value.getValue() == null) {
+        continue;
+      }
+      long slice = sliceStart(value.getKey(), clusterSliceMillis);
+      if (slice < clusterSlicesFlushedUpTo) {
+        late++;
+        continue;
+      }
+      Double oldValue = sliceValues.get(slice);
+      sliceValues.put(slice, oldValue == null ? value.getValue() :
+        (oldValue + value.getValue()) / 2);
+    }
+
+    for (Map.Entry<Long, Double> sliceValue : sliceValues.entrySet()) {
+      Map<TimelineClusterMetric, MetricClusterAggregate> clusterAggregates =
+        clusterSlices.get(sliceValue.getKey());
+      if (clusterAggregates == null) {
+        clusterAggregates =
+          new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+        clusterSlices.put(sliceValue.getKey(), clusterAggregates);
+      }
+
+      TimelineClusterMetric key = new TimelineClusterMetric(
+        metric.getMetricName(), metric.getAppId(), metric.getInstanceId(),
+        sliceValue.getKey(), metric.getType());
+      Double value = sliceValue.getValue();
+      MetricClusterAggregate aggregate = clusterAggregates.get(key);
+      if (aggregate == null) {
+        clusterAggregates.put(key,
+          new MetricClusterAggregate(value, 1, null, value, value));
+      } else {
+        aggregate.updateSum(value);
+        aggregate.updateNumberOfHosts(1);
+        aggregate.updateMax(value);
+        aggregate.updateMin(value);
+      }
+    }
+    return late;
+  }
+
+  /**
+   * Save the slices that ended more than the flush delay ago. Slices that
+   * can't be saved are kept for the next flush.
+   */
+  void flush() {
+    flush(false);
+  }
+
+  /**
+   * @param all  save the open slices as well
+   */
+  void flush(boolean all) {
+    long now = clock.getTime();
+    Map<TimelineMetric, MetricHostAggregate> hostAggregates =
+      new HashMap<TimelineMetric, MetricHostAggregate>();
+    Map<TimelineClusterMetric, MetricClusterAggregate> clusterAggregates =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    TreeMap<Long, Map<TimelineMetric, MetricHostAggregate>> flushedHostSlices =
+      new TreeMap<Long, Map<TimelineMetric, MetricHostAggregate>>();
+    TreeMap<Long, Map<TimelineClusterMetric, MetricClusterAggregate>>
+      flushedClusterSlices =
+      new TreeMap<Long, Map<TimelineClusterMetric, MetricClusterAggregate>>();
+
+    synchronized (this) {
+      // Host slices are by arrival time, they are complete once they ended
+      Iterator<Map.Entry<Long, Map<TimelineMetric, MetricHostAggregate>>>
+        hostIterator = hostSlices.entrySet().iterator();
+      while (hostIterator.hasNext()) {
+        Map.Entry<Long, Map<TimelineMetric, MetricHostAggregate>> slice =
+          hostIterator.next();
+        if (!all && slice.getKey() + hostSliceMillis > now) {
+          break;
+        }
+        flushedHostSlices.put(slice.getKey(), slice.getValue());
+        hostAggregates.putAll(slice.getValue());
+        hostIterator.remove();
+      }
+
+      long flushUpTo = all ? Long.MAX_VALUE :
+        sliceStart(now - flushDelayMillis, clusterSliceMillis);
+      if (flushUpTo > clusterSlicesFlushedUpTo) {
+        clusterSlicesFlushedUpTo = flushUpTo;
+      }
+      Iterator<Map.Entry<Long, Map<TimelineClusterMetric, MetricClusterAggregate>>>
+        clusterIterator = clusterSlices.entrySet().iterator();
+      while (clusterIterator.hasNext()) {
+        Map.Entry<Long, Map<TimelineClusterMetric, MetricClusterAggregate>>
+          slice = clusterIterator.next();
+        if (slice.getKey() >= clusterSlicesFlushedUpTo) {
+          break;
+        }
+        flushedClusterSlices.put(slice.getKey(), slice.getValue());
+        clusterAggregates.putAll(slice.getValue());
+        clusterIterator.remove();
+      }
+    }
+
+    if (hostAggregates.isEmpty() && clusterAggregates.isEmpty()) {
+      return;
+    }
+
+    long start = clock.getTime();
+    try {
+      hBaseAccessor.saveHostAggregateRecords(hostAggregates,
+        METRICS_AGGREGATE_MINUTE_TABLE_NAME);
+      flushedAggregates.incr(hostAggregates.size());
+      flushedHostSlices.clear();
+      hBaseAccessor.saveClusterAggregateRecords(clusterAggregates);
+      flushedAggregates.incr(clusterAggregates.size());
+      flushedClusterSlices.clear();
+    } catch (SQLException e) {
+      failedFlushes.incr(flushedHostSlices.size() + flushedClusterSlices.size());
+      LOG.error("Unable to save aggregates, retrying with the next flush.", e);
+      synchronized (this) {
+        hostSlices.putAll(flushedHostSlices);
+        clusterSlices.putAll(flushedClusterSlices);
+      }
+    }
+    flushLatency.add(clock.getTime() - start);
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Saved " + hostAggregates.size() + " host and " +
+        clusterAggregates.size() + " cluster aggregates in " +
+        (clock.getTime() - start) + " ms");
+    }
+  }
+
+  synchronized int getOpenHostSlices() {
+    return hostSlices.size();
+  }
+
+  synchronized int getOpenClusterSlices() {
+    return clusterSlices.size();
+  }
+
+  long getLateValues() {
+    return lateValues.value();
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    registry.snapshot(collector.addRecord(registry.info())
+      .setContext("timeline")
+      .addGauge(Interns.info("OpenHostSlices",
+        "Number of host slices not saved yet"), getOpenHostSlices())
+      .addGauge(Interns.info("OpenClusterSlices",
+        "Number of cluster slices not saved yet"), getOpenClusterSlices()),
+      all);
+  }
+
+  private static long sliceStart(long time, long sliceMillis) {
+    return time - (time % sliceMillis);
+  }
+
+  private class Flusher implements Runnable {
+    @Override
+    public void run() {
+      while (running) {
+        try {
+          Thread.sleep(clusterSliceMillis);
+        } catch (InterruptedException e) {
+          // Stopped, the last flush is done by stop
+          return;
+        }
+        try {
+          flush();
+        } catch (RuntimeException e) {
+          LOG.error("Unexpected error saving aggregates.", e);
+        }
+      }
+    }
+  }
+}
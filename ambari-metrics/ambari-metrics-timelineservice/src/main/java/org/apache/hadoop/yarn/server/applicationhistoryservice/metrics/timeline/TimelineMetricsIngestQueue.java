@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.metrics2.lib.MutableStat;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_QUEUE_OFFER_TIMEOUT;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_QUEUE_OVERFLOW_POLICY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_WRITER_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_WRITER_THREADS;
+
+/**
+ * Bounded buffer between the metrics web service and the metric record
+ * table. Posted metrics are queued and the request returns immediately;
+ * writer threads drain the queue and write the metrics in large batches,
+ * each batch using a single connection and commit.
+ *
+ * The queue depth, the size of the written batches, the write latency and
+ * the number of dropped metrics are published as a metrics source.
+ */
+public class TimelineMetricsIngestQueue implements MetricsSource {
+
+  static final Log LOG = LogFactory.getLog(TimelineMetricsIngestQueue.class);
+
+  static final String SOURCE_NAME = "TimelineMetricsIngestQueue";
+
+  /**
+   * How long an idle writer waits for metrics before checking whether the
+   * queue was stopped.
+   */
+  private static final long POLL_INTERVAL = 1000;
+
+  /**
+   * What to do with a posted metric when the queue is full.
+   */
+  public enum OverflowPolicy {
+    /**
+     * Wait for space up to the offer timeout, then reject the metric.
+     */
+    BLOCK,
+    /**
+     * Reject the posted metric.
+     */
+    DROP_NEWEST,
+    /**
+     * Discard the oldest queued metric to make room for the posted one.
+     */
+    DROP_OLDEST
+  }
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+  private final BlockingQueue<TimelineMetric> queue;
+  private final OverflowPolicy overflowPolicy;
+  private final long offerTimeout;
+  private final int batchSize;
+  private final List<Thread> writers;
+  private volatile boolean running = false;
+  private String sourceName;
+
+  private final MetricsRegistry registry = new MetricsRegistry(SOURCE_NAME);
+  private final MutableStat writeBatchSize = registry.newStat("WriteBatchSize",
+    "Number of metrics written per batch", "Batches", "Metrics", true);
+  private final MutableRate writeLatency = registry.newRate("WriteLatency",
+    "Time to write a batch of metrics in ms", true);
+  private final MutableCounterLong failedMetrics = registry.newCounter(
+    "FailedMetrics", "Number of metrics that could not be written", 0L);
+  private final MutableCounterLong droppedMetrics = registry.newCounter(
+    "DroppedMetrics", "Number of metrics dropped because the queue was full",
+    0L);
+
+  public TimelineMetricsIngestQueue(PhoenixHBaseAccessor hBaseAccessor,
+                                    Configuration metricsConf) {
+    this.hBaseAccessor = hBaseAccessor;
+    this.queue = new ArrayBlockingQueue<TimelineMetric>(
+      metricsConf.getInt(INGEST_QUEUE_SIZE, 100000));
+    this.overflowPolicy = OverflowPolicy.valueOf(
+      metricsConf.get(INGEST_QUEUE_OVERFLOW_POLICY,
+        OverflowPolicy.BLOCK.name()).trim().toUpperCase());
+    this.offerTimeout = metricsConf.getLong(INGEST_QUEUE_OFFER_TIMEOUT, 5000);
+    // Phoenix fails commits with more mutations than its max state size
+    this.batchSize = Math.min(metricsConf.getInt(INGEST_WRITER_BATCH_SIZE, 10000),
+      PhoenixHBaseAccessor.PHOENIX_MAX_MUTATION_STATE_SIZE - 1);
+
+    int threads = metricsConf.getInt(INGEST_WRITER_THREADS, 2);
+    this.writers = new ArrayList<Thread>(threads);
+    for (int i = 0; i < threads; i++) {
+      Thread writer = new Thread(new Writer(), "timeline-metrics-writer-" + i);
+      writer.setDaemon(true);
+      writers.add(writer);
+    }
+  }
+
+  /**
+   * Start the writer threads and register the metrics source.
+   */
+  public void start() {
+    running = true;
+    for (Thread writer : writers) {
+      writer.start();
+    }
+    sourceName = TimelineMetricsSources.register(SOURCE_NAME,
+      "Timeline metrics ingest queue", this);
+    LOG.info("Started " + writers.size() + " metric writers, queue size = " +
+      queue.remainingCapacity() + ", overflow policy = " + overflowPolicy);
+  }
+
+  /**
+   * Stop accepting metrics and wait for the writers to drain the queue.
+   *
+   * @param timeout how long to wait for the writers in ms
+   */
+  public void stop(long timeout) throws InterruptedException {
+    running = false;
+    long deadline = System.currentTimeMillis() + timeout;
+    for (Thread writer : writers) {
+      writer.join(Math.max(1, deadline - System.currentTimeMillis()));
+    }
+    if (!queue.isEmpty()) {
+      LOG.warn("Stopped with " + queue.size() + " metrics not written.");
+    }
+    TimelineMetricsSources.unregister(sourceName);
+    sourceName = null;
+  }
+
+  /**
+   * Queue the metrics to be written. Metrics that can't be queued under the
+   * overflow policy are reported as errors in the response.
+   */
+  public TimelinePutResponse put(TimelineMetrics metrics) {
+    return put(metrics, null);
+  }
+
+  /**
+   * Queue the metrics to be written, like {@link #put(TimelineMetrics)}.
+   *
+   * @param accepted  if not null, the metrics that were queued are added
+   */
+  public TimelinePutResponse put(TimelineMetrics metrics,
+                                 List<TimelineMetric> accepted) {
+    TimelinePutResponse response = new TimelinePutResponse();
+    List<TimelineMetric> timelineMetrics = metrics.getMetrics();
+    if (timelineMetrics == null) {
+      return response;
+    }
+
+    for (TimelineMetric metric : timelineMetrics) {
+      if (!offer(metric)) {
+        droppedMetrics.incr();
+        TimelinePutResponse.TimelinePutError error =
+          new TimelinePutResponse.TimelinePutError();
+        error.setEntityId(metric.getMetricName());
+        error.setEntityType(metric.getAppId());
+        error.setErrorCode(TimelinePutResponse.TimelinePutError.IO_EXCEPTION);
+        response.addError(error);
+      } else if (accepted != null) {
+        accepted.add(metric);
+      }
+    }
+    return response;
+  }
+
+  private boolean offer(TimelineMetric metric) {
+    if (!running) {
+      return false;
+    }
+    switch (overflowPolicy) {
+      case BLOCK:
+        try {
+          return queue.offer(metric, offerTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      case DROP_OLDEST:
+        while (!queue.offer(metric)) {
+          if (queue.poll() != null) {
+            droppedMetrics.incr();
+          }
+        }
+        return true;
+      default:
+        return queue.offer(metric);
+    }
+  }
+
+  /**
+   * @return the number of metrics waiting to be written
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  public long getDroppedMetrics() {
+    return droppedMetrics.value();
+  }
+
+  public long getFailedMetrics() {
+    return failedMetrics.value();
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    registry.snapshot(collector.addRecord(registry.info())
+      .setContext("timeline")
+      .addGauge(Interns.info("QueueDepth",
+        "Number of metrics waiting to be written"), queue.size()), all);
+  }
+
+  private void write(List<TimelineMetric> batch) {
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(batch);
+
+    long start = System.currentTimeMillis();
+    try {
+      // the accessor logs and skips the metrics it cannot write
+      int failed = hBaseAccessor.insertMetricRecords(metrics);
+      if (failed > 0) {
+        failedMetrics.incr(failed);
+      }
+    } catch (Exception e) {
+      failedMetrics.incr(batch.size());
+      LOG.error("Unable to write " + batch.size() + " metrics.", e);
+    }
+    long elapsed = System.currentTimeMillis() - start;
+
+    writeBatchSize.add(batch.size());
+    writeLatency.add(elapsed);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Wrote " + batch.size() + " metrics in " + elapsed + " ms, " +
+        queue.size() + " queued");
+    }
+  }
+
+  private class Writer implements Runnable {
+    @Override
+    public void run() {
+      List<TimelineMetric> batch = new ArrayList<TimelineMetric>(batchSize);
+      while (running || !queue.isEmpty()) {
+        try {
+          TimelineMetric metric = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+          if (metric == null) {
+            continue;
+          }
+          batch.add(metric);
+          queue.drainTo(batch, batchSize - 1);
+          write(batch);
+        } catch (InterruptedException e) {
+          LOG.info("Metric writer interrupted, " + queue.size() +
+            " metrics not written.");
+          return;
+        } catch (RuntimeException e) {
+          LOG.error("Unexpected error writing metrics.", e);
+        } finally {
+          batch.clear();
+        }
+      }
+    }
+  }
+}
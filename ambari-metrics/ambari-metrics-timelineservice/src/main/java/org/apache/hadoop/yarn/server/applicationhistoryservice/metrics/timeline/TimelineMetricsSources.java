@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.MetricsSystem;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+
+/**
+ * Registers the metrics sources of the timeline store. A source is
+ * registered under its name, or under the name with a numeric suffix if
+ * another instance in the same JVM already uses it, so more than one store
+ * can run in a JVM (e.g. in tests).
+ */
+final class TimelineMetricsSources {
+
+  static final Log LOG = LogFactory.getLog(TimelineMetricsSources.class);
+
+  /**
+   * How many suffixed names are tried before the source is not published.
+   */
+  private static final int MAX_ATTEMPTS = 100;
+
+  private TimelineMetricsSources() {
+  }
+
+  /**
+   * Register the source under a name that is not used yet.
+   *
+   * @return the name the source was registered under, or null if it could
+   *         not be registered
+   */
+  static synchronized String register(String name, String description,
+                                      MetricsSource source) {
+    MetricsSystem metricsSystem = DefaultMetricsSystem.instance();
+    for (int i = 1; i <= MAX_ATTEMPTS; i++) {
+      String sourceName = i == 1 ? name : name + "-" + i;
+      if (metricsSystem.getSource(sourceName) != null) {
+        continue;
+      }
+      try {
+        metricsSystem.register(sourceName, description, source);
+        return sourceName;
+      } catch (MetricsException e) {
+        // the name is still reserved by an unregistered source
+      }
+    }
+    LOG.warn("Unable to register metrics source " + name +
+      ", its metrics are not published.");
+    return null;
+  }
+
+  /**
+   * Unregister a source registered by {@link #register}.
+   *
+   * @param sourceName the name returned by register, may be null
+   */
+  static synchronized void unregister(String sourceName) {
+    if (sourceName != null) {
+      DefaultMetricsSystem.instance().unregisterSource(sourceName);
+    }
+  }
+}
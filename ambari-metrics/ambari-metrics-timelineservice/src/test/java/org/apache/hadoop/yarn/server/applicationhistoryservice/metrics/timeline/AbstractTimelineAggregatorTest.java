@@ -24,6 +24,9 @@ import org.junit.Test;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import static junit.framework.Assert.assertEquals;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_CHECKPOINT_DELAY;
@@ -258,6 +261,63 @@ public class AbstractTimelineAggregatorTest {
 
   }
 
+  @Test
+  public void testDoWorkOnRepairPass() throws Exception {
+    agg.setRepairDelayMillis(2 * sleepIntervalMillis);
+
+    // first run saves the checkpoint behind by the repair delay
+    clock.setTime(100000);
+    long sleep = agg.runOnce(sleepIntervalMillis);
+    assertEquals(0, actualRuns);
+    assertEquals(40000, checkPoint.get());
+    assertEquals(sleepIntervalMillis, sleep);
+
+    // the window is aligned to the interval and aggregated once it ended
+    // more than the repair delay ago
+    clock.setTime(125000);
+    sleep = agg.runOnce(sleepIntervalMillis);
+    assertEquals(1, actualRuns);
+    assertEquals(30000, startTimeInDoWork.get());
+    assertEquals(60000, endTimeInDoWork.get());
+    assertEquals(60000, checkPoint.get());
+    assertEquals(sleepIntervalMillis, sleep);
+
+    // the next window has not passed the repair delay yet
+    clock.setTime(130000);
+    sleep = agg.runOnce(sleepIntervalMillis);
+    assertEquals(1, actualRuns);
+    assertEquals(60000, checkPoint.get());
+    assertEquals(20000, sleep);
+
+    clock.setTime(150000);
+    agg.runOnce(sleepIntervalMillis);
+    assertEquals(2, actualRuns);
+    assertEquals(60000, startTimeInDoWork.get());
+    assertEquals(90000, endTimeInDoWork.get());
+    assertEquals(90000, checkPoint.get());
+  }
+
+  @Test
+  public void testGetPartitionBoundaries() throws Exception {
+    List<String> names = Arrays.asList("cpu_idle", "cpu_user", "disk_free",
+      "mem_free", "proc_run", "regionserver.Server.Get");
+
+    assertEquals(Collections.emptyList(),
+      AbstractTimelineAggregator.getPartitionBoundaries(names, 1));
+    assertEquals(Arrays.asList("mem_free"),
+      AbstractTimelineAggregator.getPartitionBoundaries(names, 2));
+    assertEquals(Arrays.asList("disk_free", "proc_run"),
+      AbstractTimelineAggregator.getPartitionBoundaries(names, 3));
+
+    // fewer names than partitions
+    assertEquals(Arrays.asList("cpu_user"),
+      AbstractTimelineAggregator.getPartitionBoundaries(
+        Arrays.asList("cpu_idle", "cpu_user"), 4));
+    assertEquals(Collections.emptyList(),
+      AbstractTimelineAggregator.getPartitionBoundaries(
+        Collections.<String>emptyList(), 4));
+  }
+
   private static class TestClock implements Clock {
 
     private long time;
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Compares the size and the encode and decode times of the binary metric
+ * values encoding with the JSON encoding, for metric records of 60 values
+ * (10 minutes at the default 10 second sink period).
+ */
+@Ignore
+public class MetricValuesCodecPerformanceTest {
+
+  private static final int ITERATIONS = 5;
+  private static final int VALUES_PER_RECORD = 60;
+  private static final int RECORD_COUNT = 10000;
+
+  @Test
+  public void testEncodeDecode() throws Exception {
+    int valuesPerRecord = VALUES_PER_RECORD;
+    int recordCount = RECORD_COUNT;
+
+    List<Map<Long, Double>> records = createRecords(valuesPerRecord, recordCount);
+    List<String> jsonRecords = new ArrayList<String>(recordCount);
+    List<byte[]> binaryRecords = new ArrayList<byte[]>(recordCount);
+
+    long jsonSize = 0;
+    long binarySize = 0;
+    for (Map<Long, Double> record : records) {
+      String json = TimelineUtils.dumpTimelineRecordtoJSON(record);
+      byte[] binary = MetricValuesCodec.encode(record);
+      jsonRecords.add(json);
+      binaryRecords.add(binary);
+      jsonSize += json.getBytes("UTF-8").length;
+      binarySize += binary.length;
+    }
+
+    System.out.println(recordCount + " records of " + valuesPerRecord + " values");
+    System.out.println("JSON size   : " + jsonSize / recordCount + " bytes/record");
+    System.out.println("binary size : " + binarySize / recordCount + " bytes/record");
+
+    // the first iteration warms up the JIT
+    for (int i = 0; i <= ITERATIONS; i++) {
+      long start = System.nanoTime();
+      for (Map<Long, Double> record : records) {
+        TimelineUtils.dumpTimelineRecordtoJSON(record);
+      }
+      long jsonEncode = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (Map<Long, Double> record : records) {
+        MetricValuesCodec.encode(record);
+      }
+      long binaryEncode = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (String json : jsonRecords) {
+        new TreeMap<Long, Double>(PhoenixHBaseAccessor.readMetricFromJSON(json));
+      }
+      long jsonDecode = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (byte[] binary : binaryRecords) {
+        MetricValuesCodec.decode(binary);
+      }
+      long binaryDecode = System.nanoTime() - start;
+
+      if (i > 0) {
+        System.out.println(String.format("iteration %d: encode JSON %.2f us, " +
+            "binary %.2f us; decode JSON %.2f us, binary %.2f us (per record)",
+          i,
+          jsonEncode / 1000.0 / recordCount, binaryEncode / 1000.0 / recordCount,
+          jsonDecode / 1000.0 / recordCount, binaryDecode / 1000.0 / recordCount));
+      }
+    }
+  }
+
+  /**
+   * Create records that look like sink output: values at a roughly regular
+   * interval, some constant, some counters and some gauges.
+   */
+  private static List<Map<Long, Double>> createRecords(int valuesPerRecord,
+                                                       int recordCount) {
+    Random random = new Random(42);
+    List<Map<Long, Double>> records = new ArrayList<Map<Long, Double>>(recordCount);
+    long startTime = System.currentTimeMillis();
+
+    for (int i = 0; i < recordCount; i++) {
+      Map<Long, Double> record = new TreeMap<Long, Double>();
+      long timestamp = startTime + random.nextInt(10000);
+      double value = random.nextInt(1000);
+      int kind = i % 3;
+
+      for (int j = 0; j < valuesPerRecord; j++) {
+        timestamp += 10000 + (random.nextInt(10) == 0 ? random.nextInt(20) - 10 : 0);
+        if (kind == 1) {
+          value += random.nextInt(100);
+        } else if (kind == 2) {
+          value = random.nextDouble() * 100;
+        }
+        record.put(timestamp, value);
+      }
+      records.add(record);
+    }
+    return records;
+  }
+}
@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMetricValuesCodec {
+
+  @Test
+  public void testRegularValues() throws Exception {
+    // given
+    Map<Long, Double> values = new TreeMap<Long, Double>();
+    long timestamp = 1416445244801L;
+    for (int i = 0; i < 60; i++) {
+      values.put(timestamp + i * 10000L, 42.0);
+    }
+
+    // when
+    byte[] encoded = MetricValuesCodec.encode(values);
+
+    // then
+    assertThat(MetricValuesCodec.decode(encoded)).isEqualTo(values);
+    assertThat(encoded.length)
+      .isLessThan(TimelineUtils.dumpTimelineRecordtoJSON(values).length() / 20);
+  }
+
+  @Test
+  public void testIrregularValues() throws Exception {
+    // given
+    Random random = new Random(1234);
+    Map<Long, Double> values = new HashMap<Long, Double>();
+    long timestamp = 1416445244801L;
+    for (int i = 0; i < 1000; i++) {
+      timestamp += random.nextInt(4) == 0 ?
+        random.nextLong() >>> 24 : 10000 + random.nextInt(50) - 25;
+      double value;
+      switch (random.nextInt(4)) {
+        case 0:
+          value = random.nextDouble() * 1e6;
+          break;
+        case 1:
+          value = -random.nextInt(100);
+          break;
+        case 2:
+          value = Double.NaN;
+          break;
+        default:
+          value = random.nextGaussian();
+      }
+      values.put(timestamp, value);
+    }
+    values.put(Long.MIN_VALUE, Double.MAX_VALUE);
+    values.put(Long.MAX_VALUE, -0.0);
+
+    // when
+    TreeMap<Long, Double> decoded =
+      MetricValuesCodec.decode(MetricValuesCodec.encode(values));
+
+    // then
+    assertThat(decoded).isEqualTo(new TreeMap<Long, Double>(values));
+  }
+
+  @Test
+  public void testEmptyAndSingleValue() throws Exception {
+    Map<Long, Double> values = new TreeMap<Long, Double>();
+    assertThat(MetricValuesCodec.decode(MetricValuesCodec.encode(values)))
+      .isEmpty();
+
+    values.put(1416445244801L, 1.5);
+    assertThat(MetricValuesCodec.decode(MetricValuesCodec.encode(values)))
+      .isEqualTo(values);
+  }
+
+  @Test
+  public void testNullValueNotEncoded() throws Exception {
+    Map<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1416445244801L, null);
+
+    assertThat(MetricValuesCodec.encode(values)).isNull();
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnsupportedVersion() throws Exception {
+    MetricValuesCodec.decode(new byte[]{2, 0, 0, 0, 0});
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncated() throws Exception {
+    Map<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1416445244801L, 1.5);
+    values.put(1416445254801L, 2.5);
+    byte[] encoded = MetricValuesCodec.encode(values);
+
+    byte[] truncated = new byte[encoded.length - 10];
+    System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+    MetricValuesCodec.decode(truncated);
+  }
+}
@@ -70,6 +70,39 @@ public class TestPhoenixTransactSQL {
     Assert.assertEquals(expectedClause, preparedClause);
   }
 
+  @Test
+  public void testMetricNameRangeCondition() throws Exception {
+    Condition condition = new DefaultCondition(null, null, null, null,
+      1407959718L, 1407959918L, null, null, true);
+    condition.setMetricNameRange("cpu_user", "mem_free");
+    condition.setNoLimit();
+    condition.setStatement("SELECT METRIC_NAME FROM METRIC_RECORD");
+
+    String preparedClause = condition.getConditionClause().toString();
+    String expectedClause = " METRIC_NAME >= ? AND METRIC_NAME < ? AND " +
+      "SERVER_TIME >= ? AND SERVER_TIME < ?";
+    Assert.assertEquals(expectedClause, preparedClause);
+
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement preparedStatement = EasyMock.createMock(PreparedStatement.class);
+    expect(connection.prepareStatement(EasyMock.anyString()))
+      .andReturn(preparedStatement);
+    preparedStatement.setString(1, "cpu_user");
+    preparedStatement.setString(2, "mem_free");
+    preparedStatement.setLong(3, 1407959718000L);
+    preparedStatement.setLong(4, 1407959918000L);
+
+    replay(connection, preparedStatement);
+    PhoenixTransactSQL.prepareGetMetricsSqlStmt(connection, condition);
+    verify(connection, preparedStatement);
+
+    // open ended range
+    condition.setMetricNameRange(null, "cpu_user");
+    preparedClause = condition.getConditionClause().toString();
+    expectedClause = " METRIC_NAME < ? AND SERVER_TIME >= ? AND SERVER_TIME < ?";
+    Assert.assertEquals(expectedClause, preparedClause);
+  }
+
   @Test
   public void testLikeConditionClause() throws Exception {
     Condition condition = new DefaultCondition(
@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.util.Clock;
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.METRICS_AGGREGATE_MINUTE_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_AGGREGATOR_MINUTE_SLEEP_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_AGGREGATION_FLUSH_DELAY;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+public class TestTimelineMetricsIngestAggregator {
+
+  private static final long T = 900000000L;
+
+  private TestClock clock;
+  private Configuration conf;
+
+  @Before
+  public void setUp() {
+    clock = new TestClock();
+    clock.setTime(T);
+
+    conf = new Configuration(false);
+    conf.setLong(HOST_AGGREGATOR_MINUTE_SLEEP_INTERVAL, 300);
+    conf.setInt(CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL, 15);
+    conf.setLong(INGEST_AGGREGATION_FLUSH_DELAY, 120);
+  }
+
+  @Test
+  public void testCompletedSlicesAreSaved() throws Exception {
+    Capture<Map<TimelineMetric, MetricHostAggregate>> hostCapture =
+      new Capture<Map<TimelineMetric, MetricHostAggregate>>();
+    Capture<Map<TimelineClusterMetric, MetricClusterAggregate>> clusterCapture =
+      new Capture<Map<TimelineClusterMetric, MetricClusterAggregate>>();
+
+    PhoenixHBaseAccessor accessor = createMock(PhoenixHBaseAccessor.class);
+    accessor.saveHostAggregateRecords(capture(hostCapture),
+      eq(METRICS_AGGREGATE_MINUTE_TABLE_NAME));
+    accessor.saveClusterAggregateRecords(capture(clusterCapture));
+    replay(accessor);
+
+    TimelineMetricsIngestAggregator aggregator =
+      new TimelineMetricsIngestAggregator(accessor, conf, clock);
+    aggregator.add(createMetrics());
+    assertEquals(1, aggregator.getLateValues());
+
+    // Nothing completed yet
+    aggregator.flush();
+    assertEquals(1, aggregator.getOpenHostSlices());
+    assertEquals(2, aggregator.getOpenClusterSlices());
+
+    clock.setTime(T + 300000);
+    aggregator.flush();
+    verify(accessor);
+    assertEquals(0, aggregator.getOpenHostSlices());
+    assertEquals(0, aggregator.getOpenClusterSlices());
+
+    Map<TimelineMetric, MetricHostAggregate> hostAggregates =
+      hostCapture.getValue();
+    assertEquals(3, hostAggregates.size());
+    MetricHostAggregate h1 = hostAggregates.get(
+      createHostKey("cpu_user", "h1"));
+    assertEquals(9.0, h1.getSum(), 0.0);
+    assertEquals(3, h1.getNumberOfSamples());
+    assertEquals(5.0, h1.getMax(), 0.0);
+    assertEquals(1.0, h1.getMin(), 0.0);
+    MetricHostAggregate h2 = hostAggregates.get(
+      createHostKey("cpu_user", "h2"));
+    assertEquals(4.0, h2.getSum(), 0.0);
+    assertEquals(1, h2.getNumberOfSamples());
+
+    Map<TimelineClusterMetric, MetricClusterAggregate> clusterAggregates =
+      clusterCapture.getValue();
+    assertEquals(2, clusterAggregates.size());
+    MetricClusterAggregate slice1 = clusterAggregates.get(
+      new TimelineClusterMetric("cpu_user", "HOST", null, T - 30000, null));
+    assertEquals(6.0, slice1.getSum(), 0.0);
+    assertEquals(2, slice1.getNumberOfHosts());
+    assertEquals(4.0, slice1.getMax(), 0.0);
+    assertEquals(2.0, slice1.getMin(), 0.0);
+    MetricClusterAggregate slice2 = clusterAggregates.get(
+      new TimelineClusterMetric("cpu_user", "HOST", null, T - 15000, null));
+    assertEquals(5.0, slice2.getSum(), 0.0);
+    assertEquals(1, slice2.getNumberOfHosts());
+  }
+
+  @Test
+  public void testFailedSlicesAreKept() throws Exception {
+    PhoenixHBaseAccessor accessor = createMock(PhoenixHBaseAccessor.class);
+    accessor.saveHostAggregateRecords(
+      anyObject(Map.class), eq(METRICS_AGGREGATE_MINUTE_TABLE_NAME));
+    accessor.saveClusterAggregateRecords(anyObject(Map.class));
+    expectLastCall().andThrow(new SQLException("failed"));
+    replay(accessor);
+
+    TimelineMetricsIngestAggregator aggregator =
+      new TimelineMetricsIngestAggregator(accessor, conf, clock);
+    aggregator.add(createMetrics());
+
+    clock.setTime(T + 300000);
+    aggregator.flush();
+    verify(accessor);
+
+    // host aggregates were saved, the cluster slices are retried
+    assertEquals(0, aggregator.getOpenHostSlices());
+    assertEquals(2, aggregator.getOpenClusterSlices());
+  }
+
+  @Test
+  public void testOpenSlicesAreSavedOnStop() throws Exception {
+    Capture<Map<TimelineClusterMetric, MetricClusterAggregate>> clusterCapture =
+      new Capture<Map<TimelineClusterMetric, MetricClusterAggregate>>();
+
+    PhoenixHBaseAccessor accessor = createMock(PhoenixHBaseAccessor.class);
+    accessor.saveHostAggregateRecords(anyObject(Map.class),
+      eq(METRICS_AGGREGATE_MINUTE_TABLE_NAME));
+    accessor.saveClusterAggregateRecords(capture(clusterCapture));
+    replay(accessor);
+
+    TimelineMetricsIngestAggregator aggregator =
+      new TimelineMetricsIngestAggregator(accessor, conf, clock);
+    TimelineMetric metric = createMetric("cpu_user", "h1", T - 30000, 1.0);
+    metric.setInstanceId("i1");
+    List<TimelineMetric> metrics = new ArrayList<TimelineMetric>();
+    metrics.add(metric);
+    aggregator.add(metrics);
+
+    aggregator.flush(true);
+    verify(accessor);
+    assertEquals(0, aggregator.getOpenHostSlices());
+    assertEquals(0, aggregator.getOpenClusterSlices());
+
+    // the cluster aggregates are kept per instance
+    MetricClusterAggregate slice = clusterCapture.getValue().get(
+      new TimelineClusterMetric("cpu_user", "HOST", "i1", T - 30000, null));
+    assertEquals(1.0, slice.getSum(), 0.0);
+  }
+
+  private TimelineMetrics createMetrics() {
+    List<TimelineMetric> metrics = new ArrayList<TimelineMetric>();
+    metrics.add(createMetric("cpu_user", "h1",
+      T - 30000, 1.0, T - 29000, 3.0, T - 10000, 5.0));
+    metrics.add(createMetric("cpu_user", "h2", T - 30000, 4.0));
+    // before the flush delay
+    metrics.add(createMetric("disk_free", "h1", T - 200000, 7.0));
+
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    timelineMetrics.setMetrics(metrics);
+    return timelineMetrics;
+  }
+
+  private TimelineMetric createMetric(String name, String host,
+                                      Object... timesAndValues) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(name);
+    metric.setHostName(host);
+    metric.setAppId("HOST");
+    metric.setStartTime((Long) timesAndValues[0]);
+    Map<Long, Double> values = new TreeMap<Long, Double>();
+    for (int i = 0; i < timesAndValues.length; i += 2) {
+      values.put((Long) timesAndValues[i], (Double) timesAndValues[i + 1]);
+    }
+    metric.setMetricValues(values);
+    return metric;
+  }
+
+  private TimelineMetric createHostKey(String name, String host) {
+    TimelineMetric key = new TimelineMetric();
+    key.setMetricName(name);
+    key.setHostName(host);
+    key.setAppId("HOST");
+    key.setTimestamp(T);
+    return key;
+  }
+
+  private static class TestClock implements Clock {
+
+    private long time;
+
+    public void setTime(long time) {
+      this.time = time;
+    }
+
+    @Override
+    public long getTime() {
+      return time;
+    }
+  }
+}
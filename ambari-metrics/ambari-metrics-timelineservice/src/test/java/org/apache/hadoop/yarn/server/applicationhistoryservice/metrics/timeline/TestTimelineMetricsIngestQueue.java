@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_QUEUE_OFFER_TIMEOUT;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_QUEUE_OVERFLOW_POLICY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_WRITER_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INGEST_WRITER_THREADS;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestTimelineMetricsIngestQueue {
+
+  @Test
+  public void testQueuedMetricsAreWrittenInBatches() throws Exception {
+    final List<Integer> batchSizes =
+      Collections.synchronizedList(new ArrayList<Integer>());
+
+    PhoenixHBaseAccessor accessor = createNiceMock(PhoenixHBaseAccessor.class);
+    expect(accessor.insertMetricRecords(anyObject(TimelineMetrics.class)))
+      .andAnswer(new IAnswer<Integer>() {
+        @Override
+        public Integer answer() throws Throwable {
+          TimelineMetrics metrics = (TimelineMetrics) getCurrentArguments()[0];
+          batchSizes.add(metrics.getMetrics().size());
+          return 0;
+        }
+      }).anyTimes();
+    replay(accessor);
+
+    Configuration conf = new Configuration(false);
+    conf.setInt(INGEST_WRITER_THREADS, 1);
+    conf.setInt(INGEST_WRITER_BATCH_SIZE, 100);
+
+    TimelineMetricsIngestQueue queue =
+      new TimelineMetricsIngestQueue(accessor, conf);
+    queue.start();
+    TimelinePutResponse response = queue.put(createMetrics(250));
+    queue.stop(10000);
+
+    assertTrue(response.getErrors().isEmpty());
+    assertEquals(0, queue.getQueueDepth());
+
+    int written = 0;
+    for (int batchSize : batchSizes) {
+      assertTrue(batchSize <= 100);
+      written += batchSize;
+    }
+    assertEquals(250, written);
+    assertEquals(0, queue.getFailedMetrics());
+  }
+
+  @Test
+  public void testFailedRowsAreCounted() throws Exception {
+    // every other metric of a batch fails to be written
+    PhoenixHBaseAccessor accessor = createNiceMock(PhoenixHBaseAccessor.class);
+    expect(accessor.insertMetricRecords(anyObject(TimelineMetrics.class)))
+      .andAnswer(new IAnswer<Integer>() {
+        @Override
+        public Integer answer() throws Throwable {
+          TimelineMetrics metrics = (TimelineMetrics) getCurrentArguments()[0];
+          int failed = 0;
+          for (TimelineMetric metric : metrics.getMetrics()) {
+            if (metric.getMetricValues().values().iterator().next() % 2 == 0) {
+              failed++;
+            }
+          }
+          return failed;
+        }
+      }).anyTimes();
+    replay(accessor);
+
+    Configuration conf = new Configuration(false);
+    conf.setInt(INGEST_WRITER_THREADS, 1);
+    conf.setInt(INGEST_WRITER_BATCH_SIZE, 100);
+
+    TimelineMetricsIngestQueue queue =
+      new TimelineMetricsIngestQueue(accessor, conf);
+    queue.start();
+    queue.put(createMetrics(250));
+    queue.stop(10000);
+
+    assertEquals(125, queue.getFailedMetrics());
+  }
+
+  @Test
+  public void testDropNewest() throws Exception {
+    TimelineMetricsIngestQueue queue = createFullQueue("DROP_NEWEST");
+
+    TimelinePutResponse response = queue.put(createMetrics(3));
+    queue.stop(0);
+
+    assertEquals(1, response.getErrors().size());
+    assertEquals("metric2", response.getErrors().get(0).getEntityId());
+    assertEquals(1, queue.getDroppedMetrics());
+    assertEquals(2, queue.getQueueDepth());
+  }
+
+  @Test
+  public void testDropOldest() throws Exception {
+    TimelineMetricsIngestQueue queue = createFullQueue("drop_oldest");
+
+    TimelinePutResponse response = queue.put(createMetrics(3));
+    queue.stop(0);
+
+    assertTrue(response.getErrors().isEmpty());
+    assertEquals(1, queue.getDroppedMetrics());
+    assertEquals(2, queue.getQueueDepth());
+  }
+
+  @Test
+  public void testBlock() throws Exception {
+    TimelineMetricsIngestQueue queue = createFullQueue("BLOCK");
+
+    TimelinePutResponse response = queue.put(createMetrics(3));
+    queue.stop(0);
+
+    assertEquals(1, response.getErrors().size());
+    assertEquals(1, queue.getDroppedMetrics());
+  }
+
+  @Test
+  public void testTwoQueuesInOneJvm() throws Exception {
+    TimelineMetricsIngestQueue first = createFullQueue("DROP_NEWEST");
+    TimelineMetricsIngestQueue second = createFullQueue("DROP_NEWEST");
+    second.stop(0);
+    first.stop(0);
+
+    // the source names are released on stop
+    TimelineMetricsIngestQueue third = createFullQueue("DROP_NEWEST");
+    third.stop(0);
+  }
+
+  /**
+   * A queue for two metrics without writers.
+   */
+  private TimelineMetricsIngestQueue createFullQueue(String policy) {
+    PhoenixHBaseAccessor accessor = createNiceMock(PhoenixHBaseAccessor.class);
+    replay(accessor);
+
+    Configuration conf = new Configuration(false);
+    conf.setInt(INGEST_WRITER_THREADS, 0);
+    conf.setInt(INGEST_QUEUE_SIZE, 2);
+    conf.set(INGEST_QUEUE_OVERFLOW_POLICY, policy);
+    conf.setLong(INGEST_QUEUE_OFFER_TIMEOUT, 10);
+
+    TimelineMetricsIngestQueue queue =
+      new TimelineMetricsIngestQueue(accessor, conf);
+    queue.start();
+    return queue;
+  }
+
+  private TimelineMetrics createMetrics(int count) {
+    List<TimelineMetric> metricList = new ArrayList<TimelineMetric>(count);
+    for (int i = 0; i < count; i++) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("metric" + i);
+      metric.setAppId("app");
+      metric.setHostName("host");
+      metric.getMetricValues().put(1416445244801L, (double) i);
+      metricList.add(metric);
+    }
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(metricList);
+    return metrics;
+  }
+}
@@ -69,6 +69,14 @@ public interface ActionDBAccessor {
    */
   public List<Stage> getStagesInProgress();
 
+  /**
+   * Discards any in-memory view of the stages in progress so that the next
+   * call to {@link #getStagesInProgress()} reloads them from the database. This
+   * should be called when stages returned earlier may have been modified
+   * without their changes being persisted.
+   */
+  public void invalidateStagesInProgress();
+
   /**
    * Gets the number of commands in progress.
    *
@@ -32,6 +32,7 @@ import java.util.concurrent.TimeUnit;
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.agent.CommandReport;
 import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.orm.dao.ClusterDAO;
 import org.apache.ambari.server.orm.dao.ExecutionCommandDAO;
 import org.apache.ambari.server.orm.dao.HostDAO;
@@ -48,8 +49,12 @@ import org.apache.ambari.server.orm.entities.RequestEntity;
 import org.apache.ambari.server.orm.entities.RequestScheduleEntity;
 import org.apache.ambari.server.orm.entities.RoleSuccessCriteriaEntity;
 import org.apache.ambari.server.orm.entities.StageEntity;
+import org.apache.ambari.server.orm.entities.StageEntityPK;
+import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.ConfigHelper;
 import org.apache.ambari.server.state.Host;
+import org.apache.ambari.server.state.svccomphost.ServiceComponentHostStateWriter;
 import org.apache.ambari.server.utils.StageUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -103,6 +108,21 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
   @Inject
   RequestScheduleDAO requestScheduleDAO;
 
+  @Inject
+  Configuration configuration;
+
+  @Inject
+  ConfigHelper configHelper;
+
+  @Inject
+  ServiceComponentHostStateWriter stateWriter;
+
+  /**
+   * The stages in progress, maintained incrementally from task updates so
+   * that the scheduler doesn't need to query for them on every wakeup.
+   */
+  private final ActiveStageIndex activeStageIndex = new ActiveStageIndex();
+
   private Cache<Long, HostRoleCommand> hostRoleCommandCache;
   private long cacheLimit; //may be exceeded to store tasks from one request
 
@@ -179,6 +199,10 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     }
 
     hostRoleCommandDAO.mergeAll(commands);
+
+    for (HostRoleCommandEntity command : commands) {
+      activeStageIndex.invalidate(command.getRequestId(), command.getStageId());
+    }
   }
 
   /* (non-Javadoc)
@@ -195,6 +219,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       command.setEndTime(now);
     }
     hostRoleCommandDAO.mergeAll(commands);
+    activeStageIndex.invalidate(requestId, stageId);
     endRequestIfCompleted(requestId);
   }
 
@@ -203,6 +228,28 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
    */
   @Override
   public List<Stage> getStagesInProgress() {
+    if (configuration.isActiveStageIndexEnabled()) {
+      refreshActiveStageIndex();
+      return activeStageIndex.getStages();
+    }
+
+    return findStagesInProgress();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void invalidateStagesInProgress() {
+    activeStageIndex.invalidateAll();
+  }
+
+  /**
+   * Queries the database for all of the stages which have a task in progress.
+   *
+   * @return the stages in progress, ordered by request ID and stage ID.
+   */
+  private List<Stage> findStagesInProgress() {
     List<Stage> stages = new ArrayList<Stage>();
 
     List<StageEntity> stageEntities = stageDAO.findByCommandStatuses(HostRoleStatus.IN_PROGRESS_STATUSES);
@@ -214,11 +261,38 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     return stages;
   }
 
+  /**
+   * Brings the {@link ActiveStageIndex} up to date. The first call loads all
+   * stages in progress; after that only the stages whose tasks were changed
+   * since the last call are reloaded.
+   */
+  private void refreshActiveStageIndex() {
+    if (!activeStageIndex.isInitialized()) {
+      activeStageIndex.initialize(findStagesInProgress());
+      return;
+    }
+
+    for (ActiveStageIndex.StageKey key : activeStageIndex.drainDirty()) {
+      StageEntityPK pk = new StageEntityPK();
+      pk.setRequestId(key.getRequestId());
+      pk.setStageId(key.getStageId());
+
+      StageEntity stageEntity = stageDAO.findByPK(pk);
+      activeStageIndex.update(key,
+          null == stageEntity ? null : stageFactory.createExisting(stageEntity));
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public int getCommandsInProgressCount() {
+    if (configuration.isActiveStageIndexEnabled()) {
+      refreshActiveStageIndex();
+      return activeStageIndex.getCommandsInProgressCount();
+    }
+
     Number count = hostRoleCommandDAO.getCountByStatus(HostRoleStatus.IN_PROGRESS_STATUSES);
     if (null == count) {
       return 0;
@@ -228,8 +302,23 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
   }
 
   @Override
-  @Transactional
   public void persistActions(Request request) throws AmbariException {
+    // the commands are built from the host component states, so make sure
+    // they are durable before the request is; the flush commits on its own
+    // so that its changes are not lost if persisting the request fails
+    stateWriter.flush();
+
+    persistRequest(request);
+  }
+
+  /**
+   * Persist the request with its stages and commands in one transaction.
+   */
+  @Transactional
+  protected void persistRequest(Request request) throws AmbariException {
+    long persistStart = System.currentTimeMillis();
+    long commandBytes = 0;
+    int commandCount = 0;
 
     RequestEntity requestEntity = request.constructNewPersistenceEntity();
 
@@ -242,6 +331,19 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     requestEntity.setClusterId(clusterId);
     requestDAO.create(requestEntity);
 
+    // the configurations referenced by the same tags are shared by most of
+    // the commands of a request, so only expand them once
+    Cluster cluster = null;
+    if (clusterId != -1L) {
+      try {
+        cluster = clusters.getClusterById(clusterId);
+      } catch (AmbariException e) {
+        LOG.warn("Unable to get cluster {}, storing full command configurations", clusterId);
+      }
+    }
+    Map<Map<String, Map<String, String>>, Map<String, Map<String, String>>> tagConfigurations =
+        new HashMap<Map<String, Map<String, String>>, Map<String, Map<String, String>>>();
+
     //TODO wire request to cluster
     List<StageEntity> stageEntities = new ArrayList<StageEntity>(request.getStages().size());
 
@@ -288,7 +390,10 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
           LOG.warn("Exception in getting prefix for host and setting output and error log files.");
         }
 
-        ExecutionCommandEntity executionCommandEntity = hostRoleCommand.constructExecutionCommandEntity();
+        ExecutionCommandEntity executionCommandEntity = hostRoleCommand.constructExecutionCommandEntity(
+            getTagConfigurations(cluster, hostRoleCommand, tagConfigurations));
+        commandBytes += executionCommandEntity.getCommand().length;
+        commandCount++;
         executionCommandEntity.setHostRoleCommand(hostRoleCommandEntity);
 
         executionCommandEntity.setTaskId(hostRoleCommandEntity.getTaskId());
@@ -307,6 +412,41 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     }
     requestEntity.setStages(stageEntities);
     requestDAO.merge(requestEntity);
+
+    for (StageEntity stageEntity : stageEntities) {
+      activeStageIndex.invalidate(stageEntity.getRequestId(), stageEntity.getStageId());
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Persisted request {} with {} commands, {} command bytes, in {} ms",
+          requestEntity.getRequestId(), commandCount, commandBytes,
+          System.currentTimeMillis() - persistStart);
+    }
+  }
+
+  /**
+   * Get the configuration properties referenced by the configuration tags of
+   * a command, which need not be stored with the command.
+   *
+   * @return the properties keyed by type or null if they can't be determined
+   */
+  private Map<String, Map<String, String>> getTagConfigurations(Cluster cluster,
+      HostRoleCommand hostRoleCommand,
+      Map<Map<String, Map<String, String>>, Map<String, Map<String, String>>> expanded) {
+
+    ExecutionCommand command = hostRoleCommand.getExecutionCommandWrapper().getExecutionCommand();
+    Map<String, Map<String, String>> tags = command.getConfigurationTags();
+    if (cluster == null || tags == null || tags.isEmpty() ||
+        command.getConfigurations() == null || command.getConfigurations().isEmpty()) {
+      return null;
+    }
+
+    Map<String, Map<String, String>> properties = expanded.get(tags);
+    if (properties == null) {
+      properties = configHelper.getEffectiveConfigProperties(cluster, tags);
+      expanded.put(tags, properties);
+    }
+    return properties;
   }
 
   @Override
@@ -320,6 +460,8 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
 
   @Override
   public void endRequest(long requestId) {
+    stateWriter.flush();
+
     RequestEntity requestEntity = requestDAO.findByPK(requestId);
     if (requestEntity != null && requestEntity.getEndTime() == -1L) {
       requestEntity.setEndTime(System.currentTimeMillis());
@@ -410,6 +552,10 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     // Invalidate cache because of updates to ABORTED commands
     hostRoleCommandCache.invalidateAll(abortedCommandUpdates);
 
+    for (HostRoleCommandEntity commandEntity : commandEntities) {
+      activeStageIndex.invalidate(commandEntity.getRequestId(), commandEntity.getStageId());
+    }
+
     for (Long requestId : requestsToCheck) {
       endRequestIfCompleted(requestId);
     }
@@ -447,6 +593,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       command.setExitcode(report.getExitCode());
     }
     hostRoleCommandDAO.mergeAll(commands);
+    activeStageIndex.invalidate(requestId, stageId);
 
     if (checkRequest) {
       endRequestIfCompleted(requestId);
@@ -503,6 +650,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       entity.setStatus(hostRoleCommand.getStatus());
       entity.setAttemptCount(hostRoleCommand.getAttemptCount());
       hostRoleCommandDAO.merge(entity);
+      activeStageIndex.invalidate(s.getRequestId(), s.getStageId());
     } else {
       throw new RuntimeException("HostRoleCommand is not persisted, cannot update:\n" + hostRoleCommand);
     }
@@ -198,9 +198,11 @@ class ActionScheduler implements Runnable {
       } catch (Exception ex) {
         LOG.warn("Exception received", ex);
         requestsInProgress.clear();
+        db.invalidateStagesInProgress();
       } catch (Throwable t) {
         LOG.warn("ERROR", t);
         requestsInProgress.clear();
+        db.invalidateStagesInProgress();
       }
     }
   }
@@ -0,0 +1,255 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ActiveStageIndex} is an in-memory view of the stages which have
+ * at least one task in progress. It is maintained incrementally by
+ * {@link ActionDBAccessorImpl}: every write to a task marks its stage as dirty
+ * and only dirty stages are reloaded from the database when the stages in
+ * progress are requested. Stages are kept ordered by request ID and then stage
+ * ID, which is the same order the database query returns.
+ * <p/>
+ * Stages with a task in a holding state are always treated as dirty since
+ * they are released by manual transitions that are not made through the
+ * accessor.
+ */
+class ActiveStageIndex {
+
+  /**
+   * The amount of time that a dirty stage which can't be found in the database
+   * is retained. New stages can be marked dirty before the transaction that
+   * created them has been committed.
+   */
+  private static final long UNRESOLVED_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+  /**
+   * The loaded stages which have tasks in progress.
+   */
+  private final ConcurrentSkipListMap<StageKey, Stage> stages =
+      new ConcurrentSkipListMap<StageKey, Stage>();
+
+  /**
+   * The stages which must be reloaded before they are next used.
+   */
+  private final ConcurrentSkipListSet<StageKey> dirtyStages =
+      new ConcurrentSkipListSet<StageKey>();
+
+  /**
+   * The time at which a dirty stage was first not found in the database.
+   */
+  private final Map<StageKey, Long> unresolvedStages =
+      new ConcurrentHashMap<StageKey, Long>();
+
+  /**
+   * {@code true} once the index has been loaded from the database.
+   */
+  private volatile boolean initialized = false;
+
+  /**
+   * @return {@code true} if the index has been loaded.
+   */
+  boolean isInitialized() {
+    return initialized;
+  }
+
+  /**
+   * Loads the index with the stages which are currently in progress.
+   *
+   * @param stagesInProgress  the stages in progress
+   */
+  synchronized void initialize(List<Stage> stagesInProgress) {
+    clear();
+
+    for (Stage stage : stagesInProgress) {
+      update(new StageKey(stage.getRequestId(), stage.getStageId()), stage);
+    }
+
+    initialized = true;
+  }
+
+  /**
+   * Discards the index so that it is reloaded from the database on next use.
+   */
+  synchronized void invalidateAll() {
+    initialized = false;
+    clear();
+  }
+
+  /**
+   * Marks a stage as needing to be reloaded. This is also how new stages are
+   * added to the index.
+   *
+   * @param requestId  the request ID
+   * @param stageId    the stage ID
+   */
+  void invalidate(long requestId, long stageId) {
+    if (initialized) {
+      dirtyStages.add(new StageKey(requestId, stageId));
+    }
+  }
+
+  /**
+   * Removes and returns the stages which have been marked dirty. A stage that
+   * is marked again after this call will be returned by the next call.
+   *
+   * @return the dirty stages, in order.
+   */
+  List<StageKey> drainDirty() {
+    List<StageKey> keys = new ArrayList<StageKey>();
+    StageKey key;
+    while (null != (key = dirtyStages.pollFirst())) {
+      keys.add(key);
+    }
+    return keys;
+  }
+
+  /**
+   * Updates the index with a stage which was reloaded.
+   *
+   * @param key    the stage key
+   * @param stage  the reloaded stage, or {@code null} if it was not found
+   */
+  void update(StageKey key, Stage stage) {
+    if (null == stage) {
+      stages.remove(key);
+
+      Long since = unresolvedStages.get(key);
+      long now = System.currentTimeMillis();
+      if (null == since) {
+        unresolvedStages.put(key, now);
+        dirtyStages.add(key);
+      } else if (now - since < UNRESOLVED_TIMEOUT) {
+        dirtyStages.add(key);
+      } else {
+        unresolvedStages.remove(key);
+      }
+
+      return;
+    }
+
+    unresolvedStages.remove(key);
+
+    boolean inProgress = false;
+    boolean holding = false;
+    for (HostRoleCommand command : stage.getOrderedHostRoleCommands()) {
+      HostRoleStatus status = command.getStatus();
+      inProgress |= status.isInProgress();
+      holding |= status.isHoldingState();
+    }
+
+    if (inProgress) {
+      stages.put(key, stage);
+    } else {
+      stages.remove(key);
+    }
+
+    if (holding) {
+      dirtyStages.add(key);
+    }
+  }
+
+  /**
+   * @return the loaded stages in progress, ordered by request ID and stage ID.
+   */
+  List<Stage> getStages() {
+    return new ArrayList<Stage>(stages.values());
+  }
+
+  /**
+   * @return the number of tasks in progress across the loaded stages.
+   */
+  int getCommandsInProgressCount() {
+    int count = 0;
+    for (Stage stage : stages.values()) {
+      for (HostRoleCommand command : stage.getOrderedHostRoleCommands()) {
+        if (command.getStatus().isInProgress()) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  private void clear() {
+    stages.clear();
+    dirtyStages.clear();
+    unresolvedStages.clear();
+  }
+
+  /**
+   * Identifies a stage by request ID and stage ID.
+   */
+  static final class StageKey implements Comparable<StageKey> {
+    private final long requestId;
+    private final long stageId;
+
+    StageKey(long requestId, long stageId) {
+      this.requestId = requestId;
+      this.stageId = stageId;
+    }
+
+    long getRequestId() {
+      return requestId;
+    }
+
+    long getStageId() {
+      return stageId;
+    }
+
+    @Override
+    public int compareTo(StageKey other) {
+      if (requestId != other.requestId) {
+        return requestId < other.requestId ? -1 : 1;
+      }
+
+      if (stageId != other.stageId) {
+        return stageId < other.stageId ? -1 : 1;
+      }
+
+      return 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+
+      if (!(o instanceof StageKey)) {
+        return false;
+      }
+
+      StageKey that = (StageKey) o;
+      return requestId == that.requestId && stageId == that.stageId;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (int) (requestId ^ (requestId >>> 32)) + (int) (stageId ^ (stageId >>> 32));
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.utils.StageUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+/**
+ * Storage format of the execution command persisted with each task.
+ *
+ * The command is stored as gzip compressed JSON, without the parts that can
+ * be restored when it is loaded:
+ * <ul>
+ *   <li>the cluster host info, which is shared by all the commands of a stage
+ *   and is set from the stage before the command is sent to the agent.</li>
+ *   <li>the configuration properties that have the same value in the
+ *   configurations referenced by the configuration tags of the command; these
+ *   are expanded again by {@link ExecutionCommandWrapper}.</li>
+ * </ul>
+ * Commands stored as plain JSON before this format was introduced are still
+ * read.
+ */
+public class ExecutionCommandCodec {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String DELETED = "DELETED_";
+
+  private static final String CLUSTER_HOST_INFO = "clusterHostInfo";
+  private static final String CONFIGURATIONS = "configurations";
+
+  private ExecutionCommandCodec() {
+  }
+
+  /**
+   * Encode an execution command for storage.
+   *
+   * @param command            the command
+   * @param tagConfigurations  the configuration properties referenced by the
+   *                           configuration tags of the command keyed by type,
+   *                           or null if they are not known
+   * @return the stored representation of the command
+   */
+  public static byte[] encode(ExecutionCommand command,
+                              Map<String, Map<String, String>> tagConfigurations) {
+    Gson gson = StageUtils.getGson();
+    JsonObject json = gson.toJsonTree(command).getAsJsonObject();
+    json.remove(CLUSTER_HOST_INFO);
+
+    Map<String, Map<String, String>> configurations = command.getConfigurations();
+    if (configurations != null && tagConfigurations != null) {
+      json.add(CONFIGURATIONS, gson.toJsonTree(
+          trimConfigurations(configurations, tagConfigurations)));
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), UTF_8);
+      gson.toJson(json, writer);
+      writer.close();
+    } catch (IOException e) {
+      // not thrown when writing to memory
+      throw new RuntimeException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decode a stored execution command.
+   *
+   * @param stored the stored command, either encoded by
+   *               {@link #encode(ExecutionCommand, Map)} or plain JSON
+   * @return the command JSON
+   */
+  public static String decode(byte[] stored) {
+    if (!isCompressed(stored)) {
+      return new String(stored);
+    }
+
+    StringBuilder json = new StringBuilder(stored.length * 8);
+    try {
+      Reader reader = new InputStreamReader(
+          new GZIPInputStream(new ByteArrayInputStream(stored)), UTF_8);
+      try {
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+          json.append(buffer, 0, read);
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to decode stored execution command", e);
+    }
+    return json.toString();
+  }
+
+  /**
+   * Drop the properties that have the same value in the tag configurations.
+   * Types with deleted property markers are kept as they are.
+   */
+  static Map<String, Map<String, String>> trimConfigurations(
+      Map<String, Map<String, String>> configurations,
+      Map<String, Map<String, String>> tagConfigurations) {
+
+    Map<String, Map<String, String>> trimmed =
+        new HashMap<String, Map<String, String>>(configurations.size());
+
+    for (Map.Entry<String, Map<String, String>> entry : configurations.entrySet()) {
+      String type = entry.getKey();
+      Map<String, String> properties = entry.getValue();
+      Map<String, String> tagProperties = tagConfigurations.get(type);
+
+      if (tagProperties == null || properties == null || hasDeleted(properties)) {
+        trimmed.put(type, properties);
+        continue;
+      }
+
+      Map<String, String> overrides = new HashMap<String, String>();
+      for (Map.Entry<String, String> property : properties.entrySet()) {
+        String value = property.getValue();
+        String tagValue = tagProperties.get(property.getKey());
+        if (value == null ? tagValue != null || !tagProperties.containsKey(property.getKey())
+            : !value.equals(tagValue)) {
+          overrides.put(property.getKey(), value);
+        }
+      }
+      // a type without overrides is expanded from its tag when loaded
+      if (!overrides.isEmpty()) {
+        trimmed.put(type, overrides);
+      }
+    }
+    return trimmed;
+  }
+
+  private static boolean hasDeleted(Map<String, String> properties) {
+    for (String key : properties.keySet()) {
+      if (key.startsWith(DELETED)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isCompressed(byte[] stored) {
+    return stored.length > 1 &&
+        stored[0] == (byte) (GZIPInputStream.GZIP_MAGIC) &&
+        stored[1] == (byte) (GZIPInputStream.GZIP_MAGIC >> 8);
+  }
+}
@@ -17,6 +17,8 @@
  */
 package org.apache.ambari.server.actionmanager;
 
+import java.util.Map;
+
 import org.apache.ambari.server.Role;
 import org.apache.ambari.server.RoleCommand;
 import org.apache.ambari.server.orm.dao.ExecutionCommandDAO;
@@ -124,9 +126,17 @@ public class HostRoleCommand {
     return hostRoleCommandEntity;
   }
 
-  ExecutionCommandEntity constructExecutionCommandEntity() {
+  /**
+   * @param tagConfigurations the configuration properties referenced by the
+   *                          configuration tags of the command, used to store
+   *                          only the properties that differ from them; may be
+   *                          null
+   */
+  ExecutionCommandEntity constructExecutionCommandEntity(
+      Map<String, Map<String, String>> tagConfigurations) {
     ExecutionCommandEntity executionCommandEntity = new ExecutionCommandEntity();
-    executionCommandEntity.setCommand(executionCommandWrapper.getJson().getBytes());
+    executionCommandEntity.setCommand(ExecutionCommandCodec.encode(
+        executionCommandWrapper.getExecutionCommand(), tagConfigurations));
     return executionCommandEntity;
   }
 
@@ -266,9 +276,8 @@ public class HostRoleCommand {
       if (commandEntity == null) {
         throw new RuntimeException("Invalid DB state, broken one-to-one relation for taskId=" + taskId);
       }
-      executionCommandWrapper = new ExecutionCommandWrapper(new String(
-          commandEntity.getCommand()
-      ));
+      executionCommandWrapper = new ExecutionCommandWrapper(
+          ExecutionCommandCodec.decode(commandEntity.getCommand()));
     }
 
     return executionCommandWrapper;
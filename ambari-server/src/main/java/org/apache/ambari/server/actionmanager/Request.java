@@ -73,6 +73,14 @@ public class Request {
 
   private Collection<Stage> stages = new ArrayList<Stage>();
 
+  /**
+   * The stage entities of a request loaded from the database, which are only
+   * turned into {@link #stages} when the stages are asked for since that reads
+   * all of the tasks of the request.
+   */
+  private Collection<StageEntity> stageEntities = null;
+  private StageFactory stageFactory = null;
+
   @AssistedInject
   /**
    * Construct new entity
@@ -181,10 +189,8 @@ public class Request {
       this.requestScheduleId = entity.getRequestScheduleEntity().getScheduleId();
     }
 
-    for (StageEntity stageEntity : entity.getStages()) {
-      Stage stage = stageFactory.createExisting(stageEntity);
-      stages.add(stage);
-    }
+    this.stageEntities = entity.getStages();
+    this.stageFactory = stageFactory;
     Collection<RequestResourceFilterEntity> resourceFilterEntities = entity.getResourceFilterEntities();
     if (resourceFilterEntities != null) {
       this.resourceFilters = new ArrayList<RequestResourceFilter>();
@@ -221,12 +227,19 @@ public class Request {
     return hostList;
   }
 
-  public Collection<Stage> getStages() {
+  public synchronized Collection<Stage> getStages() {
+    if (null != stageEntities) {
+      for (StageEntity stageEntity : stageEntities) {
+        stages.add(stageFactory.createExisting(stageEntity));
+      }
+      stageEntities = null;
+    }
     return stages;
   }
 
-  public void setStages(Collection<Stage> stages) {
+  public synchronized void setStages(Collection<Stage> stages) {
     this.stages = stages;
+    stageEntities = null;
   }
 
   public long getRequestId() {
@@ -366,7 +379,7 @@ public class Request {
 
   public List<HostRoleCommand> getCommands() {
     List<HostRoleCommand> commands = new ArrayList<HostRoleCommand>();
-    for (Stage stage : stages) {
+    for (Stage stage : getStages()) {
       commands.addAll(stage.getOrderedHostRoleCommands());
     }
     return commands;
@@ -386,7 +399,7 @@ public class Request {
         ", resourceFilters='" + resourceFilters + '\'' +
         ", operationLevel='" + operationLevel + '\'' +
         ", requestType=" + requestType +
-        ", stages=" + stages +
+        ", stages=" + getStages() +
         '}';
   }
 
@@ -123,6 +123,12 @@ public class HeartBeatHandler {
   private final ActionManager actionManager;
   private HeartbeatMonitor heartbeatMonitor;
 
+  /**
+   * Processes command reports, status reports and alerts off of the request
+   * thread; {@code null} unless the heartbeat pipeline is enabled.
+   */
+  private HeartbeatProcessor heartbeatProcessor;
+
   @Inject
   private Injector injector;
 
@@ -174,10 +180,43 @@ public class HeartBeatHandler {
     actionManager = am;
     heartbeatMonitor = new HeartbeatMonitor(fsm, aq, am, 60000, injector);
     injector.injectMembers(this);
+
+    if (config.isHeartbeatPipelineEnabled()) {
+      heartbeatProcessor = new HeartbeatProcessor(this, fsm, am,
+          config.getHeartbeatPipelineThreadPoolSize(),
+          config.getHeartbeatPipelineQueueSize(),
+          config.getHeartbeatPipelineBatchSize());
+    }
   }
 
   public void start() {
     heartbeatMonitor.start();
+
+    if (null != heartbeatProcessor) {
+      heartbeatProcessor.start();
+    }
+  }
+
+  /**
+   * Stops the heartbeat monitor and processes the heartbeats which were
+   * already queued.
+   */
+  public void stop() throws InterruptedException {
+    heartbeatMonitor.shutdown();
+
+    if (null != heartbeatProcessor) {
+      heartbeatProcessor.shutdown(30000);
+    }
+  }
+
+  /**
+   * Gets the processor which handles heartbeats asynchronously.
+   *
+   * @return the processor, or {@code null} if the heartbeat pipeline is not
+   *         enabled.
+   */
+  public HeartbeatProcessor getHeartbeatProcessor() {
+    return heartbeatProcessor;
   }
 
   void setHeartbeatMonitor(HeartbeatMonitor heartbeatMonitor) {
@@ -253,18 +292,35 @@ public class HeartBeatHandler {
       return createRegisterCommand();
     }
 
-    // Examine heartbeat for command reports
-    processCommandReports(heartbeat, hostname, clusterFsm, now);
+    // When the pipeline is enabled, reports are handed off to the processor
+    // and the queued commands are returned right away; if the processor is
+    // backed up, this thread waits for room so that the heartbeats of the
+    // host stay in order. Once the processor is shut down, it only returns
+    // after the heartbeats queued for the host have been processed
+    boolean queued = false;
+    if (null != heartbeatProcessor) {
+      try {
+        queued = heartbeatProcessor.offer(heartbeat, now);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AmbariException("Interrupted while queueing the heartbeat from " + hostname, e);
+      }
+    }
 
-    // Examine heartbeart for component live status reports
-    processStatusReports(heartbeat, hostname, clusterFsm);
+    if (!queued) {
+      // Examine heartbeat for command reports
+      processCommandReports(heartbeat, hostname, clusterFsm, now);
 
-    // Calculate host status
-    // NOTE: This step must be after processing command/status reports
-    processHostStatus(heartbeat, hostname);
+      // Examine heartbeart for component live status reports
+      processStatusReports(heartbeat, hostname, clusterFsm);
 
-    // Example heartbeat for alerts from the host or its components
-    processAlerts(heartbeat, hostname);
+      // Calculate host status
+      // NOTE: This step must be after processing command/status reports
+      processHostStatus(heartbeat, hostname);
+
+      // Example heartbeat for alerts from the host or its components
+      processAlerts(heartbeat, hostname);
+    }
 
     // Send commands if node is active
     if (hostObject.getState().equals(HostState.HEALTHY)) {
@@ -422,6 +478,26 @@ public class HeartBeatHandler {
     }
     Collection<HostRoleCommand> commands = actionManager.getTasks(taskIds);
 
+    processCommandReports(heartbeat, hostname, clusterFsm, now, commands);
+  }
+
+  /**
+   * Processes the command reports of a heartbeat using tasks which have
+   * already been loaded.
+   *
+   * @param heartbeat   the heartbeat
+   * @param hostname    the host that the heartbeat is for
+   * @param clusterFsm  the clusters
+   * @param now         the time the heartbeat was received
+   * @param commands    the tasks, in the same order as the command reports
+   * @throws AmbariException
+   */
+  protected void processCommandReports(
+      HeartBeat heartbeat, String hostname, Clusters clusterFsm, long now,
+      Collection<HostRoleCommand> commands)
+      throws AmbariException {
+    List<CommandReport> reports = heartbeat.getReports();
+
     Iterator<HostRoleCommand> hostRoleCommandIterator = commands.iterator();
     for (CommandReport report : reports) {
 
@@ -446,6 +522,11 @@ public class HeartBeatHandler {
         ambariEventPublisher.publish(event);
       }
 
+      if (null == hostRoleCommand) {
+        LOG.warn("The task " + report.getTaskId() + " is invalid");
+        continue;
+      }
+
       // Skip sending events for command reports for ABORTed commands
       if (hostRoleCommand.getStatus() == HostRoleStatus.ABORTED) {
         continue;
@@ -27,11 +27,21 @@ import static org.apache.ambari.server.agent.ExecutionCommand.KeyNames.STACK_NAM
 import static org.apache.ambari.server.agent.ExecutionCommand.KeyNames.STACK_VERSION;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.actionmanager.ActionManager;
@@ -62,6 +72,12 @@ import com.google.inject.Injector;
 
 /**
  * Monitors the node state and heartbeats.
+ * <p/>
+ * Each sweep splits the hosts into shards that are checked in parallel by a
+ * pool of worker threads. The configurations sent with the status commands
+ * only depend on the config tags in effect for a host, so they are built
+ * once per distinct set of tags and reused by all components and hosts, and
+ * by later sweeps, until the tags change.
  */
 public class HeartbeatMonitor implements Runnable {
   private static Log LOG = LogFactory.getLog(HeartbeatMonitor.class);
@@ -75,6 +91,25 @@ public class HeartbeatMonitor implements Runnable {
   private final AmbariMetaInfo ambariMetaInfo;
   private final AmbariManagementController ambariManagementController;
   private final Configuration configuration;
+  private final int threadPoolSize;
+  private ExecutorService sweepExecutor = null;
+
+  /**
+   * Status command configurations built or used during the current sweep and
+   * during the previous sweep, keyed by cluster and config tags. Entries
+   * which are not used for a whole sweep are dropped.
+   */
+  private volatile ConcurrentMap<String, StatusConfigs> statusConfigs =
+      new ConcurrentHashMap<String, StatusConfigs>();
+  private volatile ConcurrentMap<String, StatusConfigs> previousStatusConfigs =
+      new ConcurrentHashMap<String, StatusConfigs>();
+
+  private final AtomicLong sweepCount = new AtomicLong();
+  private final AtomicLong totalSweepTime = new AtomicLong();
+  private final AtomicLong maxSweepTime = new AtomicLong();
+  private volatile long lastSweepTime = 0L;
+  private final AtomicLong statusConfigHits = new AtomicLong();
+  private final AtomicLong statusConfigMisses = new AtomicLong();
 
   public HeartbeatMonitor(Clusters clusters, ActionQueue aq, ActionManager am,
                           int threadWakeupInterval, Injector injector) {
@@ -87,6 +122,7 @@ public class HeartbeatMonitor implements Runnable {
     ambariManagementController = injector.getInstance(
             AmbariManagementController.class);
     configuration = injector.getInstance(Configuration.class);
+    threadPoolSize = Math.max(1, configuration.getHeartbeatMonitorThreadPoolSize());
   }
 
   public void shutdown() {
@@ -94,6 +130,18 @@ public class HeartbeatMonitor implements Runnable {
   }
 
   public void start() {
+    if (threadPoolSize > 1) {
+      final AtomicInteger threadCount = new AtomicInteger();
+      sweepExecutor = Executors.newFixedThreadPool(threadPoolSize, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "ambari-heartbeat-monitor-" +
+              threadCount.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
     monitorThread = new Thread(this);
     monitorThread.start();
   }
@@ -106,11 +154,54 @@ public class HeartbeatMonitor implements Runnable {
     return monitorThread.isAlive();
   }
 
+  /**
+   * @return the number of completed sweeps over all hosts
+   */
+  public long getSweepCount() {
+    return sweepCount.get();
+  }
+
+  /**
+   * @return the duration of the last sweep in milliseconds
+   */
+  public long getLastSweepTime() {
+    return lastSweepTime;
+  }
+
+  /**
+   * @return the duration of the longest sweep in milliseconds
+   */
+  public long getMaxSweepTime() {
+    return maxSweepTime.get();
+  }
+
+  /**
+   * @return the average duration of a sweep in milliseconds
+   */
+  public double getAverageSweepTime() {
+    long count = sweepCount.get();
+    return count == 0 ? 0 : totalSweepTime.get() / (double) count;
+  }
+
+  /**
+   * @return the number of times status command configurations were reused
+   */
+  public long getStatusConfigHitCount() {
+    return statusConfigHits.get();
+  }
+
+  /**
+   * @return the number of times status command configurations were built
+   */
+  public long getStatusConfigMissCount() {
+    return statusConfigMisses.get();
+  }
+
   @Override
   public void run() {
     while (shouldRun) {
       try {
-        doWork();
+        sweep();
         LOG.trace("Putting monitor to sleep for " + threadWakeupInterval + " " +
           "milliseconds");
         Thread.sleep(threadWakeupInterval);
@@ -123,71 +214,143 @@ public class HeartbeatMonitor implements Runnable {
         LOG.warn("ERROR", t);
       }
     }
+
+    if (sweepExecutor != null) {
+      sweepExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Checks all hosts, sharded over the worker threads, and records the sweep
+   * duration.
+   */
+  private void sweep() throws InterruptedException {
+    long start = System.currentTimeMillis();
+
+    // drop the configurations not used since the start of the previous sweep
+    previousStatusConfigs = statusConfigs;
+    statusConfigs = new ConcurrentHashMap<String, StatusConfigs>();
+
+    final List<Host> allHosts = clusters.getHosts();
+    final long now = System.currentTimeMillis();
+    int shardCount = sweepExecutor == null ? 1 :
+        Math.min(threadPoolSize, allHosts.size());
+
+    if (shardCount <= 1) {
+      doWork(allHosts, now);
+    } else {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(shardCount);
+      int shardSize = (allHosts.size() + shardCount - 1) / shardCount;
+      for (int from = 0; from < allHosts.size(); from += shardSize) {
+        final List<Host> shard = allHosts.subList(from,
+            Math.min(from + shardSize, allHosts.size()));
+        futures.add(sweepExecutor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            doWork(shard, now);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          LOG.warn("Exception received", e.getCause());
+        }
+      }
+    }
+
+    long elapsed = System.currentTimeMillis() - start;
+    lastSweepTime = elapsed;
+    sweepCount.incrementAndGet();
+    totalSweepTime.addAndGet(elapsed);
+    long max = maxSweepTime.get();
+    while (elapsed > max && !maxSweepTime.compareAndSet(max, elapsed)) {
+      max = maxSweepTime.get();
+    }
+
+    if (elapsed > threadWakeupInterval) {
+      LOG.warn("Heartbeat monitor sweep over " + allHosts.size() + " hosts took " +
+          elapsed + " ms, longer than the wakeup interval of " +
+          threadWakeupInterval + " ms");
+    } else if (LOG.isDebugEnabled()) {
+      LOG.debug("Heartbeat monitor sweep over " + allHosts.size() + " hosts took " +
+          elapsed + " ms (status config hits=" + statusConfigHits.get() +
+          ", misses=" + statusConfigMisses.get() + ")");
+    }
   }
 
-  //Go through all the nodes, check for last heartbeat or any waiting state
+  //Go through the nodes, check for last heartbeat or any waiting state
   //If heartbeat is lost, update node clusters state, purge the action queue
   //notify action manager for node failure.
-  private void doWork() throws InvalidStateTransitionException, AmbariException {
-    List<Host> allHosts = clusters.getHosts();
-    long now = System.currentTimeMillis();
-    for (Host hostObj : allHosts) {
-      String host = hostObj.getHostName();
-      HostState hostState = hostObj.getState();
-      String hostname = hostObj.getHostName();
-
-      long lastHeartbeat = 0;
+  private void doWork(List<Host> hosts, long now) {
+    for (Host hostObj : hosts) {
       try {
-        lastHeartbeat = clusters.getHost(host).getLastHeartbeatTime();
-      } catch (AmbariException e) {
-        LOG.warn("Exception in getting host object; Is it fatal?", e);
+        checkHost(hostObj, now);
+      } catch (Exception e) {
+        LOG.warn("Exception received while checking host " + hostObj.getHostName(), e);
       }
-      if (lastHeartbeat + 2 * threadWakeupInterval < now) {
-        LOG.warn("Heartbeat lost from host " + host);
-        //Heartbeat is expired
-        hostObj.handleEvent(new HostHeartbeatLostEvent(host));
-
-        // mark all components that are not clients with unknown status
-        for (Cluster cluster : clusters.getClustersForHost(hostObj.getHostName())) {
-          for (ServiceComponentHost sch : cluster.getServiceComponentHosts(hostObj.getHostName())) {
-            Service s = cluster.getService(sch.getServiceName());
-            ServiceComponent sc = s.getServiceComponent(sch.getServiceComponentName());
-            if (!sc.isClientComponent() &&
-              !sch.getState().equals(State.INIT) &&
-              !sch.getState().equals(State.INSTALLING) &&
-              !sch.getState().equals(State.INSTALL_FAILED) &&
-              !sch.getState().equals(State.UNINSTALLED) &&
-              !sch.getState().equals(State.DISABLED)) {
-              LOG.warn("Setting component state to UNKNOWN for component " + sc.getName() + " on " + host);
-              sch.setState(State.UNKNOWN);
-            }
+    }
+  }
+
+  private void checkHost(Host hostObj, long now)
+      throws InvalidStateTransitionException, AmbariException {
+    String host = hostObj.getHostName();
+    HostState hostState = hostObj.getState();
+    String hostname = hostObj.getHostName();
+
+    long lastHeartbeat = 0;
+    try {
+      lastHeartbeat = clusters.getHost(host).getLastHeartbeatTime();
+    } catch (AmbariException e) {
+      LOG.warn("Exception in getting host object; Is it fatal?", e);
+    }
+    if (lastHeartbeat + 2 * threadWakeupInterval < now) {
+      LOG.warn("Heartbeat lost from host " + host);
+      //Heartbeat is expired
+      hostObj.handleEvent(new HostHeartbeatLostEvent(host));
+
+      // mark all components that are not clients with unknown status
+      for (Cluster cluster : clusters.getClustersForHost(hostObj.getHostName())) {
+        for (ServiceComponentHost sch : cluster.getServiceComponentHosts(hostObj.getHostName())) {
+          Service s = cluster.getService(sch.getServiceName());
+          ServiceComponent sc = s.getServiceComponent(sch.getServiceComponentName());
+          if (!sc.isClientComponent() &&
+            !sch.getState().equals(State.INIT) &&
+            !sch.getState().equals(State.INSTALLING) &&
+            !sch.getState().equals(State.INSTALL_FAILED) &&
+            !sch.getState().equals(State.UNINSTALLED) &&
+            !sch.getState().equals(State.DISABLED)) {
+            LOG.warn("Setting component state to UNKNOWN for component " + sc.getName() + " on " + host);
+            sch.setState(State.UNKNOWN);
           }
         }
-
-        //Purge action queue
-        actionQueue.dequeueAll(host);
-        //notify action manager
-        actionManager.handleLostHost(host);
       }
-      if (hostState == HostState.WAITING_FOR_HOST_STATUS_UPDATES) {
-        long timeSpentInState = hostObj.getTimeInState();
-        if (timeSpentInState + 5 * threadWakeupInterval < now) {
-          //Go back to init, the agent will be asked to register again in the next heartbeat
-          LOG.warn("timeSpentInState + 5*threadWakeupInterval < now, Go back to init");
-          hostObj.setState(HostState.INIT);
-        }
+
+      //Purge action queue
+      actionQueue.dequeueAll(host);
+      //notify action manager
+      actionManager.handleLostHost(host);
+    }
+    if (hostState == HostState.WAITING_FOR_HOST_STATUS_UPDATES) {
+      long timeSpentInState = hostObj.getTimeInState();
+      if (timeSpentInState + 5 * threadWakeupInterval < now) {
+        //Go back to init, the agent will be asked to register again in the next heartbeat
+        LOG.warn("timeSpentInState + 5*threadWakeupInterval < now, Go back to init");
+        hostObj.setState(HostState.INIT);
       }
+    }
 
-      // Get status of service components
-      List<StatusCommand> cmds = generateStatusCommands(hostname);
-      LOG.trace("Generated " + cmds.size() + " status commands for host: " +
-        hostname);
-      if (cmds.isEmpty()) {
-        // Nothing to do
-      } else {
-        for (StatusCommand command : cmds) {
-          actionQueue.enqueue(hostname, command);
-        }
+    // Get status of service components
+    List<StatusCommand> cmds = generateStatusCommands(hostname);
+    LOG.trace("Generated " + cmds.size() + " status commands for host: " +
+      hostname);
+    if (cmds.isEmpty()) {
+      // Nothing to do
+    } else {
+      for (StatusCommand command : cmds) {
+        actionQueue.enqueue(hostname, command);
       }
     }
   }
@@ -200,6 +363,7 @@ public class HeartbeatMonitor implements Runnable {
     List<StatusCommand> cmds = new ArrayList<StatusCommand>();
 
     for (Cluster cl : clusters.getClustersForHost(hostname)) {
+      StatusConfigs configs = null;
       for (ServiceComponentHost sch : cl.getServiceComponentHosts(hostname)) {
         switch (sch.getState()) {
           case INIT:
@@ -207,7 +371,10 @@ public class HeartbeatMonitor implements Runnable {
             //don't send commands until component is installed at least
             continue;
           default:
-            StatusCommand statusCmd = createStatusCommand(hostname, cl, sch);
+            if (configs == null) {
+              configs = getStatusConfigs(hostname, cl);
+            }
+            StatusCommand statusCmd = createStatusCommand(hostname, cl, sch, configs);
             cmds.add(statusCmd);
         }
 
@@ -217,81 +384,119 @@ public class HeartbeatMonitor implements Runnable {
   }
 
   /**
-   * Generates status command and fills all apropriate fields.
-   * @throws AmbariException
+   * Gets the '*-env' configurations with the config group overrides of the
+   * host applied, building them only if no configurations were built from
+   * the same config tags.
    */
-  private StatusCommand createStatusCommand(String hostname, Cluster cluster,
-                               ServiceComponentHost sch) throws AmbariException {
-    String serviceName = sch.getServiceName();
-    String componentName = sch.getServiceComponentName();
-    StackId stackId = cluster.getDesiredStackVersion();
-    ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
-        stackId.getStackVersion(), serviceName);
-    ComponentInfo componentInfo = ambariMetaInfo.getComponent(
-            stackId.getStackName(), stackId.getStackVersion(),
-            serviceName, componentName);
-    StackInfo stackInfo = ambariMetaInfo.getStack(stackId.getStackName(),
-        stackId.getStackVersion());
+  private StatusConfigs getStatusConfigs(String hostname, Cluster cluster)
+      throws AmbariException {
+    List<Config> envConfigs = new ArrayList<Config>();
+    for (Config clusterConfig : cluster.getAllConfigs()) {
+      if (clusterConfig.getType().endsWith("-env")) {
+        envConfigs.add(clusterConfig);
+      }
+    }
+
+    Map<String, Map<String, String>> allConfigTags = configHelper
+        .getEffectiveDesiredTags(cluster, hostname);
+
+    // the key identifies every input of the configurations: the env config
+    // versions and the desired tags, including config group overrides
+    StringBuilder key = new StringBuilder(cluster.getClusterName());
+    for (Config clusterConfig : envConfigs) {
+      key.append('|').append(clusterConfig.getType()).append(':')
+          .append(clusterConfig.getTag()).append('=')
+          .append(allConfigTags.get(clusterConfig.getType()));
+    }
+    String cacheKey = key.toString();
+
+    ConcurrentMap<String, StatusConfigs> current = statusConfigs;
+    StatusConfigs configs = current.get(cacheKey);
+    if (configs == null) {
+      configs = previousStatusConfigs.get(cacheKey);
+      if (configs == null) {
+        statusConfigMisses.incrementAndGet();
+        configs = buildStatusConfigs(cluster, envConfigs, allConfigTags);
+      } else {
+        statusConfigHits.incrementAndGet();
+      }
+      current.putIfAbsent(cacheKey, configs);
+    } else {
+      statusConfigHits.incrementAndGet();
+    }
+    return configs;
+  }
+
+  private StatusConfigs buildStatusConfigs(Cluster cluster,
+      List<Config> envConfigs, Map<String, Map<String, String>> allConfigTags)
+      throws AmbariException {
 
     Map<String, Map<String, String>> configurations = new TreeMap<String, Map<String, String>>();
     Map<String, Map<String,  Map<String, String>>> configurationAttributes = new TreeMap<String, Map<String, Map<String, String>>>();
 
     // get the cluster config for type '*-env'
     // apply config group overrides
-    //Config clusterConfig = cluster.getDesiredConfigByType(GLOBAL);
-    Collection<Config> clusterConfigs = cluster.getAllConfigs();
-
-    for(Config clusterConfig: clusterConfigs) {
-      if(!clusterConfig.getType().endsWith("-env")) {
-        continue;
-      }
+    for (Config clusterConfig : envConfigs) {
+      // cluster config for 'global'
+      Map<String, String> props = new HashMap<String, String>(clusterConfig.getProperties());
 
-      if (clusterConfig != null) {
-        // cluster config for 'global'
-        Map<String, String> props = new HashMap<String, String>(clusterConfig.getProperties());
+      // Apply global properties for this host from all config groups
+      Map<String, Map<String, String>> configTags = new HashMap<String,
+              Map<String, String>>();
 
-        // Apply global properties for this host from all config groups
-        Map<String, Map<String, String>> allConfigTags = configHelper
-                .getEffectiveDesiredTags(cluster, hostname);
-
-        Map<String, Map<String, String>> configTags = new HashMap<String,
-                Map<String, String>>();
-
-        for (Map.Entry<String, Map<String, String>> entry : allConfigTags.entrySet()) {
-          if (entry.getKey().equals(clusterConfig.getType())) {
-            configTags.put(clusterConfig.getType(), entry.getValue());
-          }
-        }
+      Map<String, String> typeTags = allConfigTags.get(clusterConfig.getType());
+      if (typeTags != null) {
+        configTags.put(clusterConfig.getType(), typeTags);
+      }
 
-        Map<String, Map<String, String>> properties = configHelper
-                .getEffectiveConfigProperties(cluster, configTags);
+      Map<String, Map<String, String>> properties = configHelper
+              .getEffectiveConfigProperties(cluster, configTags);
 
-        if (!properties.isEmpty()) {
-          for (Map<String, String> propertyMap : properties.values()) {
-            props.putAll(propertyMap);
-          }
+      if (!properties.isEmpty()) {
+        for (Map<String, String> propertyMap : properties.values()) {
+          props.putAll(propertyMap);
         }
+      }
 
-        configurations.put(clusterConfig.getType(), props);
+      configurations.put(clusterConfig.getType(), props);
 
-        Map<String, Map<String, String>> attrs = new TreeMap<String, Map<String, String>>();
-        configHelper.cloneAttributesMap(clusterConfig.getPropertiesAttributes(), attrs);
+      Map<String, Map<String, String>> attrs = new TreeMap<String, Map<String, String>>();
+      configHelper.cloneAttributesMap(clusterConfig.getPropertiesAttributes(), attrs);
 
-        Map<String, Map<String, Map<String, String>>> attributes = configHelper
-            .getEffectiveConfigAttributes(cluster, configTags);
-        for (Map<String, Map<String, String>> attributesMap : attributes.values()) {
-          configHelper.cloneAttributesMap(attributesMap, attrs);
-        }
-        configurationAttributes.put(clusterConfig.getType(), attrs);
+      Map<String, Map<String, Map<String, String>>> attributes = configHelper
+          .getEffectiveConfigAttributes(cluster, configTags);
+      for (Map<String, Map<String, String>> attributesMap : attributes.values()) {
+        configHelper.cloneAttributesMap(attributesMap, attrs);
       }
+      configurationAttributes.put(clusterConfig.getType(), attrs);
     }
 
+    return new StatusConfigs(configurations, configurationAttributes);
+  }
+
+  /**
+   * Generates status command and fills all apropriate fields.
+   * @throws AmbariException
+   */
+  private StatusCommand createStatusCommand(String hostname, Cluster cluster,
+      ServiceComponentHost sch, StatusConfigs configs) throws AmbariException {
+    String serviceName = sch.getServiceName();
+    String componentName = sch.getServiceComponentName();
+    StackId stackId = cluster.getDesiredStackVersion();
+    ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
+        stackId.getStackVersion(), serviceName);
+    ComponentInfo componentInfo = ambariMetaInfo.getComponent(
+            stackId.getStackName(), stackId.getStackVersion(),
+            serviceName, componentName);
+    StackInfo stackInfo = ambariMetaInfo.getStack(stackId.getStackName(),
+        stackId.getStackVersion());
+
     StatusCommand statusCmd = new StatusCommand();
     statusCmd.setClusterName(cluster.getClusterName());
     statusCmd.setServiceName(serviceName);
     statusCmd.setComponentName(componentName);
-    statusCmd.setConfigurations(configurations);
-    statusCmd.setConfigurationAttributes(configurationAttributes);
+    statusCmd.setConfigurations(configs.configurations);
+    statusCmd.setConfigurationAttributes(configs.configurationAttributes);
     statusCmd.setHostname(hostname);
 
     // Fill command params
@@ -325,4 +530,20 @@ public class HeartbeatMonitor implements Runnable {
     return statusCmd;
   }
 
+
+  /**
+   * The configurations and configuration attributes sent with the status
+   * commands of a host. They are shared by many commands and are not
+   * modified once built.
+   */
+  private static final class StatusConfigs {
+    private final Map<String, Map<String, String>> configurations;
+    private final Map<String, Map<String, Map<String, String>>> configurationAttributes;
+
+    private StatusConfigs(Map<String, Map<String, String>> configurations,
+        Map<String, Map<String, Map<String, String>>> configurationAttributes) {
+      this.configurations = Collections.unmodifiableMap(configurations);
+      this.configurationAttributes = Collections.unmodifiableMap(configurationAttributes);
+    }
+  }
 }
@@ -0,0 +1,407 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.actionmanager.ActionManager;
+import org.apache.ambari.server.actionmanager.HostRoleCommand;
+import org.apache.ambari.server.state.Clusters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link HeartbeatProcessor} takes the expensive parts of heartbeat
+ * handling (command reports, component status reports, host status and alerts)
+ * off of the agent request thread. Heartbeats are sharded by host name across a
+ * fixed number of worker threads so that heartbeats from the same host are
+ * always processed in the order in which they were received. Each worker
+ * drains its queue in micro-batches so that task lookups for all hosts in the
+ * batch are done with a single call to the {@link ActionManager}.
+ * <p/>
+ * Each worker queue is bounded. When a queue is full,
+ * {@link #offer(HeartBeat, long)} waits for room on the request thread, which
+ * pushes back on the agents. A heartbeat is never processed ahead of the
+ * heartbeats already queued for its host: once the processor is shut down,
+ * {@link #offer(HeartBeat, long)} waits for the worker of the host to drain
+ * its queue before handing the heartbeat back to be processed inline.
+ */
+public class HeartbeatProcessor {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(HeartbeatProcessor.class);
+
+  /**
+   * The stages of heartbeat processing which are timed.
+   */
+  public enum Stage {
+    QUEUE_WAIT,
+    COMMAND_REPORTS,
+    STATUS_REPORTS,
+    HOST_STATUS,
+    ALERTS
+  }
+
+  private final HeartBeatHandler heartBeatHandler;
+  private final Clusters clusters;
+  private final ActionManager actionManager;
+  private final int batchSize;
+  private final Worker[] workers;
+
+  /**
+   * Metrics, indexed by {@link Stage#ordinal()}.
+   */
+  private final AtomicLong[] stageNanos = new AtomicLong[Stage.values().length];
+  private final AtomicLong[] stageCounts = new AtomicLong[Stage.values().length];
+  private final AtomicLong processedCount = new AtomicLong();
+  private final AtomicLong batchCount = new AtomicLong();
+  private final AtomicLong blockedCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param heartBeatHandler  the handler which performs the processing
+   * @param clusters          the clusters
+   * @param actionManager     used to look up tasks for a batch at once
+   * @param threadCount       the number of worker threads
+   * @param queueSize         the total number of heartbeats which may be queued
+   * @param batchSize         the maximum number of heartbeats per batch
+   */
+  public HeartbeatProcessor(HeartBeatHandler heartBeatHandler,
+      Clusters clusters, ActionManager actionManager, int threadCount, int queueSize,
+      int batchSize) {
+    this.heartBeatHandler = heartBeatHandler;
+    this.clusters = clusters;
+    this.actionManager = actionManager;
+    this.batchSize = Math.max(1, batchSize);
+
+    for (int i = 0; i < stageNanos.length; i++) {
+      stageNanos[i] = new AtomicLong();
+      stageCounts[i] = new AtomicLong();
+    }
+
+    int workerCount = Math.max(1, threadCount);
+    int workerQueueSize = Math.max(1, queueSize / workerCount);
+
+    workers = new Worker[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      workers[i] = new Worker(i, workerQueueSize);
+    }
+  }
+
+  /**
+   * Starts the worker threads.
+   */
+  public void start() {
+    for (Worker worker : workers) {
+      worker.start();
+    }
+  }
+
+  /**
+   * Stops the worker threads. Heartbeats which are already queued are
+   * processed before the workers exit.
+   *
+   * @param timeout  the time to wait for the workers to exit, in milliseconds
+   */
+  public void shutdown(long timeout) throws InterruptedException {
+    for (Worker worker : workers) {
+      worker.shutdown();
+    }
+
+    long deadline = System.currentTimeMillis() + timeout;
+    for (Worker worker : workers) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining > 0) {
+        worker.thread.join(remaining);
+      }
+      if (worker.thread.isAlive()) {
+        LOG.warn("{} did not stop, {} heartbeats not processed",
+            worker.thread.getName(), worker.queue.size());
+      }
+    }
+  }
+
+  /**
+   * Queues a heartbeat for asynchronous processing. If the queue for the host
+   * is full, waits until there is room.
+   *
+   * @param heartbeat     the heartbeat
+   * @param receivedTime  the time the heartbeat was received
+   * @return {@code true} if the heartbeat was queued, {@code false} if the
+   *         processor is shut down and the caller must process it inline. In
+   *         that case the heartbeats queued before it have been processed.
+   * @throws InterruptedException if interrupted while waiting for room or for
+   *         the queue to drain
+   */
+  public boolean offer(HeartBeat heartbeat, long receivedTime) throws InterruptedException {
+    Worker worker = workers[(heartbeat.getHostname().hashCode() & Integer.MAX_VALUE) % workers.length];
+    QueuedHeartBeat queued = new QueuedHeartBeat(heartbeat, receivedTime);
+
+    if (!worker.shouldRun) {
+      worker.awaitDrained();
+      return false;
+    }
+
+    if (!worker.queue.offer(queued)) {
+      blockedCount.incrementAndGet();
+      while (!worker.queue.offer(queued, 1, TimeUnit.SECONDS)) {
+        if (!worker.shouldRun) {
+          worker.awaitDrained();
+          return false;
+        }
+      }
+    }
+
+    // the worker may have been shut down and have exited before the
+    // heartbeat was queued, in which case nobody will take it
+    if (!worker.shouldRun) {
+      worker.awaitDrained();
+      if (worker.queue.remove(queued)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * @return the number of heartbeats currently waiting in all queues.
+   */
+  public int getQueueDepth() {
+    int depth = 0;
+    for (Worker worker : workers) {
+      depth += worker.queue.size();
+    }
+    return depth;
+  }
+
+  /**
+   * @return the number of heartbeats which have been processed.
+   */
+  public long getProcessedCount() {
+    return processedCount.get();
+  }
+
+  /**
+   * @return the number of batches which have been processed.
+   */
+  public long getBatchCount() {
+    return batchCount.get();
+  }
+
+  /**
+   * @return the number of heartbeats which had to wait for room in a full
+   *         queue.
+   */
+  public long getBlockedCount() {
+    return blockedCount.get();
+  }
+
+  /**
+   * @return the number of heartbeats whose processing failed.
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * Gets the average latency of a processing stage.
+   *
+   * @param stage  the stage
+   * @return the average latency in milliseconds, or {@code 0} if the stage has
+   *         not run yet.
+   */
+  public double getAverageLatency(Stage stage) {
+    long count = stageCounts[stage.ordinal()].get();
+    if (count == 0) {
+      return 0;
+    }
+
+    return stageNanos[stage.ordinal()].get() / (double) count / 1000000d;
+  }
+
+  /**
+   * Processes a batch of heartbeats. Tasks referenced by all command reports
+   * in the batch are loaded at once before the per-host processing starts.
+   *
+   * @param batch  the heartbeats to process
+   */
+  void processBatch(List<QueuedHeartBeat> batch) {
+    long start = System.nanoTime();
+    for (QueuedHeartBeat queued : batch) {
+      stageNanos[Stage.QUEUE_WAIT.ordinal()].addAndGet(start - queued.queuedNanos);
+      stageCounts[Stage.QUEUE_WAIT.ordinal()].incrementAndGet();
+    }
+
+    List<Long> taskIds = new ArrayList<Long>();
+    for (QueuedHeartBeat queued : batch) {
+      for (CommandReport report : queued.heartbeat.getReports()) {
+        taskIds.add(report.getTaskId());
+      }
+    }
+
+    Map<Long, HostRoleCommand> tasks = new HashMap<Long, HostRoleCommand>();
+    if (!taskIds.isEmpty()) {
+      for (HostRoleCommand command : actionManager.getTasks(taskIds)) {
+        tasks.put(command.getTaskId(), command);
+      }
+    }
+
+    for (QueuedHeartBeat queued : batch) {
+      HeartBeat heartbeat = queued.heartbeat;
+      String hostname = heartbeat.getHostname();
+      try {
+        List<HostRoleCommand> commands = new ArrayList<HostRoleCommand>(
+            heartbeat.getReports().size());
+        for (CommandReport report : heartbeat.getReports()) {
+          commands.add(tasks.get(report.getTaskId()));
+        }
+
+        start = System.nanoTime();
+        heartBeatHandler.processCommandReports(heartbeat, hostname, clusters,
+            queued.receivedTime, commands);
+        start = record(Stage.COMMAND_REPORTS, start);
+
+        processRemaining(heartbeat, start);
+      } catch (Exception e) {
+        failedCount.incrementAndGet();
+        LOG.warn("Unable to process heartbeat from host " + hostname, e);
+      }
+    }
+
+    batchCount.incrementAndGet();
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Processed a batch of {} heartbeats, {} still queued",
+          batch.size(), getQueueDepth());
+    }
+  }
+
+  /**
+   * Runs the stages which follow command report processing.
+   */
+  private void processRemaining(HeartBeat heartbeat, long start)
+      throws AmbariException {
+    String hostname = heartbeat.getHostname();
+
+    heartBeatHandler.processStatusReports(heartbeat, hostname, clusters);
+    start = record(Stage.STATUS_REPORTS, start);
+
+    // NOTE: This step must be after processing command/status reports
+    heartBeatHandler.processHostStatus(heartbeat, hostname);
+    start = record(Stage.HOST_STATUS, start);
+
+    heartBeatHandler.processAlerts(heartbeat, hostname);
+    record(Stage.ALERTS, start);
+
+    processedCount.incrementAndGet();
+  }
+
+  /**
+   * Records the time spent in a stage.
+   *
+   * @return the current time, to be used as the start of the next stage
+   */
+  private long record(Stage stage, long start) {
+    long now = System.nanoTime();
+    stageNanos[stage.ordinal()].addAndGet(now - start);
+    stageCounts[stage.ordinal()].incrementAndGet();
+    return now;
+  }
+
+  /**
+   * A heartbeat waiting to be processed.
+   */
+  static final class QueuedHeartBeat {
+    private final HeartBeat heartbeat;
+    private final long receivedTime;
+    private final long queuedNanos = System.nanoTime();
+
+    QueuedHeartBeat(HeartBeat heartbeat, long receivedTime) {
+      this.heartbeat = heartbeat;
+      this.receivedTime = receivedTime;
+    }
+  }
+
+  /**
+   * A worker thread which owns one shard of the hosts.
+   */
+  private final class Worker implements Runnable {
+    private final BlockingQueue<QueuedHeartBeat> queue;
+    private final Thread thread;
+    private volatile boolean shouldRun = true;
+
+    private Worker(int index, int queueSize) {
+      queue = new ArrayBlockingQueue<QueuedHeartBeat>(queueSize);
+      thread = new Thread(this, "ambari-heartbeat-processor-" + index);
+      thread.setDaemon(true);
+    }
+
+    private void start() {
+      thread.start();
+    }
+
+    private void shutdown() {
+      shouldRun = false;
+    }
+
+    /**
+     * Waits for the worker to exit once it is shut down, which it does
+     * after processing its queue.
+     */
+    private void awaitDrained() throws InterruptedException {
+      thread.join();
+    }
+
+    @Override
+    public void run() {
+      List<QueuedHeartBeat> batch = new ArrayList<QueuedHeartBeat>(batchSize);
+      while (shouldRun || !queue.isEmpty()) {
+        try {
+          QueuedHeartBeat first = queue.poll(1, TimeUnit.SECONDS);
+          if (null == first) {
+            continue;
+          }
+
+          batch.add(first);
+          queue.drainTo(batch, batchSize - 1);
+          processBatch(batch);
+        } catch (InterruptedException e) {
+          LOG.warn("Heartbeat processor thread interrupted, stopping", e);
+          return;
+        } catch (Exception e) {
+          LOG.error("Unexpected exception while processing heartbeats", e);
+        } finally {
+          batch.clear();
+        }
+      }
+    }
+  }
+}
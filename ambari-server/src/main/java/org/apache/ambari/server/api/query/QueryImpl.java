@@ -18,13 +18,16 @@
 
 package org.apache.ambari.server.api.query;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.ambari.server.api.query.render.DefaultRenderer;
 import org.apache.ambari.server.api.query.render.Renderer;
@@ -40,6 +43,7 @@ import org.apache.ambari.server.api.util.TreeNodeImpl;
 import org.apache.ambari.server.controller.internal.QueryResponseImpl;
 import org.apache.ambari.server.controller.predicate.AndPredicate;
 import org.apache.ambari.server.controller.predicate.EqualsPredicate;
+import org.apache.ambari.server.controller.predicate.OrPredicate;
 import org.apache.ambari.server.controller.spi.ClusterController;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
@@ -163,6 +167,13 @@ public class QueryImpl implements Query, ResourceInstance {
   private final static Logger LOG =
       LoggerFactory.getLogger(QueryImpl.class);
 
+  /**
+   * The maximum number of parent resources whose sub-resources are queried
+   * from the resource provider with a single predicate.  Larger batches mean
+   * fewer provider calls but larger predicates to evaluate for each resource.
+   */
+  private static final int SUB_RESOURCE_BATCH_SIZE = 500;
+
 
   // ----- Constructor -------------------------------------------------------
 
@@ -423,22 +434,43 @@ public class QueryImpl implements Query, ResourceInstance {
       Request       request             = subResource.createRequest();
       Set<Resource> providerResourceSet = new HashSet<Resource>();
 
+      Map<Resource, Map<Resource.Type, String>> parentKeyValueMaps =
+          new LinkedHashMap<Resource, Map<Resource.Type, String>>();
+
       for (QueryResult queryResult : populatedQueryResults.values()) {
         for (Resource resource : queryResult.getQueryResponse().getResources()) {
-          Map<Resource.Type, String> map = getKeyValueMap(resource, queryResult.getKeyValueMap());
+          parentKeyValueMaps.put(resource, getKeyValueMap(resource, queryResult.getKeyValueMap()));
+        }
+      }
 
-          Predicate     queryPredicate = subResource.createPredicate(map, subResource.processedPredicate);
-          Set<Resource> resourceSet    = new LinkedHashSet<Resource>();
+      List<Resource> parents = new ArrayList<Resource>(parentKeyValueMaps.keySet());
 
-          try {
-            Set<Resource> queryResources =
-                subResource.doQuery(resourceType, request, queryPredicate, false).getResources();
+      for (int start = 0; start < parents.size(); start += SUB_RESOURCE_BATCH_SIZE) {
+        List<Resource> batch =
+            parents.subList(start, Math.min(parents.size(), start + SUB_RESOURCE_BATCH_SIZE));
 
-            providerResourceSet.addAll(queryResources);
-            resourceSet.addAll(queryResources);
-          } catch (NoSuchResourceException e) {
-            // do nothing ...
+        // query for the sub-resources of all of the parents in the batch at once if possible
+        Map<Resource, Set<Resource>> batchResources = batch.size() > 1 ?
+            subResource.doBatchQuery(resourceType, request, batch, parentKeyValueMaps) : null;
+
+        for (Resource resource : batch) {
+          Map<Resource.Type, String> map = parentKeyValueMaps.get(resource);
+
+          Predicate     queryPredicate = subResource.createPredicate(map, subResource.processedPredicate);
+          Set<Resource> resourceSet;
+
+          if (batchResources == null) {
+            resourceSet = new LinkedHashSet<Resource>();
+            try {
+              resourceSet.addAll(subResource.doQuery(resourceType, request, queryPredicate, false).getResources());
+            } catch (NoSuchResourceException e) {
+              // do nothing ...
+            }
+          } else {
+            resourceSet = batchResources.get(resource);
           }
+          providerResourceSet.addAll(resourceSet);
+
           subResource.queryResults.put(resource,
               new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
           subResource.populatedQueryResults.put(resource,
@@ -450,6 +482,110 @@ public class QueryImpl implements Query, ResourceInstance {
     }
   }
 
+  /**
+   * Query the cluster controller for the resources of this query that belong to
+   * any of the given parent resources using a single predicate, and partition
+   * the results back to the parents by their key property values.
+   *
+   * @param type                the resource type
+   * @param request             the request information
+   * @param parents             the parent resources
+   * @param parentKeyValueMaps  the key value maps of the parent resources
+   *
+   * @return the resources keyed by parent resource; null if the parents can't
+   *         be queried together, in which case each parent should be queried
+   *         on its own
+   */
+  private Map<Resource, Set<Resource>> doBatchQuery(Resource.Type type, Request request,
+                                                    List<Resource> parents,
+                                                    Map<Resource, Map<Resource.Type, String>> parentKeyValueMaps)
+      throws UnsupportedPropertyException,
+      SystemException,
+      NoSuchParentResourceException {
+
+    Schema schema = clusterController.getSchema(type);
+
+    List<String>              keyPropertyIds = null;
+    Map<List<String>, Resource> parentsByKey = new HashMap<List<String>, Resource>();
+    Predicate[]               keyPredicates  = new Predicate[parents.size()];
+
+    int i = 0;
+    for (Resource parent : parents) {
+      Map<String, String> keyPropertyValues = new TreeMap<String, String>();
+      for (Map.Entry<Resource.Type, String> entry : parentKeyValueMaps.get(parent).entrySet()) {
+        String keyPropertyId = schema.getKeyPropertyId(entry.getKey());
+        if (keyPropertyId != null && entry.getValue() != null) {
+          keyPropertyValues.put(keyPropertyId, entry.getValue());
+        }
+      }
+
+      // all of the parents must be identified by the same key properties
+      List<String> propertyIds = new ArrayList<String>(keyPropertyValues.keySet());
+      if (propertyIds.isEmpty() || (keyPropertyIds != null && !keyPropertyIds.equals(propertyIds))) {
+        return null;
+      }
+      keyPropertyIds = propertyIds;
+
+      if (parentsByKey.put(new ArrayList<String>(keyPropertyValues.values()), parent) != null) {
+        return null;
+      }
+
+      keyPredicates[i++] = createInternalPredicate(parentKeyValueMaps.get(parent));
+    }
+
+    // the resources can only be partitioned back to the parents by their key
+    // property values, so don't query at all if those are not requested
+    Set<String> requestPropertyIds = request.getPropertyIds();
+    if (requestPropertyIds != null && !requestPropertyIds.isEmpty()) {
+      for (String keyPropertyId : keyPropertyIds) {
+        if (!PropertyHelper.containsProperty(requestPropertyIds, keyPropertyId)) {
+          return null;
+        }
+      }
+    }
+
+    Predicate predicate = new OrPredicate(keyPredicates);
+    if (processedPredicate != null) {
+      predicate = new AndPredicate(processedPredicate, predicate);
+    }
+
+    Set<Resource> queryResources;
+    try {
+      queryResources = doQuery(type, request, predicate, false).getResources();
+    } catch (NoSuchResourceException e) {
+      // let each parent handle the exception on its own
+      return null;
+    }
+
+    Map<Resource, Set<Resource>> resources = new HashMap<Resource, Set<Resource>>();
+    for (Resource parent : parents) {
+      resources.put(parent, new LinkedHashSet<Resource>());
+    }
+
+    for (Resource resource : queryResources) {
+      List<String> key = new ArrayList<String>(keyPropertyIds.size());
+      for (String keyPropertyId : keyPropertyIds) {
+        Object value = resource.getPropertyValue(keyPropertyId);
+        if (value == null) {
+          // the provider didn't set a requested key property; the resource
+          // can't be matched to a parent
+          return null;
+        }
+        key.add(value.toString());
+      }
+
+      Resource parent = parentsByKey.get(key);
+      if (parent != null) {
+        resources.get(parent).add(resource);
+      }
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Queried " + type + " resources for " + parents.size() + " parent resources at once");
+    }
+    return resources;
+  }
+
   /**
    * Query the cluster controller for the resources.
    *
@@ -52,6 +52,7 @@ import org.apache.ambari.server.orm.entities.AlertDefinitionEntity;
 import org.apache.ambari.server.orm.entities.MetainfoEntity;
 import org.apache.ambari.server.stack.StackContext;
 import org.apache.ambari.server.stack.StackDirectory;
+import org.apache.ambari.server.stack.StackIndex;
 import org.apache.ambari.server.stack.StackManager;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
@@ -137,6 +138,8 @@ public class AmbariMetaInfo {
   private File commonServicesRoot;
   private File serverVersionFile;
   private File customActionRoot;
+  private int stackParseThreads;
+  private File stackSnapshotFile;
 
   @Inject
   private MetainfoDAO metaInfoDAO;
@@ -204,6 +207,11 @@ public class AmbariMetaInfo {
     }
     serverVersionFile = new File(serverVersionFilePath);
     customActionRoot = new File(conf.getCustomActionDefinitionPath());
+    stackParseThreads = conf.getStackParseThreads();
+    String stackSnapshotFilePath = conf.getStackSnapshotFilePath();
+    if (stackSnapshotFilePath != null && !stackSnapshotFilePath.isEmpty()) {
+      stackSnapshotFile = new File(stackSnapshotFilePath);
+    }
     os_family = new OsFamily(conf);
     ALL_SUPPORTED_OS = new ArrayList<String>(os_family.os_list());
   }
@@ -225,7 +233,7 @@ public class AmbariMetaInfo {
     ALL_SUPPORTED_OS = new ArrayList<String>(os_family.os_list());
     readServerVersion();
     stackManager = new StackManager(stackRoot,commonServicesRoot,
-        new StackContext(metaInfoDAO, actionMetadata, os_family));
+        new StackContext(metaInfoDAO, actionMetadata, os_family), stackParseThreads, stackSnapshotFile);
     getCustomActionDefinitions(customActionRoot);
   }
 
@@ -446,19 +454,13 @@ public class AmbariMetaInfo {
           + ", stackVersion=" + version
           + ", componentName=" + componentName);
     }
-    Map<String, ServiceInfo> services = getServices(stackName, version);
-    String retService = null;
-    if (services == null || services.isEmpty()) {
-      return retService;
-    }
-    for (Map.Entry<String, ServiceInfo> entry : services.entrySet()) {
-      ComponentInfo vu = entry.getValue().getComponentByName(componentName);
-      if(vu != null){
-        retService = entry.getKey();
-        break;
-      }
+    StackIndex index;
+    try {
+      index = getStackIndex(stackName, version);
+    } catch (StackAccessException e) {
+      throw new ParentObjectNotFoundException("Parent Stack Version resource doesn't exist", e);
     }
-    return retService;
+    return index.getServiceForComponent(componentName);
   }
 
   /**
@@ -580,22 +582,13 @@ public class AmbariMetaInfo {
 
   public Set<PropertyInfo> getPropertiesByName(String stackName, String version, String serviceName, String propertyName)
       throws AmbariException {
-    Set<PropertyInfo> properties = getServiceProperties(stackName, version, serviceName);
-
-    if (properties.size() == 0) {
-      throw new StackAccessException("stackName=" + stackName
-          + ", stackVersion=" + version
-          + ", serviceName=" + serviceName
-          + ", propertyName=" + propertyName);
+    StackIndex index = getStackIndex(stackName, version);
+    if (!index.hasService(serviceName)) {
+      throw new StackAccessException("stackName=" + stackName + ", stackVersion=" +
+                                     version + ", serviceName=" + serviceName);
     }
 
-    Set<PropertyInfo> propertyResult = new HashSet<PropertyInfo>();
-
-    for (PropertyInfo property : properties) {
-      if (property.getName().equals(propertyName)) {
-        propertyResult.add(property);
-      }
-    }
+    Set<PropertyInfo> propertyResult = index.getServicePropertiesByName(serviceName, propertyName);
 
     if (propertyResult.isEmpty()) {
       throw new StackAccessException("stackName=" + stackName
@@ -604,26 +597,12 @@ public class AmbariMetaInfo {
           + ", propertyName=" + propertyName);
     }
 
-    return propertyResult;
+    return new HashSet<PropertyInfo>(propertyResult);
   }
 
   public Set<PropertyInfo> getStackPropertiesByName(String stackName, String version, String propertyName)
       throws AmbariException {
-    Set<PropertyInfo> properties = getStackProperties(stackName, version);
-
-    if (properties.size() == 0) {
-      throw new StackAccessException("stackName=" + stackName
-          + ", stackVersion=" + version
-          + ", propertyName=" + propertyName);
-    }
-
-    Set<PropertyInfo> propertyResult = new HashSet<PropertyInfo>();
-
-    for (PropertyInfo property : properties) {
-      if (property.getName().equals(propertyName)) {
-        propertyResult.add(property);
-      }
-    }
+    Set<PropertyInfo> propertyResult = getStackIndex(stackName, version).getStackPropertiesByName(propertyName);
 
     if (propertyResult.isEmpty()) {
       throw new StackAccessException("stackName=" + stackName
@@ -631,7 +610,23 @@ public class AmbariMetaInfo {
           + ", propertyName=" + propertyName);
     }
 
-    return propertyResult;
+    return new HashSet<PropertyInfo>(propertyResult);
+  }
+
+  /**
+   * Get the lookup index of a stack, used to find the properties of a stack
+   * by name, config type or property type and the service of a component
+   * without scanning the stack definition.
+   *
+   * @param stackName  the stack name
+   * @param version    the stack version
+   * @return the index of the stack
+   * @throws AmbariException if the stack is not found
+   */
+  public StackIndex getStackIndex(String stackName, String version) throws AmbariException {
+    StackInfo stack = getStack(stackName, version);
+    StackIndex index = stackManager.getStackIndex(stackName, version);
+    return index != null ? index : new StackIndex(stack);
   }
 
 
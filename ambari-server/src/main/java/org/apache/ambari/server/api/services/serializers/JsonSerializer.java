@@ -21,116 +21,139 @@ package org.apache.ambari.server.api.services.serializers;
 import org.apache.ambari.server.api.services.ResultStatus;
 import org.apache.ambari.server.api.services.Result;
 import org.apache.ambari.server.api.util.TreeNodeImpl;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.api.util.TreeNode;
+import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 import org.codehaus.jackson.util.DefaultPrettyPrinter;
 
+import javax.ws.rs.core.StreamingOutput;
 import java.io.*;
-import java.nio.charset.Charset;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * JSON serializer.
  * Responsible for representing a result as JSON.
+ * <p/>
+ * The serialized result is a {@link StreamingOutput} which writes the JSON
+ * straight to the response output stream as the result tree is traversed,
+ * instead of building the whole body in memory first. Its {@code toString()}
+ * returns the JSON as a string for callers that need one.
  */
 public class JsonSerializer implements ResultSerializer {
 
   /**
    * Factory used to create JSON generator.
    */
-  JsonFactory m_factory = new JsonFactory();
+  private static final JsonFactory s_factory = new JsonFactory();
 
-  ObjectMapper m_mapper = new ObjectMapper(m_factory);
+  private static final ObjectMapper s_mapper = new ObjectMapper(s_factory);
 
   /**
-   * Generator which writes JSON.
+   * Whether serializers created with the default constructor pretty print.
    */
-  JsonGenerator m_generator;
+  private static volatile boolean s_prettyPrint = true;
 
+  static {
+    // the response stream is closed by the container, and is only flushed
+    // when the generator's buffer is full instead of after every property
+    s_factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    s_mapper.configure(SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
+  }
 
-  @Override
-  public Object serialize(Result result) {
-    try {
-      ByteArrayOutputStream bytesOut = init();
+  /**
+   * Whether the JSON is pretty printed.
+   */
+  private final boolean m_prettyPrint;
 
-      if (result.getStatus().isErrorState()) {
-        return serializeError(result.getStatus());
-      }
+  /**
+   * Constructor. The JSON is pretty printed unless it was disabled with
+   * {@link #init(Configuration)}.
+   */
+  public JsonSerializer() {
+    this(s_prettyPrint);
+  }
 
-      TreeNode<Resource> treeNode = result.getResultTree();
-      processNode(treeNode);
+  /**
+   * Constructor.
+   *
+   * @param prettyPrint  whether the JSON is pretty printed
+   */
+  public JsonSerializer(boolean prettyPrint) {
+    m_prettyPrint = prettyPrint;
+  }
 
-      m_generator.close();
-      return bytesOut.toString("UTF-8");
-    } catch (IOException e) {
-      //todo: exception handling.  Create ResultStatus 500 and call serializeError
-      throw new RuntimeException("Unable to serialize to json: " + e, e);
-    }
+  /**
+   * Static initialization.
+   *
+   * @param configuration  the server configuration
+   */
+  public static void init(Configuration configuration) {
+    s_prettyPrint = configuration.isApiPrettyPrintEnabled();
   }
 
   @Override
-  public Object serializeError(ResultStatus error) {
-    try {
-      ByteArrayOutputStream bytesOut = init();
-      //m_mapper.writeValue(m_generator, error);
-      m_generator.writeStartObject();
-      m_generator.writeNumberField("status", error.getStatus().getStatus());
-      m_generator.writeStringField("message", error.getMessage());
-      m_generator.writeEndObject();
-      m_generator.close();
-      return bytesOut.toString("UTF-8");
-
-    } catch (IOException e) {
-      //todo: exception handling
-      throw new RuntimeException("Unable to serialize to json: " + e, e);
+  public Object serialize(final Result result) {
+    if (result.getStatus().isErrorState()) {
+      return serializeError(result.getStatus());
     }
-  }
-
-  private ByteArrayOutputStream init() throws IOException {
-    ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-    m_generator = createJsonGenerator(bytesOut);
 
-    DefaultPrettyPrinter p = new DefaultPrettyPrinter();
-    p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
-    m_generator.setPrettyPrinter(p);
+    return new JsonOutput() {
+      @Override
+      protected void writeJson(JsonGenerator generator) throws IOException {
+        processNode(generator, result.getResultTree());
+      }
+    };
+  }
 
-    return bytesOut;
+  @Override
+  public Object serializeError(final ResultStatus error) {
+    return new JsonOutput() {
+      @Override
+      protected void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("status", error.getStatus().getStatus());
+        generator.writeStringField("message", error.getMessage());
+        generator.writeEndObject();
+      }
+    };
   }
 
-  private void processNode(TreeNode<Resource> node) throws IOException {
+  private void processNode(JsonGenerator generator, TreeNode<Resource> node) throws IOException {
     if (isObject(node)) {
-      m_generator.writeStartObject();
+      generator.writeStartObject();
 
-      writeHref(node);
-      writeItemCount(node);
+      writeHref(generator, node);
+      writeItemCount(generator, node);
 
       Resource r = node.getObject();
       if (r != null) {
-        handleResourceProperties(getTreeProperties(r.getPropertiesMap()));
+        handleResourceProperties(generator, getTreeProperties(r.getPropertiesMap()));
       }
     }
 
     if (isArray(node)) {
       if (node.getName() != null)
-        m_generator.writeArrayFieldStart(node.getName());
+        generator.writeArrayFieldStart(node.getName());
       else
-        m_generator.writeStartArray();
+        generator.writeStartArray();
     }
 
     for (TreeNode<Resource> child : node.getChildren()) {
-      processNode(child);
+      processNode(generator, child);
     }
 
     if (isArray(node)) {
-      m_generator.writeEndArray();
+      generator.writeEndArray();
     }
 
     if (isObject(node)) {
-      m_generator.writeEndObject();
+      generator.writeEndObject();
     }
   }
 
@@ -180,52 +203,77 @@ public class JsonSerializer implements ResultSerializer {
     return treeProperties;
   }
 
-  private void handleResourceProperties(TreeNode<Map<String, Object>> node) throws IOException {
+  private void handleResourceProperties(JsonGenerator generator, TreeNode<Map<String, Object>> node) throws IOException {
     String category = node.getName();
 
     if (category != null) {
-      m_generator.writeFieldName(category);
-      m_generator.writeStartObject();
+      generator.writeFieldName(category);
+      generator.writeStartObject();
     }
 
     for (Map.Entry<String, Object> entry : node.getObject().entrySet()) {
-      m_generator.writeFieldName(entry.getKey());
-      m_mapper.writeValue(m_generator, entry.getValue());
+      generator.writeFieldName(entry.getKey());
+      s_mapper.writeValue(generator, entry.getValue());
     }
 
     for (TreeNode<Map<String, Object>> n : node.getChildren()) {
-      handleResourceProperties(n);
+      handleResourceProperties(generator, n);
     }
 
     if (category != null) {
-      m_generator.writeEndObject();
+      generator.writeEndObject();
     }
   }
 
-  private JsonGenerator createJsonGenerator(ByteArrayOutputStream baos) throws IOException {
-    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(baos,
-        Charset.forName("UTF-8").newEncoder()));
+  private JsonGenerator initGenerator(JsonGenerator generator) {
+    if (m_prettyPrint) {
+      DefaultPrettyPrinter p = new DefaultPrettyPrinter();
+      p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
+      generator.setPrettyPrinter(p);
+    }
+    return generator;
+  }
 
-    DefaultPrettyPrinter p = new DefaultPrettyPrinter();
-    p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
-    generator.setPrettyPrinter(p);
+  /**
+   * JSON which is written when the response entity is written.
+   */
+  private abstract class JsonOutput implements StreamingOutput {
 
-    return generator;
+    protected abstract void writeJson(JsonGenerator generator) throws IOException;
+
+    @Override
+    public void write(OutputStream out) throws IOException {
+      JsonGenerator generator = initGenerator(s_factory.createJsonGenerator(out, JsonEncoding.UTF8));
+      writeJson(generator);
+      generator.close();
+    }
+
+    @Override
+    public String toString() {
+      try {
+        StringWriter writer = new StringWriter();
+        JsonGenerator generator = initGenerator(s_factory.createJsonGenerator(writer));
+        writeJson(generator);
+        generator.close();
+        return writer.toString();
+      } catch (IOException e) {
+        //todo: exception handling.  Create ResultStatus 500 and call serializeError
+        throw new RuntimeException("Unable to serialize to json: " + e, e);
+      }
+    }
   }
 
-  private void writeHref(TreeNode<Resource> node) throws IOException {
+  private void writeHref(JsonGenerator generator, TreeNode<Resource> node) throws IOException {
     String hrefProp = node.getProperty("href");
     if (hrefProp != null) {
-      m_generator.writeStringField("href", hrefProp);
+      generator.writeStringField("href", hrefProp);
     }
   }
 
-  private void writeItemCount(TreeNode<Resource> node) throws IOException {
+  private void writeItemCount(JsonGenerator generator, TreeNode<Resource> node) throws IOException {
     String countProp = node.getProperty("count");
     if (countProp != null) {
-      m_generator.writeStringField("itemTotal", countProp);
-      // Write once
-      node.setProperty("count", null);
+      generator.writeStringField("itemTotal", countProp);
     }
   }
 }
@@ -273,12 +273,12 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
     if (response.getStatus() != Status.OK.getStatusCode()) {
       String message = String.format(
           "Error occured during hosts information retrieving, status=%s, response=%s",
-          response.getStatus(), (String) response.getEntity());
+          response.getStatus(), response.getEntity().toString());
       LOG.warn(message);
       throw new StackAdvisorException(message);
     }
 
-    String hostsJSON = (String) response.getEntity();
+    String hostsJSON = response.getEntity().toString();
     if (LOG.isDebugEnabled()) {
       LOG.debug("Hosts information: " + hostsJSON);
     }
@@ -327,12 +327,12 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
     if (response.getStatus() != Status.OK.getStatusCode()) {
       String message = String.format(
           "Error occured during services information retrieving, status=%s, response=%s",
-          response.getStatus(), (String) response.getEntity());
+          response.getStatus(), response.getEntity().toString());
       LOG.warn(message);
       throw new StackAdvisorException(message);
     }
 
-    String servicesJSON = (String) response.getEntity();
+    String servicesJSON = response.getEntity().toString();
     if (LOG.isDebugEnabled()) {
       LOG.debug("Services information: " + servicesJSON);
     }
@@ -79,6 +79,7 @@ public class Configuration {
   public static final String API_AUTHENTICATE = "api.authenticate";
   public static final String API_USE_SSL = "api.ssl";
   public static final String API_CSRF_PREVENTION_KEY = "api.csrfPrevention.enabled";
+  public static final String API_PRETTY_PRINT_KEY = "api.prettyPrint.enabled";
   public static final String SRVR_TWO_WAY_SSL_KEY = "security.server.two_way_ssl";
   public static final String SRVR_TWO_WAY_SSL_PORT_KEY = "security.server.two_way_ssl.port";
   public static final String SRVR_ONE_WAY_SSL_PORT_KEY = "security.server.one_way_ssl.port";
@@ -141,6 +142,10 @@ public class Configuration {
   public static final String LDAP_ADMIN_GROUP_MAPPING_RULES_KEY = "authorization.ldap.adminGroupMappingRules";
   public static final String LDAP_GROUP_SEARCH_FILTER_KEY = "authorization.ldap.groupSearchFilter";
   public static final String LDAP_REFERRAL_KEY = "authentication.ldap.referral";
+  public static final String LDAP_SYNC_PAGE_SIZE_KEY = "authentication.ldap.sync.pageSize";
+  public static final String LDAP_SYNC_THREADS_KEY = "authentication.ldap.sync.threads";
+  public static final String LDAP_SYNC_INCREMENTAL_KEY = "authentication.ldap.sync.incremental";
+  public static final String LDAP_SYNC_CHANGE_ATTRIBUTE_KEY = "authentication.ldap.sync.changeAttribute";
   public static final String SERVER_EC_CACHE_SIZE = "server.ecCacheSize";
   public static final String SERVER_STALE_CONFIG_CACHE_ENABLED_KEY = "server.cache.isStale.enabled";
   public static final String SERVER_PERSISTENCE_TYPE_KEY = "server.persistence.type";
@@ -236,6 +241,10 @@ public class Configuration {
   public static final String KDC_CONNECTION_CHECK_TIMEOUT_DEFAULT = "10000";
   public static final String KERBEROS_KEYTAB_CACHE_DIR_KEY = "kerberos.keytab.cache.dir";
   public static final String KERBEROS_KEYTAB_CACHE_DIR_DEFAULT = "/var/lib/ambari-server/data/cache";
+  public static final String KERBEROS_OPERATION_THREADS_KEY = "kerberos.operation.threads";
+  public static final String KERBEROS_OPERATION_THREADS_DEFAULT = "1";
+  public static final String KERBEROS_KADMIN_SESSION_ENABLED_KEY = "kerberos.kadmin.session.enabled";
+  public static final String KERBEROS_KADMIN_SESSION_ENABLED_DEFAULT = "false";
   /**
    * This key defines whether stages of parallel requests are executed in
    * parallel or sequentally. Only stages from different requests
@@ -260,6 +269,7 @@ public class Configuration {
   private static final String SRVR_TWO_WAY_SSL_DEFAULT = "false";
   private static final String SRVR_KSTR_DIR_DEFAULT = ".";
   private static final String API_CSRF_PREVENTION_DEFAULT = "true";
+  private static final String API_PRETTY_PRINT_DEFAULT = "false";
   private static final String SRVR_CRT_PASS_FILE_DEFAULT = "pass.txt";
   private static final String SRVR_CRT_PASS_LEN_DEFAULT = "50";
   private static final String SRVR_DISABLED_CIPHERS_DEFAULT = "";
@@ -289,6 +299,10 @@ public class Configuration {
   private static final String LDAP_ADMIN_GROUP_MAPPING_RULES_DEFAULT = "Ambari Administrators";
   private static final String LDAP_GROUP_SEARCH_FILTER_DEFAULT = "";
   private static final String LDAP_REFERRAL_DEFAULT = "follow";
+  private static final String LDAP_SYNC_PAGE_SIZE_DEFAULT = "1000";
+  private static final String LDAP_SYNC_THREADS_DEFAULT = "4";
+  private static final String LDAP_SYNC_INCREMENTAL_DEFAULT = "false";
+  private static final String LDAP_SYNC_CHANGE_ATTRIBUTE_DEFAULT = "modifyTimestamp";
 
   /**
    * !!! TODO: for development purposes only, should be changed to 'false'
@@ -320,6 +334,52 @@ public class Configuration {
   private static final String VIEW_EXTRACTION_THREADPOOL_TIMEOUT_KEY = "view.extraction.threadpool.timeout";
   private static final long VIEW_EXTRACTION_THREADPOOL_TIMEOUT_DEFAULT = 100000L;
 
+  private static final String AGENT_HEARTBEAT_PIPELINE_ENABLED_KEY = "agent.heartbeat.pipeline.enabled";
+  private static final String AGENT_HEARTBEAT_PIPELINE_ENABLED_DEFAULT = "false";
+  private static final String AGENT_HEARTBEAT_PIPELINE_THREADPOOL_SIZE_KEY = "agent.heartbeat.pipeline.threadpool.size";
+  private static final int AGENT_HEARTBEAT_PIPELINE_THREADPOOL_SIZE_DEFAULT = 4;
+  private static final String AGENT_HEARTBEAT_PIPELINE_QUEUE_SIZE_KEY = "agent.heartbeat.pipeline.queue.size";
+  private static final int AGENT_HEARTBEAT_PIPELINE_QUEUE_SIZE_DEFAULT = 4000;
+  private static final String AGENT_HEARTBEAT_PIPELINE_BATCH_SIZE_KEY = "agent.heartbeat.pipeline.batch.size";
+  private static final int AGENT_HEARTBEAT_PIPELINE_BATCH_SIZE_DEFAULT = 50;
+  private static final String AGENT_HEARTBEAT_MONITOR_THREADPOOL_SIZE_KEY = "agent.heartbeat.monitor.threadpool.size";
+  private static final int AGENT_HEARTBEAT_MONITOR_THREADPOOL_SIZE_DEFAULT = 4;
+
+  private static final String SERVER_ACTION_SCHEDULER_STAGE_INDEX_ENABLED_KEY = "server.action.scheduler.stage.index.enabled";
+  private static final String SERVER_ACTION_SCHEDULER_STAGE_INDEX_ENABLED_DEFAULT = "true";
+
+  public static final String ALERTS_CACHE_ENABLED_KEY = "alerts.cache.enabled";
+  private static final String ALERTS_CACHE_ENABLED_DEFAULT = "false";
+  public static final String ALERTS_CACHE_SIZE_KEY = "alerts.cache.size";
+  private static final long ALERTS_CACHE_SIZE_DEFAULT = 50000L;
+  public static final String ALERTS_CACHE_FLUSH_INTERVAL_KEY = "alerts.cache.flush.interval";
+  private static final int ALERTS_CACHE_FLUSH_INTERVAL_DEFAULT = 10;
+  public static final String ALERTS_SUMMARY_CACHE_ENABLED_KEY = "alerts.summary.cache.enabled";
+  private static final String ALERTS_SUMMARY_CACHE_ENABLED_DEFAULT = "false";
+
+  public static final String TASK_STATUS_SUMMARY_CACHE_ENABLED_KEY = "server.task.summary.cache.enabled";
+  private static final String TASK_STATUS_SUMMARY_CACHE_ENABLED_DEFAULT = "true";
+  public static final String TASK_STATUS_SUMMARY_CACHE_SIZE_KEY = "server.task.summary.cache.size";
+  private static final long TASK_STATUS_SUMMARY_CACHE_SIZE_DEFAULT = 1000L;
+  public static final String TASK_STATUS_SUMMARY_CACHE_EXPIRY_KEY = "server.task.summary.cache.expiry";
+  private static final long TASK_STATUS_SUMMARY_CACHE_EXPIRY_DEFAULT = 30L;
+
+  public static final String HOST_COMPONENT_WRITE_BEHIND_ENABLED_KEY = "server.hostcomponent.write_behind.enabled";
+  private static final String HOST_COMPONENT_WRITE_BEHIND_ENABLED_DEFAULT = "false";
+  public static final String HOST_COMPONENT_WRITE_BEHIND_FLUSH_INTERVAL_KEY = "server.hostcomponent.write_behind.flush.interval";
+  private static final long HOST_COMPONENT_WRITE_BEHIND_FLUSH_INTERVAL_DEFAULT = 1000L;
+
+  public static final String SERVER_STACK_PARSE_THREADS_KEY = "server.stack.parse.threads";
+  private static final int SERVER_STACK_PARSE_THREADS_DEFAULT = 0;
+  public static final String SERVER_STACK_SNAPSHOT_FILE_KEY = "server.stack.snapshot.file";
+
+  private static final String SERVER_JMX_CACHE_TTL_KEY = "server.jmx.cache.ttl";
+  private static final long SERVER_JMX_CACHE_TTL_DEFAULT = 5000L;
+  private static final String SERVER_JMX_QUERY_ENABLED_KEY = "server.jmx.query.enabled";
+  private static final String SERVER_JMX_QUERY_ENABLED_DEFAULT = "true";
+  private static final String SERVER_GANGLIA_CACHE_TTL_KEY = "server.ganglia.cache.ttl";
+  private static final long SERVER_GANGLIA_CACHE_TTL_DEFAULT = 5000L;
+
   private static final String SERVER_HTTP_SESSION_INACTIVE_TIMEOUT = "server.http.session.inactive_timeout";
 
   // database pooling defaults
@@ -708,6 +768,14 @@ public class Configuration {
     return "true".equalsIgnoreCase(properties.getProperty(API_CSRF_PREVENTION_KEY, API_CSRF_PREVENTION_DEFAULT));
   }
 
+  /**
+   * Checks if REST API responses are pretty printed
+   * @return true if the JSON of REST API responses should be indented
+   */
+  public boolean isApiPrettyPrintEnabled() {
+    return "true".equalsIgnoreCase(properties.getProperty(API_PRETTY_PRINT_KEY, API_PRETTY_PRINT_DEFAULT));
+  }
+
   /**
    * Gets client security type
    * @return appropriate ClientSecurityType
@@ -987,6 +1055,51 @@ public class Configuration {
     return ldapServerProperties;
   }
 
+  /**
+   * Gets the number of entries requested per page when listing the LDAP users
+   * and groups to synchronize. Paging keeps large directories within the
+   * server's size limit.
+   *
+   * @return the page size, or 0 to list the entries in a single search
+   */
+  public int getLdapSyncPageSize() {
+    return Integer.parseInt(properties.getProperty(
+        LDAP_SYNC_PAGE_SIZE_KEY, LDAP_SYNC_PAGE_SIZE_DEFAULT));
+  }
+
+  /**
+   * Gets the number of threads used to look up the members of LDAP groups
+   * during synchronization.
+   *
+   * @return the number of threads; 1 looks the members up one at a time
+   */
+  public int getLdapSyncThreadCount() {
+    return Integer.parseInt(properties.getProperty(
+        LDAP_SYNC_THREADS_KEY, LDAP_SYNC_THREADS_DEFAULT));
+  }
+
+  /**
+   * Gets whether synchronizing all LDAP groups should only refresh the members
+   * of the groups that changed since the last synchronization.
+   *
+   * @return {@code true} if incremental synchronization is enabled, default false
+   */
+  public boolean isLdapSyncIncremental() {
+    return Boolean.parseBoolean(properties.getProperty(
+        LDAP_SYNC_INCREMENTAL_KEY, LDAP_SYNC_INCREMENTAL_DEFAULT));
+  }
+
+  /**
+   * Gets the LDAP attribute that tells when a group entry last changed, for
+   * example modifyTimestamp or uSNChanged.
+   *
+   * @return the name of the change attribute
+   */
+  public String getLdapSyncChangeAttribute() {
+    return properties.getProperty(
+        LDAP_SYNC_CHANGE_ATTRIBUTE_KEY, LDAP_SYNC_CHANGE_ATTRIBUTE_DEFAULT);
+  }
+
   public boolean isLdapConfigured() {
     return Boolean.parseBoolean(properties.getProperty(IS_LDAP_CONFIGURED, IS_LDAP_CONFIGURED_DEFAULT));
   }
@@ -1250,6 +1363,224 @@ public class Configuration {
         AGENT_THREADPOOL_SIZE_KEY, String.valueOf(AGENT_THREADPOOL_SIZE_DEFAULT)));
   }
 
+  /**
+   * Gets whether heartbeat command reports, status reports and alerts should be
+   * processed asynchronously in batches instead of on the request thread.
+   *
+   * @return {@code true} if the heartbeat pipeline is enabled, default false
+   */
+  public boolean isHeartbeatPipelineEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        AGENT_HEARTBEAT_PIPELINE_ENABLED_KEY, AGENT_HEARTBEAT_PIPELINE_ENABLED_DEFAULT));
+  }
+
+  /**
+   * @return the number of heartbeat pipeline worker threads, default 4
+   */
+  public int getHeartbeatPipelineThreadPoolSize() {
+    return Integer.parseInt(properties.getProperty(
+        AGENT_HEARTBEAT_PIPELINE_THREADPOOL_SIZE_KEY,
+        String.valueOf(AGENT_HEARTBEAT_PIPELINE_THREADPOOL_SIZE_DEFAULT)));
+  }
+
+  /**
+   * @return the maximum number of heartbeats waiting to be processed by the
+   *         heartbeat pipeline, default 4000
+   */
+  public int getHeartbeatPipelineQueueSize() {
+    return Integer.parseInt(properties.getProperty(
+        AGENT_HEARTBEAT_PIPELINE_QUEUE_SIZE_KEY,
+        String.valueOf(AGENT_HEARTBEAT_PIPELINE_QUEUE_SIZE_DEFAULT)));
+  }
+
+  /**
+   * @return the maximum number of heartbeats processed together in one batch
+   *         by the heartbeat pipeline, default 50
+   */
+  public int getHeartbeatPipelineBatchSize() {
+    return Integer.parseInt(properties.getProperty(
+        AGENT_HEARTBEAT_PIPELINE_BATCH_SIZE_KEY,
+        String.valueOf(AGENT_HEARTBEAT_PIPELINE_BATCH_SIZE_DEFAULT)));
+  }
+
+  /**
+   * @return the number of threads the heartbeat monitor shards its sweep over
+   *         the hosts across, default 4
+   */
+  public int getHeartbeatMonitorThreadPoolSize() {
+    return Integer.parseInt(properties.getProperty(
+        AGENT_HEARTBEAT_MONITOR_THREADPOOL_SIZE_KEY,
+        String.valueOf(AGENT_HEARTBEAT_MONITOR_THREADPOOL_SIZE_DEFAULT)));
+  }
+
+  /**
+   * Gets whether the stages in progress should be kept in an incrementally
+   * maintained in-memory index instead of being queried on every scheduler
+   * wakeup.
+   *
+   * @return {@code true} if the index is enabled, default true
+   */
+  public boolean isActiveStageIndexEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        SERVER_ACTION_SCHEDULER_STAGE_INDEX_ENABLED_KEY,
+        SERVER_ACTION_SCHEDULER_STAGE_INDEX_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Gets whether current alerts and alert definitions should be cached in
+   * memory when alerts are received. When enabled, alerts whose state has not
+   * changed are written to the database periodically instead of on every
+   * update.
+   *
+   * @return {@code true} if the alert caches are enabled, default false
+   */
+  public boolean isAlertCacheEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        ALERTS_CACHE_ENABLED_KEY, ALERTS_CACHE_ENABLED_DEFAULT));
+  }
+
+  /**
+   * @return the maximum number of current alerts held in memory, default 50000
+   */
+  public long getAlertCacheSize() {
+    return Long.parseLong(properties.getProperty(ALERTS_CACHE_SIZE_KEY,
+        String.valueOf(ALERTS_CACHE_SIZE_DEFAULT)));
+  }
+
+  /**
+   * @return the number of seconds between writes of cached current alerts to
+   *         the database, default 10
+   */
+  public int getAlertCacheFlushInterval() {
+    return Integer.parseInt(properties.getProperty(
+        ALERTS_CACHE_FLUSH_INTERVAL_KEY,
+        String.valueOf(ALERTS_CACHE_FLUSH_INTERVAL_DEFAULT)));
+  }
+
+  /**
+   * Gets whether the alert summaries of clusters, services and hosts are
+   * counted in memory instead of being queried from the database.
+   *
+   * @return {@code true} if alert summaries are counted in memory, default
+   *         false
+   */
+  public boolean isAlertSummaryCacheEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        ALERTS_SUMMARY_CACHE_ENABLED_KEY, ALERTS_SUMMARY_CACHE_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Gets whether the task status summaries of requests and stages are counted
+   * in memory instead of being queried from the database.
+   *
+   * @return {@code true} if task status summaries are counted in memory,
+   *         default true
+   */
+  public boolean isTaskStatusSummaryCacheEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        TASK_STATUS_SUMMARY_CACHE_ENABLED_KEY,
+        TASK_STATUS_SUMMARY_CACHE_ENABLED_DEFAULT));
+  }
+
+  /**
+   * @return the maximum number of requests whose task status summaries are
+   *         counted in memory, default 1000
+   */
+  public long getTaskStatusSummaryCacheSize() {
+    return Long.parseLong(properties.getProperty(
+        TASK_STATUS_SUMMARY_CACHE_SIZE_KEY,
+        String.valueOf(TASK_STATUS_SUMMARY_CACHE_SIZE_DEFAULT)));
+  }
+
+  /**
+   * @return the number of minutes after which the task status summaries of a
+   *         request are counted again from the database, default 30
+   */
+  public long getTaskStatusSummaryCacheExpiry() {
+    return Long.parseLong(properties.getProperty(
+        TASK_STATUS_SUMMARY_CACHE_EXPIRY_KEY,
+        String.valueOf(TASK_STATUS_SUMMARY_CACHE_EXPIRY_DEFAULT)));
+  }
+
+  /**
+   * Gets whether host component state changes are written to the database
+   * periodically in batches instead of on every change.
+   *
+   * @return {@code true} if host component state is written behind, default
+   *         false
+   */
+  public boolean isHostComponentWriteBehindEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        HOST_COMPONENT_WRITE_BEHIND_ENABLED_KEY,
+        HOST_COMPONENT_WRITE_BEHIND_ENABLED_DEFAULT));
+  }
+
+  /**
+   * @return the number of milliseconds between writes of changed host
+   *         component states to the database, default 1000
+   */
+  public long getHostComponentWriteBehindFlushInterval() {
+    return Long.parseLong(properties.getProperty(
+        HOST_COMPONENT_WRITE_BEHIND_FLUSH_INTERVAL_KEY,
+        String.valueOf(HOST_COMPONENT_WRITE_BEHIND_FLUSH_INTERVAL_DEFAULT)));
+  }
+
+  /**
+   * @return the number of threads used to parse the stack definition on
+   *         server start, default 0 which uses one thread per processor
+   */
+  public int getStackParseThreads() {
+    return Integer.parseInt(properties.getProperty(
+        SERVER_STACK_PARSE_THREADS_KEY,
+        String.valueOf(SERVER_STACK_PARSE_THREADS_DEFAULT)));
+  }
+
+  /**
+   * Gets the file used to keep a snapshot of the resolved stacks so that the
+   * stack definition is only parsed on server start when it has changed.
+   *
+   * @return the snapshot file path, or {@code null} if stack snapshots are
+   *         disabled, which is the default
+   */
+  public String getStackSnapshotFilePath() {
+    return properties.getProperty(SERVER_STACK_SNAPSHOT_FILE_KEY);
+  }
+
+  /**
+   * Gets how long a JMX snapshot fetched from a component is reused by the
+   * JMX property providers before it is fetched again.
+   *
+   * @return the time to live in milliseconds, default 5000; 0 disables the
+   *         cache
+   */
+  public long getJMXSnapshotCacheTTL() {
+    return Long.parseLong(properties.getProperty(SERVER_JMX_CACHE_TTL_KEY,
+        String.valueOf(SERVER_JMX_CACHE_TTL_DEFAULT)));
+  }
+
+  /**
+   * Gets whether the JMX property providers should only fetch the beans that a
+   * request needs when it needs the beans of a single category.
+   *
+   * @return {@code true} if bean queries are enabled, default true
+   */
+  public boolean isJMXQueryEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        SERVER_JMX_QUERY_ENABLED_KEY, SERVER_JMX_QUERY_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Gets how long the metrics fetched from the Ganglia server for a request
+   * are reused by the Ganglia property providers for identical requests.
+   *
+   * @return the time to live in milliseconds, default 5000; 0 disables the
+   *         cache
+   */
+  public long getGangliaMetricCacheTTL() {
+    return Long.parseLong(properties.getProperty(SERVER_GANGLIA_CACHE_TTL_KEY,
+        String.valueOf(SERVER_GANGLIA_CACHE_TTL_DEFAULT)));
+  }
+
   /**
    * Get the view extraction thread pool max size.
    *
@@ -1335,6 +1666,30 @@ public class Configuration {
     return new File(fileName);
   }
 
+  /**
+   * Gets the number of threads used to process the identities of a Kerberos
+   * server action, such as creating principals and keytab files. The
+   * identities of a given principal are always processed by the same thread.
+   *
+   * @return the number of threads, default 1
+   */
+  public int getKerberosOperationThreadCount() {
+    return Integer.parseInt(properties.getProperty(
+        KERBEROS_OPERATION_THREADS_KEY, KERBEROS_OPERATION_THREADS_DEFAULT));
+  }
+
+  /**
+   * Gets whether the MIT KDC operation handler should keep a single kadmin
+   * process open and send it all of its queries rather than executing kadmin
+   * once per query.
+   *
+   * @return {@code true} if the kadmin session is enabled, default false
+   */
+  public boolean isKerberosKAdminSessionEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        KERBEROS_KADMIN_SESSION_ENABLED_KEY, KERBEROS_KADMIN_SESSION_ENABLED_DEFAULT));
+  }
+
   /**
    * Gets the type of database by examining the {@link #getDatabaseUrl()} JDBC
    * URL.
@@ -3755,6 +3755,11 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
       }
 
       users.processLdapSync(batchInfo);
+
+      // only move the high-water mark once the changes have been applied
+      if (batchInfo.getGroupsHighWaterMark() != null) {
+        ldapDataPopulator.storeGroupsHighWaterMark(batchInfo.getGroupsHighWaterMark());
+      }
       return batchInfo;
     } finally {
       ldapSyncInProgress = false;
@@ -17,7 +17,6 @@
  */
 package org.apache.ambari.server.controller.internal;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -188,26 +187,50 @@ public class CalculatedStatus {
    * @return a map of counts of tasks keyed by the task status
    */
   public static Map<HostRoleStatus, Integer> calculateStatusCounts(Collection<HostRoleStatus> hostRoleStatuses) {
+    Map<HostRoleStatus, Integer> statusCounts = new HashMap<HostRoleStatus, Integer>();
+    for (HostRoleStatus status : hostRoleStatuses) {
+      Integer count = statusCounts.get(status);
+      statusCounts.put(status, null == count ? 1 : count + 1);
+    }
+    return calculateStatusCounts(statusCounts);
+  }
+
+  /**
+   * Returns counts of tasks that are in various states, given the number of
+   * tasks in each status. This gives the same result as
+   * {@link #calculateStatusCounts(Collection)} without a collection entry per
+   * task.
+   *
+   * @param statusCounts  the number of tasks keyed by the task status; missing
+   *                      statuses have no tasks
+   *
+   * @return a map of counts of tasks keyed by the task status
+   */
+  public static Map<HostRoleStatus, Integer> calculateStatusCounts(Map<HostRoleStatus, Integer> statusCounts) {
     Map<HostRoleStatus, Integer> counters = new HashMap<HostRoleStatus, Integer>();
     // initialize
     for (HostRoleStatus hostRoleStatus : HostRoleStatus.values()) {
       counters.put(hostRoleStatus, 0);
     }
     // calculate counts
-    for (HostRoleStatus status : hostRoleStatuses) {
+    int total = 0;
+    for (Entry<HostRoleStatus, Integer> entry : statusCounts.entrySet()) {
+      HostRoleStatus status = entry.getKey();
+      int count = null == entry.getValue() ? 0 : entry.getValue();
       // count tasks where isCompletedState() == true as COMPLETED
       // but don't count tasks with COMPLETED status twice
       if (status.isCompletedState() && status != HostRoleStatus.COMPLETED) {
         // Increase total number of completed tasks;
-        counters.put(HostRoleStatus.COMPLETED, counters.get(HostRoleStatus.COMPLETED) + 1);
+        counters.put(HostRoleStatus.COMPLETED, counters.get(HostRoleStatus.COMPLETED) + count);
       }
       // Increment counter for particular status
-      counters.put(status, counters.get(status) + 1);
+      counters.put(status, counters.get(status) + count);
+      total += count;
     }
 
     // We overwrite the value to have the sum converged
     counters.put(HostRoleStatus.IN_PROGRESS,
-        hostRoleStatuses.size() -
+        total -
             counters.get(HostRoleStatus.COMPLETED) -
             counters.get(HostRoleStatus.QUEUED) -
             counters.get(HostRoleStatus.PENDING));
@@ -273,7 +296,7 @@ public class CalculatedStatus {
       Set<Long> stageIds) {
 
     Collection<HostRoleStatus> stageStatuses = new HashSet<HostRoleStatus>();
-    Collection<HostRoleStatus> taskStatuses = new ArrayList<HostRoleStatus>();
+    int taskTotal = 0;
 
     for (Long stageId : stageIds) {
       if (!stageDto.containsKey(stageId)) {
@@ -284,19 +307,20 @@ public class CalculatedStatus {
 
       int total = summary.getTaskTotal();
       boolean skip = summary.isStageSkippable();
-      Map<HostRoleStatus, Integer> counts = calculateStatusCounts(summary.getTaskStatuses());
+      Map<HostRoleStatus, Integer> counts = calculateStatusCounts(summary.getCounts());
 
       HostRoleStatus stageStatus = calculateSummaryStatus(counts, total, skip);
 
       stageStatuses.add(stageStatus);
 
-      taskStatuses.addAll(summary.getTaskStatuses());
+      taskTotal += total;
     }
 
     // calculate the overall status from the stage statuses
     HostRoleStatus status = calculateSummaryStatus(calculateStatusCounts(stageStatuses), stageStatuses.size(), false);
 
-    double progressPercent = calculateProgressPercent(calculateStatusCounts(taskStatuses), taskStatuses.size());
+    double progressPercent = calculateProgressPercent(
+        calculateStatusCounts(calculateTaskStatusCounts(stageDto, stageIds)), taskTotal);
 
     return new CalculatedStatus(status, progressPercent);
   }
@@ -19,9 +19,7 @@ package org.apache.ambari.server.controller.internal;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.actionmanager.ActionManager;
-import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
-import org.apache.ambari.server.actionmanager.Stage;
 import org.apache.ambari.server.api.services.BaseRequest;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.ExecuteActionRequest;
@@ -36,6 +34,8 @@ import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourceAlreadyExistsException;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.dao.HostRoleCommandStatusSummaryDTO;
 import org.apache.ambari.server.state.Clusters;
 
 import java.util.ArrayList;
@@ -45,7 +45,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -93,6 +92,11 @@ public class RequestResourceProvider extends AbstractControllerResourceProvider
 
   static Set<String> PROPERTY_IDS = new HashSet<String>();
 
+  /**
+   * Used to get the task status summaries of requests.
+   */
+  private static HostRoleCommandDAO hostRoleCommandDAO;
+
   static {
     PROPERTY_IDS.add(REQUEST_CLUSTER_NAME_PROPERTY_ID);
     PROPERTY_IDS.add(REQUEST_STATUS_PROPERTY_ID);
@@ -133,6 +137,17 @@ public class RequestResourceProvider extends AbstractControllerResourceProvider
     super(propertyIds, keyPropertyIds, managementController);
   }
 
+  // ----- RequestResourceProvider -------------------------------------------
+
+  /**
+   * Static initialization.
+   *
+   * @param dao  host role command data access object
+   */
+  public static void init(HostRoleCommandDAO dao) {
+    hostRoleCommandDAO = dao;
+  }
+
   // ----- ResourceProvider ------------------------------------------------
 
   @Override
@@ -463,18 +478,23 @@ public class RequestResourceProvider extends AbstractControllerResourceProvider
       setResourceProperty(resource, REQUEST_SOURCE_SCHEDULE, null, requestedPropertyIds);
     }
 
-    Collection<HostRoleCommand> commands = request.getCommands();
-    Collection<Stage> stages = request.getStages();
+    // the status and counts come from the stage summaries so that the tasks
+    // of the request don't have to be loaded
+    Map<Long, HostRoleCommandStatusSummaryDTO> summaries =
+        hostRoleCommandDAO.findAggregateCounts(request.getRequestId());
 
-    CalculatedStatus status = CalculatedStatus.statusFromStages(stages);
+    CalculatedStatus status = CalculatedStatus.statusFromStageSummary(summaries, summaries.keySet());
 
     setResourceProperty(resource, REQUEST_STATUS_PROPERTY_ID, status.getStatus().toString(), requestedPropertyIds);
     setResourceProperty(resource, REQUEST_PROGRESS_PERCENT_ID, status.getPercent(), requestedPropertyIds);
 
-    int taskCount = commands.size();
+    int taskCount = 0;
+    for (HostRoleCommandStatusSummaryDTO summary : summaries.values()) {
+      taskCount += summary.getTaskTotal();
+    }
 
-    Map<HostRoleStatus, Integer> hostRoleStatusCounters =
-        CalculatedStatus.calculateStatusCounts(getHostRoleStatuses(commands));
+    Map<HostRoleStatus, Integer> hostRoleStatusCounters = CalculatedStatus.calculateStatusCounts(
+        CalculatedStatus.calculateTaskStatusCounts(summaries, summaries.keySet()));
 
     setResourceProperty(resource, REQUEST_TASK_CNT_ID, taskCount, requestedPropertyIds);
     setResourceProperty(resource, REQUEST_FAILED_TASK_CNT_ID,
@@ -490,20 +510,4 @@ public class RequestResourceProvider extends AbstractControllerResourceProvider
 
     return resource;
   }
-
-  /**
-   * Get a collection of statuses from the given collection of tasks.
-   *
-   * @param tasks  the tasks
-   *
-   * @return a collection of statuses
-   */
-  private static Collection<HostRoleStatus> getHostRoleStatuses(Collection<HostRoleCommand> tasks) {
-    Collection<HostRoleStatus> hostRoleStatuses = new LinkedList<HostRoleStatus>();
-
-    for (HostRoleCommand hostRoleCommand : tasks) {
-      hostRoleStatuses.add(hostRoleCommand.getStatus());
-    }
-    return hostRoleStatuses;
-  }
 }
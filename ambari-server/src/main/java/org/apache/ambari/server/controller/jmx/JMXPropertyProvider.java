@@ -18,6 +18,7 @@
 
 package org.apache.ambari.server.controller.jmx;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.PropertyInfo;
 import org.apache.ambari.server.controller.metrics.MetricHostProvider;
 import org.apache.ambari.server.controller.metrics.ThreadPoolEnabledPropertyProvider;
@@ -26,6 +27,7 @@ import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.utilities.StreamProvider;
+import org.apache.ambari.server.controller.utilities.TtlLoadingCache;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.ObjectReader;
@@ -34,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URLEncoder;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -41,6 +44,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -88,6 +92,18 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
   private static final Pattern dotReplacementCharPattern =
     Pattern.compile(DOT_REPLACEMENT_CHAR);
 
+  /**
+   * Snapshots shared by all JMX property providers; null if snapshots are not
+   * cached.
+   */
+  private static volatile TtlLoadingCache<String, JMXMetricHolder> snapshotCache = null;
+
+  /**
+   * Whether a request for the beans of a single category should only fetch
+   * those beans.
+   */
+  private static volatile boolean queryEnabled = false;
+
   private final StreamProvider streamProvider;
 
   private final JMXHostProvider jmxHostProvider;
@@ -133,6 +149,29 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
     this.statePropertyId          = statePropertyId;
   }
 
+  // ----- JMXPropertyProvider -----------------------------------------------
+
+  /**
+   * Initialize the snapshot cache and bean queries from the configuration.
+   *
+   * @param configuration  the configuration
+   */
+  public static void init(Configuration configuration) {
+    long ttl = configuration.getJMXSnapshotCacheTTL();
+    snapshotCache = ttl > 0 ? new TtlLoadingCache<String, JMXMetricHolder>("JMX snapshot", ttl) : null;
+    queryEnabled  = configuration.isJMXQueryEnabled();
+  }
+
+  /**
+   * Get the snapshot cache shared by all JMX property providers.
+   *
+   * @return the snapshot cache or null if snapshots are not cached
+   */
+  public static TtlLoadingCache<String, JMXMetricHolder> getSnapshotCache() {
+    return snapshotCache;
+  }
+
+
   // ----- helper methods ----------------------------------------------------
 
   /**
@@ -203,41 +242,118 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
       return resource;
     }
 
-    InputStream in = null;
+    String query = queryEnabled ? getQuery(componentName, ids) : null;
 
-    try {
+    for (String hostName : hostNames) {
       try {
-        for (String hostName : hostNames) {
-          try {
-            in = streamProvider.readFrom(getSpec(protocol, hostName, port, "/jmx"));
-            // if the ticket becomes invalid (timeout) then bail out
-            if (!ticket.isValid()) {
-              return resource;
-            }
+        JMXMetricHolder metricHolder = getMetricHolder(protocol, hostName, port, query);
+        // if the ticket becomes invalid (timeout) then bail out
+        if (!ticket.isValid()) {
+          return resource;
+        }
 
-            getHadoopMetricValue(in, ids, resource, request, ticket);
+        getHadoopMetricValue(metricHolder, ids, resource, request, ticket);
 
-          } catch (IOException e) {
-            logException(e);
-          }
+      } catch (IOException e) {
+        logException(e);
+      }
+    }
+    return resource;
+  }
+
+  /**
+   * Get the JMX beans of the given host, from the snapshot cache if it is
+   * enabled.  If a query is given then only the matching beans are fetched,
+   * unless a fresh snapshot of all of the beans is already cached.
+   */
+  private JMXMetricHolder getMetricHolder(String protocol, String hostName,
+                                          String port, String query) throws IOException {
+    String spec = getSpec(protocol, hostName, port, "/jmx");
+
+    if (snapshotCache != null && query != null) {
+      JMXMetricHolder metricHolder = snapshotCache.getIfFresh(spec);
+      if (metricHolder != null) {
+        return metricHolder;
+      }
+    }
+
+    if (query != null) {
+      spec = spec + "?qry=" + URLEncoder.encode(query, "UTF-8");
+    }
+
+    if (snapshotCache == null) {
+      return readMetricHolder(spec);
+    }
+
+    final String loadSpec = spec;
+    return snapshotCache.get(spec, new Callable<JMXMetricHolder>() {
+      @Override
+      public JMXMetricHolder call() throws IOException {
+        return readMetricHolder(loadSpec);
+      }
+    });
+  }
+
+  /**
+   * Read and parse the JMX beans from the given URL.
+   */
+  private JMXMetricHolder readMetricHolder(String spec) throws IOException {
+    InputStream in = streamProvider.readFrom(spec);
+    try {
+      return jmxObjectReader.readValue(in);
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * Get the JMX bean query that selects only the beans needed for the given
+   * property ids.  A query is only used when all of the properties belong to
+   * a single bean category; the category is followed by a wildcard so that
+   * beans whose names end with a port are matched.
+   *
+   * @return the query or null if all of the beans should be fetched
+   */
+  private String getQuery(String componentName, Set<String> ids) {
+    String query = null;
+
+    for (String id : ids) {
+      for (Map.Entry<String, PropertyInfo> entry : getPropertyInfoMap(componentName, id).entrySet()) {
+        PropertyInfo propertyInfo = entry.getValue();
+        if (!propertyInfo.isPointInTime()) {
+          continue;
+        }
+        if (containsArguments(entry.getKey())) {
+          return null;
         }
-      } finally {
-        if (in != null) {
-          in.close();
+
+        String property = propertyInfo.getPropertyId();
+        int dotIndex = property.indexOf('.', property.indexOf('='));
+        if (-1 == dotIndex) {
+          return null;
+        }
+
+        String category = property.substring(0, dotIndex);
+        if (category.indexOf(':') == -1) {
+          return null;
+        }
+        if (query == null) {
+          query = category;
+        } else if (!query.equals(category)) {
+          return null;
         }
       }
-    } catch (IOException e) {
-      logException(e);
     }
-    return resource;
+    return query == null ? null : query + "*";
   }
 
   /**
    * Hadoop-specific metrics fetching
    */
-  private void getHadoopMetricValue(InputStream in, Set<String> ids,
+  private void getHadoopMetricValue(JMXMetricHolder metricHolder, Set<String> ids,
                        Resource resource, Request request, Ticket ticket) throws IOException {
-    JMXMetricHolder metricHolder = jmxObjectReader.readValue(in);
 
     Map<String, Map<String, Object>> categories = new HashMap<String, Map<String, Object>>();
     String componentName = (String) resource.getPropertyValue(componentNamePropertyId);
@@ -0,0 +1,401 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.metrics.ganglia;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parser for the feed returned by the Ganglia rrd.py script.
+ *
+ * The feed starts with the time the script started. Each metric is then
+ * written as its data source name, Ganglia cluster name, host name, metric
+ * name, start time and step, followed by a value per line up to [~EOM]. A
+ * value of [~n] means there is no value and [~r]n means that the previous
+ * value is repeated n times in total. The metrics are followed by [~EOF] and
+ * the time the script finished.
+ *
+ * The feed is read directly from the stream and the values are decoded into
+ * primitive arrays without creating a string or a boxed number per value.
+ */
+public class GangliaFeedParser {
+
+  protected final static Logger LOG =
+      LoggerFactory.getLogger(GangliaFeedParser.class);
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final byte[] EOF    = "[~EOF]".getBytes(UTF_8);
+  private static final byte[] EOM    = "[~EOM]".getBytes(UTF_8);
+  private static final byte[] NONE   = "[~n]".getBytes(UTF_8);
+  private static final byte[] REPEAT = "[~r]".getBytes(UTF_8);
+
+  private static final int POPULATION_TIME_UPPER_LIMIT = 5;
+
+  /**
+   * The largest number of digits for which a decimal value is decoded
+   * directly. The digits fit exactly in a double and so do the powers of ten
+   * it is divided by, which makes the single division correctly rounded.
+   */
+  private static final int MAX_FAST_DIGITS = 15;
+
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private final InputStream in;
+  private final String spec;
+
+  private final byte[] buffer = new byte[8192];
+  private int position = 0;
+  private int limit = 0;
+  private boolean skipLineFeed = false;
+
+  /**
+   * The current line.
+   */
+  private byte[] line = new byte[128];
+  private int lineLength = 0;
+
+  /**
+   * The value decoded by {@link #decodeValue()}.
+   */
+  private long decodedValue;
+  private boolean decodedDecimal;
+
+  /**
+   * The data points of the current metric; reused for every metric.
+   */
+  private long[] values = new long[256];
+  private int[] times = new int[256];
+  private final BitSet decimals = new BitSet();
+  private int count = 0;
+
+
+  // ----- Constructors ------------------------------------------------------
+
+  /**
+   * Create a parser.
+   *
+   * @param in    the feed
+   * @param spec  the URL the feed is read from, used for logging
+   */
+  public GangliaFeedParser(InputStream in, String spec) {
+    this.in   = in;
+    this.spec = spec;
+  }
+
+
+  // ----- GangliaFeedParser -------------------------------------------------
+
+  /**
+   * Parse the feed. If the feed ends unexpectedly then the metrics that were
+   * read before the end are returned.
+   *
+   * @return the metrics
+   *
+   * @throws IOException if the feed could not be read
+   */
+  public List<GangliaMetric> parse() throws IOException {
+    List<GangliaMetric> metrics = new ArrayList<GangliaMetric>();
+
+    if (!readLine() || lineLength == 0) {
+      LOG.info("Empty feed while getting ganglia metrics for spec => " + spec);
+      return metrics;
+    }
+    int startTime = (int) Double.parseDouble(lineString());
+
+    if (!readLine() || lineLength == 0) {
+      LOG.info("Feed without body while reading ganglia metrics for spec " +
+          "=> " + spec);
+      return metrics;
+    }
+
+    while (!lineEquals(EOF)) {
+      GangliaMetric metric = new GangliaMetric();
+
+      metric.setDs_name(lineString());
+      metric.setCluster_name(readLineString());
+      metric.setHost_name(readLineString());
+      metric.setMetric_name(readLineString());
+
+      if (!readLine() || lineLength == 0) {
+        logUnexpectedEnd();
+        return metrics;
+      }
+      int time = (int) parseNumber();
+
+      if (!readLine() || lineLength == 0) {
+        logUnexpectedEnd();
+        return metrics;
+      }
+      int step = (int) parseNumber();
+
+      readValues(GangliaMetric.isPercentageMetric(metric.getMetric_name()), time, step);
+
+      metric.setDatapoints(Arrays.copyOf(values, count),
+          decimals.get(0, count), Arrays.copyOf(times, count));
+      metrics.add(metric);
+
+      if (!readLine() || lineLength == 0) {
+        logUnexpectedEnd();
+        return metrics;
+      }
+    }
+
+    if (!readLine() || lineLength == 0) {
+      LOG.info("Error reading end of feed while getting ganglia metrics " +
+          "for spec => " + spec);
+    } else {
+      int endTime = (int) Double.parseDouble(lineString());
+      int totalTime = endTime - startTime;
+      if (LOG.isInfoEnabled() && totalTime > POPULATION_TIME_UPPER_LIMIT) {
+        LOG.info("Ganglia resource population time: " + totalTime);
+      }
+    }
+    return metrics;
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  /**
+   * Read the values of a metric up to [~EOM] or the end of the feed.
+   */
+  private void readValues(boolean percentage, int time, int step) throws IOException {
+    count = 0;
+    decimals.clear();
+
+    boolean lastValid = false;
+    while (readLine() && !lineEquals(EOM)) {
+      if (lineStartsWith(REPEAT)) {
+        int repeat = Integer.parseInt(new String(line, REPEAT.length,
+            lineLength - REPEAT.length, UTF_8)) - 1;
+        for (int i = 0; i < repeat; ++i) {
+          if (lastValid) {
+            addValue(percentage, time);
+          }
+          time += step;
+        }
+        lastValid = false;
+      } else {
+        lastValid = !lineEquals(NONE) && decodeValue();
+        if (lastValid) {
+          addValue(percentage, time);
+        }
+        time += step;
+      }
+    }
+  }
+
+  /**
+   * Add the last decoded value to the current metric.
+   */
+  private void addValue(boolean percentage, int time) {
+    if (percentage) {
+      double value = decodedDecimal ?
+          Double.longBitsToDouble(decodedValue) : (double) decodedValue;
+      if (value > 100.0) {
+        return;
+      }
+    }
+    if (count == values.length) {
+      values = Arrays.copyOf(values, count * 2);
+      times  = Arrays.copyOf(times, count * 2);
+    }
+    values[count] = decodedValue;
+    times[count]  = time;
+    if (decodedDecimal) {
+      decimals.set(count);
+    }
+    count++;
+  }
+
+  /**
+   * Decode the current line as a value. A value that contains a '.' is a
+   * double and anything else is a long, as for
+   * {@link GangliaMetric.TemporalMetric}.
+   *
+   * @return false if the line is not a valid value
+   */
+  private boolean decodeValue() {
+    int dot = -1;
+    for (int i = 0; i < lineLength; i++) {
+      if (line[i] == '.') {
+        dot = i;
+        break;
+      }
+    }
+    decodedDecimal = dot != -1;
+    return decodedDecimal ? decodeDouble(dot) : decodeLong();
+  }
+
+  private boolean decodeLong() {
+    int i = 0;
+    boolean negative = false;
+    if (lineLength > 0 && (line[0] == '-' || line[0] == '+')) {
+      negative = line[0] == '-';
+      i = 1;
+    }
+    int digits = lineLength - i;
+    if (digits == 0 || digits > 18) {
+      // may overflow
+      try {
+        decodedValue = Long.parseLong(lineString());
+        return true;
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+    long value = 0L;
+    for (; i < lineLength; i++) {
+      int digit = line[i] - '0';
+      if (digit < 0 || digit > 9) {
+        return false;
+      }
+      value = value * 10 + digit;
+    }
+    decodedValue = negative ? -value : value;
+    return true;
+  }
+
+  private boolean decodeDouble(int dot) {
+    double value;
+    int i = 0;
+    boolean negative = false;
+    if (line[0] == '-' || line[0] == '+') {
+      negative = line[0] == '-';
+      i = 1;
+    }
+    long mantissa = 0L;
+    int digits = 0;
+    boolean fast = true;
+    for (; i < lineLength && fast; i++) {
+      if (i != dot) {
+        int digit = line[i] - '0';
+        if (digit < 0 || digit > 9 || ++digits > MAX_FAST_DIGITS) {
+          fast = false;
+        } else {
+          mantissa = mantissa * 10 + digit;
+        }
+      }
+    }
+
+    if (fast && digits > 0) {
+      value = mantissa / POWERS_OF_TEN[lineLength - dot - 1];
+      if (negative) {
+        value = -value;
+      }
+    } else {
+      // exponents, long fractions and anything else Double accepts
+      try {
+        value = Double.parseDouble(lineString());
+      } catch (NumberFormatException e) {
+        return false;
+      }
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        return false;
+      }
+    }
+    decodedValue = Double.doubleToRawLongBits(value);
+    return true;
+  }
+
+  private long parseNumber() {
+    if (!decodeValue()) {
+      throw new NumberFormatException("For input string: \"" + lineString() + "\"");
+    }
+    return decodedDecimal ? (long) Double.longBitsToDouble(decodedValue) : decodedValue;
+  }
+
+  private void logUnexpectedEnd() {
+    LOG.info("Unexpected end of stream reached while getting ganglia " +
+        "metrics for spec => " + spec);
+  }
+
+  /**
+   * Read the next line, as {@link java.io.BufferedReader#readLine()} would.
+   *
+   * @return false if the end of the feed has been reached
+   */
+  private boolean readLine() throws IOException {
+    lineLength = 0;
+    while (true) {
+      if (position == limit) {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return lineLength > 0;
+        }
+      }
+      byte b = buffer[position++];
+      if (skipLineFeed) {
+        skipLineFeed = false;
+        if (b == '\n') {
+          continue;
+        }
+      }
+      if (b == '\n') {
+        return true;
+      }
+      if (b == '\r') {
+        skipLineFeed = true;
+        return true;
+      }
+      if (lineLength == line.length) {
+        line = Arrays.copyOf(line, lineLength * 2);
+      }
+      line[lineLength++] = b;
+    }
+  }
+
+  private String readLineString() throws IOException {
+    return readLine() ? lineString() : null;
+  }
+
+  private String lineString() {
+    return new String(line, 0, lineLength, UTF_8);
+  }
+
+  private boolean lineEquals(byte[] token) {
+    return lineLength == token.length && lineStartsWith(token);
+  }
+
+  private boolean lineStartsWith(byte[] token) {
+    if (lineLength < token.length) {
+      return false;
+    }
+    for (int i = 0; i < token.length; i++) {
+      if (line[i] != token[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
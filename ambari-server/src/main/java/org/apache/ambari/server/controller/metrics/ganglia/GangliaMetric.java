@@ -18,6 +18,7 @@
 
 package org.apache.ambari.server.controller.metrics.ganglia;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -61,7 +62,16 @@ public class GangliaMetric {
   /**
    * The temporal data points.
    */
-  private Number[][] datapoints;
+  private volatile Number[][] datapoints;
+
+  /**
+   * The data points as decoded by {@link GangliaFeedParser}; boxed into
+   * {@link #datapoints} the first time they are requested. A value is a long,
+   * or the bits of a double if the corresponding bit of decimals is set.
+   */
+  private long[] values;
+  private BitSet decimals;
+  private int[] times;
   
   
   private static final Set<String> PERCENTAGE_METRIC;
@@ -122,17 +132,70 @@ public class GangliaMetric {
     this.metric_name = metric_name;
   }
 
+  /**
+   * Get the data points. Metrics may be cached and shared between requests,
+   * so a copy is returned that the caller is free to modify.
+   *
+   * @return a copy of the data points or null if there are none
+   */
   public Number[][] getDatapoints() {
-    return datapoints;
+    Number[][] points = datapoints;
+    if (points == null && values != null) {
+      points = new Number[values.length][2];
+      for (int i = 0; i < values.length; i++) {
+        points[i][0] = getValue(i);
+        points[i][1] = times[i];
+      }
+      datapoints = points;
+    }
+    if (points == null) {
+      return null;
+    }
+    Number[][] result = new Number[points.length][];
+    for (int i = 0; i < points.length; i++) {
+      result[i] = points[i].clone();
+    }
+    return result;
   }
 
 
   public void setDatapoints(Number[][] datapoints) {
     this.datapoints = datapoints;
+    this.values     = null;
+    this.decimals   = null;
+    this.times      = null;
   } 
+
+  /**
+   * Set the data points from decoded values without boxing them.
+   *
+   * @param values    the values; a long or the bits of a double
+   * @param decimals  the indexes of the values that are doubles
+   * @param times     the times of the values
+   */
+  void setDatapoints(long[] values, BitSet decimals, int[] times) {
+    this.values     = values;
+    this.decimals   = decimals;
+    this.times      = times;
+    this.datapoints = null;
+  }
+
+  /**
+   * Get the value of the last data point.
+   *
+   * @return the last value or null if there are no data points
+   */
+  public Number getLastValue() {
+    if (values != null) {
+      return values.length > 0 ? getValue(values.length - 1) : null;
+    }
+    Number[][] points = datapoints;
+    return points == null || points.length == 0 ? null : points[points.length - 1][0];
+  }
   
   public void setDatapointsFromList(List<GangliaMetric.TemporalMetric> listTemporalMetrics) { 
     //this.datapoints = datapoints;
+    this.values = null;
     Number[][] datapointsArray = new Number[listTemporalMetrics.size()][2];
     int cnt = 0;
     if (PERCENTAGE_METRIC.contains(metric_name)) {
@@ -166,6 +229,18 @@ public class GangliaMetric {
 
   }
 
+  /**
+   * Determine whether the named metric is a percentage, for which values above
+   * 100 are discarded.
+   *
+   * @param metricName  the metric name
+   *
+   * @return true if the metric is a percentage
+   */
+  static boolean isPercentageMetric(String metricName) {
+    return PERCENTAGE_METRIC.contains(metricName);
+  }
+
   // ----- Object overrides --------------------------------------------------
 
   @Override
@@ -195,7 +270,7 @@ public class GangliaMetric {
 
     boolean first = true;
     stringBuilder.append("[");
-    for (Number[] m : datapoints) {
+    for (Number[] m : getDatapoints()) {
       if (!first) {
         stringBuilder.append(",");
       }
@@ -211,6 +286,11 @@ public class GangliaMetric {
     return stringBuilder.toString();
   }
 
+  private Number getValue(int i) {
+    return decimals.get(i) ?
+        (Number) Double.longBitsToDouble(values[i]) : (Number) values[i];
+  }
+
   public static class TemporalMetric {
     private Number m_value;
     private Number m_time;
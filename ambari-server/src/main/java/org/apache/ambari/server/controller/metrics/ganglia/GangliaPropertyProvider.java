@@ -19,6 +19,7 @@
 package org.apache.ambari.server.controller.metrics.ganglia;
 
 import org.apache.ambari.server.configuration.ComponentSSLConfiguration;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.PropertyInfo;
 import org.apache.ambari.server.controller.metrics.MetricHostProvider;
 import org.apache.ambari.server.controller.metrics.MetricsPropertyProvider;
@@ -27,13 +28,12 @@ import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.TemporalInfo;
 import org.apache.ambari.server.controller.utilities.StreamProvider;
+import org.apache.ambari.server.controller.utilities.TtlLoadingCache;
 import org.apache.http.client.utils.URIBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -43,6 +43,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import static org.apache.ambari.server.controller.metrics.MetricsServiceProvider.MetricsService.GANGLIA;
@@ -77,6 +78,12 @@ public abstract class GangliaPropertyProvider extends MetricsPropertyProvider {
   protected final static Logger LOG =
       LoggerFactory.getLogger(GangliaPropertyProvider.class);
 
+  /**
+   * Metrics fetched by all Ganglia property providers; null if fetched
+   * metrics are not cached.
+   */
+  private static volatile TtlLoadingCache<String, List<GangliaMetric>> metricCache = null;
+
   // ----- Constructors ------------------------------------------------------
 
   public GangliaPropertyProvider(Map<String, Map<String, PropertyInfo>> componentPropertyInfoMap,
@@ -115,6 +122,24 @@ public abstract class GangliaPropertyProvider extends MetricsPropertyProvider {
 
   // ----- GangliaPropertyProvider -------------------------------------------
 
+  /**
+   * Initialize the metric cache from the configuration.
+   *
+   * @param configuration  the configuration
+   */
+  public static void init(Configuration configuration) {
+    long ttl = configuration.getGangliaMetricCacheTTL();
+    metricCache = ttl > 0 ? new TtlLoadingCache<String, List<GangliaMetric>>("Ganglia metrics", ttl) : null;
+  }
+
+  /**
+   * Get the metric cache shared by all Ganglia property providers.
+   *
+   * @return the metric cache or null if fetched metrics are not cached
+   */
+  public static TtlLoadingCache<String, List<GangliaMetric>> getMetricCache() {
+    return metricCache;
+  }
 
   /**
    * Get the ganglia cluster name for the given resource.
@@ -308,14 +333,13 @@ public abstract class GangliaPropertyProvider extends MetricsPropertyProvider {
    * @return a range of temporal data or a point in time value if not temporal
    */
   private static Object getValue(GangliaMetric metric, boolean isTemporal) {
-    Number[][] dataPoints = metric.getDatapoints();
-
-    int length = dataPoints.length;
     if (isTemporal) {
-      return length > 0 ? dataPoints : null;
+      Number[][] dataPoints = metric.getDatapoints();
+      return dataPoints.length > 0 ? dataPoints : null;
     } else {
       // return the value of the last data point
-      return length > 0 ? dataPoints[length - 1][0] : 0;
+      Number value = metric.getLastValue();
+      return value != null ? value : 0;
     }
   }
 
@@ -328,7 +352,6 @@ public abstract class GangliaPropertyProvider extends MetricsPropertyProvider {
    * The information required to make a single RRD request.
    */
   private class RRDRequest {
-    private static final int POPULATION_TIME_UPPER_LIMIT = 5;
     private final String clusterName;
     private final TemporalInfo temporalInfo;
     private final Map<ResourceKey, Set<Resource>> resources = new HashMap<ResourceKey, Set<Resource>>();
@@ -390,7 +413,6 @@ public abstract class GangliaPropertyProvider extends MetricsPropertyProvider {
       }
       
 
-      BufferedReader reader = null;
       try {
         
         //Check if host is live
@@ -405,71 +427,22 @@ public abstract class GangliaPropertyProvider extends MetricsPropertyProvider {
           return Collections.emptySet();
         }
 
-        reader = new BufferedReader(new InputStreamReader(
-            getStreamProvider().readFrom(spec, "POST", params)));
-
-        String feedStart = reader.readLine();
-        if (feedStart == null || feedStart.isEmpty()) {
-          LOG.info("Empty feed while getting ganglia metrics for spec => "+
-            spec);
-          return Collections.emptySet();
-        }
-        int startTime = convertToNumber(feedStart).intValue();
-
-        String dsName = reader.readLine();
-        if (dsName == null || dsName.isEmpty()) {
-          LOG.info("Feed without body while reading ganglia metrics for spec " +
-            "=> " + spec);
-          return Collections.emptySet();
-        }
-
-        while(!"[~EOF]".equals(dsName)) {
-          GangliaMetric metric = new GangliaMetric();
-          List<GangliaMetric.TemporalMetric> listTemporalMetrics =
-              new ArrayList<GangliaMetric.TemporalMetric>();
-
-          metric.setDs_name(dsName);
-          metric.setCluster_name(reader.readLine());
-          metric.setHost_name(reader.readLine());
-          metric.setMetric_name(reader.readLine());
-
-          String timeStr = reader.readLine();
-          String stepStr = reader.readLine();
-          if (timeStr == null || timeStr.isEmpty() || stepStr == null
-              || stepStr.isEmpty()) {
-            LOG.info("Unexpected end of stream reached while getting ganglia " +
-                "metrics for spec => " + spec);
-            return Collections.emptySet();
-          }
-          int time = convertToNumber(timeStr).intValue();
-          int step = convertToNumber(stepStr).intValue();
-
-          String val     = reader.readLine();
-          String lastVal = null;
-
-          while(val!=null && !"[~EOM]".equals(val)) {
-            if (val.startsWith("[~r]")) {
-              Integer repeat = Integer.valueOf(val.substring(4)) - 1;
-              for (int i = 0; i < repeat; ++i) {
-                if (! "[~n]".equals(lastVal)) {
-                  GangliaMetric.TemporalMetric tm = new GangliaMetric.TemporalMetric(lastVal, time);
-                  if (tm.isValid()) listTemporalMetrics.add(tm);
-                }
-                time += step;
-              }
-            } else {
-              if (! "[~n]".equals(val)) {
-                GangliaMetric.TemporalMetric tm = new GangliaMetric.TemporalMetric(val, time);
-                if (tm.isValid()) listTemporalMetrics.add(tm);
-              }
-              time += step;
+        List<GangliaMetric> gangliaMetrics;
+        TtlLoadingCache<String, List<GangliaMetric>> cache = metricCache;
+        if (cache == null) {
+          gangliaMetrics = readMetrics(spec, params);
+        } else {
+          final String fetchSpec   = spec;
+          final String fetchParams = params;
+          gangliaMetrics = cache.get(specWithParams, new Callable<List<GangliaMetric>>() {
+            @Override
+            public List<GangliaMetric> call() throws Exception {
+              return readMetrics(fetchSpec, fetchParams);
             }
-            lastVal = val;
-            val = reader.readLine();
-          }
-
-          metric.setDatapointsFromList(listTemporalMetrics);
+          });
+        }
 
+        for (GangliaMetric metric : gangliaMetrics) {
           ResourceKey key = new ResourceKey(metric.getHost_name(), metric.getCluster_name());
           Set<Resource> resourceSet = resources.get(key);
           if (resourceSet != null) {
@@ -477,43 +450,39 @@ public abstract class GangliaPropertyProvider extends MetricsPropertyProvider {
               populateResource(resource, metric);
             }
           }
-
-          dsName = reader.readLine();
-          if (dsName == null || dsName.isEmpty()) {
-            LOG.info("Unexpected end of stream reached while getting ganglia " +
-              "metrics for spec => " + spec);
-            return Collections.emptySet();
-          }
-        }
-        String feedEnd = reader.readLine();
-        if (feedEnd == null || feedEnd.isEmpty()) {
-          LOG.info("Error reading end of feed while getting ganglia metrics " +
-            "for spec => " + spec);
-        } else {
-
-          int endTime = convertToNumber(feedEnd).intValue();
-          int totalTime = endTime - startTime;
-          if (LOG.isInfoEnabled() && totalTime > POPULATION_TIME_UPPER_LIMIT) {
-            LOG.info("Ganglia resource population time: " + totalTime);
-          }
         }
       } catch (IOException e) {
         if (LOG.isErrorEnabled()) {
           LOG.error("Caught exception getting Ganglia metrics : spec=" + spec);
         }
+      }
+      //todo: filter out resources and return keepers
+      return Collections.emptySet();
+    }
+
+    /**
+     * Read and parse the metrics from the Ganglia rrd script.
+     *
+     * @param spec    the URL of the script
+     * @param params  the request parameters
+     *
+     * @return the metrics
+     *
+     * @throws IOException if the metrics could not be read
+     */
+    private List<GangliaMetric> readMetrics(String spec, String params) throws IOException {
+      InputStream in = getStreamProvider().readFrom(spec, "POST", params);
+      try {
+        return new GangliaFeedParser(in, spec).parse();
       } finally {
-        if (reader != null) {
-          try {
-            reader.close();
-          } catch (IOException e) {
-            if (LOG.isWarnEnabled()) {
-              LOG.warn("Unable to close http input steam : spec=" + spec, e);
-            }
+        try {
+          in.close();
+        } catch (IOException e) {
+          if (LOG.isWarnEnabled()) {
+            LOG.warn("Unable to close http input steam : spec=" + spec, e);
           }
         }
       }
-      //todo: filter out resources and return keepers
-      return Collections.emptySet();
     }
 
 
@@ -570,10 +539,6 @@ public abstract class GangliaPropertyProvider extends MetricsPropertyProvider {
         }
       }
     }
-
-    private Number convertToNumber(String s) {
-      return s.contains(".") ? Double.parseDouble(s) : Long.parseLong(s);
-    }
   }
 
 
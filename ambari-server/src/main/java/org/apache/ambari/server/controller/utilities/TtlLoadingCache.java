@@ -0,0 +1,261 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.utilities;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of loaded values that are reused until their time to live has
+ * elapsed. Concurrent requests for the same key share a single load; the
+ * first caller loads the value and the others wait for it. Failed loads are
+ * not cached.
+ *
+ * Cached values are shared by all callers and must not be modified.
+ *
+ * @param <K>  the key type
+ * @param <V>  the value type
+ */
+public class TtlLoadingCache<K, V> {
+
+  protected final static Logger LOG =
+      LoggerFactory.getLogger(TtlLoadingCache.class);
+
+  /**
+   * The number of entries above which expired entries are purged whenever a
+   * value is loaded.
+   */
+  private static final int PURGE_THRESHOLD = 1000;
+
+  /**
+   * A description of the cached values, used in log and error messages.
+   */
+  private final String description;
+
+  /**
+   * The time to live of a value, in milliseconds.
+   */
+  private final long ttl;
+
+  /**
+   * Loaded or loading values.
+   */
+  private final ConcurrentMap<K, Entry> entries =
+      new ConcurrentHashMap<K, Entry>();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private final AtomicLong loadTime = new AtomicLong();
+
+
+  // ----- Constructors ------------------------------------------------------
+
+  /**
+   * Create a cache.
+   *
+   * @param description  a description of the cached values, e.g. "JMX snapshot"
+   * @param ttl          the time to live of a value in milliseconds
+   */
+  public TtlLoadingCache(String description, long ttl) {
+    this.description = description;
+    this.ttl         = ttl;
+  }
+
+
+  // ----- TtlLoadingCache ---------------------------------------------------
+
+  /**
+   * Get the value for the given key, loading it if there is no value that is
+   * still fresh. If another thread is already loading the value then wait for
+   * it instead of loading it again.
+   *
+   * @param key     the key
+   * @param loader  loads the value
+   *
+   * @return the value
+   *
+   * @throws IOException if the value could not be loaded
+   */
+  public V get(K key, Callable<V> loader) throws IOException {
+
+    while (true) {
+      long now = System.currentTimeMillis();
+      Entry entry = entries.get(key);
+
+      if (entry != null && !entry.isExpired(now)) {
+        hitCount.incrementAndGet();
+        return entry.getValue(key);
+      }
+
+      Entry newEntry = new Entry(loader);
+      boolean added = entry == null ?
+          entries.putIfAbsent(key, newEntry) == null :
+          entries.replace(key, entry, newEntry);
+
+      if (added) {
+        missCount.incrementAndGet();
+        if (entries.size() > PURGE_THRESHOLD) {
+          purgeExpired(now);
+        }
+        newEntry.load();
+        return newEntry.getValue(key);
+      }
+      // another thread started a load first; use it
+    }
+  }
+
+  /**
+   * Get the value for the given key only if it is loaded and still fresh.
+   *
+   * @param key  the key
+   *
+   * @return the value or null if there is no fresh value
+   */
+  public V getIfFresh(K key) {
+    Entry entry = entries.get(key);
+    if (entry == null || !entry.task.isDone() ||
+        entry.isExpired(System.currentTimeMillis())) {
+      return null;
+    }
+    try {
+      V value = entry.getValue(key);
+      hitCount.incrementAndGet();
+      return value;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Discard all values.
+   */
+  public void clear() {
+    entries.clear();
+  }
+
+  /**
+   * @return the number of requests served from a loaded or loading value
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return the number of requests that had to load a value
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return the number of loads that failed
+   */
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+  /**
+   * @return the average time taken to load a value in milliseconds
+   */
+  public double getAverageLoadTime() {
+    long misses = missCount.get();
+    return misses == 0 ? 0 : loadTime.get() / (double) misses / 1000000d;
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  private void purgeExpired(long now) {
+    Iterator<Map.Entry<K, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().getValue().isExpired(now)) {
+        iterator.remove();
+      }
+    }
+  }
+
+
+  // ----- inner class : Entry -----------------------------------------------
+
+  /**
+   * A value that is loaded or being loaded.
+   */
+  private class Entry {
+    private final FutureTask<V> task;
+
+    /**
+     * The time the load completed, or 0 while it is in flight.
+     */
+    private volatile long loadedTime = 0L;
+
+    private Entry(Callable<V> loader) {
+      task = new FutureTask<V>(loader);
+    }
+
+    private void load() {
+      long start = System.nanoTime();
+      task.run();
+      long elapsed = System.nanoTime() - start;
+
+      loadTime.addAndGet(elapsed);
+      loadedTime = System.currentTimeMillis();
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Loaded " + description + " in " + elapsed / 1000000L + " ms" +
+            " (hits=" + hitCount.get() + ", misses=" + missCount.get() + ")");
+      }
+    }
+
+    private boolean isExpired(long now) {
+      long loaded = loadedTime;
+      return loaded != 0L && now - loaded >= ttl;
+    }
+
+    private V getValue(K key) throws IOException {
+      try {
+        return task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for " + key);
+      } catch (ExecutionException e) {
+        // don't cache the failure
+        if (entries.remove(key, this)) {
+          failureCount.incrementAndGet();
+        }
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException("Unable to load " + description + " from " + key, cause);
+      }
+    }
+  }
+}
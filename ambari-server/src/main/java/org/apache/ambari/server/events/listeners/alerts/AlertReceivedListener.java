@@ -19,6 +19,7 @@ package org.apache.ambari.server.events.listeners.alerts;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.EagerSingleton;
@@ -46,6 +47,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -80,6 +82,13 @@ public class AlertReceivedListener {
    */
   private AlertEventPublisher m_alertEventPublisher;
 
+  /**
+   * Locks serializing the updates of a current alert, by cluster, definition
+   * name and host. Alerts are received concurrently and two alerts for the
+   * same current alert must not be applied on top of the same state.
+   */
+  private final Striped<Lock> m_currentAlertLocks = Striped.lock(64);
+
   /**
    * Constructor.
    *
@@ -134,6 +143,33 @@ public class AlertReceivedListener {
       return;
     }
 
+    String hostName = definition.isHostIgnored() ? null : alert.getHost();
+    Lock lock = m_currentAlertLocks.get(clusterId + "/" + alert.getName() + "/"
+        + hostName);
+
+    lock.lock();
+    try {
+      updateCurrentAlert(event, definition);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Creates or updates the current alert of a received alert, creating a new
+   * history record if the state changed. The caller holds the lock of the
+   * current alert.
+   *
+   * @param event
+   *          the event to handle.
+   * @param definition
+   *          the definition of the alert.
+   */
+  private void updateCurrentAlert(AlertReceivedEvent event,
+      AlertDefinitionEntity definition) {
+    Alert alert = event.getAlert();
+    long clusterId = event.getClusterId();
+
     AlertCurrentEntity current = null;
 
     if (null == alert.getHost() || definition.isHostIgnored()) {
@@ -159,9 +195,11 @@ public class AlertReceivedListener {
 
       m_alertEventPublisher.publish(initialAlertEvent);
     } else if (alert.getState() == current.getAlertHistory().getAlertState()) {
+      // the state has not changed, so the history is untouched and the
+      // update can be deferred when current alerts are cached
       current.setLatestTimestamp(alert.getTimestamp());
       current.setLatestText(alert.getText());
-      current = m_alertsDao.merge(current);
+      current = m_alertsDao.mergeLatest(current);
     } else {
       if (LOG.isDebugEnabled()) {
         LOG.debug(
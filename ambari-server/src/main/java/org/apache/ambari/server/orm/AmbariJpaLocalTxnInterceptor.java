@@ -33,6 +33,8 @@ import javax.persistence.EntityTransaction;
 import javax.persistence.PersistenceException;
 import java.lang.reflect.Method;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
 
@@ -43,6 +45,24 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
   private final UnitOfWork unitOfWork = null;
   // Tracks if the unit of work was begun implicitly by this transaction.
   private final ThreadLocal<Boolean> didWeStartWork = new ThreadLocal<Boolean>();
+  // Actions to run once the transaction of the thread commits.
+  private static final ThreadLocal<List<Runnable>> afterCommitActions = new ThreadLocal<List<Runnable>>();
+
+  /**
+   * Runs the given action once the transaction of the current thread commits.
+   * The action is discarded if the transaction rolls back. If the thread has
+   * no transaction started by this interceptor the action is run right away.
+   *
+   * @param action the action, which should only update in-memory state
+   */
+  public static void runAfterCommit(Runnable action) {
+    List<Runnable> actions = afterCommitActions.get();
+    if (null == actions) {
+      action.run();
+    } else {
+      actions.add(action);
+    }
+  }
 
   public Object invoke(MethodInvocation methodInvocation) throws Throwable {
 
@@ -62,6 +82,7 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
 
     final EntityTransaction txn = em.getTransaction();
     txn.begin();
+    afterCommitActions.set(new ArrayList<Runnable>());
 
     Object result;
     try {
@@ -69,8 +90,13 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
 
     } catch (Exception e) {
       //commit transaction only if rollback didn't occur
-      if (rollbackIfNecessary(transactional, e, txn)) {
-        txn.commit();
+      try {
+        if (rollbackIfNecessary(transactional, e, txn)) {
+          txn.commit();
+          runAfterCommitActions();
+        }
+      } finally {
+        afterCommitActions.remove();
       }
 
       detailedLogForPersistenceError(e);
@@ -90,6 +116,7 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
     try {
       txn.commit();
     } catch (Exception e) {
+      afterCommitActions.remove();
       detailedLogForPersistenceError(e);
       throw e;
     } finally {
@@ -100,10 +127,33 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
       }
     }
 
+    runAfterCommitActions();
+
     //or return result
     return result;
   }
 
+  /**
+   * Runs and clears the actions registered for the committed transaction. A
+   * failed action is logged and does not fail the caller, whose changes are
+   * already committed.
+   */
+  private void runAfterCommitActions() {
+    List<Runnable> actions = afterCommitActions.get();
+    afterCommitActions.remove();
+    if (null == actions) {
+      return;
+    }
+
+    for (Runnable action : actions) {
+      try {
+        action.run();
+      } catch (RuntimeException e) {
+        LOG.error("Unable to run an action after the transaction committed", e);
+      }
+    }
+  }
+
   private void detailedLogForPersistenceError(Exception e) {
     if (e instanceof PersistenceException) {
       PersistenceException rbe = (PersistenceException) e;
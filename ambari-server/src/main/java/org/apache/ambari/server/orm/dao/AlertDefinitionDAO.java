@@ -20,11 +20,14 @@ package org.apache.ambari.server.orm.dao;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 
 import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.RootServiceResponseFactory;
 import org.apache.ambari.server.controller.internal.AlertDefinitionResourceProvider;
 import org.apache.ambari.server.events.AlertDefinitionChangedEvent;
@@ -47,6 +50,9 @@ import com.google.inject.persist.Transactional;
 /**
  * The {@link AlertDefinitionDAO} class is used to manage the persistence and
  * retrieval of {@link AlertDefinitionEntity} instances.
+ * <p/>
+ * When {@link Configuration#isAlertCacheEnabled()} is set, definitions found
+ * by name are cached until any definition is created, merged or removed.
  */
 @Singleton
 public class AlertDefinitionDAO {
@@ -98,6 +104,28 @@ public class AlertDefinitionDAO {
   @Inject
   private AlertDefinitionFactory alertDefinitionFactory;
 
+  /**
+   * {@code true} if definitions found by name are cached.
+   */
+  private final boolean cacheEnabled;
+
+  /**
+   * Definitions keyed by cluster ID and definition name.
+   */
+  private final ConcurrentMap<String, AlertDefinitionEntity> definitionsByName =
+      new ConcurrentHashMap<String, AlertDefinitionEntity>();
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          used to determine whether definitions are cached.
+   */
+  @Inject
+  public AlertDefinitionDAO(Configuration configuration) {
+    cacheEnabled = configuration.isAlertCacheEnabled();
+  }
+
   /**
    * Gets an alert definition with the specified ID.
    *
@@ -121,13 +149,27 @@ public class AlertDefinitionDAO {
    * @return the alert definition or {@code null} if none exists.
    */
   public AlertDefinitionEntity findByName(long clusterId, String definitionName) {
+    String key = null;
+    if (cacheEnabled) {
+      key = clusterId + "/" + definitionName;
+      AlertDefinitionEntity definition = definitionsByName.get(key);
+      if (null != definition) {
+        return definition;
+      }
+    }
+
     TypedQuery<AlertDefinitionEntity> query = entityManagerProvider.get().createNamedQuery(
         "AlertDefinitionEntity.findByName", AlertDefinitionEntity.class);
 
     query.setParameter("clusterId", clusterId);
     query.setParameter("definitionName", definitionName);
 
-    return daoUtils.selectSingle(query);
+    AlertDefinitionEntity definition = daoUtils.selectSingle(query);
+    if (null != key && null != definition) {
+      definitionsByName.put(key, definition);
+    }
+
+    return definition;
   }
 
   /**
@@ -293,6 +335,7 @@ public class AlertDefinitionDAO {
       throws AmbariException {
     EntityManager entityManager = entityManagerProvider.get();
     entityManager.persist(alertDefinition);
+    definitionsByName.clear();
 
     AlertGroupEntity group = dispatchDao.findDefaultServiceGroup(
         alertDefinition.getClusterId(), alertDefinition.getServiceName());
@@ -348,6 +391,8 @@ public class AlertDefinitionDAO {
     AlertDefinitionEntity entity = entityManagerProvider.get().merge(
         alertDefinition);
 
+    definitionsByName.clear();
+
     AlertDefinition definition = alertDefinitionFactory.coerce(entity);
 
     AlertDefinitionChangedEvent event = new AlertDefinitionChangedEvent(
@@ -387,6 +432,7 @@ public class AlertDefinitionDAO {
   public void remove(AlertDefinitionEntity alertDefinition) {
     dispatchDao.removeNoticeByDefinitionId(alertDefinition.getDefinitionId());
     alertsDao.removeByDefinitionId(alertDefinition.getDefinitionId());
+    definitionsByName.clear();
 
     EntityManager entityManager = entityManagerProvider.get();
 
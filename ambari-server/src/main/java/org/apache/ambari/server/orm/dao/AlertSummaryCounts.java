@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.orm.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.apache.ambari.server.state.AlertState;
+import org.apache.ambari.server.state.MaintenanceState;
+
+/**
+ * The {@link AlertSummaryCounts} class keeps the number of current alerts of a
+ * cluster in each {@link AlertState}, for the whole cluster, per service and
+ * per host, along with the number of hosts whose most severe alert is in each
+ * state. It produces the same summaries as the aggregate queries of
+ * {@link AlertsDAO} without going to the database.
+ * <p/>
+ * Alerts that are in maintenance mode are counted as such instead of by their
+ * state, and do not contribute to the state of their host.
+ */
+final class AlertSummaryCounts {
+
+  /**
+   * Index of the maintenance count in the count arrays; the other indexes are
+   * the {@link AlertState} ordinals.
+   */
+  private static final int MAINTENANCE = AlertState.values().length;
+
+  /**
+   * Host severities, in increasing order; a host whose alerts are all
+   * {@link AlertState#OK} or in maintenance mode is {@link AlertState#OK}.
+   */
+  private static final AlertState[] HOST_SEVERITIES = { AlertState.OK,
+      AlertState.UNKNOWN, AlertState.WARNING, AlertState.CRITICAL };
+
+  /**
+   * The counted alerts by current alert ID.
+   */
+  private final Map<Long, CountedAlert> m_alerts = new HashMap<Long, CountedAlert>();
+
+  private final int[] m_clusterCounts = new int[MAINTENANCE + 1];
+
+  private final Map<String, int[]> m_serviceCounts = new HashMap<String, int[]>();
+
+  private final Map<String, int[]> m_hostCounts = new HashMap<String, int[]>();
+
+  /**
+   * The number of hosts by severity, indexed as {@link #HOST_SEVERITIES}.
+   */
+  private final int[] m_hostSeverityCounts = new int[HOST_SEVERITIES.length];
+
+  /**
+   * Counts the specified current alert, replacing the previous state of an
+   * alert that is already counted.
+   *
+   * @param current
+   *          the current alert (not {@code null}).
+   */
+  synchronized void put(AlertCurrentEntity current) {
+    AlertHistoryEntity history = current.getAlertHistory();
+    put(current.getAlertId(), history.getServiceName(), history.getHostName(),
+        history.getAlertState(), current.getMaintenanceState());
+  }
+
+  /**
+   * Counts a current alert, replacing the previous state of an alert that is
+   * already counted.
+   *
+   * @param alertId
+   *          the ID of the current alert.
+   * @param serviceName
+   *          the service of the alert, or {@code null}.
+   * @param hostName
+   *          the host of the alert, or {@code null}.
+   * @param alertState
+   *          the state of the alert (not {@code null}).
+   * @param maintenanceState
+   *          the maintenance state of the alert.
+   */
+  synchronized void put(Long alertId, String serviceName, String hostName,
+      AlertState alertState, MaintenanceState maintenanceState) {
+    remove(alertId);
+
+    int index = maintenanceState != MaintenanceState.OFF ? MAINTENANCE
+        : alertState.ordinal();
+
+    CountedAlert alert = new CountedAlert(serviceName, hostName, index);
+
+    m_alerts.put(alertId, alert);
+    update(alert, 1);
+  }
+
+  /**
+   * Stops counting the specified current alert.
+   *
+   * @param alertId
+   *          the ID of the current alert.
+   */
+  synchronized void remove(Long alertId) {
+    CountedAlert alert = m_alerts.remove(alertId);
+    if (null != alert) {
+      update(alert, -1);
+    }
+  }
+
+  /**
+   * Gets the summary of the cluster's alerts, optionally limited to a service
+   * or a host.
+   *
+   * @param serviceName
+   *          the service name, or {@code null} for all services.
+   * @param hostName
+   *          the host name, or {@code null} for all hosts. Only one of the
+   *          service and host may be specified.
+   * @return the summary (never {@code null}).
+   */
+  synchronized AlertSummaryDTO getSummary(String serviceName, String hostName) {
+    int[] counts = m_clusterCounts;
+    if (null != serviceName) {
+      counts = m_serviceCounts.get(serviceName);
+    } else if (null != hostName) {
+      counts = m_hostCounts.get(hostName);
+    }
+
+    if (null == counts) {
+      return new AlertSummaryDTO(0, 0, 0, 0, 0);
+    }
+
+    return new AlertSummaryDTO(counts[AlertState.OK.ordinal()],
+        counts[AlertState.WARNING.ordinal()],
+        counts[AlertState.CRITICAL.ordinal()],
+        counts[AlertState.UNKNOWN.ordinal()], counts[MAINTENANCE]);
+  }
+
+  /**
+   * @return the number of hosts by the state of their most severe alert
+   *         (never {@code null}).
+   */
+  synchronized AlertHostSummaryDTO getHostSummary() {
+    return new AlertHostSummaryDTO(m_hostSeverityCounts[0],
+        m_hostSeverityCounts[1], m_hostSeverityCounts[2],
+        m_hostSeverityCounts[3]);
+  }
+
+  /**
+   * Adds or subtracts an alert from the counts.
+   */
+  private void update(CountedAlert alert, int delta) {
+    m_clusterCounts[alert.m_index] += delta;
+
+    if (null != alert.m_serviceName) {
+      update(m_serviceCounts, alert.m_serviceName, alert.m_index, delta);
+    }
+
+    if (null != alert.m_hostName) {
+      int[] hostCounts = m_hostCounts.get(alert.m_hostName);
+      if (null != hostCounts) {
+        m_hostSeverityCounts[getSeverity(hostCounts)]--;
+      }
+
+      hostCounts = update(m_hostCounts, alert.m_hostName, alert.m_index, delta);
+      if (null != hostCounts) {
+        m_hostSeverityCounts[getSeverity(hostCounts)]++;
+      }
+    }
+  }
+
+  /**
+   * Adds to one of the counts of a service or host.
+   *
+   * @return the counts, or {@code null} if the service or host no longer has
+   *         any alerts.
+   */
+  private static int[] update(Map<String, int[]> countsByName, String name,
+      int index, int delta) {
+    int[] counts = countsByName.get(name);
+    if (null == counts) {
+      counts = new int[MAINTENANCE + 1];
+      countsByName.put(name, counts);
+    }
+
+    counts[index] += delta;
+
+    for (int count : counts) {
+      if (count > 0) {
+        return counts;
+      }
+    }
+
+    countsByName.remove(name);
+    return null;
+  }
+
+  /**
+   * @return the index in {@link #HOST_SEVERITIES} of the most severe state
+   *         that is not in maintenance mode.
+   */
+  private static int getSeverity(int[] hostCounts) {
+    for (int i = HOST_SEVERITIES.length - 1; i > 0; i--) {
+      if (hostCounts[HOST_SEVERITIES[i].ordinal()] > 0) {
+        return i;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * The scope and count index of a counted alert.
+   */
+  private static final class CountedAlert {
+    private final String m_serviceName;
+    private final String m_hostName;
+    private final int m_index;
+
+    private CountedAlert(String serviceName, String hostName, int index) {
+      m_serviceName = serviceName;
+      m_hostName = hostName;
+      m_index = index;
+    }
+  }
+}
@@ -21,6 +21,9 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
@@ -30,9 +33,11 @@ import javax.persistence.metamodel.SingularAttribute;
 
 import org.apache.ambari.server.api.query.JpaPredicateVisitor;
 import org.apache.ambari.server.api.query.JpaSortBuilder;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.AlertHistoryRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.utilities.PredicateHelper;
+import org.apache.ambari.server.orm.AmbariJpaLocalTxnInterceptor;
 import org.apache.ambari.server.orm.RequiresSession;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
 import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
@@ -42,7 +47,11 @@ import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.alert.Scope;
 import org.eclipse.persistence.config.HintValues;
 import org.eclipse.persistence.config.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -52,9 +61,32 @@ import com.google.inject.persist.Transactional;
  * The {@link AlertsDAO} class manages the {@link AlertHistoryEntity} and
  * {@link AlertCurrentEntity} instances. Each {@link AlertHistoryEntity} is
  * known as an "alert" that has been triggered and received.
+ * <p/>
+ * When {@link Configuration#isAlertCacheEnabled()} is set, current alerts
+ * looked up by cluster, definition name and host are kept in memory. Lookups
+ * return a copy of the cached alert, which callers may change, and alerts
+ * which are created or merged are only cached once their transaction
+ * commits. Updates to current alerts whose state has not changed are made
+ * through {@link #mergeLatest(AlertCurrentEntity)} and are only written to the
+ * database by {@link #flushCurrentAlerts()}, which allows many updates to the
+ * same alert to be coalesced into a single {@code UPDATE}.
+ * <p/>
+ * When {@link Configuration#isAlertSummaryCacheEnabled()} is set, the alert
+ * summaries returned by {@link #findCurrentCounts(long, String, String)} and
+ * {@link #findCurrentHostCounts(long)} are counted in memory. The counts of a
+ * cluster are built from the database on first use and are then kept up to
+ * date as current alerts are created and merged. They are discarded whenever
+ * current alerts are removed. Changes are only applied to the counts once their
+ * transaction commits, so a rollback does not leave them counting a state that
+ * was never saved.
  */
 @Singleton
 public class AlertsDAO {
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(AlertsDAO.class);
+
   /**
    * A template of JPQL for getting the number of hosts in various states.
    */
@@ -86,6 +118,54 @@ public class AlertsDAO {
   @Inject
   private DaoUtils daoUtils;
 
+  /**
+   * {@code true} if current alerts are cached.
+   */
+  private final boolean cacheEnabled;
+
+  /**
+   * Current alerts keyed by cluster, definition name and host.
+   */
+  private final Cache<CurrentAlertKey, AlertCurrentEntity> currentAlertCache;
+
+  /**
+   * Current alerts, by ID, whose latest timestamp and text have changed but
+   * have not yet been written to the database.
+   */
+  private final ConcurrentMap<Long, AlertCurrentEntity> dirtyCurrentAlerts =
+      new ConcurrentHashMap<Long, AlertCurrentEntity>();
+
+  /**
+   * {@code true} if alert summaries are counted in memory.
+   */
+  private final boolean summaryCacheEnabled;
+
+  /**
+   * Alert summary counts by cluster ID.
+   */
+  private final ConcurrentMap<Long, AlertSummaryCounts> summaryCounts =
+      new ConcurrentHashMap<Long, AlertSummaryCounts>();
+
+  /**
+   * Incremented on every change to current alerts so that counts which were
+   * built from the database while alerts changed are not kept.
+   */
+  private final AtomicLong summaryModifications = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          used to determine whether current alerts are cached.
+   */
+  @Inject
+  public AlertsDAO(Configuration configuration) {
+    cacheEnabled = configuration.isAlertCacheEnabled();
+    summaryCacheEnabled = configuration.isAlertSummaryCacheEnabled();
+    currentAlertCache = CacheBuilder.newBuilder().maximumSize(
+        configuration.getAlertCacheSize()).build();
+  }
+
   /**
    * Gets an alert with the specified ID.
    *
@@ -339,6 +419,10 @@ public class AlertsDAO {
    */
   @RequiresSession
   public AlertSummaryDTO findCurrentCounts(long clusterId, String serviceName, String hostName) {
+    if (summaryCacheEnabled && (null == serviceName || null == hostName)) {
+      return getSummaryCounts(clusterId).getSummary(serviceName, hostName);
+    }
+
     String sql = String.format(ALERT_COUNT_SQL_TEMPLATE,
         AlertSummaryDTO.class.getName());
 
@@ -385,6 +469,10 @@ public class AlertsDAO {
    */
   @RequiresSession
   public AlertHostSummaryDTO findCurrentHostCounts(long clusterId) {
+    if (summaryCacheEnabled) {
+      return getSummaryCounts(clusterId).getHostSummary();
+    }
+
     // use Number here since some databases like MySQL return Long and some
     // return Integer and we don't want a class cast exception
     TypedQuery<Number> query = entityManagerProvider.get().createQuery(
@@ -474,6 +562,14 @@ public class AlertsDAO {
   @RequiresSession
   public AlertCurrentEntity findCurrentByHostAndName(long clusterId, String hostName,
       String alertName) {
+    CurrentAlertKey key = null;
+    if (cacheEnabled) {
+      key = new CurrentAlertKey(clusterId, alertName, hostName);
+      AlertCurrentEntity alert = currentAlertCache.getIfPresent(key);
+      if (null != alert) {
+        return copyOf(alert);
+      }
+    }
 
     TypedQuery<AlertCurrentEntity> query = entityManagerProvider.get().createNamedQuery(
         "AlertCurrentEntity.findByHostAndName", AlertCurrentEntity.class);
@@ -483,7 +579,7 @@ public class AlertsDAO {
     query.setParameter("definitionName", alertName);
 
     query = setQueryRefreshHint(query);
-    return daoUtils.selectOne(query);
+    return cacheCurrent(key, daoUtils.selectOne(query));
   }
 
   /**
@@ -510,6 +606,7 @@ public class AlertsDAO {
     historyQuery.executeUpdate();
 
     entityManager.clear();
+    invalidateCurrentAlerts();
   }
 
   /**
@@ -524,7 +621,9 @@ public class AlertsDAO {
         "AlertCurrentEntity.removeByHistoryId", AlertCurrentEntity.class);
 
     query.setParameter("historyId", historyId);
-    return query.executeUpdate();
+    int removed = query.executeUpdate();
+    invalidateCurrentAlerts();
+    return removed;
   }
 
   /**
@@ -537,7 +636,9 @@ public class AlertsDAO {
     TypedQuery<AlertCurrentEntity> query = entityManagerProvider.get().createNamedQuery(
         "AlertCurrentEntity.removeDisabled", AlertCurrentEntity.class);
 
-    return query.executeUpdate();
+    int removed = query.executeUpdate();
+    invalidateCurrentAlerts();
+    return removed;
   }
 
   /**
@@ -556,7 +657,9 @@ public class AlertsDAO {
         "AlertCurrentEntity.removeByService", AlertCurrentEntity.class);
 
     query.setParameter("serviceName", serviceName);
-    return query.executeUpdate();
+    int removed = query.executeUpdate();
+    invalidateCurrentAlerts();
+    return removed;
   }
 
   /**
@@ -575,7 +678,9 @@ public class AlertsDAO {
         "AlertCurrentEntity.removeByHost", AlertCurrentEntity.class);
 
     query.setParameter("hostName", hostName);
-    return query.executeUpdate();
+    int removed = query.executeUpdate();
+    invalidateCurrentAlerts();
+    return removed;
   }
 
   /**
@@ -604,7 +709,9 @@ public class AlertsDAO {
     query.setParameter("componentName", componentName);
     query.setParameter("hostName", hostName);
 
-    return query.executeUpdate();
+    int removed = query.executeUpdate();
+    invalidateCurrentAlerts();
+    return removed;
   }
 
   /**
@@ -638,7 +745,21 @@ public class AlertsDAO {
    */
   @Transactional
   public AlertHistoryEntity merge(AlertHistoryEntity alert) {
-    return entityManagerProvider.get().merge(alert);
+    AlertHistoryEntity merged = entityManagerProvider.get().merge(alert);
+
+    // the state or scope of a current alert may have changed with its history
+    if (summaryCacheEnabled && null != merged.getClusterId()) {
+      final Long clusterId = merged.getClusterId();
+      AmbariJpaLocalTxnInterceptor.runAfterCommit(new Runnable() {
+        @Override
+        public void run() {
+          summaryModifications.incrementAndGet();
+          summaryCounts.remove(clusterId);
+        }
+      });
+    }
+
+    return merged;
   }
 
   /**
@@ -664,6 +785,8 @@ public class AlertsDAO {
   @Transactional
   public void create(AlertCurrentEntity alert) {
     entityManagerProvider.get().persist(alert);
+    cacheCurrent(alert);
+    countCurrent(alert);
   }
 
   /**
@@ -686,7 +809,91 @@ public class AlertsDAO {
    */
   @Transactional
   public AlertCurrentEntity merge(AlertCurrentEntity alert) {
-    return entityManagerProvider.get().merge(alert);
+    AlertCurrentEntity merged = entityManagerProvider.get().merge(alert);
+    cacheCurrent(merged);
+    countCurrent(merged);
+    return merged;
+  }
+
+  /**
+   * Merges a current alert whose state has not changed, but whose latest
+   * timestamp or text has. If current alerts are cached, then the alert is
+   * only marked as needing to be written and is persisted by the next call to
+   * {@link #flushCurrentAlerts()}; otherwise this is the same as
+   * {@link #merge(AlertCurrentEntity)}.
+   *
+   * @param alert
+   *          the current alert to merge (not {@code null}).
+   * @return the current alert (never {@code null}).
+   */
+  public AlertCurrentEntity mergeLatest(AlertCurrentEntity alert) {
+    if (!cacheEnabled || null == alert.getAlertId()) {
+      return merge(alert);
+    }
+
+    dirtyCurrentAlerts.put(alert.getAlertId(), alert);
+    cacheCurrent(alert);
+    return alert;
+  }
+
+  /**
+   * Writes the latest timestamp and text of all current alerts which were
+   * updated by {@link #mergeLatest(AlertCurrentEntity)} since the last flush.
+   * The updates are made in a single transaction so that they can be batched.
+   * Alerts which have been removed in the meantime are skipped.
+   *
+   * @return the number of current alerts written.
+   */
+  @Transactional
+  public int flushCurrentAlerts() {
+    if (dirtyCurrentAlerts.isEmpty()) {
+      return 0;
+    }
+
+    EntityManager entityManager = entityManagerProvider.get();
+
+    int count = 0;
+    for (Long alertId : dirtyCurrentAlerts.keySet()) {
+      AlertCurrentEntity alert = dirtyCurrentAlerts.remove(alertId);
+      if (null == alert) {
+        continue;
+      }
+
+      AlertCurrentEntity managed = entityManager.find(AlertCurrentEntity.class,
+          alertId);
+
+      if (null == managed) {
+        continue;
+      }
+
+      // never move the latest timestamp backwards; the alert may have been
+      // merged with a newer state since it was marked
+      Long latestTimestamp = alert.getLatestTimestamp();
+      Long persistedTimestamp = managed.getLatestTimestamp();
+      if (null != persistedTimestamp && null != latestTimestamp
+          && persistedTimestamp.longValue() > latestTimestamp.longValue()) {
+        continue;
+      }
+
+      managed.setLatestTimestamp(latestTimestamp);
+      managed.setLatestText(alert.getLatestText());
+      count++;
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Wrote the latest timestamp and text of {} current alerts",
+          count);
+    }
+
+    return count;
+  }
+
+  /**
+   * @return the number of current alerts waiting to be written by
+   *         {@link #flushCurrentAlerts()}.
+   */
+  public int getUnflushedCurrentAlertCount() {
+    return dirtyCurrentAlerts.size();
   }
 
   /**
@@ -698,6 +905,12 @@ public class AlertsDAO {
   @Transactional
   public void remove(AlertCurrentEntity alert) {
     entityManagerProvider.get().remove(merge(alert));
+
+    if (null != alert.getAlertId()) {
+      dirtyCurrentAlerts.remove(alert.getAlertId());
+    }
+
+    invalidateCurrentAlerts();
   }
 
   /**
@@ -738,6 +951,15 @@ public class AlertsDAO {
    */
   @RequiresSession
   public AlertCurrentEntity findCurrentByNameNoHost(long clusterId, String alertName) {
+    CurrentAlertKey key = null;
+    if (cacheEnabled) {
+      key = new CurrentAlertKey(clusterId, alertName, null);
+      AlertCurrentEntity alert = currentAlertCache.getIfPresent(key);
+      if (null != alert) {
+        return copyOf(alert);
+      }
+    }
+
     TypedQuery<AlertCurrentEntity> query = entityManagerProvider.get().createNamedQuery(
         "AlertCurrentEntity.findByNameAndNoHost", AlertCurrentEntity.class);
 
@@ -745,7 +967,171 @@ public class AlertsDAO {
     query.setParameter("definitionName", alertName);
 
     query = setQueryRefreshHint(query);
-    return daoUtils.selectOne(query);
+    return cacheCurrent(key, daoUtils.selectOne(query));
+  }
+
+  /**
+   * Caches a copy of a current alert that was found by cluster, definition
+   * name and host.
+   *
+   * @param key
+   *          the key that the alert was found with, or {@code null} if
+   *          caching is disabled.
+   * @param alert
+   *          the alert that was found, or {@code null} if none.
+   * @return the alert.
+   */
+  private AlertCurrentEntity cacheCurrent(CurrentAlertKey key,
+      AlertCurrentEntity alert) {
+    if (null != key && null != alert) {
+      currentAlertCache.put(key, copyOf(alert));
+    }
+
+    return alert;
+  }
+
+  /**
+   * Caches a copy of a current alert which was created or merged, keyed by
+   * the cluster, definition name and host of its history, once the change is
+   * committed. A rolled back change leaves the previously cached alert.
+   *
+   * @param alert
+   *          the current alert.
+   */
+  private void cacheCurrent(final AlertCurrentEntity alert) {
+    if (!cacheEnabled) {
+      return;
+    }
+
+    AlertHistoryEntity history = alert.getAlertHistory();
+    if (null == history || null == history.getAlertDefinition()
+        || null == history.getClusterId()) {
+      return;
+    }
+
+    final CurrentAlertKey key = new CurrentAlertKey(history.getClusterId(),
+        history.getAlertDefinition().getDefinitionName(), history.getHostName());
+
+    AmbariJpaLocalTxnInterceptor.runAfterCommit(new Runnable() {
+      @Override
+      public void run() {
+        currentAlertCache.put(key, copyOf(alert));
+      }
+    });
+  }
+
+  /**
+   * Copies a current alert so that the cached instance is never shared with
+   * callers which change it.
+   *
+   * @param alert
+   *          the current alert (not {@code null}).
+   * @return the copy (never {@code null}).
+   */
+  private static AlertCurrentEntity copyOf(AlertCurrentEntity alert) {
+    AlertCurrentEntity copy = new AlertCurrentEntity();
+    copy.setAlertId(alert.getAlertId());
+    copy.setAlertHistory(alert.getAlertHistory());
+    copy.setLatestTimestamp(alert.getLatestTimestamp());
+    copy.setOriginalTimestamp(alert.getOriginalTimestamp());
+    copy.setLatestText(alert.getLatestText());
+    copy.setMaintenanceState(alert.getMaintenanceState());
+    return copy;
+  }
+
+  /**
+   * Updates the summary counts of the cluster of a current alert which was
+   * created or merged once the change is committed. Nothing is done if the
+   * cluster's counts have not been built yet.
+   *
+   * @param alert
+   *          the current alert.
+   */
+  private void countCurrent(AlertCurrentEntity alert) {
+    if (!summaryCacheEnabled) {
+      return;
+    }
+
+    AlertHistoryEntity history = alert.getAlertHistory();
+    if (null == history || null == history.getClusterId()) {
+      AmbariJpaLocalTxnInterceptor.runAfterCommit(new Runnable() {
+        @Override
+        public void run() {
+          summaryModifications.incrementAndGet();
+        }
+      });
+      return;
+    }
+
+    // the entity may change again before the commit, so the change is
+    // captured now and applied afterwards
+    AmbariJpaLocalTxnInterceptor.runAfterCommit(new AlertChange(
+        history.getClusterId(), alert.getAlertId(), history.getServiceName(),
+        history.getHostName(), history.getAlertState(),
+        alert.getMaintenanceState()));
+  }
+
+  /**
+   * Gets the summary counts of a cluster, building them from the current
+   * alerts in the database if needed.
+   *
+   * @param clusterId
+   *          the cluster ID.
+   * @return the counts (never {@code null}).
+   */
+  private AlertSummaryCounts getSummaryCounts(long clusterId) {
+    AlertSummaryCounts counts = summaryCounts.get(clusterId);
+    if (null != counts) {
+      return counts;
+    }
+
+    long modifications = summaryModifications.get();
+
+    counts = new AlertSummaryCounts();
+    for (AlertCurrentEntity current : findCurrentByCluster(clusterId)) {
+      counts.put(current);
+    }
+
+    // counts built inside a transaction may include changes that are rolled
+    // back, so they are only used for this call
+    if (entityManagerProvider.get().getTransaction().isActive()) {
+      return counts;
+    }
+
+    AlertSummaryCounts existing = summaryCounts.putIfAbsent(clusterId, counts);
+    if (null != existing) {
+      return existing;
+    }
+
+    // alerts that changed while the counts were built may be missing from
+    // them, so they are only used for this call
+    if (modifications != summaryModifications.get()) {
+      summaryCounts.remove(clusterId, counts);
+    }
+
+    return counts;
+  }
+
+  /**
+   * Discards all cached current alerts and summary counts. This is invoked
+   * whenever current alerts are removed with JPQL since it's not known which
+   * were affected. Alerts waiting to be written are left alone since
+   * {@link #flushCurrentAlerts()} skips those which no longer exist.
+   */
+  private void invalidateCurrentAlerts() {
+    if (cacheEnabled) {
+      currentAlertCache.invalidateAll();
+    }
+
+    if (summaryCacheEnabled) {
+      AmbariJpaLocalTxnInterceptor.runAfterCommit(new Runnable() {
+        @Override
+        public void run() {
+          summaryModifications.incrementAndGet();
+          summaryCounts.clear();
+        }
+      });
+    }
   }
 
   /**
@@ -799,4 +1185,85 @@ public class AlertsDAO {
       return AlertHistoryEntity_.getPredicateMapping().get(propertyId);
     }
   }
+
+  /**
+   * Identifies a current alert by cluster, definition name and host. The host
+   * is {@code null} for alerts which are not bound to a host.
+   */
+  private static final class CurrentAlertKey {
+    private final long clusterId;
+    private final String definitionName;
+    private final String hostName;
+
+    private CurrentAlertKey(long clusterId, String definitionName,
+        String hostName) {
+      this.clusterId = clusterId;
+      this.definitionName = definitionName;
+      this.hostName = hostName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+
+      if (!(o instanceof CurrentAlertKey)) {
+        return false;
+      }
+
+      CurrentAlertKey that = (CurrentAlertKey) o;
+      return clusterId == that.clusterId
+          && definitionName.equals(that.definitionName)
+          && (null == hostName ? null == that.hostName : hostName.equals(that.hostName));
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) (clusterId ^ (clusterId >>> 32));
+      result = 31 * result + definitionName.hashCode();
+      result = 31 * result + (null == hostName ? 0 : hostName.hashCode());
+      return result;
+    }
+  }
+
+  /**
+   * A committed change to a current alert, applied to the summary counts of
+   * its cluster.
+   */
+  private final class AlertChange implements Runnable {
+    private final Long clusterId;
+    private final Long alertId;
+    private final String serviceName;
+    private final String hostName;
+    private final AlertState alertState;
+    private final MaintenanceState maintenanceState;
+
+    private AlertChange(Long clusterId, Long alertId, String serviceName,
+        String hostName, AlertState alertState,
+        MaintenanceState maintenanceState) {
+      this.clusterId = clusterId;
+      this.alertId = alertId;
+      this.serviceName = serviceName;
+      this.hostName = hostName;
+      this.alertState = alertState;
+      this.maintenanceState = maintenanceState;
+    }
+
+    @Override
+    public void run() {
+      summaryModifications.incrementAndGet();
+
+      AlertSummaryCounts counts = summaryCounts.get(clusterId);
+      if (null == counts) {
+        return;
+      }
+
+      if (null == alertId || null == alertState) {
+        summaryCounts.remove(clusterId);
+      } else {
+        counts.put(alertId, serviceName, hostName, alertState, maintenanceState);
+      }
+    }
+  }
 }
@@ -27,22 +27,41 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.AmbariJpaLocalTxnInterceptor;
 import org.apache.ambari.server.orm.RequiresSession;
 import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.apache.ambari.server.orm.entities.StageEntity;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
 
+/**
+ * The {@link HostRoleCommandDAO} class manages {@link HostRoleCommandEntity}
+ * instances.
+ * <p/>
+ * When {@link Configuration#isTaskStatusSummaryCacheEnabled()} is set, the
+ * stage summaries returned by {@link #findAggregateCounts(Long)} are counted in
+ * memory. The counts of a request are built from the database on first use and
+ * are then kept up to date as tasks are created, merged and removed through
+ * this DAO, so reading the progress of a request does not touch the task table.
+ * A change is only counted once its transaction commits, so a rollback does not
+ * leave the counts with a status that was never saved. Counts are rebuilt after
+ * they expire in case tasks were changed some other way.
+ */
 @Singleton
 public class HostRoleCommandDAO {
 
@@ -66,11 +85,51 @@ public class HostRoleCommandDAO {
       " GROUP BY hrc.requestId, hrc.stageId HAVING hrc.requestId = :requestId",
       HostRoleCommandStatusSummaryDTO.class.getName());
 
+  /**
+   * The status, times and stage of the tasks of a request, used to build the
+   * in-memory counts.
+   */
+  private static final String SUMMARY_TASKS =
+      "SELECT hrc.taskId, hrc.stageId, hrc.status, hrc.startTime, hrc.endTime, stage.skippable " +
+      "FROM HostRoleCommandEntity hrc JOIN hrc.stage stage " +
+      "WHERE hrc.requestId = :requestId";
+
   @Inject
   Provider<EntityManager> entityManagerProvider;
   @Inject
   DaoUtils daoUtils;
 
+  /**
+   * {@code true} if stage summaries are counted in memory.
+   */
+  private final boolean summaryCacheEnabled;
+
+  /**
+   * Stage summary counts by request ID.
+   */
+  private final ConcurrentMap<Long, HostRoleCommandStatusSummaryCounts> summaryCounts;
+
+  /**
+   * Incremented on every change to tasks so that counts which were built from
+   * the database while tasks changed are not kept.
+   */
+  private final AtomicLong summaryModifications = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          used to determine whether stage summaries are counted in memory.
+   */
+  @Inject
+  public HostRoleCommandDAO(Configuration configuration) {
+    summaryCacheEnabled = configuration.isTaskStatusSummaryCacheEnabled();
+    summaryCounts = CacheBuilder.newBuilder()
+        .maximumSize(configuration.getTaskStatusSummaryCacheSize())
+        .expireAfterWrite(configuration.getTaskStatusSummaryCacheExpiry(), TimeUnit.MINUTES)
+        .<Long, HostRoleCommandStatusSummaryCounts>build().asMap();
+  }
+
   @RequiresSession
   public HostRoleCommandEntity findByPK(long taskId) {
     return entityManagerProvider.get().find(HostRoleCommandEntity.class, taskId);
@@ -343,11 +402,13 @@ public class HostRoleCommandDAO {
   @Transactional
   public void create(HostRoleCommandEntity stageEntity) {
     entityManagerProvider.get().persist(stageEntity);
+    countTask(stageEntity, false);
   }
 
   @Transactional
   public HostRoleCommandEntity merge(HostRoleCommandEntity stageEntity) {
     HostRoleCommandEntity entity = entityManagerProvider.get().merge(stageEntity);
+    countTask(entity, false);
     return entity;
   }
 
@@ -355,14 +416,18 @@ public class HostRoleCommandDAO {
   public List<HostRoleCommandEntity> mergeAll(Collection<HostRoleCommandEntity> entities) {
     List<HostRoleCommandEntity> managedList = new ArrayList<HostRoleCommandEntity>(entities.size());
     for (HostRoleCommandEntity entity : entities) {
-      managedList.add(entityManagerProvider.get().merge(entity));
+      HostRoleCommandEntity managed = entityManagerProvider.get().merge(entity);
+      countTask(managed, false);
+      managedList.add(managed);
     }
     return managedList;
   }
 
   @Transactional
   public void remove(HostRoleCommandEntity stageEntity) {
-    entityManagerProvider.get().remove(merge(stageEntity));
+    HostRoleCommandEntity entity = merge(stageEntity);
+    entityManagerProvider.get().remove(entity);
+    countTask(entity, true);
   }
 
   @Transactional
@@ -380,6 +445,9 @@ public class HostRoleCommandDAO {
    */
   @RequiresSession
   public Map<Long, HostRoleCommandStatusSummaryDTO> findAggregateCounts(Long requestId) {
+    if (summaryCacheEnabled && null != requestId) {
+      return getSummaryCounts(requestId).getSummaries();
+    }
 
     TypedQuery<HostRoleCommandStatusSummaryDTO> query = entityManagerProvider.get().createQuery(
         SUMMARY_DTO, HostRoleCommandStatusSummaryDTO.class);
@@ -405,4 +473,138 @@ public class HostRoleCommandDAO {
     return map;
   }
 
+  /**
+   * Updates the summary counts of the request of a task which was created,
+   * merged or removed once the change is committed. Nothing is done if the
+   * request's counts have not been built yet.
+   *
+   * @param task
+   *          the task.
+   * @param removed
+   *          {@code true} if the task was removed.
+   */
+  private void countTask(HostRoleCommandEntity task, boolean removed) {
+    if (!summaryCacheEnabled) {
+      return;
+    }
+
+    // the request and stage IDs of a new task are only known from its stage
+    StageEntity stage = task.getStage();
+    Long requestId = task.getRequestId();
+    if (null == requestId && null != stage) {
+      requestId = null != stage.getRequestId() ? stage.getRequestId()
+          : null != stage.getRequest() ? stage.getRequest().getRequestId() : null;
+    }
+
+    Long stageId = null != task.getStageId() ? task.getStageId()
+        : null != stage ? stage.getStageId() : null;
+
+    // the entity may change again before the commit, so the change is captured
+    // now and applied afterwards
+    AmbariJpaLocalTxnInterceptor.runAfterCommit(new TaskChange(requestId,
+        task.getTaskId(), stageId, null != stage && stage.isSkippable(),
+        null == stage ? null : task.getStatus(), task.getStartTime(),
+        task.getEndTime(), removed));
+  }
+
+  /**
+   * Gets the summary counts of a request, building them from the tasks in the
+   * database if needed.
+   *
+   * @param requestId
+   *          the request ID.
+   * @return the counts (never {@code null}).
+   */
+  private HostRoleCommandStatusSummaryCounts getSummaryCounts(long requestId) {
+    HostRoleCommandStatusSummaryCounts counts = summaryCounts.get(requestId);
+    if (null != counts) {
+      return counts;
+    }
+
+    long modifications = summaryModifications.get();
+
+    TypedQuery<Object[]> query = entityManagerProvider.get().createQuery(
+        SUMMARY_TASKS, Object[].class);
+    query.setParameter("requestId", requestId);
+
+    counts = new HostRoleCommandStatusSummaryCounts();
+    for (Object[] task : daoUtils.selectList(query)) {
+      Number skippable = (Number) task[5];
+      counts.put(((Number) task[0]).longValue(), ((Number) task[1]).longValue(),
+          null != skippable && skippable.intValue() != 0,
+          (HostRoleStatus) task[2], (Long) task[3], (Long) task[4]);
+    }
+
+    // counts built inside a transaction may include changes that are rolled
+    // back, so they are only used for this call
+    if (entityManagerProvider.get().getTransaction().isActive()) {
+      return counts;
+    }
+
+    HostRoleCommandStatusSummaryCounts existing = summaryCounts.putIfAbsent(requestId, counts);
+    if (null != existing) {
+      return existing;
+    }
+
+    // tasks that changed while the counts were built may be missing from
+    // them, so they are only used for this call
+    if (modifications != summaryModifications.get()) {
+      summaryCounts.remove(requestId, counts);
+    }
+
+    return counts;
+  }
+
+  /**
+   * A committed change to a task, applied to the summary counts of its request.
+   */
+  private final class TaskChange implements Runnable {
+    private final Long m_requestId;
+    private final Long m_taskId;
+    private final Long m_stageId;
+    private final boolean m_skippable;
+    private final HostRoleStatus m_status;
+    private final Long m_startTime;
+    private final Long m_endTime;
+    private final boolean m_removed;
+
+    private TaskChange(Long requestId, Long taskId, Long stageId,
+        boolean skippable, HostRoleStatus status, Long startTime,
+        Long endTime, boolean removed) {
+      m_requestId = requestId;
+      m_taskId = taskId;
+      m_stageId = stageId;
+      m_skippable = skippable;
+      m_status = status;
+      m_startTime = startTime;
+      m_endTime = endTime;
+      m_removed = removed;
+    }
+
+    @Override
+    public void run() {
+      summaryModifications.incrementAndGet();
+
+      if (null == m_requestId) {
+        summaryCounts.clear();
+        return;
+      }
+
+      HostRoleCommandStatusSummaryCounts counts = summaryCounts.get(m_requestId);
+      if (null == counts) {
+        return;
+      }
+
+      if (null == m_taskId) {
+        summaryCounts.remove(m_requestId);
+      } else if (m_removed) {
+        counts.remove(m_taskId);
+      } else if (null == m_stageId || null == m_status) {
+        summaryCounts.remove(m_requestId);
+      } else {
+        counts.put(m_taskId, m_stageId, m_skippable, m_status, m_startTime,
+            m_endTime);
+      }
+    }
+  }
 }
@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.orm.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
+
+/**
+ * The {@link HostRoleCommandStatusSummaryCounts} class keeps the number of
+ * tasks of a request in each {@link HostRoleStatus}, per stage, along with the
+ * earliest start time and latest end time of the tasks of each stage. It
+ * produces the same summaries as
+ * {@link HostRoleCommandDAO#findAggregateCounts(Long)} without going to the
+ * database.
+ * <p/>
+ * The status and times of every counted task are remembered so that a task can
+ * be counted again when it changes without knowing its previous status.
+ */
+final class HostRoleCommandStatusSummaryCounts {
+
+  /**
+   * The counted tasks by task ID.
+   */
+  private final Map<Long, CountedTask> m_tasks = new HashMap<Long, CountedTask>();
+
+  /**
+   * The counts by stage ID.
+   */
+  private final Map<Long, StageCounts> m_stages = new HashMap<Long, StageCounts>();
+
+  /**
+   * Counts the specified task, replacing the previous status of a task that is
+   * already counted.
+   *
+   * @param taskId
+   *          the ID of the task.
+   * @param stageId
+   *          the ID of the stage of the task.
+   * @param skippable
+   *          whether the stage of the task is skippable.
+   * @param status
+   *          the status of the task (not {@code null}).
+   * @param startTime
+   *          the start time of the task, or {@code null}.
+   * @param endTime
+   *          the end time of the task, or {@code null}.
+   */
+  synchronized void put(long taskId, long stageId, boolean skippable,
+      HostRoleStatus status, Long startTime, Long endTime) {
+    remove(taskId);
+
+    StageCounts stage = m_stages.get(stageId);
+    if (null == stage) {
+      stage = new StageCounts(skippable);
+      m_stages.put(stageId, stage);
+    }
+
+    CountedTask task = new CountedTask(stage, status, startTime, endTime);
+    m_tasks.put(taskId, task);
+    stage.add(task);
+  }
+
+  /**
+   * Stops counting the specified task.
+   *
+   * @param taskId
+   *          the ID of the task.
+   */
+  synchronized void remove(long taskId) {
+    CountedTask task = m_tasks.remove(taskId);
+    if (null == task) {
+      return;
+    }
+
+    task.m_stage.remove(task);
+    if (task.m_stage.m_total == 0) {
+      m_stages.values().remove(task.m_stage);
+    }
+  }
+
+  /**
+   * Gets the summaries of the stages of the request.
+   *
+   * @return the map of stage-to-summary objects (never {@code null}).
+   */
+  synchronized Map<Long, HostRoleCommandStatusSummaryDTO> getSummaries() {
+    Map<Long, HostRoleCommandStatusSummaryDTO> summaries =
+        new HashMap<Long, HostRoleCommandStatusSummaryDTO>(m_stages.size());
+
+    for (Map.Entry<Long, StageCounts> entry : m_stages.entrySet()) {
+      summaries.put(entry.getKey(), entry.getValue().getSummary(entry.getKey()));
+    }
+
+    return summaries;
+  }
+
+  /**
+   * The counts of the tasks of a stage.
+   */
+  private final class StageCounts {
+    private final boolean m_skippable;
+
+    private final int[] m_counts = new int[HostRoleStatus.values().length];
+
+    private int m_total = 0;
+
+    /**
+     * The earliest start time and latest end time of the tasks, or
+     * {@code null} if no task has one. They are recalculated from the tasks
+     * when a task that held either of them changes.
+     */
+    private Long m_minStartTime = null;
+    private Long m_maxEndTime = null;
+    private boolean m_timesStale = false;
+
+    private StageCounts(boolean skippable) {
+      m_skippable = skippable;
+    }
+
+    private void add(CountedTask task) {
+      m_counts[task.m_status.ordinal()]++;
+      m_total++;
+
+      if (!m_timesStale) {
+        m_minStartTime = min(m_minStartTime, task.m_startTime);
+        m_maxEndTime = max(m_maxEndTime, task.m_endTime);
+      }
+    }
+
+    private void remove(CountedTask task) {
+      m_counts[task.m_status.ordinal()]--;
+      m_total--;
+
+      if ((null != task.m_startTime && task.m_startTime.equals(m_minStartTime))
+          || (null != task.m_endTime && task.m_endTime.equals(m_maxEndTime))) {
+        m_timesStale = true;
+      }
+    }
+
+    private HostRoleCommandStatusSummaryDTO getSummary(long stageId) {
+      if (m_timesStale) {
+        m_minStartTime = null;
+        m_maxEndTime = null;
+        for (CountedTask task : m_tasks.values()) {
+          if (task.m_stage == this) {
+            m_minStartTime = min(m_minStartTime, task.m_startTime);
+            m_maxEndTime = max(m_maxEndTime, task.m_endTime);
+          }
+        }
+        m_timesStale = false;
+      }
+
+      return new HostRoleCommandStatusSummaryDTO(m_skippable ? 1 : 0,
+          m_minStartTime, m_maxEndTime, stageId,
+          count(HostRoleStatus.ABORTED), count(HostRoleStatus.COMPLETED),
+          count(HostRoleStatus.FAILED), count(HostRoleStatus.HOLDING),
+          count(HostRoleStatus.HOLDING_FAILED),
+          count(HostRoleStatus.HOLDING_TIMEDOUT),
+          count(HostRoleStatus.IN_PROGRESS), count(HostRoleStatus.PENDING),
+          count(HostRoleStatus.QUEUED), count(HostRoleStatus.TIMEDOUT));
+    }
+
+    private Integer count(HostRoleStatus status) {
+      return Integer.valueOf(m_counts[status.ordinal()]);
+    }
+  }
+
+  /**
+   * @return the smaller of two times, ignoring {@code null} as SQL's
+   *         {@code MIN} does.
+   */
+  private static Long min(Long time1, Long time2) {
+    if (null == time1) {
+      return time2;
+    }
+    return null == time2 || time1 <= time2 ? time1 : time2;
+  }
+
+  /**
+   * @return the larger of two times, ignoring {@code null} as SQL's
+   *         {@code MAX} does.
+   */
+  private static Long max(Long time1, Long time2) {
+    if (null == time1) {
+      return time2;
+    }
+    return null == time2 || time1 >= time2 ? time1 : time2;
+  }
+
+  /**
+   * A counted task.
+   */
+  private static final class CountedTask {
+    private final StageCounts m_stage;
+    private final HostRoleStatus m_status;
+    private final Long m_startTime;
+    private final Long m_endTime;
+
+    private CountedTask(StageCounts stage, HostRoleStatus status,
+        Long startTime, Long endTime) {
+      m_stage = stage;
+      m_status = status;
+      m_startTime = startTime;
+      m_endTime = endTime;
+    }
+  }
+}
@@ -34,7 +34,8 @@ public class HostRoleCommandStatusSummaryDTO {
   private Long m_maxTime = Long.valueOf(Long.MAX_VALUE);
   private boolean m_skippable = false;
   private Map<HostRoleStatus, Integer> m_counts = new HashMap<HostRoleStatus, Integer>();
-  private List<HostRoleStatus> m_tasksStatus = new ArrayList<HostRoleStatus>();
+  private int m_taskTotal = 0;
+  private List<HostRoleStatus> m_tasksStatus = null;
 
   /**
    * Constructor invoked by JPA.  See {{@link HostRoleCommandDAO#findAggregateCounts(Long)}}
@@ -83,9 +84,7 @@ public class HostRoleCommandStatusSummaryDTO {
   private void put(HostRoleStatus status, Number number) {
     if (null != number) {
       m_counts.put(status, number.intValue());
-      for (int i = 0; i < number.intValue(); i++) {
-        m_tasksStatus.add(status);
-      }
+      m_taskTotal += number.intValue();
     } else {
       m_counts.put(status, 0);
     }
@@ -106,9 +105,22 @@ public class HostRoleCommandStatusSummaryDTO {
   }
 
   /**
+   * Gets the status of every task of the stage. Prefer {@link #getCounts()},
+   * which does not need a list entry per task.
+   *
    * @return the list of tasks status, expanded to cover all tasks for the stage
    */
+  @SuppressWarnings("boxing")
   public List<HostRoleStatus> getTaskStatuses() {
+    if (null == m_tasksStatus) {
+      List<HostRoleStatus> tasksStatus = new ArrayList<HostRoleStatus>(m_taskTotal);
+      for (Map.Entry<HostRoleStatus, Integer> entry : m_counts.entrySet()) {
+        for (int i = 0; i < entry.getValue(); i++) {
+          tasksStatus.add(entry.getKey());
+        }
+      }
+      m_tasksStatus = tasksStatus;
+    }
     return m_tasksStatus;
   }
 
@@ -116,7 +128,7 @@ public class HostRoleCommandStatusSummaryDTO {
    * @return the total number of tasks for the stage
    */
   public int getTaskTotal() {
-    return m_tasksStatus.size();
+    return m_taskTotal;
   }
 
   /**
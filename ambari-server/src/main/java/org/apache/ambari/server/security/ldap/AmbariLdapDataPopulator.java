@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.security.ldap;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -25,28 +26,45 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.naming.NamingException;
 import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.MetainfoDAO;
+import org.apache.ambari.server.orm.entities.MetainfoEntity;
 import org.apache.ambari.server.security.authorization.Group;
 import org.apache.ambari.server.security.authorization.LdapServerProperties;
 import org.apache.ambari.server.security.authorization.User;
 import org.apache.ambari.server.security.authorization.Users;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.ldap.control.PagedResultsCookie;
+import org.springframework.ldap.control.PagedResultsDirContextProcessor;
 import org.springframework.ldap.core.AttributesMapper;
 import org.springframework.ldap.core.ContextMapper;
 import org.springframework.ldap.core.DirContextAdapter;
 import org.springframework.ldap.core.LdapTemplate;
 import org.springframework.ldap.core.support.LdapContextSource;
+import org.springframework.ldap.core.support.SingleContextSource;
 import org.springframework.ldap.filter.AndFilter;
 import org.springframework.ldap.filter.EqualsFilter;
 import org.springframework.ldap.filter.Filter;
 import org.springframework.ldap.filter.LikeFilter;
 import org.springframework.ldap.filter.OrFilter;
+import org.springframework.ldap.support.LdapUtils;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import com.google.inject.Inject;
@@ -70,19 +88,37 @@ public class AmbariLdapDataPopulator {
    */
   private Users users;
 
+  /**
+   * Data access object for the stored high-water mark of incremental synchronization.
+   */
+  @Inject
+  private MetainfoDAO metainfoDAO;
+
   /**
    * LDAP specific properties.
    */
-  protected LdapServerProperties ldapServerProperties;
+  protected volatile LdapServerProperties ldapServerProperties;
 
   /**
    * LDAP template for making search queries.
    */
-  private LdapTemplate ldapTemplate;
+  private volatile LdapTemplate ldapTemplate;
+
+  /**
+   * Executor used to look up group members in parallel; created on first use.
+   */
+  private ExecutorService memberLookupExecutor;
+
+  /**
+   * Group members looked up by the current synchronization, keyed by member attribute value.
+   * Null outside of a group synchronization.
+   */
+  private Map<String, LdapUserDto> resolvedMembers;
 
   // Constants
   private static final String UID_ATTRIBUTE          = "uid";
   private static final String OBJECT_CLASS_ATTRIBUTE = "objectClass";
+  private static final String GROUPS_HIGH_WATER_MARK_KEY = "ldap.sync.groups.highWaterMark";
 
   /**
    * Construct an AmbariLdapDataPopulator.
@@ -170,19 +206,44 @@ public class AmbariLdapDataPopulator {
     final Map<String, Group> internalGroupsMap = getInternalGroups();
     final Map<String, User> internalUsersMap = getInternalUsers();
 
-    for (LdapGroupDto groupDto : externalLdapGroupInfo) {
-      String groupName = groupDto.getGroupName();
-      if (internalGroupsMap.containsKey(groupName)) {
-        final Group group = internalGroupsMap.get(groupName);
-        if (!group.isLdapGroup()) {
-          batchInfo.getGroupsToBecomeLdap().add(groupName);
+    final boolean incremental = isIncrementalSyncEnabled();
+    final String highWaterMark = incremental ? getGroupsHighWaterMark() : null;
+    String newHighWaterMark = null;
+
+    startMemberResolution();
+    try {
+      for (LdapGroupDto groupDto : externalLdapGroupInfo) {
+        String groupName = groupDto.getGroupName();
+        boolean changed = true;
+        if (internalGroupsMap.containsKey(groupName)) {
+          final Group group = internalGroupsMap.get(groupName);
+          if (!group.isLdapGroup()) {
+            batchInfo.getGroupsToBecomeLdap().add(groupName);
+          } else {
+            changed = !isGroupUnchangedSince(groupDto, highWaterMark);
+          }
+          internalGroupsMap.remove(groupName);
+        } else {
+          batchInfo.getGroupsToBeCreated().add(groupName);
+        }
+        if (changed) {
+          refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
+        } else if (LOG.isDebugEnabled()) {
+          LOG.debug("Skipping members of LDAP group " + groupName + ", unchanged since " + highWaterMark);
+        }
+
+        String changeMark = groupDto.getChangeMark();
+        if (changeMark != null && (newHighWaterMark == null || compareChangeMarks(changeMark, newHighWaterMark) > 0)) {
+          newHighWaterMark = changeMark;
         }
-        internalGroupsMap.remove(groupName);
-      } else {
-        batchInfo.getGroupsToBeCreated().add(groupName);
       }
-      refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
+    } finally {
+      stopMemberResolution();
+    }
+    if (incremental) {
+      batchInfo.setGroupsHighWaterMark(newHighWaterMark);
     }
+
     for (Entry<String, Group> internalGroup : internalGroupsMap.entrySet()) {
       if (internalGroup.getValue().isLdapGroup()) {
         batchInfo.getGroupsToBeRemoved().add(internalGroup.getValue().getGroupName());
@@ -244,18 +305,23 @@ public class AmbariLdapDataPopulator {
     final Map<String, Group> internalGroupsMap = getInternalGroups();
     final Map<String, User> internalUsersMap = getInternalUsers();
 
-    for (LdapGroupDto groupDto : specifiedGroups) {
-      String groupName = groupDto.getGroupName();
-      if (internalGroupsMap.containsKey(groupName)) {
-        final Group group = internalGroupsMap.get(groupName);
-        if (!group.isLdapGroup()) {
-          batchInfo.getGroupsToBecomeLdap().add(groupName);
+    startMemberResolution();
+    try {
+      for (LdapGroupDto groupDto : specifiedGroups) {
+        String groupName = groupDto.getGroupName();
+        if (internalGroupsMap.containsKey(groupName)) {
+          final Group group = internalGroupsMap.get(groupName);
+          if (!group.isLdapGroup()) {
+            batchInfo.getGroupsToBecomeLdap().add(groupName);
+          }
+          internalGroupsMap.remove(groupName);
+        } else {
+          batchInfo.getGroupsToBeCreated().add(groupName);
         }
-        internalGroupsMap.remove(groupName);
-      } else {
-        batchInfo.getGroupsToBeCreated().add(groupName);
+        refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
       }
-      refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
+    } finally {
+      stopMemberResolution();
     }
 
     return batchInfo;
@@ -306,16 +372,21 @@ public class AmbariLdapDataPopulator {
     final Map<String, Group> internalGroupsMap = getInternalGroups();
     final Map<String, User> internalUsersMap = getInternalUsers();
 
-    for (Group group : internalGroupsMap.values()) {
-      if (group.isLdapGroup()) {
-        Set<LdapGroupDto> groupDtos = getLdapGroups(group.getGroupName());
-        if (groupDtos.isEmpty()) {
-          batchInfo.getGroupsToBeRemoved().add(group.getGroupName());
-        } else {
-          LdapGroupDto groupDto = groupDtos.iterator().next();
-          refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
+    startMemberResolution();
+    try {
+      for (Group group : internalGroupsMap.values()) {
+        if (group.isLdapGroup()) {
+          Set<LdapGroupDto> groupDtos = getLdapGroups(group.getGroupName());
+          if (groupDtos.isEmpty()) {
+            batchInfo.getGroupsToBeRemoved().add(group.getGroupName());
+          } else {
+            LdapGroupDto groupDto = groupDtos.iterator().next();
+            refreshGroupMembers(batchInfo, groupDto, internalUsersMap);
+          }
         }
       }
+    } finally {
+      stopMemberResolution();
     }
 
     return batchInfo;
@@ -341,6 +412,30 @@ public class AmbariLdapDataPopulator {
     return batchInfo;
   }
 
+  /**
+   * Stores the high-water mark of an incremental synchronization of all groups.
+   * Must only be called once the synchronized batch has been applied, so that
+   * groups that failed to synchronize are refreshed again next time.
+   *
+   * @param highWaterMark the latest change mark of the synchronized groups
+   */
+  public void storeGroupsHighWaterMark(String highWaterMark) {
+    if (metainfoDAO == null || highWaterMark == null) {
+      return;
+    }
+    String value = getHighWaterMarkScope() + ":" + highWaterMark;
+    MetainfoEntity entity = metainfoDAO.findByKey(GROUPS_HIGH_WATER_MARK_KEY);
+    if (entity == null) {
+      entity = new MetainfoEntity();
+      entity.setMetainfoName(GROUPS_HIGH_WATER_MARK_KEY);
+      entity.setMetainfoValue(value);
+      metainfoDAO.create(entity);
+    } else {
+      entity.setMetainfoValue(value);
+      metainfoDAO.merge(entity);
+    }
+  }
+
   /**
    * Check group members of the synced group: add missing ones and remove the ones absent in external LDAP.
    *
@@ -352,8 +447,7 @@ public class AmbariLdapDataPopulator {
   protected void refreshGroupMembers(LdapBatchDto batchInfo, LdapGroupDto group, Map<String, User> internalUsers)
       throws AmbariException {
     Set<String> externalMembers = new HashSet<String>();
-    for (String memberAttributeValue: group.getMemberAttributes()) {
-      LdapUserDto groupMember = getLdapUserByMemberAttr(memberAttributeValue);
+    for (LdapUserDto groupMember: resolveGroupMembers(group.getMemberAttributes()).values()) {
       if (groupMember != null) {
         externalMembers.add(groupMember.getUserName());
       }
@@ -461,6 +555,151 @@ public class AmbariLdapDataPopulator {
     return getFilteredLdapGroups(groupObjectFilter);
   }
 
+  /**
+   * Looks up the users for the given member attribute values. Values already looked up by the
+   * current synchronization are not looked up again, and the others are looked up in parallel
+   * when more than one thread is configured.
+   *
+   * @param memberAttributeValues  the member attribute values
+   *
+   * @return map of member attribute value to user; the user is null if not found
+   * @throws AmbariException if the lookups were interrupted or failed
+   */
+  private Map<String, LdapUserDto> resolveGroupMembers(Set<String> memberAttributeValues) throws AmbariException {
+    final Map<String, LdapUserDto> members = new HashMap<String, LdapUserDto>();
+    final List<String> lookups = new ArrayList<String>();
+    for (String memberAttributeValue : memberAttributeValues) {
+      if (resolvedMembers != null && resolvedMembers.containsKey(memberAttributeValue)) {
+        members.put(memberAttributeValue, resolvedMembers.get(memberAttributeValue));
+      } else {
+        lookups.add(memberAttributeValue);
+      }
+    }
+
+    final int threadCount = configuration.getLdapSyncThreadCount();
+    if (threadCount <= 1 || lookups.size() <= 1) {
+      for (String memberAttributeValue : lookups) {
+        members.put(memberAttributeValue, getLdapUserByMemberAttr(memberAttributeValue));
+      }
+    } else {
+      // load the template up front so that the lookups don't race to reload it
+      loadLdapTemplate();
+
+      final ExecutorService executor = getMemberLookupExecutor(threadCount);
+      final List<Future<LdapUserDto>> futures = new ArrayList<Future<LdapUserDto>>(lookups.size());
+      try {
+        for (final String memberAttributeValue : lookups) {
+          futures.add(executor.submit(new Callable<LdapUserDto>() {
+            @Override
+            public LdapUserDto call() throws Exception {
+              return getLdapUserByMemberAttr(memberAttributeValue);
+            }
+          }));
+        }
+        for (int i = 0; i < lookups.size(); i++) {
+          members.put(lookups.get(i), futures.get(i).get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AmbariException("Interrupted while looking up LDAP group members", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new AmbariException("Couldn't look up LDAP group members", cause);
+      } finally {
+        for (Future<LdapUserDto> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+
+    if (resolvedMembers != null) {
+      resolvedMembers.putAll(members);
+    }
+    return members;
+  }
+
+  // share looked up members between the groups of a synchronization
+  private void startMemberResolution() {
+    resolvedMembers = new HashMap<String, LdapUserDto>();
+  }
+
+  private void stopMemberResolution() {
+    resolvedMembers = null;
+  }
+
+  private synchronized ExecutorService getMemberLookupExecutor(int threadCount) {
+    if (memberLookupExecutor == null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+          60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread thread = new Thread(r, "ambari-ldap-sync-" + threadNumber.getAndIncrement());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+      // don't keep idle threads between synchronizations
+      executor.allowCoreThreadTimeOut(true);
+      memberLookupExecutor = executor;
+    }
+    return memberLookupExecutor;
+  }
+
+  private boolean isIncrementalSyncEnabled() {
+    return metainfoDAO != null && configuration.isLdapSyncIncremental();
+  }
+
+  /**
+   * Determine whether the members of the given synced group can be kept as they are. That is
+   * the case if the group entry didn't change since the last incremental synchronization and
+   * the group has as many internal members as member attributes.
+   */
+  private boolean isGroupUnchangedSince(LdapGroupDto group, String highWaterMark) {
+    return highWaterMark != null && group.getChangeMark() != null &&
+        compareChangeMarks(group.getChangeMark(), highWaterMark) < 0 &&
+        getInternalMembers(group.getGroupName()).size() == group.getMemberAttributes().size();
+  }
+
+  /**
+   * Get the stored high-water mark of the last incremental synchronization of all groups.
+   *
+   * @return the high-water mark; null if there is none for the current LDAP settings
+   */
+  private String getGroupsHighWaterMark() {
+    MetainfoEntity entity = metainfoDAO.findByKey(GROUPS_HIGH_WATER_MARK_KEY);
+    if (entity == null || entity.getMetainfoValue() == null) {
+      return null;
+    }
+    String value = entity.getMetainfoValue();
+    String scope = getHighWaterMarkScope() + ":";
+    return value.startsWith(scope) ? value.substring(scope.length()) : null;
+  }
+
+  // the stored mark is only valid for the LDAP settings it was taken with
+  private String getHighWaterMarkScope() {
+    return Integer.toHexString(configuration.getLdapServerProperties().hashCode()) + ":" +
+        configuration.getLdapSyncChangeAttribute();
+  }
+
+  /**
+   * Compare two values of the change attribute. Numbers such as update sequence numbers are
+   * compared numerically and anything else, such as generalized time, lexicographically.
+   */
+  static int compareChangeMarks(String mark1, String mark2) {
+    try {
+      long number1 = Long.parseLong(mark1);
+      long number2 = Long.parseLong(mark2);
+      return number1 < number2 ? -1 : (number1 == number2 ? 0 : 1);
+    } catch (NumberFormatException e) {
+      return mark1.compareTo(mark2);
+    }
+  }
+
   // get a filter based on the given member attribute
   private Filter getMemberFilter(String memberAttributeValue) {
     String dnAttribute = ldapServerProperties.getDnAttribute();
@@ -479,9 +718,14 @@ public class AmbariLdapDataPopulator {
 
   private Set<LdapGroupDto> getFilteredLdapGroups(Filter filter) {
     final Set<LdapGroupDto> groups = new HashSet<LdapGroupDto>();
-    final LdapTemplate ldapTemplate = loadLdapTemplate();
-    String baseDn = ldapServerProperties.getBaseDN();
-    ldapTemplate.search(baseDn, filter.encode(), new LdapGroupContextMapper(groups, ldapServerProperties));
+    if (isIncrementalSyncEnabled()) {
+      // the change attribute is usually operational and only returned when asked for
+      String changeAttribute = configuration.getLdapSyncChangeAttribute();
+      search(filter, new String[] {"*", changeAttribute},
+          new LdapGroupContextMapper(groups, ldapServerProperties, changeAttribute));
+    } else {
+      search(filter, null, new LdapGroupContextMapper(groups, ldapServerProperties));
+    }
     return groups;
   }
 
@@ -513,10 +757,8 @@ public class AmbariLdapDataPopulator {
 
   private Set<LdapUserDto> getFilteredLdapUsers(Filter filter) {
     final Set<LdapUserDto> users = new HashSet<LdapUserDto>();
-    final LdapTemplate ldapTemplate = loadLdapTemplate();
-    String baseDn = ldapServerProperties.getBaseDN();
 
-    for (Object dto: ldapTemplate.search(baseDn, filter.encode(), new LdapUserContextMapper(ldapServerProperties))) {
+    for (Object dto: search(filter, null, new LdapUserContextMapper(ldapServerProperties))) {
       if (dto != null ) {
         users.add((LdapUserDto) dto);
       }
@@ -524,6 +766,54 @@ public class AmbariLdapDataPopulator {
     return users;
   }
 
+  /**
+   * Search the base DN with the given filter. The results are read in pages when a page size is
+   * configured, so that large directories don't exceed the size limit of the server.
+   *
+   * @param filter               the search filter
+   * @param returningAttributes  the attributes to return; null for all user attributes
+   * @param mapper               the mapper for the found entries
+   *
+   * @return the mapped entries
+   */
+  private List<?> search(Filter filter, String[] returningAttributes, ContextMapper mapper) {
+    final LdapTemplate ldapTemplate = loadLdapTemplate();
+    final String baseDn = ldapServerProperties.getBaseDN();
+    final int pageSize = configuration.getLdapSyncPageSize();
+
+    if (pageSize <= 0 && returningAttributes == null) {
+      return ldapTemplate.search(baseDn, filter.encode(), mapper);
+    }
+
+    final SearchControls searchControls = new SearchControls();
+    searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+    searchControls.setReturningObjFlag(true);
+    searchControls.setReturningAttributes(returningAttributes);
+
+    if (pageSize <= 0) {
+      return ldapTemplate.search(baseDn, filter.encode(), searchControls, mapper);
+    }
+
+    // all pages must be read over the same connection
+    final DirContext context = ldapTemplate.getContextSource().getReadOnlyContext();
+    try {
+      final LdapTemplate pagedTemplate = new LdapTemplate(new SingleContextSource(context));
+      pagedTemplate.setIgnorePartialResultException(true);
+
+      final List<Object> results = new ArrayList<Object>();
+      PagedResultsCookie cookie = null;
+      do {
+        PagedResultsDirContextProcessor processor = new PagedResultsDirContextProcessor(pageSize, cookie);
+        results.addAll(pagedTemplate.search(baseDn, filter.encode(), searchControls, mapper, processor));
+        cookie = processor.getCookie();
+      } while (cookie != null && cookie.getCookie() != null);
+
+      return results;
+    } finally {
+      LdapUtils.closeContext(context);
+    }
+  }
+
   /**
    * Creates a map of internal groups.
    *
@@ -635,10 +925,17 @@ public class AmbariLdapDataPopulator {
 
     private final Set<LdapGroupDto> groups;
     private final LdapServerProperties ldapServerProperties;
+    private final String changeAttribute;
 
     public LdapGroupContextMapper(Set<LdapGroupDto> groups, LdapServerProperties ldapServerProperties) {
+      this(groups, ldapServerProperties, null);
+    }
+
+    public LdapGroupContextMapper(Set<LdapGroupDto> groups, LdapServerProperties ldapServerProperties,
+                                  String changeAttribute) {
       this.groups = groups;
       this.ldapServerProperties = ldapServerProperties;
+      this.changeAttribute = changeAttribute;
     }
 
     @Override
@@ -654,6 +951,9 @@ public class AmbariLdapDataPopulator {
             group.getMemberAttributes().add(uniqueMember.toLowerCase());
           }
         }
+        if (changeAttribute != null) {
+          group.setChangeMark(adapter.getStringAttribute(changeAttribute));
+        }
         groups.add(group);
       }
       return null;
@@ -32,6 +32,8 @@ public class LdapBatchDto {
   private final Set<String> usersToBeRemoved = new HashSet<String>();
   private final Set<LdapUserGroupMemberDto> membershipToAdd = new HashSet<LdapUserGroupMemberDto>();
   private final Set<LdapUserGroupMemberDto> membershipToRemove = new HashSet<LdapUserGroupMemberDto>();
+  // latest change mark of the LDAP groups, stored once the batch is applied
+  private String groupsHighWaterMark;
 
   public Set<String> getGroupsToBecomeLdap() {
     return groupsToBecomeLdap;
@@ -64,4 +66,12 @@ public class LdapBatchDto {
   public Set<String> getUsersToBeRemoved() {
     return usersToBeRemoved;
   }
+
+  public String getGroupsHighWaterMark() {
+    return groupsHighWaterMark;
+  }
+
+  public void setGroupsHighWaterMark(String groupsHighWaterMark) {
+    this.groupsHighWaterMark = groupsHighWaterMark;
+  }
 }
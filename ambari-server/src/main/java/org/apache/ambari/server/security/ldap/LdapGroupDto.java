@@ -39,6 +39,11 @@ public class LdapGroupDto {
    */
   private boolean synced;
 
+  /**
+   * Value of the attribute that tells when the group entry last changed; null if unknown.
+   */
+  private String changeMark;
+
   /**
    * Get the group name.
    *
@@ -93,6 +98,24 @@ public class LdapGroupDto {
     this.synced = synced;
   }
 
+  /**
+   * Get the value of the change attribute of the group entry.
+   *
+   * @return the change mark; null if unknown
+   */
+  public String getChangeMark() {
+    return changeMark;
+  }
+
+  /**
+   * Set the value of the change attribute of the group entry.
+   *
+   * @param changeMark the change mark
+   */
+  public void setChangeMark(String changeMark) {
+    this.changeMark = changeMark;
+  }
+
   @Override
   public int hashCode() {
     int result = groupName != null ? groupName.hashCode() : 0;
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.serveraction.kerberos;
+
+import org.apache.ambari.server.utils.ShellCommandUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * KAdminSession is a long-lived kadmin (or kadmin.local) process that is sent queries on STDIN
+ * rather than having a new process started, and a new administrator session authenticated, for
+ * every query.
+ * <p/>
+ * kadmin prints a prompt before reading each query but gives no other indication of where the
+ * output of a query ends.  Therefore each query is followed by a get_privs query, whose output is
+ * always a single "current privileges:" line on STDOUT, and the output of the query is everything
+ * read from STDOUT before that line.  Since kadmin writes errors to STDERR before it executes the
+ * next query, the STDERR data of a query is available once the get_privs output has been read.
+ * <p/>
+ * Instances of this class are not meant to be shared between KerberosOperationHandlers.
+ */
+class KAdminSession {
+
+  private final static Logger LOG = LoggerFactory.getLogger(KAdminSession.class);
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * The query sent after each query to mark the end of its output
+   */
+  static final String END_OF_OUTPUT_QUERY = "get_privs";
+
+  /**
+   * The text that identifies the output of {@link #END_OF_OUTPUT_QUERY}
+   */
+  static final String END_OF_OUTPUT_MARKER = "current privileges:";
+
+  private final Process process;
+  private final Writer stdIn;
+  private final BufferedReader stdOut;
+  private final InputStream stdErr;
+
+  /**
+   * The prompt kadmin prints before reading each query, "&lt;program name&gt;:  "
+   */
+  private final String prompt;
+
+  private boolean closed = false;
+
+  /**
+   * Starts a kadmin process and waits for it to accept queries.
+   * <p/>
+   * The command is expected to contain all of the arguments needed to authenticate the
+   * administrator, but not a query (-q).  If the administrator fails to authenticate, kadmin exits
+   * and an IOException containing the STDERR data is thrown.
+   *
+   * @param command an array of Strings declaring the kadmin command and its arguments
+   * @throws IOException if the process fails to start or exits before accepting queries
+   */
+  KAdminSession(String[] command) throws IOException {
+    process = new ProcessBuilder(command).start();
+    stdIn = new OutputStreamWriter(process.getOutputStream(), UTF_8);
+    stdOut = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8));
+    stdErr = process.getErrorStream();
+    prompt = new File(command[0]).getName() + ":  ";
+
+    try {
+      // Skip the authentication message and make sure the administrator was authenticated
+      query(null);
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Sends a query to kadmin and waits for its output.
+   * <p/>
+   * The exit code of the returned result is always 0, as it would be for a kadmin -q invocation
+   * that was able to authenticate the administrator.
+   *
+   * @param query a String containing the query to send to kadmin
+   * @return a ShellCommandUtil.Result containing the STDOUT and STDERR data of the query
+   * @throws IOException if the query cannot be sent or kadmin exits before completing it
+   */
+  synchronized ShellCommandUtil.Result execute(String query) throws IOException {
+    if ((query == null) || query.isEmpty()) {
+      throw new IllegalArgumentException("Missing kadmin query");
+    }
+    if ((query.indexOf('\n') >= 0) || (query.indexOf('\r') >= 0)) {
+      // A line break would send kadmin an additional query
+      throw new IllegalArgumentException("A kadmin query may not contain line breaks");
+    }
+    if (closed) {
+      throw new IOException("The kadmin session has been closed");
+    }
+
+    return query(query);
+  }
+
+  /**
+   * Ends the kadmin process.
+   */
+  synchronized void close() {
+    if (!closed) {
+      closed = true;
+
+      // kadmin exits when it reaches the end of STDIN
+      try {
+        stdIn.close();
+      } catch (IOException e) {
+        // Ignore this...
+      }
+      try {
+        stdOut.close();
+      } catch (IOException e) {
+        // Ignore this...
+      }
+      try {
+        stdErr.close();
+      } catch (IOException e) {
+        // Ignore this...
+      }
+      process.destroy();
+    }
+  }
+
+  /**
+   * Sends the query, if not null, followed by {@link #END_OF_OUTPUT_QUERY} and reads the output up
+   * to the end of output marker.
+   */
+  private ShellCommandUtil.Result query(String query) throws IOException {
+    StringBuilder output = new StringBuilder();
+
+    try {
+      if (query != null) {
+        stdIn.write(query);
+        stdIn.write('\n');
+      }
+      stdIn.write(END_OF_OUTPUT_QUERY);
+      stdIn.write('\n');
+      stdIn.flush();
+
+      String line;
+      while ((line = stdOut.readLine()) != null) {
+        line = stripPrompts(line);
+
+        if (line.startsWith(END_OF_OUTPUT_MARKER)) {
+          return new ShellCommandUtil.Result(0, output.toString(), readAvailable(stdErr));
+        }
+
+        if (output.length() > 0) {
+          output.append('\n');
+        }
+        output.append(line);
+      }
+    } catch (IOException e) {
+      closed = true;
+      throw new IOException(String.format("Failed to communicate with kadmin: %s", e.getMessage()), e);
+    }
+
+    closed = true;
+    String stdErrData = readAvailable(stdErr);
+    LOG.debug(String.format("The kadmin process ended unexpectedly:\n\tSTDOUT: %s\n\tSTDERR: %s", output, stdErrData));
+    throw new IOException(String.format("The kadmin process ended unexpectedly: %s", stdErrData.trim()));
+  }
+
+  /**
+   * Removes the prompts kadmin printed before reading the queries that produced no output from
+   * the start of a line.
+   */
+  private String stripPrompts(String line) {
+    int start = 0;
+    while (line.startsWith(prompt, start)) {
+      start += prompt.length();
+    }
+    return line.substring(start);
+  }
+
+  /**
+   * Reads the data that can be read from the stream without blocking.
+   */
+  private static String readAvailable(InputStream stream) throws IOException {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int available;
+
+    while ((available = stream.available()) > 0) {
+      int read = stream.read(buffer, 0, Math.min(available, buffer.length));
+      if (read < 0) {
+        break;
+      }
+      data.write(buffer, 0, read);
+    }
+
+    return new String(data.toByteArray(), UTF_8);
+  }
+}
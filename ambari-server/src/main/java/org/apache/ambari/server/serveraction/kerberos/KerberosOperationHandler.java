@@ -28,6 +28,7 @@ import org.apache.directory.shared.kerberos.codec.types.EncryptionType;
 import org.apache.directory.shared.kerberos.components.EncryptionKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.google.common.util.concurrent.Striped;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -44,6 +45,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 /**
  * KerberosOperationHandler is an abstract class providing basic implementations of common Kerberos
@@ -55,6 +57,13 @@ public abstract class KerberosOperationHandler {
 
   private final static SecureRandom SECURE_RANDOM = new SecureRandom();
 
+  /**
+   * Locks serializing the read-merge-write of a keytab file, by its absolute path. The identities
+   * are processed on several threads, each with its own handler, and more than one principal may
+   * be stored in the same keytab file.
+   */
+  private final static Striped<Lock> KEYTAB_FILE_LOCKS = Striped.lock(64);
+
   /**
    * The number of characters to generate for a secure password
    */
@@ -425,6 +434,8 @@ public abstract class KerberosOperationHandler {
       throw new KerberosOperationException("The destination file path is null");
     }
 
+    Lock lock = KEYTAB_FILE_LOCKS.get(destinationKeytabFile.getAbsolutePath());
+    lock.lock();
     try {
       mergeKeytabs(readKeytabFile(destinationKeytabFile), keytab).write(destinationKeytabFile);
       return true;
@@ -437,6 +448,8 @@ public abstract class KerberosOperationHandler {
       }
 
       throw new KerberosOperationException(message, e);
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -23,6 +23,7 @@ import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.agent.CommandReport;
 import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.serveraction.AbstractServerAction;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
@@ -33,8 +34,22 @@ import static org.apache.ambari.server.serveraction.kerberos.KerberosActionDataF
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * KerberosServerAction is an abstract class to be implemented by Kerberos-related
@@ -103,6 +118,17 @@ public abstract class KerberosServerAction extends AbstractServerAction {
 
   private static final Logger LOG = LoggerFactory.getLogger(KerberosServerAction.class);
 
+  /**
+   * The number of identity records that may be waiting to be processed by each thread when the
+   * identities are processed in parallel
+   */
+  private static final int IDENTITY_QUEUE_SIZE = 100;
+
+  /**
+   * The record that tells an identity worker that there are no more records to process
+   */
+  private static final Map<String, String> END_OF_RECORDS = new HashMap<String, String>();
+
   /**
    * The Cluster that this ServerAction implementation is executing on
    */
@@ -117,6 +143,12 @@ public abstract class KerberosServerAction extends AbstractServerAction {
   @Inject
   private KerberosOperationHandlerFactory kerberosOperationHandlerFactory;
 
+  /**
+   * The Configuration used to get the number of threads to process the identities with
+   */
+  @Inject
+  private Configuration configuration;
+
 
   /**
    * Given a (command parameter) Map and a property name, attempts to safely retrieve the requested
@@ -200,8 +232,8 @@ public abstract class KerberosServerAction extends AbstractServerAction {
       Object map = requestSharedDataContext.get(PRINCIPAL_PASSWORD_MAP);
 
       if (map == null) {
-        map = new HashMap<String, String>();
-        requestSharedDataContext.put(PRINCIPAL_PASSWORD_MAP, map);
+        map = putSharedData(requestSharedDataContext, PRINCIPAL_PASSWORD_MAP,
+            new ConcurrentHashMap<String, String>());
       }
 
       return (Map<String, String>) map;
@@ -226,14 +258,34 @@ public abstract class KerberosServerAction extends AbstractServerAction {
       Object map = requestSharedDataContext.get(PRINCIPAL_KEY_NUMBER_MAP);
 
       if (map == null) {
-        map = new HashMap<String, String>();
-        requestSharedDataContext.put(PRINCIPAL_KEY_NUMBER_MAP, map);
+        map = putSharedData(requestSharedDataContext, PRINCIPAL_KEY_NUMBER_MAP,
+            new ConcurrentHashMap<String, Integer>());
       }
 
       return (Map<String, Integer>) map;
     }
   }
 
+  /**
+   * Stores a value in the request shared data context unless a value was stored by another thread
+   * in the meantime.
+   *
+   * @param requestSharedDataContext a Map to be used a shared data among all ServerActions related
+   *                                 to a given request
+   * @param key                      a String declaring the name of the shared data entry
+   * @param value                    the value to store
+   * @return the stored value
+   */
+  private static Object putSharedData(Map<String, Object> requestSharedDataContext, String key, Object value) {
+    if (requestSharedDataContext instanceof ConcurrentMap) {
+      Object previous = ((ConcurrentMap<String, Object>) requestSharedDataContext).putIfAbsent(key, value);
+      return (previous == null) ? value : previous;
+    } else {
+      requestSharedDataContext.put(key, value);
+      return value;
+    }
+  }
+
   /**
    * Returns the relevant cluster's name
    * <p/>
@@ -312,6 +364,11 @@ public abstract class KerberosServerAction extends AbstractServerAction {
    * {@link org.apache.ambari.server.serveraction.kerberos.KerberosActionDataFileReader} to parse
    * the relative index.dat file and iterate through its "records".  Each "record" is process using
    * {@link #processRecord(java.util.Map, String, KerberosOperationHandler, java.util.Map)}.
+   * <p/>
+   * If more than one thread is configured (see
+   * {@link org.apache.ambari.server.configuration.Configuration#getKerberosOperationThreadCount()}),
+   * the records are processed in parallel, see
+   * {@link #processRecordsInParallel(KerberosActionDataFileReader, int, String, KDCType, KerberosCredential, KerberosOperationHandler, java.util.Map)}.
    *
    * @param requestSharedDataContext a Map to be used a shared data among all ServerActions related
    *                                 to a given request
@@ -377,18 +434,26 @@ public abstract class KerberosServerAction extends AbstractServerAction {
               throw new AmbariException(message, e);
             }
 
+            int threadCount = (configuration == null) ? 1 : configuration.getKerberosOperationThreadCount();
+
             // Create the data file reader to parse and iterate through the records
             KerberosActionDataFileReader reader = null;
             try {
               reader = new KerberosActionDataFileReader(indexFile);
-              for (Map<String, String> record : reader) {
-                // Process the current record
-                commandReport = processRecord(record, defaultRealm, handler, requestSharedDataContext);
-
-                // If the principal processor returns a CommandReport, than it is time to stop since
-                // an error condition has probably occurred, else all is assumed to be well.
-                if (commandReport != null) {
-                  break;
+
+              if (threadCount > 1) {
+                commandReport = processRecordsInParallel(reader, threadCount, defaultRealm, kdcType,
+                    administratorCredential, handler, requestSharedDataContext);
+              } else {
+                for (Map<String, String> record : reader) {
+                  // Process the current record
+                  commandReport = processRecord(record, defaultRealm, handler, requestSharedDataContext);
+
+                  // If the principal processor returns a CommandReport, than it is time to stop since
+                  // an error condition has probably occurred, else all is assumed to be well.
+                  if (commandReport != null) {
+                    break;
+                  }
                 }
               }
             } catch (AmbariException e) {
@@ -497,4 +562,196 @@ public abstract class KerberosServerAction extends AbstractServerAction {
 
     return commandReport;
   }
+
+  /**
+   * Processes the identity records using a number of threads.
+   * <p/>
+   * Each thread processes the records assigned to it in the order they are read, using its own
+   * KerberosOperationHandler.  Records are assigned to threads by principal so that all of the
+   * records for a given principal are processed by the same thread in the order they appear in
+   * the data file, as implementations of
+   * {@link #processIdentity(java.util.Map, String, KerberosOperationHandler, java.util.Map)} expect.
+   * Once a record fails to be processed, no further records are processed.
+   *
+   * @param reader                   the KerberosActionDataFileReader to read the records from
+   * @param threadCount              the number of threads to process the records with
+   * @param defaultRealm             a String declaring the default Kerberos realm
+   * @param kdcType                  the relevant KDCType
+   * @param administratorCredential  the KerberosCredential used to open additional
+   *                                 KerberosOperationHandlers
+   * @param operationHandler         an open KerberosOperationHandler, used by the first thread
+   * @param requestSharedDataContext a Map to be used a shared data among all ServerActions related
+   *                                 to a given request
+   * @return a CommandReport, indicating an error condition; or null, indicating a success condition
+   * @throws AmbariException if an error occurs while processing an identity record
+   */
+  private CommandReport processRecordsInParallel(KerberosActionDataFileReader reader, int threadCount,
+                                                 String defaultRealm, KDCType kdcType,
+                                                 KerberosCredential administratorCredential,
+                                                 KerberosOperationHandler operationHandler,
+                                                 Map<String, Object> requestSharedDataContext)
+      throws AmbariException {
+
+    // Create the shared maps up front rather than from the worker threads
+    getPrincipalPasswordMap(requestSharedDataContext);
+    getPrincipalKeyNumberMap(requestSharedDataContext);
+
+    AtomicReference<Object> failure = new AtomicReference<Object>();
+    List<IdentityWorker> workers = new ArrayList<IdentityWorker>(threadCount);
+    List<KerberosOperationHandler> workerHandlers = new ArrayList<KerberosOperationHandler>(threadCount);
+    ExecutorService executor = null;
+
+    LOG.info(String.format("Processing identities using %d threads", threadCount));
+
+    try {
+      for (int i = 0; i < threadCount; i++) {
+        KerberosOperationHandler workerHandler = operationHandler;
+
+        if (i > 0) {
+          workerHandler = kerberosOperationHandlerFactory.getKerberosOperationHandler(kdcType);
+          try {
+            workerHandler.open(administratorCredential, defaultRealm, getConfiguration("kerberos-env"));
+          } catch (KerberosOperationException e) {
+            String message = String.format("Failed to process the identities, could not properly open the KDC operation handler: %s",
+                e.getMessage());
+            actionLog.writeStdErr(message);
+            LOG.error(message);
+            throw new AmbariException(message, e);
+          }
+          workerHandlers.add(workerHandler);
+        }
+
+        workers.add(new IdentityWorker(workerHandler, defaultRealm, requestSharedDataContext, failure));
+      }
+
+      final AtomicInteger threadNumber = new AtomicInteger();
+      executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "ambari-kerberos-identity-" + threadNumber.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(threadCount);
+      for (IdentityWorker worker : workers) {
+        futures.add(executor.submit(worker));
+      }
+
+      for (Map<String, String> record : reader) {
+        if (failure.get() != null) {
+          break;
+        }
+
+        if (record != null) {
+          // Assign the record by its evaluated principal so that host-specific principals sharing
+          // the same pattern are spread across the threads. Different principals may still share
+          // a keytab file, whose writes are serialized by the KerberosOperationHandler
+          String principal = record.get(KerberosActionDataFile.PRINCIPAL);
+          String host = record.get(KerberosActionDataFile.HOSTNAME);
+          String key = ((principal == null) || (host == null)) ? principal : principal.replace("_HOST", host);
+          int index = (key == null) ? 0 : (key.hashCode() & Integer.MAX_VALUE) % threadCount;
+
+          workers.get(index).add(record);
+        }
+      }
+
+      for (IdentityWorker worker : workers) {
+        worker.add(END_OF_RECORDS);
+      }
+
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while processing the identities", e);
+    } catch (ExecutionException e) {
+      // Workers catch their own exceptions; anything else is unexpected
+      throw new AmbariException(String.format("Failed to process the identities: %s", e.getCause()), e.getCause());
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+
+      for (KerberosOperationHandler workerHandler : workerHandlers) {
+        // The KerberosOperationHandler needs to be closed, if it fails to close ignore the
+        // exception since there is little we can or care to do about it now.
+        try {
+          workerHandler.close();
+        } catch (KerberosOperationException e) {
+          // Ignore this...
+        }
+      }
+    }
+
+    Object result = failure.get();
+    if (result instanceof AmbariException) {
+      throw (AmbariException) result;
+    } else if (result instanceof RuntimeException) {
+      throw (RuntimeException) result;
+    }
+
+    return (CommandReport) result;
+  }
+
+  /**
+   * IdentityWorker processes the identity records assigned to it, in order, on one of the threads
+   * used by {@link #processRecordsInParallel}.
+   * <p/>
+   * The first failure, either a CommandReport or an exception, is recorded in the shared failure
+   * reference.  Once a failure is recorded, the remaining records are discarded so that the thread
+   * reading the records is never blocked.
+   */
+  private class IdentityWorker implements Callable<Void> {
+    private final BlockingQueue<Map<String, String>> records =
+        new ArrayBlockingQueue<Map<String, String>>(IDENTITY_QUEUE_SIZE);
+
+    private final KerberosOperationHandler operationHandler;
+    private final String defaultRealm;
+    private final Map<String, Object> requestSharedDataContext;
+    private final AtomicReference<Object> failure;
+
+    private IdentityWorker(KerberosOperationHandler operationHandler, String defaultRealm,
+                           Map<String, Object> requestSharedDataContext, AtomicReference<Object> failure) {
+      this.operationHandler = operationHandler;
+      this.defaultRealm = defaultRealm;
+      this.requestSharedDataContext = requestSharedDataContext;
+      this.failure = failure;
+    }
+
+    /**
+     * Queues a record to be processed, waiting for space in the queue if necessary.
+     *
+     * @param record a Map containing the data for an identity record
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void add(Map<String, String> record) throws InterruptedException {
+      records.put(record);
+    }
+
+    @Override
+    public Void call() throws Exception {
+      Map<String, String> record;
+
+      while ((record = records.take()) != END_OF_RECORDS) {
+        if (failure.get() == null) {
+          try {
+            CommandReport commandReport = processRecord(record, defaultRealm, operationHandler, requestSharedDataContext);
+
+            if (commandReport != null) {
+              failure.compareAndSet(null, commandReport);
+            }
+          } catch (AmbariException e) {
+            failure.compareAndSet(null, e);
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      }
+
+      return null;
+    }
+  }
 }
@@ -25,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -40,6 +41,11 @@ import java.util.regex.Pattern;
  * <p/>
  * It is assumed that a MIT Kerberos client is installed and that the kdamin shell command is
  * available
+ * <p/>
+ * By default the kadmin shell command is invoked for each query.  If the kadmin session is enabled
+ * (see {@link org.apache.ambari.server.configuration.Configuration#isKerberosKAdminSessionEnabled()}),
+ * a single kadmin process is started when first needed and is sent all of the queries until this
+ * handler is closed.
  */
 public class MITKerberosOperationHandler extends KerberosOperationHandler {
 
@@ -56,6 +62,17 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
 
   private String adminServerHost = null;
 
+  /**
+   * The long-lived kadmin process used to issue queries when the kadmin session is enabled
+   */
+  private KAdminSession kadminSession = null;
+
+  /**
+   * Indicates whether a kadmin session could not be started, in which case kadmin is invoked for
+   * each query instead
+   */
+  private boolean kadminSessionUnavailable = false;
+
   /**
    * Prepares and creates resources to be used by this KerberosOperationHandler
    * <p/>
@@ -90,7 +107,7 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
 
   @Override
   public void close() throws KerberosOperationException {
-    // There is nothing to do here.
+    closeKAdminSession();
     setOpen(false);
   }
 
@@ -315,64 +332,21 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
     if ((query == null) || query.isEmpty()) {
       throw new KerberosOperationException("Missing kadmin query");
     }
-    KerberosCredential administratorCredentials = getAdministratorCredentials();
-    String defaultRealm = getDefaultRealm();
-
-    List<String> command = new ArrayList<String>();
-    File tempKeytabFile = null;
 
-    try {
-      String adminPrincipal = (administratorCredentials == null)
-          ? null
-          : administratorCredentials.getPrincipal();
-
-      String pathToCommand = "";
+    if ((configuration != null) && configuration.isKerberosKAdminSessionEnabled()) {
+      result = invokeKAdminSession(query);
 
-      if (configuration.getServerOsFamily().equals("redhat5")) {
-        pathToCommand = "/usr/kerberos/sbin/";
+      if (result != null) {
+        return result;
       }
+    }
 
-      if ((adminPrincipal == null) || adminPrincipal.isEmpty()) {
-        // Set the kdamin interface to be kadmin.local
-        command.add(pathToCommand + "kadmin.local");
-      } else {
-        String adminPassword = administratorCredentials.getPassword();
-        String adminKeyTab = administratorCredentials.getKeytab();
-
-        // Set the kdamin interface to be kadmin
-        command.add(pathToCommand + "kadmin");
-
-        // Add explicit KDC admin host, if available
-        if(getAdminServerHost() != null) {
-          command.add("-s");
-          command.add(getAdminServerHost());
-        }
-
-        // Add the administrative principal
-        command.add("-p");
-        command.add(adminPrincipal);
-
-        if ((adminKeyTab != null) && !adminKeyTab.isEmpty()) {
-          tempKeytabFile = createKeytabFile(adminKeyTab);
-
-          if (tempKeytabFile != null) {
-            // Add keytab file administrative principal
-            command.add("-k");
-            command.add("-t");
-            command.add(tempKeytabFile.getAbsolutePath());
-          }
-        } else if (adminPassword != null) {
-          // Add password for administrative principal
-          command.add("-w");
-          command.add(adminPassword);
-        }
-      }
+    List<String> command = new ArrayList<String>();
+    File tempKeytabFile = null;
 
-      if ((defaultRealm != null) && !defaultRealm.isEmpty()) {
-        // Add default realm clause
-        command.add("-r");
-        command.add(defaultRealm);
-      }
+    try {
+      tempKeytabFile = createAdministratorKeytabFile();
+      command.addAll(createKAdminCommand(tempKeytabFile));
 
       // Add kadmin query
       command.add("-q");
@@ -449,6 +423,173 @@ public class MITKerberosOperationHandler extends KerberosOperationHandler {
     return result;
   }
 
+  /**
+   * Issues a query using the kadmin session, starting the session if needed.
+   * <p/>
+   * If the kadmin session cannot be started, null is returned and the caller is expected to invoke
+   * kadmin for the query, and for any further queries, so that the reason for the failure may be
+   * determined from its STDERR data.
+   *
+   * @param query a String containing the query to send to the kdamin command
+   * @return a ShellCommandUtil.Result containing the result of the operation; or null if the
+   * kadmin session is not available
+   * @throws KerberosOperationException if the kadmin session failed while executing the query
+   */
+  private synchronized ShellCommandUtil.Result invokeKAdminSession(String query)
+      throws KerberosOperationException {
+    if (kadminSessionUnavailable) {
+      return null;
+    }
+
+    if (kadminSession == null) {
+      File tempKeytabFile = null;
+
+      try {
+        tempKeytabFile = createAdministratorKeytabFile();
+        List<String> command = createKAdminCommand(tempKeytabFile);
+        kadminSession = createKAdminSession(command.toArray(new String[command.size()]));
+      } catch (IOException e) {
+        LOG.warn(String.format("Failed to start a kadmin session, kadmin will be invoked for each query: %s",
+            e.getMessage()));
+        kadminSessionUnavailable = true;
+        return null;
+      } finally {
+        // kadmin reads the keytab file while authenticating, so it is no longer needed
+        if (tempKeytabFile != null) {
+          if (!tempKeytabFile.delete()) {
+            tempKeytabFile.deleteOnExit();
+          }
+        }
+      }
+    }
+
+    try {
+      return kadminSession.execute(query.replace("\"", "\\\""));
+    } catch (IOException e) {
+      // The query may or may not have been executed, so it is not safe to retry it. The next query
+      // starts a new session.
+      closeKAdminSession();
+
+      String message = String.format("Failed to execute the kadmin query: %s", e.getMessage());
+      LOG.warn(message);
+      throw new KerberosOperationException(message, e);
+    }
+  }
+
+  /**
+   * Creates a KAdminSession for the specified kadmin command.
+   *
+   * @param command an array of Strings declaring the kadmin command and its arguments
+   * @return a new KAdminSession
+   * @throws IOException if the kadmin session could not be started
+   */
+  protected KAdminSession createKAdminSession(String[] command) throws IOException {
+    return new KAdminSession(command);
+  }
+
+  /**
+   * Closes the kadmin session, if one was started.
+   */
+  private synchronized void closeKAdminSession() {
+    if (kadminSession != null) {
+      kadminSession.close();
+      kadminSession = null;
+    }
+  }
+
+  /**
+   * Builds the kadmin command, without a query, using the administrator credentials and the
+   * default realm.
+   * <p/>
+   * If no administrator principal is set, kadmin.local is used.
+   *
+   * @param tempKeytabFile a File containing the administrator's keytab data, or null if the
+   *                       administrator's password is to be used
+   * @return a List of Strings declaring the kadmin command and its arguments
+   */
+  private List<String> createKAdminCommand(File tempKeytabFile) {
+    KerberosCredential administratorCredentials = getAdministratorCredentials();
+    String defaultRealm = getDefaultRealm();
+
+    List<String> command = new ArrayList<String>();
+
+    String adminPrincipal = (administratorCredentials == null)
+        ? null
+        : administratorCredentials.getPrincipal();
+
+    String pathToCommand = "";
+
+    if (configuration.getServerOsFamily().equals("redhat5")) {
+      pathToCommand = "/usr/kerberos/sbin/";
+    }
+
+    if ((adminPrincipal == null) || adminPrincipal.isEmpty()) {
+      // Set the kdamin interface to be kadmin.local
+      command.add(pathToCommand + "kadmin.local");
+    } else {
+      String adminPassword = administratorCredentials.getPassword();
+      String adminKeyTab = administratorCredentials.getKeytab();
+
+      // Set the kdamin interface to be kadmin
+      command.add(pathToCommand + "kadmin");
+
+      // Add explicit KDC admin host, if available
+      if(getAdminServerHost() != null) {
+        command.add("-s");
+        command.add(getAdminServerHost());
+      }
+
+      // Add the administrative principal
+      command.add("-p");
+      command.add(adminPrincipal);
+
+      if ((adminKeyTab != null) && !adminKeyTab.isEmpty()) {
+        if (tempKeytabFile != null) {
+          // Add keytab file administrative principal
+          command.add("-k");
+          command.add("-t");
+          command.add(tempKeytabFile.getAbsolutePath());
+        }
+      } else if (adminPassword != null) {
+        // Add password for administrative principal
+        command.add("-w");
+        command.add(adminPassword);
+      }
+    }
+
+    if ((defaultRealm != null) && !defaultRealm.isEmpty()) {
+      // Add default realm clause
+      command.add("-r");
+      command.add(defaultRealm);
+    }
+
+    return command;
+  }
+
+  /**
+   * Writes the administrator's keytab data, if any, to a temporary file.
+   * <p/>
+   * The caller is expected to delete the file when done with it.
+   *
+   * @return a File containing the administrator's keytab data; or null if kadmin.local is used or
+   * the administrator's keytab is not set
+   * @throws KerberosOperationException if the keytab file could not be created
+   */
+  private File createAdministratorKeytabFile() throws KerberosOperationException {
+    KerberosCredential administratorCredentials = getAdministratorCredentials();
+
+    if (administratorCredentials != null) {
+      String adminPrincipal = administratorCredentials.getPrincipal();
+      String adminKeyTab = administratorCredentials.getKeytab();
+
+      if ((adminPrincipal != null) && !adminPrincipal.isEmpty() && (adminKeyTab != null) && !adminKeyTab.isEmpty()) {
+        return createKeytabFile(adminKeyTab);
+      }
+    }
+
+    return null;
+  }
+
   /**
    * Sets the KDC administrator server host address
    *
@@ -22,12 +22,14 @@ import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.metadata.ActionMetadata;
 import org.apache.ambari.server.orm.dao.MetainfoDAO;
 import org.apache.ambari.server.orm.entities.MetainfoEntity;
+import org.apache.ambari.server.state.StackInfo;
 import org.apache.ambari.server.state.stack.LatestRepoCallable;
 import org.apache.ambari.server.state.stack.OsFamily;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -57,6 +59,11 @@ public class StackContext {
    */
   private LatestRepoQueryExecutor repoUpdateExecutor = new LatestRepoQueryExecutor();
 
+  /**
+   * Names of the services whose service check was registered
+   */
+  private Collection<String> serviceChecks = new LinkedHashSet<String>();
+
   /**
    * Repository XML base url property name
    */
@@ -83,6 +90,16 @@ public class StackContext {
    */
   public void registerServiceCheck(String serviceName) {
     actionMetaData.addServiceCheckAction(serviceName);
+    serviceChecks.add(serviceName);
+  }
+
+  /**
+   * Obtain the names of the services whose service check was registered.
+   *
+   * @return names of the services with a registered service check
+   */
+  public Collection<String> getRegisteredServiceChecks() {
+    return serviceChecks;
   }
 
   /**
@@ -106,12 +123,12 @@ public class StackContext {
   /**
    * Register a task to obtain the latest repo url from an external location.
    *
-   * @param url    external repo information URL
-   * @param stack  stack module
+   * @param url      external repo information URL
+   * @param repoDir  the stack repository directory
+   * @param stack    the stack whose repositories are updated
    */
-  public void registerRepoUpdateTask(String url, StackModule stack) {
-    repoUpdateExecutor.addTask(new LatestRepoCallable(url,
-        new File(stack.getStackDirectory().getRepoDir()), stack.getModuleInfo(), osFamily));
+  public void registerRepoUpdateTask(String url, String repoDir, StackInfo stack) {
+    repoUpdateExecutor.addTask(new LatestRepoCallable(url, new File(repoDir), stack, osFamily));
   }
 
   /**
@@ -34,10 +34,12 @@ import javax.xml.bind.JAXBException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -111,12 +113,12 @@ public class StackDirectory extends StackDefinitionDirectory {
   /**
    * repository directory name
    */
-  private final static String REPOSITORY_FOLDER_NAME = "repos";
+  final static String REPOSITORY_FOLDER_NAME = "repos";
 
   /**
    * repository file name
    */
-  private final static String REPOSITORY_FILE_NAME = "repoinfo.xml";
+  final static String REPOSITORY_FILE_NAME = "repoinfo.xml";
 
   /**
    * metainfo file name
@@ -358,16 +360,15 @@ public class StackDirectory extends StackDefinitionDirectory {
       File baseServiceDir = new File(servicesDir);
       File[] serviceFolders = baseServiceDir.listFiles(AmbariMetaInfo.FILENAME_FILTER);
       if (serviceFolders != null) {
+        List<ServiceDirectoryTask> tasks = new ArrayList<ServiceDirectoryTask>();
         for (File d : serviceFolders) {
           if (d.isDirectory()) {
-            try {
-              dirs.add(new StackServiceDirectory(d.getAbsolutePath()));
-            } catch (AmbariException e) {
-              //todo: this seems as though we should propagate this exception
-              //todo: eating it now to keep backwards compatibility
-              LOG.warn(String.format("Unable to parse stack definition service at '%s'.  Ignoring service. : %s",
-                  d.getAbsolutePath(), e.toString()));
-            }
+            tasks.add(new ServiceDirectoryTask(d));
+          }
+        }
+        for (ServiceDirectory serviceDirectory : StackParseTask.invokeAll(tasks)) {
+          if (serviceDirectory != null) {
+            dirs.add(serviceDirectory);
           }
         }
       }
@@ -380,6 +381,30 @@ public class StackDirectory extends StackDefinitionDirectory {
     serviceDirectories = dirs;
   }
 
+  /**
+   * Parses a stack service directory.
+   */
+  private static class ServiceDirectoryTask extends StackParseTask<ServiceDirectory> {
+    private final File directory;
+
+    ServiceDirectoryTask(File directory) {
+      this.directory = directory;
+    }
+
+    @Override
+    protected ServiceDirectory parse() {
+      try {
+        return new StackServiceDirectory(directory.getAbsolutePath());
+      } catch (AmbariException e) {
+        //todo: this seems as though we should propagate this exception
+        //todo: eating it now to keep backwards compatibility
+        LOG.warn(String.format("Unable to parse stack definition service at '%s'.  Ignoring service. : %s",
+            directory.getAbsolutePath(), e.toString()));
+        return null;
+      }
+    }
+  }
+
   /**
    * Parse all stack upgrade files for the stack.
    *
@@ -392,15 +417,7 @@ public class StackDirectory extends StackDefinitionDirectory {
       File f = new File(getAbsolutePath() + File.separator + UPGRADE_PACK_FOLDER_NAME);
       if (f.isDirectory()) {
         upgradesDir = f.getAbsolutePath();
-        for (File upgradeFile : f.listFiles(XML_FILENAME_FILTER)) {
-          try {
-            upgradeMap.put(FilenameUtils.removeExtension(upgradeFile.getName()),
-                unmarshaller.unmarshal(UpgradePack.class, upgradeFile));
-          } catch (JAXBException e) {
-            throw new AmbariException("Unable to parse stack upgrade file at location: " +
-                upgradeFile.getAbsolutePath(), e);
-          }
-        }
+        upgradeMap = parseUpgradePacks(f, unmarshaller);
       }
     }
 
@@ -413,6 +430,29 @@ public class StackDirectory extends StackDefinitionDirectory {
     }
   }
 
+  /**
+   * Parse the stack upgrade files in an upgrade directory.
+   *
+   * @param upgradesDir   the stack upgrade directory
+   * @param unmarshaller  the unmarshaller used to parse the upgrade files
+   * @return map of upgrade pack name to upgrade pack
+   * @throws AmbariException if unable to parse a stack upgrade file
+   */
+  static Map<String, UpgradePack> parseUpgradePacks(File upgradesDir, ModuleFileUnmarshaller unmarshaller)
+      throws AmbariException {
+    Map<String, UpgradePack> upgradeMap = new HashMap<String, UpgradePack>();
+    for (File upgradeFile : upgradesDir.listFiles(XML_FILENAME_FILTER)) {
+      try {
+        upgradeMap.put(FilenameUtils.removeExtension(upgradeFile.getName()),
+            unmarshaller.unmarshal(UpgradePack.class, upgradeFile));
+      } catch (JAXBException e) {
+        throw new AmbariException("Unable to parse stack upgrade file at location: " +
+            upgradeFile.getAbsolutePath(), e);
+      }
+    }
+    return upgradeMap;
+  }
+
   /**
    * Parse role command order file
    */
@@ -0,0 +1,264 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.stack;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.state.ComponentInfo;
+import org.apache.ambari.server.state.ConfigHelper;
+import org.apache.ambari.server.state.PropertyInfo;
+import org.apache.ambari.server.state.PropertyInfo.PropertyType;
+import org.apache.ambari.server.state.ServiceInfo;
+import org.apache.ambari.server.state.StackInfo;
+
+/**
+ * Immutable lookup tables over the metadata of a fully resolved stack.
+ * The tables are built once when the stacks are loaded so that finding
+ * properties by name, config type or property type and finding the service
+ * of a component don't have to scan all of the services and properties of
+ * the stack.
+ */
+public class StackIndex {
+
+  /**
+   * Map of component name to the name of the service that owns it
+   */
+  private final Map<String, String> componentToService;
+
+  /**
+   * Map of service name to the service properties keyed by property name
+   */
+  private final Map<String, Map<String, Set<PropertyInfo>>> servicePropertiesByName;
+
+  /**
+   * Map of service name to the service properties keyed by property type
+   */
+  private final Map<String, Map<PropertyType, Set<PropertyInfo>>> servicePropertiesByType;
+
+  /**
+   * Stack level properties keyed by property name
+   */
+  private final Map<String, Set<PropertyInfo>> stackPropertiesByName;
+
+  /**
+   * Stack level properties keyed by property type
+   */
+  private final Map<PropertyType, Set<PropertyInfo>> stackPropertiesByType;
+
+  /**
+   * Service and stack level properties keyed by config type
+   */
+  private final Map<String, Set<PropertyInfo>> propertiesByConfigType;
+
+  /**
+   * Constructor.
+   *
+   * @param stack  the fully resolved stack to index
+   */
+  public StackIndex(StackInfo stack) {
+    Map<String, String> components = new HashMap<String, String>();
+    Map<String, Map<String, Set<PropertyInfo>>> serviceByName =
+        new HashMap<String, Map<String, Set<PropertyInfo>>>();
+    Map<String, Map<PropertyType, Set<PropertyInfo>>> serviceByType =
+        new HashMap<String, Map<PropertyType, Set<PropertyInfo>>>();
+    Map<String, Set<PropertyInfo>> byConfigType = new HashMap<String, Set<PropertyInfo>>();
+
+    Collection<ServiceInfo> services = stack.getServices();
+    if (services != null) {
+      for (ServiceInfo service : services) {
+        for (ComponentInfo component : service.getComponents()) {
+          // keep the first service found, as a scan of the services would
+          if (!components.containsKey(component.getName())) {
+            components.put(component.getName(), service.getName());
+          }
+        }
+        Collection<PropertyInfo> properties = service.getProperties();
+        serviceByName.put(service.getName(), indexByName(properties));
+        serviceByType.put(service.getName(), indexByType(properties));
+        addByConfigType(byConfigType, properties);
+      }
+    }
+
+    Collection<PropertyInfo> stackProperties = stack.getProperties();
+    addByConfigType(byConfigType, stackProperties);
+
+    componentToService = Collections.unmodifiableMap(components);
+    servicePropertiesByName = Collections.unmodifiableMap(serviceByName);
+    servicePropertiesByType = Collections.unmodifiableMap(serviceByType);
+    stackPropertiesByName = indexByName(stackProperties);
+    stackPropertiesByType = indexByType(stackProperties);
+    propertiesByConfigType = freeze(byConfigType);
+  }
+
+  /**
+   * Get the name of the service which contains the given component.
+   *
+   * @param componentName  the component name
+   * @return the service name or null if no service of the stack contains the component
+   */
+  public String getServiceForComponent(String componentName) {
+    return componentToService.get(componentName);
+  }
+
+  /**
+   * Determine whether the stack contains the given service.
+   *
+   * @param serviceName  the service name
+   * @return true if the service is part of the stack
+   */
+  public boolean hasService(String serviceName) {
+    return servicePropertiesByName.containsKey(serviceName);
+  }
+
+  /**
+   * Determine whether the given service defines any properties.
+   *
+   * @param serviceName  the service name
+   * @return true if the service has at least one property
+   */
+  public boolean hasServiceProperties(String serviceName) {
+    Map<String, Set<PropertyInfo>> properties = servicePropertiesByName.get(serviceName);
+    return properties != null && !properties.isEmpty();
+  }
+
+  /**
+   * Determine whether the stack defines any stack level properties.
+   *
+   * @return true if the stack has at least one stack level property
+   */
+  public boolean hasStackProperties() {
+    return !stackPropertiesByName.isEmpty();
+  }
+
+  /**
+   * Get the properties of a service with the given name.
+   *
+   * @param serviceName   the service name
+   * @param propertyName  the property name
+   * @return an unmodifiable set of the matching properties; never null
+   */
+  public Set<PropertyInfo> getServicePropertiesByName(String serviceName, String propertyName) {
+    return lookup(servicePropertiesByName.get(serviceName), propertyName);
+  }
+
+  /**
+   * Get the properties of a service with the given property type.
+   *
+   * @param serviceName   the service name
+   * @param propertyType  the property type
+   * @return an unmodifiable set of the matching properties; never null
+   */
+  public Set<PropertyInfo> getServicePropertiesByType(String serviceName, PropertyType propertyType) {
+    return lookup(servicePropertiesByType.get(serviceName), propertyType);
+  }
+
+  /**
+   * Get the stack level properties with the given name.
+   *
+   * @param propertyName  the property name
+   * @return an unmodifiable set of the matching properties; never null
+   */
+  public Set<PropertyInfo> getStackPropertiesByName(String propertyName) {
+    return lookup(stackPropertiesByName, propertyName);
+  }
+
+  /**
+   * Get the stack level properties with the given property type.
+   *
+   * @param propertyType  the property type
+   * @return an unmodifiable set of the matching properties; never null
+   */
+  public Set<PropertyInfo> getStackPropertiesByType(PropertyType propertyType) {
+    return lookup(stackPropertiesByType, propertyType);
+  }
+
+  /**
+   * Get the service and stack level properties of the given config type.
+   *
+   * @param configType  the config type, i.e. the property file name without extension
+   * @return an unmodifiable set of the matching properties; never null
+   */
+  public Set<PropertyInfo> getPropertiesByConfigType(String configType) {
+    return lookup(propertiesByConfigType, configType);
+  }
+
+  private static <K> Set<PropertyInfo> lookup(Map<K, Set<PropertyInfo>> map, K key) {
+    Set<PropertyInfo> properties = map == null ? null : map.get(key);
+    return properties == null ? Collections.<PropertyInfo>emptySet() : properties;
+  }
+
+  private static Map<String, Set<PropertyInfo>> indexByName(Collection<PropertyInfo> properties) {
+    Map<String, Set<PropertyInfo>> index = new HashMap<String, Set<PropertyInfo>>();
+    if (properties != null) {
+      for (PropertyInfo property : properties) {
+        add(index, property.getName(), property);
+      }
+    }
+    return freeze(index);
+  }
+
+  private static Map<PropertyType, Set<PropertyInfo>> indexByType(Collection<PropertyInfo> properties) {
+    Map<PropertyType, Set<PropertyInfo>> index =
+        new EnumMap<PropertyType, Set<PropertyInfo>>(PropertyType.class);
+    if (properties != null) {
+      for (PropertyInfo property : properties) {
+        if (property.getPropertyTypes() != null) {
+          for (PropertyType propertyType : property.getPropertyTypes()) {
+            add(index, propertyType, property);
+          }
+        }
+      }
+    }
+    return freeze(index);
+  }
+
+  private static void addByConfigType(Map<String, Set<PropertyInfo>> index,
+                                      Collection<PropertyInfo> properties) {
+    if (properties != null) {
+      for (PropertyInfo property : properties) {
+        String filename = property.getFilename();
+        if (filename != null && filename.contains(AmbariMetaInfo.SERVICE_CONFIG_FILE_NAME_POSTFIX)) {
+          add(index, ConfigHelper.fileNameToConfigType(filename), property);
+        }
+      }
+    }
+  }
+
+  private static <K> void add(Map<K, Set<PropertyInfo>> index, K key, PropertyInfo property) {
+    Set<PropertyInfo> properties = index.get(key);
+    if (properties == null) {
+      properties = new HashSet<PropertyInfo>();
+      index.put(key, properties);
+    }
+    properties.add(property);
+  }
+
+  private static <K> Map<K, Set<PropertyInfo>> freeze(Map<K, Set<PropertyInfo>> index) {
+    for (Map.Entry<K, Set<PropertyInfo>> entry : index.entrySet()) {
+      entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+    }
+    return Collections.unmodifiableMap(index);
+  }
+}
@@ -23,16 +23,22 @@ import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.state.ServiceInfo;
 import org.apache.ambari.server.state.StackInfo;
+import org.apache.ambari.server.state.stack.RepositoryXml;
 import org.apache.ambari.server.state.stack.ServiceMetainfoXml;
+import org.apache.ambari.server.state.stack.UpgradePack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -69,6 +75,11 @@ public class StackManager {
    */
   private Map<String, StackInfo> stackMap = new HashMap<String, StackInfo>();
 
+  /**
+   * Map of stack id to the lookup index of the stack
+   */
+  private Map<String, StackIndex> stackIndexMap = new HashMap<String, StackIndex>();
+
   /**
    * Constructor.
    * Initialize stack manager.
@@ -80,17 +91,49 @@ public class StackManager {
    * @throws AmbariException if an exception occurs while processing the stacks
    */
   public StackManager(File stackRoot, File commonServicesRoot, StackContext stackContext) throws AmbariException {
+    this(stackRoot, commonServicesRoot, stackContext, 0, null);
+  }
+
+  /**
+   * Constructor.
+   * Initialize stack manager, parsing independent stack and service directories in parallel
+   * and loading the stacks from a snapshot if the stack definition hasn't changed since the
+   * snapshot was taken.
+   *
+   * @param stackRoot           stack root directory
+   * @param commonServicesRoot  common services root directory
+   * @param stackContext        context which provides external functionality
+   * @param parallelism         number of threads used to parse the stack definition;
+   *                            0 to use one thread per processor
+   * @param snapshotFile        file holding a snapshot of the resolved stacks;
+   *                            null to always parse the stack definition
+   *
+   * @throws AmbariException if an exception occurs while processing the stacks
+   */
+  public StackManager(File stackRoot, File commonServicesRoot, StackContext stackContext,
+                      int parallelism, File snapshotFile) throws AmbariException {
     validateStackDirectory(stackRoot);
     validateCommonServicesDirectory(commonServicesRoot);
 
     this.stackMap = new HashMap<String, StackInfo>();
     this.stackContext = stackContext;
 
-    Map<String, ServiceModule> commonServiceModules = parseCommonServicesDirectory(commonServicesRoot);
-    Map<String, StackModule> stackModules = parseStackDirectory(stackRoot);
+    long startTime = System.currentTimeMillis();
+    StackSnapshot snapshot = snapshotFile == null ? null :
+        new StackSnapshot(snapshotFile, stackRoot, commonServicesRoot);
+    StackSnapshot.Contents contents = snapshot == null ? null : snapshot.read();
 
-    fullyResolveCommonServices(stackModules, commonServiceModules);
-    fullyResolveStacks(stackModules, commonServiceModules);
+    if (contents == null || !loadSnapshot(stackRoot, contents)) {
+      parseStacks(stackRoot, commonServicesRoot, parallelism);
+      if (snapshot != null) {
+        snapshot.write(new StackSnapshot.Contents(stackMap, stackContext.getRegisteredServiceChecks()));
+      }
+    }
+    // Execute all of the repo tasks in a single thread executor
+    stackContext.executeRepoTasks();
+    indexStacks();
+
+    LOG.info("Loaded {} stacks in {} ms", stackMap.size(), System.currentTimeMillis() - startTime);
   }
 
   /**
@@ -105,6 +148,18 @@ public class StackManager {
     return stackMap.get(name + StackManager.PATH_DELIMITER + version);
   }
 
+  /**
+   * Obtain the lookup index of the stack specified by name and version.
+   *
+   * @param name     name of the stack
+   * @param version  version of the stack
+   * @return The index of the stack corresponding to the specified name and version.
+   *         If no matching stack exists, null is returned.
+   */
+  public StackIndex getStackIndex(String name, String version) {
+    return stackIndexMap.get(name + StackManager.PATH_DELIMITER + version);
+  }
+
   /**
    * Obtain all stacks for the given name.
    *
@@ -166,8 +221,112 @@ public class StackManager {
     for (StackModule stack : stackModules.values()) {
       stack.finalizeModule();
     }
-    // Execute all of the repo tasks in a single thread executor
-    stackContext.executeRepoTasks();
+  }
+
+  /**
+   * Parse and fully resolve the stack definition.
+   * Independent stack and service directories are parsed in parallel on a fork-join pool;
+   * stacks are resolved in the calling thread once all directories have been parsed.
+   *
+   * @param stackRoot           stack root directory
+   * @param commonServicesRoot  common services root directory
+   * @param parallelism         number of parsing threads; 0 to use one thread per processor
+   * @throws AmbariException if unable to parse or resolve the stacks
+   */
+  private void parseStacks(final File stackRoot, final File commonServicesRoot, int parallelism)
+      throws AmbariException {
+    ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ?
+        parallelism : Runtime.getRuntime().availableProcessors());
+    Map<String, ServiceModule> commonServiceModules;
+    Map<String, StackModule> stackModules;
+    try {
+      commonServiceModules = StackParseTask.invoke(pool, new StackParseTask<Map<String, ServiceModule>>() {
+        @Override
+        protected Map<String, ServiceModule> parse() throws AmbariException {
+          return parseCommonServicesDirectory(commonServicesRoot);
+        }
+      });
+      stackModules = StackParseTask.invoke(pool, new StackParseTask<Map<String, StackModule>>() {
+        @Override
+        protected Map<String, StackModule> parse() throws AmbariException {
+          return parseStackDirectory(stackRoot);
+        }
+      });
+    } finally {
+      pool.shutdown();
+    }
+
+    fullyResolveCommonServices(stackModules, commonServiceModules);
+    fullyResolveStacks(stackModules, commonServiceModules);
+  }
+
+  /**
+   * Load the stacks from a snapshot.
+   * The upgrade packs and repositories of the stacks are not part of the snapshot and are
+   * read again, as the repository urls may have been changed since the snapshot was taken.
+   * The service checks registered when the snapshot was taken are registered again.
+   *
+   * @param stackRoot  stack root directory
+   * @param contents   snapshot contents
+   * @return true if the stacks were loaded; false if the stacks need to be parsed
+   * @throws AmbariException if unable to process the stack repositories
+   */
+  private boolean loadSnapshot(File stackRoot, StackSnapshot.Contents contents) throws AmbariException {
+    ModuleFileUnmarshaller unmarshaller = new ModuleFileUnmarshaller();
+    Map<String, RepositoryXml> repoFiles = new HashMap<String, RepositoryXml>();
+    try {
+      for (Map.Entry<String, StackInfo> entry : contents.getStacks().entrySet()) {
+        StackInfo stack = entry.getValue();
+        if (stack.getUpgradesFolder() != null) {
+          Map<String, UpgradePack> upgradePacks = StackDirectory.parseUpgradePacks(
+              new File(stack.getUpgradesFolder()), unmarshaller);
+          stack.setUpgradePacks(upgradePacks.isEmpty() ? null : upgradePacks);
+        }
+        File repoFile = new File(getRepoDir(stackRoot, stack), StackDirectory.REPOSITORY_FILE_NAME);
+        if (repoFile.exists()) {
+          repoFiles.put(entry.getKey(), unmarshaller.unmarshal(RepositoryXml.class, repoFile));
+        }
+      }
+    } catch (Exception e) {
+      LOG.warn("Unable to load the stacks from the snapshot, the stacks will be parsed", e);
+      return false;
+    }
+
+    for (Map.Entry<String, StackInfo> entry : contents.getStacks().entrySet()) {
+      StackInfo stack = entry.getValue();
+      RepositoryXml repoFile = repoFiles.get(entry.getKey());
+      if (repoFile != null) {
+        StackModule.processRepositories(stack, repoFile, getRepoDir(stackRoot, stack), stackContext);
+      }
+      stackMap.put(entry.getKey(), stack);
+    }
+    for (String serviceName : contents.getServiceChecks()) {
+      stackContext.registerServiceCheck(serviceName);
+    }
+    return true;
+  }
+
+  /**
+   * Obtain the repository directory of a stack.
+   *
+   * @param stackRoot  stack root directory
+   * @param stack      the stack
+   * @return absolute path of the stack repository directory
+   */
+  private static String getRepoDir(File stackRoot, StackInfo stack) {
+    return new File(stackRoot, stack.getName() + File.separator + stack.getVersion() +
+        File.separator + StackDirectory.REPOSITORY_FOLDER_NAME).getAbsolutePath();
+  }
+
+  /**
+   * Build the lookup index of all fully resolved stacks.
+   */
+  private void indexStacks() {
+    Map<String, StackIndex> indexes = new HashMap<String, StackIndex>();
+    for (Map.Entry<String, StackInfo> entry : stackMap.entrySet()) {
+      indexes.put(entry.getKey(), new StackIndex(entry.getValue()));
+    }
+    stackIndexMap = indexes;
   }
 
   /**
@@ -238,38 +397,60 @@ public class StackManager {
     Map<String, ServiceModule> commonServiceModules = new HashMap<String, ServiceModule>();
 
     if(commonServicesRoot != null) {
+      List<CommonServiceTask> tasks = new ArrayList<CommonServiceTask>();
       File[] commonServiceFiles = commonServicesRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
       for (File commonService : commonServiceFiles) {
         if (commonService.isFile()) {
           continue;
         }
         for (File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
-          String serviceName = serviceFolder.getParentFile().getName();
-          String serviceVersion = serviceFolder.getName();
-          ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
-          ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
-          if (metaInfoXml != null) {
-            if (metaInfoXml.isValid()) {
-              for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
-                ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
-
-                String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
-                commonServiceModules.put(commonServiceKey, serviceModule);
-              }
-            } else {
-              ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
-              serviceModule.setValid(false);
-              serviceModule.setErrors(metaInfoXml.getErrors());
-              commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
-              metaInfoXml.setSchemaVersion(null);
-            }
-          }
+          tasks.add(new CommonServiceTask(stackContext, serviceFolder));
         }
       }
+      for (Map<String, ServiceModule> serviceModules : StackParseTask.invokeAll(tasks)) {
+        commonServiceModules.putAll(serviceModules);
+      }
     }
     return commonServiceModules;
   }
 
+  /**
+   * Parses a common service directory.
+   */
+  private static class CommonServiceTask extends StackParseTask<Map<String, ServiceModule>> {
+    private final StackContext stackContext;
+    private final File serviceFolder;
+
+    CommonServiceTask(StackContext stackContext, File serviceFolder) {
+      this.stackContext = stackContext;
+      this.serviceFolder = serviceFolder;
+    }
+
+    @Override
+    protected Map<String, ServiceModule> parse() throws AmbariException {
+      Map<String, ServiceModule> commonServiceModules = new LinkedHashMap<String, ServiceModule>();
+      ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
+      ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
+      if (metaInfoXml != null) {
+        if (metaInfoXml.isValid()) {
+          for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
+            ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
+
+            String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
+            commonServiceModules.put(commonServiceKey, serviceModule);
+          }
+        } else {
+          ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
+          serviceModule.setValid(false);
+          serviceModule.setErrors(metaInfoXml.getErrors());
+          commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
+          metaInfoXml.setSchemaVersion(null);
+        }
+      }
+      return commonServiceModules;
+    }
+  }
+
   /**
    * Parse the specified stack root directory
    *
@@ -280,6 +461,7 @@ public class StackManager {
   private Map<String, StackModule> parseStackDirectory(File stackRoot) throws AmbariException {
     Map<String, StackModule> stackModules = new HashMap<String, StackModule>();
 
+    List<StackTask> tasks = new ArrayList<StackTask>();
     File[] stackFiles = stackRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
     for (File stack : stackFiles) {
       if (stack.isFile()) {
@@ -289,20 +471,39 @@ public class StackManager {
         if (stackFolder.isFile()) {
           continue;
         }
-        String stackName = stackFolder.getParentFile().getName();
-        String stackVersion = stackFolder.getName();
-
-        StackModule stackModule = new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
-        String stackKey = stackName + StackManager.PATH_DELIMITER + stackVersion;
-        stackModules.put(stackKey, stackModule);
-        stackMap.put(stackKey, stackModule.getModuleInfo());
+        tasks.add(new StackTask(stackContext, stackFolder));
       }
     }
 
+    for (StackModule stackModule : StackParseTask.invokeAll(tasks)) {
+      StackDirectory stackDirectory = stackModule.getStackDirectory();
+      String stackKey = stackDirectory.getStackDirName() + StackManager.PATH_DELIMITER + stackDirectory.getName();
+      stackModules.put(stackKey, stackModule);
+      stackMap.put(stackKey, stackModule.getModuleInfo());
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find stack definitions under " +
           "stackRoot = " + stackRoot.getAbsolutePath());
     }
     return stackModules;
   }
+
+  /**
+   * Parses a stack version directory.
+   */
+  private static class StackTask extends StackParseTask<StackModule> {
+    private final StackContext stackContext;
+    private final File stackFolder;
+
+    StackTask(StackContext stackContext, File stackFolder) {
+      this.stackContext = stackContext;
+      this.stackFolder = stackFolder;
+    }
+
+    @Override
+    protected StackModule parse() throws AmbariException {
+      return new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
+    }
+  }
 }
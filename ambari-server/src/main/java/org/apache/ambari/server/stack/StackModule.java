@@ -442,10 +442,17 @@ public class StackModule extends BaseModule<StackModule, StackInfo> implements V
 
   /**
    * Populate the child services.
+   * The service modules, including their configurations, are created in parallel
+   * when the stack is parsed from within a fork-join pool.
    */
   private void populateServices()throws AmbariException {
+    List<ServiceModulesTask> tasks = new ArrayList<ServiceModulesTask>();
     for (ServiceDirectory serviceDir : stackDirectory.getServiceDirectories()) {
-      populateService(serviceDir);
+      tasks.add(new ServiceModulesTask(stackContext, serviceDir));
+    }
+    List<Collection<ServiceModule>> serviceModules = StackParseTask.invokeAll(tasks);
+    for (int i = 0; i < tasks.size(); i++) {
+      populateService(tasks.get(i).serviceDirectory, serviceModules.get(i));
     }
   }
 
@@ -453,11 +460,9 @@ public class StackModule extends BaseModule<StackModule, StackInfo> implements V
    * Populate a child service.
    *
    * @param serviceDirectory the child service directory
+   * @param serviceModules   the service modules created for the directory
    */
-  private void populateService(ServiceDirectory serviceDirectory)  {
-    Collection<ServiceModule> serviceModules = new ArrayList<ServiceModule>();
-    // unfortunately, we allow multiple services to be specified in the same metainfo.xml,
-    // so we can't move the unmarshal logic into ServiceModule
+  private void populateService(ServiceDirectory serviceDirectory, Collection<ServiceModule> serviceModules)  {
     ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
     if (!metaInfoXml.isValid()){
       stackInfo.setValid(metaInfoXml.isValid());
@@ -466,11 +471,8 @@ public class StackModule extends BaseModule<StackModule, StackInfo> implements V
       setErrors(metaInfoXml.getErrors());      
       return;
     }
-    List<ServiceInfo> serviceInfos = metaInfoXml.getServices();
 
-    for (ServiceInfo serviceInfo : serviceInfos) {
-      ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory);
-      serviceModules.add(serviceModule);
+    for (ServiceModule serviceModule : serviceModules) {
       if (!serviceModule.isValid()){
         stackInfo.setValid(false);
         setValid(false);
@@ -481,6 +483,33 @@ public class StackModule extends BaseModule<StackModule, StackInfo> implements V
     addServices(serviceModules);
   }
 
+  /**
+   * Creates the service modules of a child service directory.
+   */
+  private static class ServiceModulesTask extends StackParseTask<Collection<ServiceModule>> {
+    private final StackContext stackContext;
+    private final ServiceDirectory serviceDirectory;
+
+    ServiceModulesTask(StackContext stackContext, ServiceDirectory serviceDirectory) {
+      this.stackContext = stackContext;
+      this.serviceDirectory = serviceDirectory;
+    }
+
+    @Override
+    protected Collection<ServiceModule> parse() {
+      Collection<ServiceModule> serviceModules = new ArrayList<ServiceModule>();
+      // unfortunately, we allow multiple services to be specified in the same metainfo.xml,
+      // so we can't move the unmarshal logic into ServiceModule
+      ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
+      if (metaInfoXml.isValid()) {
+        for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
+          serviceModules.add(new ServiceModule(stackContext, serviceInfo, serviceDirectory));
+        }
+      }
+      return serviceModules;
+    }
+  }
+
   /**
    * Populate the child configurations.
    */
@@ -578,7 +607,21 @@ public class StackModule extends BaseModule<StackModule, StackInfo> implements V
    * @throws AmbariException if unable to fully process the stack repositories
    */
   private void processRepositories() throws AmbariException {
-    RepositoryXml rxml = stackDirectory.getRepoFile();
+    processRepositories(stackInfo, stackDirectory.getRepoFile(), stackDirectory.getRepoDir(), stackContext);
+  }
+
+  /**
+   * Process the repositories of a stack, adding them to the stack.
+   *
+   * @param stackInfo     the stack
+   * @param rxml          the stack repository file, may be null
+   * @param repoDir       the stack repository directory
+   * @param stackContext  stack context used to look up saved repository urls
+   *                      and to register the latest repository url lookup
+   * @throws AmbariException if unable to fully process the stack repositories
+   */
+  static void processRepositories(StackInfo stackInfo, RepositoryXml rxml, String repoDir,
+                                  StackContext stackContext) throws AmbariException {
     if (rxml == null) {
       return;
     }
@@ -586,7 +629,7 @@ public class StackModule extends BaseModule<StackModule, StackInfo> implements V
     LOG.debug("Adding repositories to stack" +
         ", stackName=" + stackInfo.getName() +
         ", stackVersion=" + stackInfo.getVersion() +
-        ", repoFolder=" + stackDirectory.getRepoDir());
+        ", repoFolder=" + repoDir);
 
     List<RepositoryInfo> repos = new ArrayList<RepositoryInfo>();
 
@@ -594,7 +637,7 @@ public class StackModule extends BaseModule<StackModule, StackInfo> implements V
       String osFamily = o.getFamily();
       for (String os : osFamily.split(",")) {
         for (RepositoryXml.Repo r : o.getRepos()) {
-          repos.add(processRepository(osFamily, os, r));
+          repos.add(processRepository(stackInfo, stackContext, osFamily, os, r));
         }
       }
     }
@@ -602,18 +645,21 @@ public class StackModule extends BaseModule<StackModule, StackInfo> implements V
     stackInfo.getRepositories().addAll(repos);
 
     if (null != rxml.getLatestURI() && repos.size() > 0) {
-      stackContext.registerRepoUpdateTask(rxml.getLatestURI(), this);
+      stackContext.registerRepoUpdateTask(rxml.getLatestURI(), repoDir, stackInfo);
     }
   }
 
   /**
    * Process a repository associated with the stack.
    *
-   * @param osFamily  OS family
-   * @param osType    OS type
-   * @param r         repo
+   * @param stackInfo     the stack
+   * @param stackContext  stack context used to look up the saved repository url
+   * @param osFamily      OS family
+   * @param osType        OS type
+   * @param r             repo
    */
-  private RepositoryInfo processRepository(String osFamily, String osType, RepositoryXml.Repo r) {
+  private static RepositoryInfo processRepository(StackInfo stackInfo, StackContext stackContext,
+                                                  String osFamily, String osType, RepositoryXml.Repo r) {
     RepositoryInfo ri = new RepositoryInfo();
     ri.setBaseUrl(r.getBaseUrl());
     ri.setDefaultBaseUrl(r.getBaseUrl());
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.stack;
+
+import org.apache.ambari.server.AmbariException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join task which parses an independent part of the stack definition,
+ * such as a stack version or a service directory.
+ * <p/>
+ * Tasks which are invoked from within a fork-join pool are forked so that
+ * independent directories are parsed in parallel; otherwise they are run
+ * in the calling thread.
+ *
+ * @param <V> the parse result
+ */
+abstract class StackParseTask<V> extends RecursiveTask<V> {
+
+  /**
+   * Parse the part of the stack definition handled by this task.
+   *
+   * @return the parse result
+   * @throws AmbariException if unable to parse
+   */
+  protected abstract V parse() throws AmbariException;
+
+  @Override
+  protected final V compute() {
+    try {
+      return parse();
+    } catch (AmbariException e) {
+      throw new ParseException(e);
+    }
+  }
+
+  /**
+   * Run the tasks, in parallel if called from within a fork-join pool.
+   *
+   * @param tasks  the tasks to run
+   * @return the results of the tasks, in the order of the tasks
+   * @throws AmbariException if any of the tasks failed to parse
+   */
+  static <V> List<V> invokeAll(List<? extends StackParseTask<V>> tasks) throws AmbariException {
+    List<V> results = new ArrayList<V>(tasks.size());
+    try {
+      if (ForkJoinTask.inForkJoinPool()) {
+        ForkJoinTask.invokeAll(tasks);
+      }
+      for (StackParseTask<V> task : tasks) {
+        // runs the task in this thread if it hasn't been forked
+        results.add(task.invoke());
+      }
+    } catch (ParseException e) {
+      throw e.getCause();
+    }
+    return results;
+  }
+
+  /**
+   * Run a task in the given pool and wait for its result.
+   *
+   * @param pool  the pool
+   * @param task  the task
+   * @return the result of the task
+   * @throws AmbariException if the task failed to parse
+   */
+  static <V> V invoke(ForkJoinPool pool, StackParseTask<V> task) throws AmbariException {
+    try {
+      return pool.invoke(task);
+    } catch (ParseException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Carries an {@link AmbariException} out of a fork-join task.
+   */
+  private static class ParseException extends RuntimeException {
+    ParseException(AmbariException cause) {
+      super(cause);
+    }
+
+    @Override
+    public AmbariException getCause() {
+      return (AmbariException) super.getCause();
+    }
+  }
+}
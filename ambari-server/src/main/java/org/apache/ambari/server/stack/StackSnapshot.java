@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.stack;
+
+import org.apache.ambari.server.state.StackInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk snapshot of the fully resolved stacks, used to load the stacks on
+ * server start without parsing the stack definition when it hasn't changed.
+ * <p/>
+ * The snapshot is keyed by a hash of the stack definition which covers the
+ * names of all files and directories and the contents of the XML and JSON
+ * files under the stack and common services roots. A snapshot with a
+ * different hash, or one written by a server with different stack classes,
+ * is ignored and the stacks are parsed.
+ */
+class StackSnapshot {
+
+  /**
+   * Logger
+   */
+  private final static Logger LOG = LoggerFactory.getLogger(StackSnapshot.class);
+
+  /**
+   * Version of the snapshot file format
+   */
+  private static final int FORMAT_VERSION = 1;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * The snapshot file
+   */
+  private final File file;
+
+  /**
+   * The stack root directory
+   */
+  private final File stackRoot;
+
+  /**
+   * The common services root directory, may be null
+   */
+  private final File commonServicesRoot;
+
+  /**
+   * Hash of the stack definition, computed on first use
+   */
+  private String hash;
+
+  /**
+   * Constructor.
+   *
+   * @param file                the snapshot file
+   * @param stackRoot           stack root directory
+   * @param commonServicesRoot  common services root directory, may be null
+   */
+  StackSnapshot(File file, File stackRoot, File commonServicesRoot) {
+    this.file = file;
+    this.stackRoot = stackRoot;
+    this.commonServicesRoot = commonServicesRoot;
+  }
+
+  /**
+   * Read the snapshot.
+   *
+   * @return the snapshot contents or null if there is no snapshot, it was taken
+   *         of a different stack definition or it can't be read
+   */
+  Contents read() {
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+          new GZIPInputStream(new FileInputStream(file))));
+      try {
+        if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(getHash())) {
+          LOG.info("Stack definition changed since the stack snapshot {} was taken", file);
+          return null;
+        }
+        return (Contents) in.readObject();
+      } finally {
+        in.close();
+      }
+    } catch (Exception e) {
+      LOG.warn("Unable to read the stack snapshot " + file + ", the stacks will be parsed", e);
+      return null;
+    }
+  }
+
+  /**
+   * Write the snapshot, replacing any previous snapshot. Failures are logged
+   * and otherwise ignored as the snapshot only speeds up loading the stacks.
+   *
+   * @param contents  the snapshot contents
+   */
+  void write(Contents contents) {
+    File tmpFile = new File(file.getPath() + ".tmp");
+    try {
+      ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+          new GZIPOutputStream(new FileOutputStream(tmpFile))));
+      try {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(getHash());
+        out.writeObject(contents);
+      } finally {
+        out.close();
+      }
+      if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file))) {
+        throw new IOException("Unable to rename " + tmpFile + " to " + file);
+      }
+      LOG.info("Wrote stack snapshot {}", file);
+    } catch (Exception e) {
+      LOG.warn("Unable to write the stack snapshot " + file, e);
+      tmpFile.delete();
+    }
+  }
+
+  /**
+   * Obtain the hash of the stack definition.
+   *
+   * @return hex encoded hash
+   * @throws IOException if unable to read the stack definition
+   */
+  String getHash() throws IOException {
+    if (hash == null) {
+      MessageDigest digest;
+      try {
+        digest = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IOException(e);
+      }
+      byte[] buffer = new byte[8192];
+      update(digest, stackRoot, "", buffer);
+      if (commonServicesRoot != null) {
+        digest.update((byte) 0);
+        update(digest, commonServicesRoot, "", buffer);
+      }
+
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest.digest()) {
+        sb.append(String.format("%02x", b));
+      }
+      hash = sb.toString();
+    }
+    return hash;
+  }
+
+  private static void update(MessageDigest digest, File directory, String path, byte[] buffer)
+      throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files);
+    for (File f : files) {
+      String name = path + "/" + f.getName();
+      digest.update(name.getBytes(UTF_8));
+      if (f.isDirectory()) {
+        digest.update((byte) 1);
+        update(digest, f, name, buffer);
+      } else {
+        digest.update((byte) 2);
+        String fileName = f.getName();
+        if (fileName.endsWith(".xml") || fileName.endsWith(".json")) {
+          InputStream in = new FileInputStream(f);
+          try {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+              digest.update(buffer, 0, n);
+            }
+          } finally {
+            in.close();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * The state of the stack manager captured by the snapshot.
+   */
+  static class Contents implements Serializable {
+    /**
+     * Map of stack id to the fully resolved stack
+     */
+    private final HashMap<String, StackInfo> stacks;
+
+    /**
+     * Names of the services whose service check was registered
+     */
+    private final ArrayList<String> serviceChecks;
+
+    Contents(Map<String, StackInfo> stacks, Collection<String> serviceChecks) {
+      this.stacks = new HashMap<String, StackInfo>(stacks);
+      this.serviceChecks = new ArrayList<String>(serviceChecks);
+    }
+
+    Map<String, StackInfo> getStacks() {
+      return stacks;
+    }
+
+    Collection<String> getServiceChecks() {
+      return serviceChecks;
+    }
+  }
+}
@@ -18,13 +18,15 @@
 
 package org.apache.ambari.server.state;
 
+import java.io.Serializable;
+
 import javax.xml.bind.annotation.XmlElement;
 
 /**
  * Represents auto-deployment stack information.
  * This element may be a child of the component and dependency elements.
  */
-public class AutoDeployInfo {
+public class AutoDeployInfo implements Serializable {
   /**
    * Whether auto-deploy is enabled
    */
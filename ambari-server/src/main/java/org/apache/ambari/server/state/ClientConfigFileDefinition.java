@@ -17,6 +17,8 @@
  */
 package org.apache.ambari.server.state;
 
+import java.io.Serializable;
+
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
@@ -27,7 +29,7 @@ import javax.xml.bind.annotation.XmlAccessorType;
  * Represents the configFiles tag at service/component metainfo
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-public class ClientConfigFileDefinition {
+public class ClientConfigFileDefinition implements Serializable {
 
   private String type;
   private String fileName;
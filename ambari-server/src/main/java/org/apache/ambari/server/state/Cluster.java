@@ -319,11 +319,21 @@ public interface Cluster {
   public Config getDesiredConfigByType(String configType);
 
   /**
-   * Gets the desired configurations for the cluster.
+   * Gets the desired configurations for the cluster. The returned map is a
+   * shared snapshot that is replaced when the desired configurations change
+   * and must not be modified.
    * @return a map of type-to-configuration information.
    */
   public Map<String, DesiredConfig> getDesiredConfigs();
 
+  /**
+   * Gets the version of the desired configurations, incremented whenever the
+   * desired configurations, their host overrides or the config groups of the
+   * cluster change. Callers can key caches derived from them on it.
+   * @return the desired configurations version
+   */
+  public long getDesiredConfigsVersion();
+
 
   /**
    * Creates a cluster response based on the current cluster definition
@@ -18,6 +18,7 @@
 
 package org.apache.ambari.server.state;
 
+import java.io.Serializable;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
@@ -30,7 +31,7 @@ import javax.xml.bind.annotation.XmlAccessorType;
  * Represents info about command script
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-public class CommandScriptDefinition {
+public class CommandScriptDefinition implements Serializable {
 
 
   private String script = null;
@@ -39,6 +39,7 @@ import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.ConfigurationRequest;
 import org.apache.ambari.server.orm.dao.ClusterDAO;
 import org.apache.ambari.server.orm.entities.ClusterConfigEntity;
+import org.apache.ambari.server.stack.StackIndex;
 import org.apache.ambari.server.state.PropertyInfo.PropertyType;
 import org.apache.ambari.server.state.configgroup.ConfigGroup;
 import org.apache.ambari.server.upgrade.UpgradeCatalog170;
@@ -434,22 +435,19 @@ public class ConfigHelper {
    * @param propertyName
    */
   public Set<String> findConfigTypesByPropertyName(StackId stackId, String propertyName, String clusterName) throws AmbariException {
-    StackInfo stack = ambariMetaInfo.getStack(stackId.getStackName(),
-        stackId.getStackVersion());
+    StackIndex index = getStackIndex(stackId);
 
     Set<String> result = new HashSet<String>();
 
     for (Service service : clusters.getCluster(clusterName).getServices().values()) {
-      Set<PropertyInfo> stackProperties = ambariMetaInfo.getServiceProperties(stack.getName(), stack.getVersion(), service.getName());
-      Set<PropertyInfo> stackLevelProperties = ambariMetaInfo.getStackProperties(stack.getName(), stack.getVersion());
-      stackProperties.addAll(stackLevelProperties);
+      Set<PropertyInfo> stackProperties = new HashSet<PropertyInfo>(
+          index.getServicePropertiesByName(service.getName(), propertyName));
+      stackProperties.addAll(index.getStackPropertiesByName(propertyName));
 
       for (PropertyInfo stackProperty : stackProperties) {
-        if (stackProperty.getName().equals(propertyName)) {
-          String configType = fileNameToConfigType(stackProperty.getFilename());
+        String configType = fileNameToConfigType(stackProperty.getFilename());
 
-          result.add(configType);
-        }
+        result.add(configType);
       }
     }
 
@@ -457,59 +455,54 @@ public class ConfigHelper {
   }
 
   public Set<String> getPropertyValuesWithPropertyType(StackId stackId, PropertyType propertyType, Cluster cluster) throws AmbariException {
-    StackInfo stack = ambariMetaInfo.getStack(stackId.getStackName(),
-        stackId.getStackVersion());
+    StackIndex index = getStackIndex(stackId);
 
     Set<String> result = new HashSet<String>();
 
     for (Service service : cluster.getServices().values()) {
-      Set<PropertyInfo> serviceProperties = ambariMetaInfo.getServiceProperties(stack.getName(), stack.getVersion(), service.getName());
+      Set<PropertyInfo> serviceProperties = index.getServicePropertiesByType(service.getName(), propertyType);
       for (PropertyInfo serviceProperty : serviceProperties) {
-        if (serviceProperty.getPropertyTypes().contains(propertyType)) {
-          String stackPropertyConfigType = fileNameToConfigType(serviceProperty.getFilename());
-          try {
-            result.add(cluster.getDesiredConfigByType(stackPropertyConfigType).getProperties().get(serviceProperty.getName()));
-          } catch (Exception ex) {
-          }
+        String stackPropertyConfigType = fileNameToConfigType(serviceProperty.getFilename());
+        try {
+          result.add(cluster.getDesiredConfigByType(stackPropertyConfigType).getProperties().get(serviceProperty.getName()));
+        } catch (Exception ex) {
         }
       }
     }
 
-    Set<PropertyInfo> stackProperties = ambariMetaInfo.getStackProperties(stack.getName(), stack.getVersion());
+    Set<PropertyInfo> stackProperties = index.getStackPropertiesByType(propertyType);
 
     for (PropertyInfo stackProperty : stackProperties) {
-      if (stackProperty.getPropertyTypes().contains(propertyType)) {
-        String stackPropertyConfigType = fileNameToConfigType(stackProperty.getFilename());
-        result.add(cluster.getDesiredConfigByType(stackPropertyConfigType).getProperties().get(stackProperty.getName()));
-      }
+      String stackPropertyConfigType = fileNameToConfigType(stackProperty.getFilename());
+      result.add(cluster.getDesiredConfigByType(stackPropertyConfigType).getProperties().get(stackProperty.getName()));
     }
 
     return result;
   }
 
   public String getPropertyValueFromStackDefinitions(Cluster cluster, String configType, String propertyName) throws AmbariException {
-    StackId stackId = cluster.getCurrentStackVersion();
-    StackInfo stack = ambariMetaInfo.getStack(stackId.getStackName(),
-        stackId.getStackVersion());
+    StackIndex index = getStackIndex(cluster.getCurrentStackVersion());
 
-    for (ServiceInfo serviceInfo : stack.getServices()) {
-      Set<PropertyInfo> serviceProperties = ambariMetaInfo.getServiceProperties(stack.getName(), stack.getVersion(), serviceInfo.getName());
-      Set<PropertyInfo> stackProperties = ambariMetaInfo.getStackProperties(stack.getName(), stack.getVersion());
-      serviceProperties.addAll(stackProperties);
-
-      for (PropertyInfo stackProperty : serviceProperties) {
-        String stackPropertyConfigType = fileNameToConfigType(stackProperty.getFilename());
-
-        if (stackProperty.getName().equals(propertyName) && stackPropertyConfigType.equals(configType)) {
-          return stackProperty.getValue();
-        }
+    for (PropertyInfo stackProperty : index.getPropertiesByConfigType(configType)) {
+      if (stackProperty.getName().equals(propertyName)) {
+        return stackProperty.getValue();
       }
-
     }
 
     return null;
   }
 
+  /**
+   * Gets the lookup index of the given stack.
+   *
+   * @param stackId  the stack
+   * @return the index of the stack
+   * @throws AmbariException if the stack is not found
+   */
+  private StackIndex getStackIndex(StackId stackId) throws AmbariException {
+    return ambariMetaInfo.getStackIndex(stackId.getStackName(), stackId.getStackVersion());
+  }
+
   /**
    * Gets the configuration value referenced by the specified placeholder from
    * the cluster configuration. This will take a configuration placeholder such
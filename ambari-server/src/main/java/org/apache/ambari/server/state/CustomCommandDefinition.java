@@ -17,6 +17,8 @@
  */
 package org.apache.ambari.server.state;
 
+import java.io.Serializable;
+
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
@@ -26,7 +28,7 @@ import javax.xml.bind.annotation.*;
  * Represents the customCommand tag at service/component metainfo
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-public class CustomCommandDefinition {
+public class CustomCommandDefinition implements Serializable {
 
   private String name;
   private CommandScriptDefinition commandScript;
@@ -18,13 +18,14 @@
 
 package org.apache.ambari.server.state;
 
+import java.io.Serializable;
 
 import javax.xml.bind.annotation.XmlElement;
 
 /**
  * Represents stack component dependency information.
  */
-public class DependencyInfo {
+public class DependencyInfo implements Serializable {
   /**
    * The name of the component which is the dependency.
    * Specified in the form serviceName/componentName.
@@ -20,13 +20,23 @@ package org.apache.ambari.server.state;
 
 
 import org.apache.ambari.server.controller.StackConfigurationResponse;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 import javax.xml.bind.annotation.XmlAnyElement;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlList;
-
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -34,7 +44,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class PropertyInfo {
+public class PropertyInfo implements Serializable {
   private String name;
   private String value;
   private String description;
@@ -47,6 +57,20 @@ public class PropertyInfo {
   @XmlAnyElement
   private List<Element> propertyAttributes = new ArrayList<Element>();
 
+  /**
+   * The serialized fields. The attribute elements are not serializable and are
+   * written as tag name and text pairs by {@link #writeObject}.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {
+      new ObjectStreamField("name", String.class),
+      new ObjectStreamField("value", String.class),
+      new ObjectStreamField("description", String.class),
+      new ObjectStreamField("filename", String.class),
+      new ObjectStreamField("deleted", boolean.class),
+      new ObjectStreamField("requireInput", boolean.class),
+      new ObjectStreamField("propertyTypes", Set.class)
+  };
+
   public String getName() {
     return name;
   }
@@ -163,6 +187,38 @@ public class PropertyInfo {
     return true;
   }
 
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeInt(propertyAttributes.size());
+    for (Element propertyAttribute : propertyAttributes) {
+      Node text = propertyAttribute.getFirstChild();
+      out.writeUTF(propertyAttribute.getTagName());
+      out.writeObject(text == null ? null : text.getNodeValue());
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    int size = in.readInt();
+    propertyAttributes = new ArrayList<Element>(size);
+    if (size > 0) {
+      Document document;
+      try {
+        document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      } catch (ParserConfigurationException e) {
+        throw new InvalidObjectException("Unable to create property attributes: " + e.getMessage());
+      }
+      for (int i = 0; i < size; i++) {
+        Element propertyAttribute = document.createElement(in.readUTF());
+        String text = (String) in.readObject();
+        if (text != null) {
+          propertyAttribute.appendChild(document.createTextNode(text));
+        }
+        propertyAttributes.add(propertyAttribute);
+      }
+    }
+  }
+
   public enum PropertyType {
     PASSWORD,
     USER,
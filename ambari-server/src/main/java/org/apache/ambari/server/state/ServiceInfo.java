@@ -19,6 +19,7 @@
 package org.apache.ambari.server.state;
 
 import java.io.File;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -44,7 +45,7 @@ import org.codehaus.jackson.map.annotate.JsonFilter;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 @JsonFilter("propertiesfilter")
-public class ServiceInfo implements Validable{
+public class ServiceInfo implements Validable, Serializable {
 
   /**
    * Format version. Added at schema ver 2
@@ -67,7 +68,7 @@ public class ServiceInfo implements Validable{
 
   @JsonIgnore
   @XmlTransient
-  private volatile Map<String, Set<String>> configLayout = null;
+  private transient volatile Map<String, Set<String>> configLayout = null;
 
   @XmlElementWrapper(name="configuration-dependencies")
   @XmlElement(name="config-type")
@@ -91,7 +92,7 @@ public class ServiceInfo implements Validable{
   private String parent;
 
   @XmlTransient
-  private volatile Map<String, PropertyInfo> requiredProperties;
+  private transient volatile Map<String, PropertyInfo> requiredProperties;
 
   public Boolean isRestartRequiredAfterChange() {
     return restartRequiredAfterChange;
@@ -104,7 +105,7 @@ public class ServiceInfo implements Validable{
   @XmlTransient
   private File metricsFile = null;
   @XmlTransient
-  private Map<String, Map<String, List<MetricDefinition>>> metrics = null;
+  private transient Map<String, Map<String, List<MetricDefinition>>> metrics = null;
   
   @XmlTransient
   private File alertsFile = null;
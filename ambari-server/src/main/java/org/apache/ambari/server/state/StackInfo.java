@@ -19,6 +19,7 @@
 package org.apache.ambari.server.state;
 
 import java.io.File;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -33,20 +34,22 @@ import org.apache.ambari.server.stack.Validable;
 import org.apache.ambari.server.state.stack.StackRoleCommandOrder;
 import org.apache.ambari.server.state.stack.UpgradePack;
 
-public class StackInfo implements Comparable<StackInfo>, Validable{
+public class StackInfo implements Comparable<StackInfo>, Validable, Serializable {
   private String name;
   private String version;
   private String minUpgradeVersion;
   private boolean active;
   private String rcoFileLocation;
   private String kerberosDescriptorFileLocation;
-  private List<RepositoryInfo> repositories;
+  // repositories and upgrade packs are processed again when a stack is
+  // loaded from a snapshot, see StackManager
+  private transient List<RepositoryInfo> repositories;
   private Collection<ServiceInfo> services;
   private String parentStackVersion;
   // stack-level properties
   private List<PropertyInfo> properties;
   private Map<String, Map<String, Map<String, String>>> configTypes;
-  private Map<String, UpgradePack> upgradePacks;
+  private transient Map<String, UpgradePack> upgradePacks;
   private StackRoleCommandOrder roleCommandOrder;
   private boolean valid = true;
 
@@ -93,7 +96,7 @@ public class StackInfo implements Comparable<StackInfo>, Validable{
 
   private String upgradesFolder = null;
 
-  private volatile Map<String, PropertyInfo> requiredProperties;
+  private transient volatile Map<String, PropertyInfo> requiredProperties;
 
   public String getName() {
     return name;
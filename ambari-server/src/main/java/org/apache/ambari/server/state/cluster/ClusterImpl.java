@@ -236,6 +236,14 @@ public class ClusterImpl implements Cluster {
 
   private volatile Multimap<String, String> serviceConfigTypes;
 
+  /**
+   * The desired configs and their host overrides, built on first use after
+   * they changed. Changes are made under the cluster write lock.
+   */
+  private volatile DesiredConfigsSnapshot desiredConfigsSnapshot;
+
+  private volatile long desiredConfigsVersion = 0;
+
   @Inject
   public ClusterImpl(@Assisted ClusterEntity clusterEntity,
                      Injector injector) throws AmbariException {
@@ -460,6 +468,7 @@ public class ClusterImpl implements Cluster {
             + configGroup.getTag());
       } else {
         clusterConfigGroups.put(configGroup.getId(), configGroup);
+        invalidateDesiredConfigs();
         configHelper.invalidateStaleConfigsCache();
       }
 
@@ -573,6 +582,7 @@ public class ClusterImpl implements Cluster {
 
       configGroup.delete();
       clusterConfigGroups.remove(id);
+      invalidateDesiredConfigs();
       configHelper.invalidateStaleConfigsCache();
     } finally {
       clusterGlobalLock.writeLock().unlock();
@@ -1713,6 +1723,7 @@ public class ClusterImpl implements Cluster {
     try {
       clusterEntity = clusterDAO.findById(clusterEntity.getClusterId());
       clusterDAO.refresh(clusterEntity);
+      invalidateDesiredConfigs();
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -1846,6 +1857,7 @@ public class ClusterImpl implements Cluster {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyConfigs(
           configs, user, serviceConfigVersionNote);
 
+      invalidateDesiredConfigs();
       configHelper.invalidateStaleConfigsCache();
       return serviceConfigVersionResponse;
     } finally {
@@ -1855,6 +1867,23 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Map<String, DesiredConfig> getDesiredConfigs() {
+    DesiredConfigsSnapshot snapshot = desiredConfigsSnapshot;
+    if (snapshot == null || snapshot.version != desiredConfigsVersion) {
+      snapshot = loadDesiredConfigs();
+    }
+    return snapshot.desiredConfigs;
+  }
+
+  @Override
+  public long getDesiredConfigsVersion() {
+    return desiredConfigsVersion;
+  }
+
+  /**
+   * Build the desired configs snapshot from the selected config mappings and
+   * the host overrides.
+   */
+  private DesiredConfigsSnapshot loadDesiredConfigs() {
     clusterGlobalLock.readLock().lock();
     try {
       Map<String, DesiredConfig> map = new HashMap<String, DesiredConfig>();
@@ -1883,16 +1912,29 @@ public class ClusterImpl implements Cluster {
             hostOverrides.add(new DesiredConfig.HostOverride(
                 mappingEntity.getHostName(), mappingEntity.getVersion()));
           }
-          entry.getValue().setHostOverrides(hostOverrides);
+          entry.getValue().setHostOverrides(Collections.unmodifiableList(hostOverrides));
         }
       }
 
-      return map;
+      // changes are made under the write lock, so the snapshot is current
+      DesiredConfigsSnapshot snapshot = new DesiredConfigsSnapshot(
+          desiredConfigsVersion, Collections.unmodifiableMap(map));
+      desiredConfigsSnapshot = snapshot;
+      return snapshot;
     } finally {
       clusterGlobalLock.readLock().unlock();
     }
   }
 
+  /**
+   * Discard the desired configs snapshot and increment the desired configs
+   * version. Must be called under the cluster write lock.
+   */
+  private void invalidateDesiredConfigs() {
+    desiredConfigsSnapshot = null;
+    desiredConfigsVersion++;
+  }
+
 
   @Override
   public ServiceConfigVersionResponse createServiceConfigVersion(String serviceName, String user, String note,
@@ -1989,6 +2031,7 @@ public class ClusterImpl implements Cluster {
     try {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyServiceConfigVersion(
           serviceName, version, user, note);
+      invalidateDesiredConfigs();
       configHelper.invalidateStaleConfigsCache();
       return serviceConfigVersionResponse;
     } finally {
@@ -2281,18 +2324,8 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Config getDesiredConfigByType(String configType) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      for (ClusterConfigMappingEntity e : clusterEntity.getConfigMappingEntities()) {
-        if (e.isSelected() > 0 && e.getType().equals(configType)) {
-          return getConfig(e.getType(), e.getTag());
-        }
-      }
-
-      return null;
-    } finally {
-      clusterGlobalLock.readLock().unlock();
-    }
+    DesiredConfig desiredConfig = getDesiredConfigs().get(configType);
+    return desiredConfig == null ? null : getConfig(configType, desiredConfig.getTag());
   }
 
 
@@ -2559,4 +2592,17 @@ public class ClusterImpl implements Cluster {
   protected AmbariSessionManager getSessionManager() {
     return sessionManager;
   }
+
+  /**
+   * An immutable view of the desired configs at a desired configs version.
+   */
+  private static final class DesiredConfigsSnapshot {
+    private final long version;
+    private final Map<String, DesiredConfig> desiredConfigs;
+
+    private DesiredConfigsSnapshot(long version, Map<String, DesiredConfig> desiredConfigs) {
+      this.version = version;
+      this.desiredConfigs = desiredConfigs;
+    }
+  }
 }
@@ -454,6 +454,7 @@ public class ConfigGroupImpl implements ConfigGroup {
       configGroupDAO.merge(configGroupEntity);
       persistHostMapping();
       persistConfigMapping(clusterEntity);
+      cluster.refresh();
     }
   }
 
@@ -1165,6 +1165,7 @@ public class HostImpl implements Host {
       if (!selected) {
         exist.setSelected(0);
         hostConfigMappingDAO.merge(exist);
+        refreshClusterDesiredConfigs(clusterId);
       }
       return false;
     }
@@ -1198,9 +1199,23 @@ public class HostImpl implements Host {
 
     hostDAO.merge(hostEntity);
 
+    refreshClusterDesiredConfigs(clusterId);
+
     return true;
   }
 
+  /**
+   * Host overrides are part of the cluster desired configs, so refresh them
+   * after a host config mapping changed.
+   */
+  private void refreshClusterDesiredConfigs(long clusterId) {
+    try {
+      clusters.getClusterById(clusterId).refresh();
+    } catch (AmbariException e) {
+      LOG.warn("Unable to refresh desired configs of cluster " + clusterId, e);
+    }
+  }
+
   @Override
   public Map<String, DesiredConfig> getDesiredConfigs(long clusterId) {
     Map<String, DesiredConfig> map = new HashMap<String, DesiredConfig>();
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link AlertCurrentFlushService} periodically writes the latest
+ * timestamp and text of current alerts that were updated in memory by
+ * {@link AlertsDAO#mergeLatest(org.apache.ambari.server.orm.entities.AlertCurrentEntity)}.
+ * It does nothing unless {@link Configuration#isAlertCacheEnabled()} is set.
+ * Any remaining updates are written when the service is stopped.
+ */
+@AmbariService
+public class AlertCurrentFlushService extends AbstractScheduledService {
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(AlertCurrentFlushService.class);
+
+  /**
+   * Used to write the cached current alerts.
+   */
+  @Inject
+  private AlertsDAO m_alertsDao;
+
+  /**
+   * The configuration instance to get Ambari properties.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    if (!m_configuration.isAlertCacheEnabled()) {
+      return;
+    }
+
+    try {
+      m_alertsDao.flushCurrentAlerts();
+    } catch (Exception exception) {
+      // don't let the exception stop the service from being scheduled again
+      LOG.error("Unable to write cached current alerts", exception);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    if (m_configuration.isAlertCacheEnabled()) {
+      m_alertsDao.flushCurrentAlerts();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Returns a schedule which runs at the interval given by
+   * {@link Configuration#getAlertCacheFlushInterval()}.
+   */
+  @Override
+  protected Scheduler scheduler() {
+    int interval = m_configuration.getAlertCacheFlushInterval();
+    return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.SECONDS);
+  }
+}
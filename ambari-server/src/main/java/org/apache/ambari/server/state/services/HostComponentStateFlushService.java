@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.state.svccomphost.ServiceComponentHostStateWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link HostComponentStateFlushService} periodically writes the host
+ * component states which were changed in memory while
+ * {@link Configuration#isHostComponentWriteBehindEnabled()} is set. It does
+ * nothing otherwise. Any remaining changes are written when the service is
+ * stopped.
+ */
+@AmbariService
+public class HostComponentStateFlushService extends AbstractScheduledService {
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(HostComponentStateFlushService.class);
+
+  /**
+   * Used to write the dirty host component states.
+   */
+  @Inject
+  private ServiceComponentHostStateWriter m_stateWriter;
+
+  /**
+   * The configuration instance to get Ambari properties.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    if (!m_stateWriter.isEnabled()) {
+      return;
+    }
+
+    try {
+      m_stateWriter.flush();
+    } catch (Exception exception) {
+      // don't let the exception stop the service from being scheduled again
+      LOG.error("Unable to write host component states", exception);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    if (m_stateWriter.isEnabled()) {
+      m_stateWriter.flush();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Returns a schedule which runs at the interval given by
+   * {@link Configuration#getHostComponentWriteBehindFlushInterval()}.
+   */
+  @Override
+  protected Scheduler scheduler() {
+    long interval = m_configuration.getHostComponentWriteBehindFlushInterval();
+    return Scheduler.newFixedDelaySchedule(interval, interval, TimeUnit.MILLISECONDS);
+  }
+}
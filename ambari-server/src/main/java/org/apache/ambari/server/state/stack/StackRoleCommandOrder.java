@@ -20,6 +20,7 @@ package org.apache.ambari.server.state.stack;
 
 import org.apache.commons.collections.map.MultiValueMap;
 
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -29,7 +30,7 @@ import java.util.Map;
  * Represents the stack <code>role_command_order.json</code> file.
  */
 
-public class StackRoleCommandOrder {
+public class StackRoleCommandOrder implements Serializable {
 
   private final static String GENERAL_DEPS_KEY = "general_deps";
   private final static String GLUSTERFS_DEPS_KEY = "optional_glusterfs";
@@ -121,6 +121,8 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   AmbariMetaInfo ambariMetaInfo;
   @Inject
   RepositoryVersionHelper repositoryVersionHelper;
+  @Inject
+  ServiceComponentHostStateWriter stateWriter;
 
   /**
    * Used for creating commands to send to the agents when alert definitions are
@@ -139,6 +141,19 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   private HostComponentStateEntity stateEntity;
   private HostComponentDesiredStateEntity desiredStateEntity;
 
+  /**
+   * Whether the cached entities have changes which were not written yet,
+   * see {@link ServiceComponentHostStateWriter}.
+   */
+  private volatile boolean dirty = false;
+
+  /**
+   * Incremented on every change while {@link #dirty}, so that a flush only
+   * clears the flag if nothing changed after it wrote the entities. Guarded by
+   * the write lock.
+   */
+  private long dirtyVersion = 0;
+
   /**
    * The component state entity PK.
    */
@@ -1248,8 +1263,57 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   @Transactional
   private void saveIfPersisted() {
     if (isPersisted()) {
-      hostComponentStateDAO.merge(stateEntity);
-      hostComponentDesiredStateDAO.merge(desiredStateEntity);
+      if (stateWriter.isEnabled()) {
+        dirty = true;
+        dirtyVersion++;
+        stateWriter.markDirty(stateEntityPK, this);
+      } else {
+        hostComponentStateDAO.merge(stateEntity);
+        hostComponentDesiredStateDAO.merge(desiredStateEntity);
+      }
+    }
+  }
+
+  /**
+   * Write the entities changed since they were marked dirty. Called by
+   * {@link ServiceComponentHostStateWriter#flush()} inside its transaction;
+   * the host component stays dirty until {@link #markWritten(long)} is called
+   * once that transaction has committed.
+   *
+   * @return the dirty version that was written, or -1 if nothing was written
+   */
+  long writeEntities() {
+    writeLock.lock();
+    try {
+      if (!dirty) {
+        return -1;
+      }
+      if (isPersisted()) {
+        hostComponentStateDAO.merge(stateEntity);
+        hostComponentDesiredStateDAO.merge(desiredStateEntity);
+      }
+      return dirtyVersion;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Clear the dirty flag after the entities written by
+   * {@link #writeEntities()} have been committed, unless the host component
+   * was changed again since.
+   *
+   * @param version  the dirty version returned by {@link #writeEntities()}
+   */
+  void markWritten(long version) {
+    writeLock.lock();
+    try {
+      if (dirty && dirtyVersion == version) {
+        dirty = false;
+        stateWriter.clearDirty(stateEntityPK, this);
+      }
+    } finally {
+      writeLock.unlock();
     }
   }
 
@@ -1519,8 +1583,9 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   }
 
   // Get the cached desired state entity or load it fresh through the DAO.
+  // Entities with changes that were not written yet are not reloaded.
   private HostComponentDesiredStateEntity getDesiredStateEntity() {
-    if (isPersisted()) {
+    if (isPersisted() && !dirty) {
       desiredStateEntity = hostComponentDesiredStateDAO.findByPK(desiredStateEntityPK);
     }
     return desiredStateEntity;
@@ -1528,7 +1593,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
   // Get the cached state entity or load it fresh through the DAO.
   private HostComponentStateEntity getStateEntity() {
-    if (isPersisted()) {
+    if (isPersisted() && !dirty) {
       stateEntity = hostComponentStateDAO.findByPK(stateEntityPK);
     }
     return stateEntity;
@@ -0,0 +1,215 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.state.svccomphost;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.entities.HostComponentStateEntityPK;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.Transactional;
+
+/**
+ * Write-behind persistence of host component state. When
+ * {@link Configuration#isHostComponentWriteBehindEnabled()} is set, state
+ * changes of a {@link ServiceComponentHostImpl} only mark it dirty; the
+ * state and desired state entities of all dirty host components are merged
+ * by {@link #flush()} in a single transaction, so that many changes to the
+ * same host component are coalesced into one update.
+ * <p/>
+ * A host component stays dirty until the transaction that wrote it has
+ * committed, so a failed flush leaves its changes to the next one. For that
+ * reason {@link #flush()} must not be called inside another transaction.
+ * <p/>
+ * {@link #flush()} is called periodically by
+ * {@link org.apache.ambari.server.state.services.HostComponentStateFlushService},
+ * when it is stopped and when requests are persisted or end. The number of
+ * dirty host components and the flush latency are available from the
+ * getters, and a flush which takes longer than the flush interval is logged.
+ */
+@Singleton
+public class ServiceComponentHostStateWriter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ServiceComponentHostStateWriter.class);
+
+  private final boolean enabled;
+
+  private final long flushInterval;
+
+  /**
+   * The dirty host components by state entity key.
+   */
+  private final ConcurrentMap<HostComponentStateEntityPK, ServiceComponentHostImpl> dirty =
+      new ConcurrentHashMap<HostComponentStateEntityPK, ServiceComponentHostImpl>();
+
+  private final AtomicLong flushCount = new AtomicLong();
+  private final AtomicLong writtenCount = new AtomicLong();
+  private final AtomicLong totalFlushTime = new AtomicLong();
+  private final AtomicLong maxFlushTime = new AtomicLong();
+  private volatile long lastFlushTime = 0L;
+
+  @Inject
+  public ServiceComponentHostStateWriter(Configuration configuration) {
+    enabled = configuration.isHostComponentWriteBehindEnabled();
+    flushInterval = configuration.getHostComponentWriteBehindFlushInterval();
+  }
+
+  /**
+   * @return true if host component state changes are written behind
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Mark the host component dirty so that its entities are written by the
+   * next flush.
+   */
+  void markDirty(HostComponentStateEntityPK key, ServiceComponentHostImpl serviceComponentHost) {
+    dirty.put(key, serviceComponentHost);
+  }
+
+  /**
+   * Forget the host component once its entities have been written.
+   */
+  void clearDirty(HostComponentStateEntityPK key, ServiceComponentHostImpl serviceComponentHost) {
+    dirty.remove(key, serviceComponentHost);
+  }
+
+  /**
+   * Write the entities of all dirty host components in a single transaction.
+   * The host components are only marked clean after the transaction has
+   * committed; if it fails they stay dirty and the exception is rethrown.
+   *
+   * @return the number of host components written
+   */
+  public int flush() {
+    if (dirty.isEmpty()) {
+      return 0;
+    }
+
+    long start = System.currentTimeMillis();
+    Map<ServiceComponentHostImpl, Long> written;
+    try {
+      written = writeDirty();
+    } finally {
+      recordFlushTime(System.currentTimeMillis() - start);
+    }
+
+    for (Map.Entry<ServiceComponentHostImpl, Long> entry : written.entrySet()) {
+      entry.getKey().markWritten(entry.getValue());
+    }
+    writtenCount.addAndGet(written.size());
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Wrote {} host component states in {} ms, {} dirty", written.size(),
+          lastFlushTime, dirty.size());
+    }
+    return written.size();
+  }
+
+  /**
+   * Record the duration of a flush transaction, whether it committed or not.
+   */
+  private void recordFlushTime(long elapsed) {
+    flushCount.incrementAndGet();
+    totalFlushTime.addAndGet(elapsed);
+    lastFlushTime = elapsed;
+
+    long max = maxFlushTime.get();
+    while (elapsed > max && !maxFlushTime.compareAndSet(max, elapsed)) {
+      max = maxFlushTime.get();
+    }
+
+    if (elapsed > flushInterval) {
+      LOG.warn("Writing host component states took " + elapsed +
+          " ms, longer than the flush interval of " + flushInterval + " ms, " +
+          dirty.size() + " dirty");
+    }
+  }
+
+  /**
+   * Merge the entities of the dirty host components.
+   *
+   * @return the written host components with the dirty version that was
+   *         written for each
+   */
+  @Transactional
+  protected Map<ServiceComponentHostImpl, Long> writeDirty() {
+    Map<ServiceComponentHostImpl, Long> written = new HashMap<ServiceComponentHostImpl, Long>();
+    for (ServiceComponentHostImpl serviceComponentHost : dirty.values()) {
+      long version = serviceComponentHost.writeEntities();
+      if (version >= 0) {
+        written.put(serviceComponentHost, version);
+      }
+    }
+    return written;
+  }
+
+  /**
+   * @return the number of host components waiting to be written
+   */
+  public int getDirtyCount() {
+    return dirty.size();
+  }
+
+  /**
+   * @return the number of flushes that wrote or tried to write host components
+   */
+  public long getFlushCount() {
+    return flushCount.get();
+  }
+
+  /**
+   * @return the number of host components written by all flushes
+   */
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  /**
+   * @return the duration of the last flush in milliseconds
+   */
+  public long getLastFlushTime() {
+    return lastFlushTime;
+  }
+
+  /**
+   * @return the duration of the longest flush in milliseconds
+   */
+  public long getMaxFlushTime() {
+    return maxFlushTime.get();
+  }
+
+  /**
+   * @return the average duration of a flush in milliseconds
+   */
+  public double getAverageFlushTime() {
+    long count = flushCount.get();
+    return count == 0 ? 0 : totalFlushTime.get() / (double) count;
+  }
+}
@@ -41,13 +41,19 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -101,6 +107,20 @@ public class DataStoreImpl implements DataStore {
    */
   private final Map<String, JPADynamicTypeBuilder> typeBuilderMap = new HashMap<String, JPADynamicTypeBuilder>();
 
+  /**
+   * Map of property accessors keyed by view entity class.  Introspecting a class
+   * is expensive relative to converting a single entity so it is only done once
+   * for each class.
+   */
+  private final Map<Class, Map<String, PropertyAccessor>> accessorMap =
+      new ConcurrentHashMap<Class, Map<String, PropertyAccessor>>();
+
+  /**
+   * The number of entities read at a time by the iterators returned from
+   * {@link #iterate}.
+   */
+  protected static final int ITERATOR_PAGE_SIZE = 100;
+
   /**
    * Indicates whether or not the data store has been initialized.
    */
@@ -135,6 +155,29 @@ public class DataStoreImpl implements DataStore {
     }
   }
 
+  @Override
+  public void storeAll(Collection<?> entities) throws PersistenceException {
+    checkInitialize();
+
+    EntityManager em = getEntityManager();
+    try {
+      em.getTransaction().begin();
+      try {
+        for (Object entity : entities) {
+          persistEntity(entity, em, new HashSet<DynamicEntity>());
+        }
+        em.getTransaction().commit();
+      } catch (Exception e) {
+        if (em.getTransaction()!= null) {
+          em.getTransaction().rollback();
+        }
+        throwPersistenceException("Caught exception trying to store view entities " + entities, e);
+      }
+    } finally {
+      em.close();
+    }
+  }
+
   @Override
   public void remove(Object entity) throws PersistenceException {
     checkInitialize();
@@ -172,6 +215,40 @@ public class DataStoreImpl implements DataStore {
     }
   }
 
+  @Override
+  public void removeAll(Collection<?> entities) throws PersistenceException {
+    checkInitialize();
+
+    EntityManager em = getEntityManager();
+    try {
+      em.getTransaction().begin();
+      try {
+        for (Object entity : entities) {
+          Class       clazz = entity.getClass();
+          String      id    = getIdFieldName(clazz);
+          DynamicType type  = getDynamicEntityType(clazz);
+
+          if (type != null) {
+            Map<String, Object> properties    = getEntityProperties(entity);
+            DynamicEntity       dynamicEntity = em.getReference(type.getJavaClass(), properties.get(id));
+
+            if (dynamicEntity != null) {
+              em.remove(dynamicEntity);
+            }
+          }
+        }
+        em.getTransaction().commit();
+      } catch (Exception e) {
+        if (em.getTransaction()!= null) {
+          em.getTransaction().rollback();
+        }
+        throwPersistenceException("Caught exception trying to remove view entities " + entities, e);
+      }
+    } finally {
+      em.close();
+    }
+  }
+
   @Override
   public <T> T find(Class<T> clazz, Object primaryKey) throws PersistenceException {
     checkInitialize();
@@ -205,7 +282,7 @@ public class DataStoreImpl implements DataStore {
 
       if (type != null) {
         try {
-          Query query = em.createQuery(getSelectStatement(clazz, whereClause));
+          Query query = em.createQuery(getSelectStatement(clazz, whereClause, null));
 
           List dynamicEntities = query.getResultList();
 
@@ -223,6 +300,58 @@ public class DataStoreImpl implements DataStore {
     }
   }
 
+  @Override
+  public <T> List<T> findAll(Class<T> clazz, String whereClause, String orderByClause,
+                             int offset, int limit) throws PersistenceException {
+    checkInitialize();
+
+    EntityManager em = getEntityManager();
+    try {
+      List<T>     resources = Collections.emptyList();
+      DynamicType type      = getDynamicEntityType(clazz);
+
+      if (type != null) {
+        try {
+          Query query = em.createQuery(getSelectStatement(clazz, whereClause, orderByClause));
+
+          query.setFirstResult(offset);
+          if (limit >= 0) {
+            query.setMaxResults(limit);
+          }
+
+          List dynamicEntities = query.getResultList();
+
+          resources = new ArrayList<T>(dynamicEntities.size());
+          for (Object dynamicEntity : dynamicEntities) {
+            resources.add(toEntity(clazz, type, (DynamicEntity) dynamicEntity));
+          }
+        } catch (Exception e) {
+          throwPersistenceException("Caught exception trying to find " +
+              clazz.getName() + " where " + whereClause + " order by " + orderByClause, e);
+        }
+      }
+      return resources;
+    } finally {
+      em.close();
+    }
+  }
+
+  @Override
+  public <T> Iterator<T> iterate(Class<T> clazz, String whereClause, String orderByClause)
+      throws PersistenceException {
+    checkInitialize();
+
+    if (getDynamicEntityType(clazz) == null) {
+      return Collections.<T>emptyList().iterator();
+    }
+
+    // order by the id last so that the pages don't overlap
+    String id = getIdFieldName(clazz);
+
+    return new PageIterator<T>(clazz, whereClause,
+        orderByClause == null ? id : orderByClause + "," + id);
+  }
+
 
   // ----- helper methods ----------------------------------------------------
 
@@ -433,8 +562,8 @@ public class DataStoreImpl implements DataStore {
     return resource;
   }
 
-  // build a JPA select statement from the given view entity class and where clause
-  private <T> String getSelectStatement(Class<T> clazz, String whereClause)
+  // build a JPA select statement from the given view entity class, where clause and order by clause
+  private <T> String getSelectStatement(Class<T> clazz, String whereClause, String orderByClause)
       throws IntrospectionException {
     StringBuilder stringBuilder = new StringBuilder();
     String        entityName    = entityClassMap.get(clazz);
@@ -442,24 +571,33 @@ public class DataStoreImpl implements DataStore {
     stringBuilder.append("SELECT e FROM ").append(entityName).append(" e");
     if (whereClause != null) {
       stringBuilder.append(" WHERE");
+      appendClause(stringBuilder, clazz, whereClause);
+    }
+    if (orderByClause != null) {
+      stringBuilder.append(" ORDER BY");
+      appendClause(stringBuilder, clazz, orderByClause);
+    }
+    return stringBuilder.toString();
+  }
 
-      Set<String>     propertyNames = getPropertyNames(clazz);
-      StringTokenizer tokenizer     = new StringTokenizer(whereClause, " \t\n\r\f+-*/=><()\"", true);
-      boolean         quoted        = false;
+  // append the given clause to the given statement, qualifying the property names of the view entity class
+  private void appendClause(StringBuilder stringBuilder, Class clazz, String clause)
+      throws IntrospectionException {
+    Set<String>     propertyNames = getPropertyAccessors(clazz).keySet();
+    StringTokenizer tokenizer     = new StringTokenizer(clause, " \t\n\r\f+-*/=><(),\"", true);
+    boolean         quoted        = false;
 
-      while (tokenizer.hasMoreElements()) {
-        String token = tokenizer.nextToken();
+    while (tokenizer.hasMoreElements()) {
+      String token = tokenizer.nextToken();
 
-        quoted = quoted ^ token.equals("\"");
+      quoted = quoted ^ token.equals("\"");
 
-        if (propertyNames.contains(token) && !quoted) {
-          stringBuilder.append(" e.").append(token);
-        } else {
-          stringBuilder.append(token);
-        }
+      if (propertyNames.contains(token) && !quoted) {
+        stringBuilder.append(" e.").append(token);
+      } else {
+        stringBuilder.append(token);
       }
     }
-    return stringBuilder.toString();
   }
 
   // get a map of properties from the given view entity
@@ -467,11 +605,10 @@ public class DataStoreImpl implements DataStore {
       throws IntrospectionException, InvocationTargetException, IllegalAccessException {
     Map<String, Object> properties = new HashMap<String, Object>();
 
-    for (PropertyDescriptor pd : Introspector.getBeanInfo(entity.getClass()).getPropertyDescriptors()) {
-      String name       = pd.getName();
-      Method readMethod = pd.getReadMethod();
+    for (PropertyAccessor accessor : getPropertyAccessors(entity.getClass()).values()) {
+      Method readMethod = accessor.readMethod;
       if (readMethod != null) {
-        properties.put(name, readMethod.invoke(entity));
+        properties.put(accessor.name, readMethod.invoke(entity));
       }
     }
     return properties;
@@ -482,11 +619,11 @@ public class DataStoreImpl implements DataStore {
   private void setEntityProperties(Object entity, Map<String, Object> properties)
       throws IntrospectionException, InvocationTargetException, IllegalAccessException,
       InstantiationException, NoSuchFieldException {
-    for (PropertyDescriptor pd : Introspector.getBeanInfo(entity.getClass()).getPropertyDescriptors()) {
-      String name = pd.getName();
+    for (PropertyAccessor accessor : getPropertyAccessors(entity.getClass()).values()) {
+      String name = accessor.name;
       if (properties.containsKey(name)) {
 
-        Method writeMethod = pd.getWriteMethod();
+        Method writeMethod = accessor.writeMethod;
         if (writeMethod != null) {
 
           Object value = properties.get(name);
@@ -499,7 +636,7 @@ public class DataStoreImpl implements DataStore {
               if (collectionValue instanceof DynamicEntity) {
 
                 Class<?> clazz = entity.getClass();
-                Class<?> parameterizedTypeClass = getParameterizedTypeClass(clazz, pd.getName());
+                Class<?> parameterizedTypeClass = getParameterizedTypeClass(clazz, name);
 
                 collectionValue = toEntity(parameterizedTypeClass,
                     getDynamicEntityType(parameterizedTypeClass), (DynamicEntity) collectionValue);
@@ -512,7 +649,7 @@ public class DataStoreImpl implements DataStore {
           } else {
             if (value instanceof DynamicEntity) {
 
-              Class<?> clazz = pd.getPropertyType();
+              Class<?> clazz = accessor.propertyType;
 
               value = toEntity(clazz, getDynamicEntityType(clazz), (DynamicEntity) value);
             }
@@ -561,17 +698,32 @@ public class DataStoreImpl implements DataStore {
     return descriptorMap;
   }
 
-  // get the property names for the given view entity class
-  private static Set<String> getPropertyNames(Class clazz) throws IntrospectionException {
-    Set<String> propertyNames = new HashSet<String>();
-    for (PropertyDescriptor pd : Introspector.getBeanInfo(clazz).getPropertyDescriptors()) {
-      propertyNames.add(pd.getName());
+  // get the property accessors for the given view entity class keyed by property name
+  private Map<String, PropertyAccessor> getPropertyAccessors(Class clazz) throws IntrospectionException {
+    Map<String, PropertyAccessor> accessors = accessorMap.get(clazz);
+    if (accessors == null) {
+      accessors = new LinkedHashMap<String, PropertyAccessor>();
+      for (PropertyDescriptor pd : Introspector.getBeanInfo(clazz).getPropertyDescriptors()) {
+        accessors.put(pd.getName(), new PropertyAccessor(pd));
+      }
+      accessors = Collections.unmodifiableMap(accessors);
+      accessorMap.put(clazz, accessors);
     }
-    return propertyNames;
+    return accessors;
   }
 
   // get the parameterized type class for the given field of the given class
-  private static Class<?> getParameterizedTypeClass(Class clazz, String fieldName) throws NoSuchFieldException {
+  private Class<?> getParameterizedTypeClass(Class clazz, String fieldName)
+      throws IntrospectionException, NoSuchFieldException {
+    PropertyAccessor accessor = getPropertyAccessors(clazz).get(fieldName);
+
+    return accessor == null ?
+        getFieldParameterizedTypeClass(clazz, fieldName) : accessor.getParameterizedTypeClass(clazz);
+  }
+
+  // get the parameterized type class of the given field of the given class
+  private static Class<?> getFieldParameterizedTypeClass(Class clazz, String fieldName)
+      throws NoSuchFieldException {
     Field field = clazz.getDeclaredField(fieldName);
     ParameterizedType parameterizedType = (ParameterizedType) field.getGenericType();
     return (Class<?>) parameterizedType.getActualTypeArguments()[0];
@@ -600,4 +752,88 @@ public class DataStoreImpl implements DataStore {
   private EntityManager getEntityManager() {
     return entityManagerFactory.createEntityManager();
   }
+
+
+  // ----- inner class : PropertyAccessor ------------------------------------
+
+  /**
+   * The accessor methods of a view entity property.
+   */
+  private static class PropertyAccessor {
+    private final String   name;
+    private final Class<?> propertyType;
+    private final Method   readMethod;
+    private final Method   writeMethod;
+
+    /**
+     * The parameterized type class of a collection property; resolved on first use.
+     */
+    private volatile Class<?> parameterizedTypeClass;
+
+    private PropertyAccessor(PropertyDescriptor pd) {
+      name         = pd.getName();
+      propertyType = pd.getPropertyType();
+      readMethod   = pd.getReadMethod();
+      writeMethod  = pd.getWriteMethod();
+    }
+
+    private Class<?> getParameterizedTypeClass(Class clazz) throws NoSuchFieldException {
+      Class<?> typeClass = parameterizedTypeClass;
+      if (typeClass == null) {
+        parameterizedTypeClass = typeClass = getFieldParameterizedTypeClass(clazz, name);
+      }
+      return typeClass;
+    }
+  }
+
+
+  // ----- inner class : PageIterator ----------------------------------------
+
+  /**
+   * Iterator over view entities that finds a page of the entities at a time.
+   */
+  private class PageIterator<T> implements Iterator<T> {
+    private final Class<T> clazz;
+    private final String   whereClause;
+    private final String   orderByClause;
+
+    private List<T> page     = Collections.emptyList();
+    private int     index    = 0;
+    private int     offset   = 0;
+    private boolean lastPage = false;
+
+    private PageIterator(Class<T> clazz, String whereClause, String orderByClause) {
+      this.clazz         = clazz;
+      this.whereClause   = whereClause;
+      this.orderByClause = orderByClause;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (index == page.size() && !lastPage) {
+        try {
+          page = findAll(clazz, whereClause, orderByClause, offset, ITERATOR_PAGE_SIZE);
+        } catch (PersistenceException e) {
+          throw new IllegalStateException(e.getMessage(), e);
+        }
+        index    = 0;
+        offset  += page.size();
+        lastPage = page.size() < ITERATOR_PAGE_SIZE;
+      }
+      return index < page.size();
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return page.get(index++);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Entities can't be removed through the iterator.");
+    }
+  }
 }
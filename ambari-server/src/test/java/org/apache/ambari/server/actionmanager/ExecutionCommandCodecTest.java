@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.utils.StageUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * ExecutionCommandCodec tests.
+ */
+public class ExecutionCommandCodecTest {
+
+  @Test
+  public void testEncodeDecode() throws Exception {
+    ExecutionCommand command = createCommand();
+    byte[] stored = ExecutionCommandCodec.encode(command, null);
+
+    ExecutionCommand decoded = StageUtils.getGson().fromJson(
+        ExecutionCommandCodec.decode(stored), ExecutionCommand.class);
+
+    Assert.assertEquals(command.getCommandId(), decoded.getCommandId());
+    Assert.assertEquals(command.getConfigurations(), decoded.getConfigurations());
+    Assert.assertEquals(command.getConfigurationTags(), decoded.getConfigurationTags());
+    // set from the stage when the command is scheduled
+    Assert.assertTrue(decoded.getClusterHostInfo().isEmpty());
+    Assert.assertTrue(stored.length < StageUtils.getGson().toJson(command).length());
+  }
+
+  @Test
+  public void testDecodeLegacy() throws Exception {
+    ExecutionCommand command = createCommand();
+    String json = StageUtils.getGson().toJson(command);
+
+    Assert.assertEquals(json, ExecutionCommandCodec.decode(json.getBytes()));
+  }
+
+  @Test
+  public void testTagConfigurationsNotStored() throws Exception {
+    ExecutionCommand command = createCommand();
+
+    Map<String, Map<String, String>> tagConfigurations =
+        new HashMap<String, Map<String, String>>();
+    Map<String, String> coreSite = new HashMap<String, String>();
+    coreSite.put("fs.defaultFS", "hdfs://c6401:8020");
+    coreSite.put("io.file.buffer.size", "4096");
+    tagConfigurations.put("core-site", coreSite);
+    Map<String, String> hdfsSite = new HashMap<String, String>();
+    hdfsSite.put("dfs.replication", "3");
+    tagConfigurations.put("hdfs-site", hdfsSite);
+    Map<String, String> global = new HashMap<String, String>();
+    global.put("hdfs_user", "hdfs");
+    tagConfigurations.put("global", global);
+
+    byte[] stored = ExecutionCommandCodec.encode(command, tagConfigurations);
+    ExecutionCommand decoded = StageUtils.getGson().fromJson(
+        ExecutionCommandCodec.decode(stored), ExecutionCommand.class);
+
+    Map<String, Map<String, String>> configurations = decoded.getConfigurations();
+    // only the overridden property is stored
+    Assert.assertEquals(1, configurations.get("core-site").size());
+    Assert.assertEquals("8192", configurations.get("core-site").get("io.file.buffer.size"));
+    // expanded from the tag when loaded
+    Assert.assertFalse(configurations.containsKey("hdfs-site"));
+    // types with deleted properties are stored as they are
+    Assert.assertEquals(command.getConfigurations().get("global"), configurations.get("global"));
+    // types without a tag are stored as they are
+    Assert.assertEquals(command.getConfigurations().get("mapred-site"), configurations.get("mapred-site"));
+  }
+
+  private static ExecutionCommand createCommand() {
+    ExecutionCommand command = new ExecutionCommand();
+    command.setCommandId("1-1");
+    command.setClusterName("c1");
+
+    Map<String, Map<String, String>> configurations =
+        new HashMap<String, Map<String, String>>();
+    Map<String, String> coreSite = new HashMap<String, String>();
+    coreSite.put("fs.defaultFS", "hdfs://c6401:8020");
+    coreSite.put("io.file.buffer.size", "8192");
+    configurations.put("core-site", coreSite);
+    Map<String, String> hdfsSite = new HashMap<String, String>();
+    hdfsSite.put("dfs.replication", "3");
+    configurations.put("hdfs-site", hdfsSite);
+    Map<String, String> global = new HashMap<String, String>();
+    global.put("hdfs_user", "hdfs");
+    global.put("DELETED_hadoop_heapsize", "");
+    configurations.put("global", global);
+    Map<String, String> mapredSite = new HashMap<String, String>();
+    mapredSite.put("mapreduce.map.memory.mb", "1024");
+    configurations.put("mapred-site", mapredSite);
+    command.setConfigurations(configurations);
+
+    Map<String, Map<String, String>> tags = new HashMap<String, Map<String, String>>();
+    for (String type : new String[] {"core-site", "hdfs-site", "global"}) {
+      Map<String, String> tag = new HashMap<String, String>();
+      tag.put("tag", "version1");
+      tags.put(type, tag);
+    }
+    command.setConfigurationTags(tags);
+
+    Map<String, Set<String>> clusterHostInfo = new HashMap<String, Set<String>>();
+    Set<String> hosts = new HashSet<String>();
+    for (int i = 0; i < 100; i++) {
+      hosts.add("c6401-" + i + ".ambari.apache.org");
+    }
+    clusterHostInfo.put("all_hosts", hosts);
+    command.setClusterHostInfo(clusterHostInfo);
+    return command;
+  }
+}
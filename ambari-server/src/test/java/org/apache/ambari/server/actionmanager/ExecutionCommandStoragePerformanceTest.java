@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.utils.StageUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares the stored size and the persist and load times of execution
+ * commands stored as plain JSON with the {@link ExecutionCommandCodec}
+ * format, for a request with a command per host of a 1000 host cluster.
+ * Each command carries 10 configuration types of 100 properties that are
+ * referenced by tags, with 2 overrides per type.
+ *
+ * Loading includes expanding the configurations from the tags, which is done
+ * for both formats.
+ */
+@Ignore
+public class ExecutionCommandStoragePerformanceTest {
+
+  private static final int ITERATIONS = 5;
+  private static final int CONFIG_TYPES = 10;
+  private static final int PROPERTIES_PER_TYPE = 100;
+  private static final int HOSTS = 1000;
+
+  @Test
+  public void testPersistAndLoad() throws Exception {
+    int hostCount = HOSTS;
+
+    Map<String, Map<String, String>> tagConfigurations = createTagConfigurations();
+    List<ExecutionCommand> commands = createCommands(hostCount, tagConfigurations);
+
+    List<byte[]> jsonCommands = new ArrayList<byte[]>(hostCount);
+    List<byte[]> encodedCommands = new ArrayList<byte[]>(hostCount);
+    long jsonSize = 0;
+    long encodedSize = 0;
+    for (ExecutionCommand command : commands) {
+      byte[] json = StageUtils.getGson().toJson(command).getBytes();
+      byte[] encoded = ExecutionCommandCodec.encode(command, tagConfigurations);
+      jsonCommands.add(json);
+      encodedCommands.add(encoded);
+      jsonSize += json.length;
+      encodedSize += encoded.length;
+    }
+
+    System.out.println("request with " + hostCount + " commands");
+    System.out.println("JSON    : " + jsonSize / 1024 + " KB/request, " +
+        jsonSize / hostCount + " bytes/command");
+    System.out.println("encoded : " + encodedSize / 1024 + " KB/request, " +
+        encodedSize / hostCount + " bytes/command");
+
+    // the first iteration warms up the JIT
+    for (int i = 0; i <= ITERATIONS; i++) {
+      long start = System.nanoTime();
+      for (ExecutionCommand command : commands) {
+        StageUtils.getGson().toJson(command).getBytes();
+      }
+      long jsonPersist = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (ExecutionCommand command : commands) {
+        ExecutionCommandCodec.encode(command, tagConfigurations);
+      }
+      long encodedPersist = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (byte[] json : jsonCommands) {
+        load(new String(json), tagConfigurations);
+      }
+      long jsonLoad = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (byte[] encoded : encodedCommands) {
+        load(ExecutionCommandCodec.decode(encoded), tagConfigurations);
+      }
+      long encodedLoad = System.nanoTime() - start;
+
+      if (i > 0) {
+        System.out.println(String.format("iteration %d: persist JSON %.1f ms, " +
+            "encoded %.1f ms; load JSON %.1f ms, encoded %.1f ms (per request)",
+            i, jsonPersist / 1e6, encodedPersist / 1e6,
+            jsonLoad / 1e6, encodedLoad / 1e6));
+      }
+    }
+  }
+
+  /**
+   * Parse the command and expand its configurations from the tags the way
+   * {@link ExecutionCommandWrapper} does.
+   */
+  private static ExecutionCommand load(String json,
+      Map<String, Map<String, String>> tagConfigurations) {
+    ExecutionCommand command = StageUtils.getGson().fromJson(json, ExecutionCommand.class);
+    Map<String, Map<String, String>> configurations = command.getConfigurations();
+    for (Map.Entry<String, Map<String, String>> entry : tagConfigurations.entrySet()) {
+      Map<String, String> merged = new HashMap<String, String>(entry.getValue());
+      Map<String, String> stored = configurations.get(entry.getKey());
+      if (stored != null) {
+        merged.putAll(stored);
+      }
+      configurations.put(entry.getKey(), merged);
+    }
+    return command;
+  }
+
+  private static Map<String, Map<String, String>> createTagConfigurations() {
+    Map<String, Map<String, String>> configurations =
+        new HashMap<String, Map<String, String>>();
+    for (int i = 0; i < CONFIG_TYPES; i++) {
+      Map<String, String> properties = new HashMap<String, String>();
+      for (int j = 0; j < PROPERTIES_PER_TYPE; j++) {
+        properties.put("service" + i + ".property.name." + j,
+            "/var/lib/service" + i + "/value-" + j);
+      }
+      configurations.put("type" + i + "-site", properties);
+    }
+    return configurations;
+  }
+
+  private static List<ExecutionCommand> createCommands(int hostCount,
+      Map<String, Map<String, String>> tagConfigurations) {
+
+    Map<String, Set<String>> clusterHostInfo = new HashMap<String, Set<String>>();
+    Set<String> allHosts = new HashSet<String>();
+    for (int i = 0; i < hostCount; i++) {
+      allHosts.add("c6401-" + i + ".ambari.apache.org");
+    }
+    clusterHostInfo.put("all_hosts", allHosts);
+    clusterHostInfo.put("slave_hosts", allHosts);
+    clusterHostInfo.put("ganglia_monitor_hosts", allHosts);
+
+    Map<String, Map<String, String>> tags = new HashMap<String, Map<String, String>>();
+    for (String type : tagConfigurations.keySet()) {
+      Map<String, String> tag = new HashMap<String, String>();
+      tag.put("tag", "version1");
+      tags.put(type, tag);
+    }
+
+    List<ExecutionCommand> commands = new ArrayList<ExecutionCommand>(hostCount);
+    for (int i = 0; i < hostCount; i++) {
+      Map<String, Map<String, String>> configurations =
+          new HashMap<String, Map<String, String>>();
+      for (Map.Entry<String, Map<String, String>> entry : tagConfigurations.entrySet()) {
+        Map<String, String> properties = new HashMap<String, String>(entry.getValue());
+        properties.put(entry.getKey() + ".override.0", "host-" + i);
+        properties.put(entry.getKey() + ".override.1", "true");
+        configurations.put(entry.getKey(), properties);
+      }
+
+      ExecutionCommand command = new ExecutionCommand();
+      command.setCommandId("1-1");
+      command.setClusterName("c1");
+      command.setConfigurations(configurations);
+      command.setConfigurationTags(tags);
+      command.setClusterHostInfo(clusterHostInfo);
+      commands.add(command);
+    }
+    return commands;
+  }
+}
@@ -20,6 +20,8 @@ package org.apache.ambari.server.actionmanager;
 import static org.apache.ambari.server.orm.DBAccessor.DbType.ORACLE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -262,6 +264,49 @@ public class TestActionDBAccessorImpl {
     assertEquals(5, stages.size());
   }
 
+  @Test
+  public void testGetStagesInProgressReloadsOnlyChangedStages() throws AmbariException {
+    populateActionDB(db, hostName, requestId, stageId);
+    populateActionDB(db, hostName, requestId + 1, stageId);
+
+    List<Stage> stages = db.getStagesInProgress();
+    assertEquals(2, stages.size());
+
+    // nothing changed, so the same stages are returned
+    List<Stage> unchanged = db.getStagesInProgress();
+    assertSame(stages.get(0), unchanged.get(0));
+    assertSame(stages.get(1), unchanged.get(1));
+
+    // complete the task of the first stage only
+    CommandReport report = new CommandReport();
+    report.setStatus(HostRoleStatus.COMPLETED.toString());
+    report.setStdOut("");
+    report.setStdErr("");
+    report.setExitCode(0);
+    db.updateHostRoleState(hostName, requestId, stageId,
+        Role.HBASE_MASTER.toString(), report);
+
+    List<Stage> changed = db.getStagesInProgress();
+    assertEquals(2, changed.size());
+    assertNotSame(stages.get(0), changed.get(0));
+    assertSame(stages.get(1), changed.get(1));
+    assertEquals(HostRoleStatus.COMPLETED,
+        changed.get(0).getHostRoleStatus(hostName, Role.HBASE_MASTER.toString()));
+
+    // a new request is picked up without a full reload
+    populateActionDB(db, hostName, requestId + 2, stageId);
+    changed = db.getStagesInProgress();
+    assertEquals(3, changed.size());
+    assertSame(stages.get(1), changed.get(1));
+    assertEquals(requestId + 2, changed.get(2).getRequestId());
+
+    // invalidating reloads everything
+    db.invalidateStagesInProgress();
+    changed = db.getStagesInProgress();
+    assertEquals(3, changed.size());
+    assertNotSame(stages.get(1), changed.get(1));
+  }
+
   @Test
   public void testGetStagesInProgressWithManyCommands() throws AmbariException {
     // 1000 hosts
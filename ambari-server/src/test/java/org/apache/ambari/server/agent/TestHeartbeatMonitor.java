@@ -18,6 +18,7 @@
 package org.apache.ambari.server.agent;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.eq;
@@ -191,6 +192,78 @@ public class TestHeartbeatMonitor {
     assertTrue("HeartbeatMonitor should not generate StatusCommands for host2 because it has no services", cmds.isEmpty());
   }
 
+  @Test
+  public void testStatusCommandConfigurationsReused() throws Exception {
+    Clusters clusters = injector.getInstance(Clusters.class);
+    clusters.addHost(hostname1);
+    setOsFamily(clusters.getHost(hostname1), "redhat", "6.3");
+    clusters.getHost(hostname1).persist();
+    clusters.addHost(hostname2);
+    setOsFamily(clusters.getHost(hostname2), "redhat", "6.3");
+    clusters.getHost(hostname2).persist();
+    clusters.addCluster(clusterName);
+    Cluster cluster = clusters.getCluster(clusterName);
+    StackId stackId = new StackId("HDP-0.1");
+    cluster.setDesiredStackVersion(stackId);
+    helper.getOrCreateRepositoryVersion(stackId.getStackName(), stackId.getStackVersion());
+    cluster.createClusterVersion(stackId.getStackName(), stackId.getStackVersion(), "admin", RepositoryVersionState.UPGRADING);
+    Set<String> hostNames = new HashSet<String>(){{
+      add(hostname1);
+      add(hostname2);
+    }};
+
+    ConfigFactory configFactory = injector.getInstance(ConfigFactory.class);
+    Config config = configFactory.createNew(cluster, "hadoop-env",
+        new HashMap<String,String>() {{ put("a", "b"); }}, new HashMap<String, Map<String,String>>());
+    config.setTag("version1");
+    cluster.addConfig(config);
+    cluster.addDesiredConfig("_test", Collections.singleton(config));
+
+    clusters.mapHostsToCluster(hostNames, clusterName);
+    Service hdfs = cluster.addService(serviceName);
+    hdfs.persist();
+    hdfs.addServiceComponent(Role.DATANODE.name()).persist();
+    hdfs.getServiceComponent(Role.DATANODE.name()).addServiceComponentHost(hostname1).persist();
+    hdfs.getServiceComponent(Role.DATANODE.name()).addServiceComponentHost(hostname2).persist();
+    hdfs.addServiceComponent(Role.NAMENODE.name()).persist();
+    hdfs.getServiceComponent(Role.NAMENODE.name()).addServiceComponentHost(hostname1).persist();
+
+    hdfs.getServiceComponent(Role.DATANODE.name()).getServiceComponentHost(hostname1).setState(State.INSTALLED);
+    hdfs.getServiceComponent(Role.DATANODE.name()).getServiceComponentHost(hostname2).setState(State.INSTALLED);
+    hdfs.getServiceComponent(Role.NAMENODE.name()).getServiceComponentHost(hostname1).setState(State.INSTALLED);
+
+    ActionQueue aq = new ActionQueue();
+    ActionManager am = mock(ActionManager.class);
+    HeartbeatMonitor hm = new HeartbeatMonitor(clusters, aq, am,
+      heartbeatMonitorWakeupIntervalMS, injector);
+
+    List<StatusCommand> cmds = hm.generateStatusCommands(hostname1);
+    assertEquals(2, cmds.size());
+    assertEquals("b", cmds.get(0).getConfigurations().get("hadoop-env").get("a"));
+    // built once and shared by the components of the host
+    assertSame(cmds.get(0).getConfigurations(), cmds.get(1).getConfigurations());
+    assertEquals(1, hm.getStatusConfigMissCount());
+
+    // a host with the same config tags shares the configurations
+    List<StatusCommand> host2Cmds = hm.generateStatusCommands(hostname2);
+    assertEquals(1, host2Cmds.size());
+    assertSame(cmds.get(0).getConfigurations(), host2Cmds.get(0).getConfigurations());
+    assertEquals(hostname2, host2Cmds.get(0).getHostname());
+    assertEquals(1, hm.getStatusConfigMissCount());
+    assertEquals(1, hm.getStatusConfigHitCount());
+
+    // a new desired config version is picked up
+    Config config2 = configFactory.createNew(cluster, "hadoop-env",
+        new HashMap<String,String>() {{ put("a", "c"); }}, new HashMap<String, Map<String,String>>());
+    config2.setTag("version2");
+    cluster.addConfig(config2);
+    cluster.addDesiredConfig("_test", Collections.singleton(config2));
+
+    cmds = hm.generateStatusCommands(hostname1);
+    assertEquals("c", cmds.get(0).getConfigurations().get("hadoop-env").get("a"));
+    assertEquals(2, hm.getStatusConfigMissCount());
+  }
+
   @Test
   public void testStatusCommandForAnyComponents() throws Exception {
     Clusters clusters = injector.getInstance(Clusters.class);
@@ -0,0 +1,247 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.actionmanager.ActionManager;
+import org.apache.ambari.server.actionmanager.HostRoleCommand;
+import org.apache.ambari.server.state.Clusters;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests {@link HeartbeatProcessor}.
+ */
+public class TestHeartbeatProcessor {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testBatchLoadsTasksOnce() throws Exception {
+    HeartBeatHandler handler = mock(HeartBeatHandler.class);
+    Clusters clusters = mock(Clusters.class);
+    ActionManager actionManager = mock(ActionManager.class);
+
+    HostRoleCommand command1 = mock(HostRoleCommand.class);
+    when(command1.getTaskId()).thenReturn(1L);
+    HostRoleCommand command2 = mock(HostRoleCommand.class);
+    when(command2.getTaskId()).thenReturn(2L);
+
+    // return the tasks out of order to verify they are matched by ID
+    when(actionManager.getTasks(anyCollectionOf(Long.class))).thenReturn(
+        Arrays.asList(command2, command1));
+
+    HeartbeatProcessor processor = new HeartbeatProcessor(handler, clusters,
+        actionManager, 1, 10, 10);
+
+    HeartBeat heartbeat1 = createHeartBeat("host1", 1L);
+    HeartBeat heartbeat2 = createHeartBeat("host2", 2L);
+
+    List<HeartbeatProcessor.QueuedHeartBeat> batch = new ArrayList<HeartbeatProcessor.QueuedHeartBeat>();
+    batch.add(new HeartbeatProcessor.QueuedHeartBeat(heartbeat1, 1000L));
+    batch.add(new HeartbeatProcessor.QueuedHeartBeat(heartbeat2, 1000L));
+
+    processor.processBatch(batch);
+
+    verify(actionManager, times(1)).getTasks(anyCollectionOf(Long.class));
+
+    ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+    verify(handler).processCommandReports(eq(heartbeat1), eq("host1"),
+        eq(clusters), eq(1000L), captor.capture());
+    assertEquals(Arrays.asList(command1), new ArrayList<HostRoleCommand>(captor.getValue()));
+
+    verify(handler).processCommandReports(eq(heartbeat2), eq("host2"),
+        eq(clusters), eq(1000L), captor.capture());
+    assertEquals(Arrays.asList(command2), new ArrayList<HostRoleCommand>(captor.getValue()));
+
+    verify(handler).processStatusReports(heartbeat1, "host1", clusters);
+    verify(handler).processHostStatus(heartbeat1, "host1");
+    verify(handler).processAlerts(heartbeat1, "host1");
+    verify(handler).processStatusReports(heartbeat2, "host2", clusters);
+    verify(handler).processHostStatus(heartbeat2, "host2");
+    verify(handler).processAlerts(heartbeat2, "host2");
+
+    assertEquals(2, processor.getProcessedCount());
+    assertEquals(1, processor.getBatchCount());
+    assertEquals(0, processor.getFailedCount());
+  }
+
+  @Test
+  public void testOfferWaitsWhenFull() throws Exception {
+    HeartBeatHandler handler = mock(HeartBeatHandler.class);
+    final HeartbeatProcessor processor = new HeartbeatProcessor(handler,
+        mock(Clusters.class), mock(ActionManager.class), 1, 1, 10);
+
+    // workers are not started, so the queue is not drained yet
+    assertTrue(processor.offer(createHeartBeat("host1", 1L), 1000L));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> second = executor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          return processor.offer(createHeartBeat("host1", 2L), 1000L);
+        }
+      });
+
+      // the second heartbeat waits behind the first one instead of being
+      // processed inline
+      Thread.sleep(200);
+      assertFalse(second.isDone());
+      assertEquals(1, processor.getBlockedCount());
+
+      processor.start();
+      assertTrue(second.get(10, TimeUnit.SECONDS));
+
+      processor.shutdown(10000);
+      assertEquals(2, processor.getProcessedCount());
+      assertEquals(0, processor.getQueueDepth());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testOfferAfterShutdown() throws Exception {
+    HeartBeatHandler handler = mock(HeartBeatHandler.class);
+    HeartbeatProcessor processor = new HeartbeatProcessor(handler,
+        mock(Clusters.class), mock(ActionManager.class), 1, 1, 10);
+
+    processor.start();
+    processor.shutdown(10000);
+
+    // the caller processes the heartbeat inline
+    assertFalse(processor.offer(createHeartBeat("host1", 1L), 1000L));
+    assertEquals(0, processor.getQueueDepth());
+  }
+
+  @Test
+  public void testOfferDuringShutdownWaitsForQueuedHeartbeats() throws Exception {
+    HeartBeatHandler handler = mock(HeartBeatHandler.class);
+    final HeartbeatProcessor processor = new HeartbeatProcessor(handler,
+        mock(Clusters.class), mock(ActionManager.class), 1, 2, 1);
+
+    // the worker is held on the first heartbeat while the second is queued
+    final CountDownLatch processing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    HeartBeat heartbeat1 = createHeartBeat("host1", 1L);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        processing.countDown();
+        release.await();
+        return null;
+      }
+    }).when(handler).processAlerts(heartbeat1, "host1");
+
+    processor.start();
+    assertTrue(processor.offer(heartbeat1, 1000L));
+    assertTrue(processing.await(10, TimeUnit.SECONDS));
+    assertTrue(processor.offer(createHeartBeat("host1", 2L), 1000L));
+    processor.shutdown(1);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> third = executor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          return processor.offer(createHeartBeat("host1", 3L), 1000L);
+        }
+      });
+
+      // the third heartbeat is not handed back ahead of the queued one
+      Thread.sleep(200);
+      assertFalse(third.isDone());
+
+      release.countDown();
+      assertFalse(third.get(10, TimeUnit.SECONDS));
+      assertEquals(2, processor.getProcessedCount());
+      assertEquals(0, processor.getQueueDepth());
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testFailedHeartbeatDoesNotStopBatch() throws Exception {
+    HeartBeatHandler handler = mock(HeartBeatHandler.class);
+    Clusters clusters = mock(Clusters.class);
+    ActionManager actionManager = mock(ActionManager.class);
+
+    HeartBeat heartbeat1 = createHeartBeat("host1", 1L);
+    HeartBeat heartbeat2 = createHeartBeat("host2", 2L);
+
+    doThrow(new RuntimeException("failure")).when(handler).processAlerts(
+        heartbeat1, "host1");
+
+    HeartbeatProcessor processor = new HeartbeatProcessor(handler, clusters,
+        actionManager, 1, 10, 10);
+
+    List<HeartbeatProcessor.QueuedHeartBeat> batch = new ArrayList<HeartbeatProcessor.QueuedHeartBeat>();
+    batch.add(new HeartbeatProcessor.QueuedHeartBeat(heartbeat1, 1000L));
+    batch.add(new HeartbeatProcessor.QueuedHeartBeat(heartbeat2, 1000L));
+
+    processor.processBatch(batch);
+
+    verify(handler).processAlerts(heartbeat2, "host2");
+    verify(handler, times(2)).processCommandReports(
+        any(HeartBeat.class),
+        anyString(), eq(clusters), anyLong(),
+        anyCollectionOf(HostRoleCommand.class));
+
+    assertEquals(1, processor.getProcessedCount());
+    assertEquals(1, processor.getFailedCount());
+  }
+
+  private HeartBeat createHeartBeat(String hostname, long taskId) {
+    CommandReport report = new CommandReport();
+    report.setTaskId(taskId);
+
+    HeartBeat heartbeat = new HeartBeat();
+    heartbeat.setHostname(hostname);
+    heartbeat.setReports(new ArrayList<CommandReport>(Arrays.asList(report)));
+    return heartbeat;
+  }
+}
@@ -59,6 +59,7 @@ import org.apache.ambari.server.controller.spi.NoSuchResourceException;
 import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.QueryResponse;
+import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.Schema;
 import org.apache.ambari.server.controller.spi.SortRequest;
@@ -412,6 +413,68 @@ public class QueryImplTest {
     Assert.assertEquals(Resource.Type.StackArtifact, artifactNode.getObject().getType());
   }
 
+  @Test
+  public void testExecute__Stack_instance_subResourcesQueriedInBatch() throws Exception {
+    ResourceDefinition resourceDefinition = new StackResourceDefinition();
+
+    Map<Resource.Type, String> mapIds = new HashMap<Resource.Type, String>();
+    mapIds.put(Resource.Type.Stack, "HDP");
+
+    final Map<Resource.Type, Integer> queryCounts = new HashMap<Resource.Type, Integer>();
+
+    ClusterController clusterController =
+        new ClusterControllerImpl(new ClusterControllerImplTest.TestProviderModule()) {
+      @Override
+      public QueryResponse getResources(Resource.Type type, Request request, Predicate predicate)
+          throws UnsupportedPropertyException, NoSuchResourceException,
+          NoSuchParentResourceException, SystemException {
+        Integer count = queryCounts.get(type);
+        queryCounts.put(type, count == null ? 1 : count + 1);
+        return super.getResources(type, request, predicate);
+      }
+    };
+
+    //test
+    QueryImpl instance = new TestQuery(mapIds, resourceDefinition, clusterController);
+
+    instance.addProperty("versions/*", null);
+    instance.addProperty("versions/operating_systems/*", null);
+    instance.addProperty("versions/operating_systems/repositories/*", null);
+
+    Result result = instance.execute();
+
+    // the sub-resources of all of the parents are queried at once
+    Assert.assertEquals(Integer.valueOf(1), queryCounts.get(Resource.Type.StackVersion));
+    Assert.assertEquals(Integer.valueOf(1), queryCounts.get(Resource.Type.OperatingSystem));
+    Assert.assertEquals(Integer.valueOf(1), queryCounts.get(Resource.Type.Repository));
+
+    TreeNode<Resource> versionsNode = result.getResultTree().getChild("Stack:1").getChild("versions");
+    Assert.assertEquals(3, versionsNode.getChildren().size());
+
+    // each parent only gets its own sub-resources
+    for (TreeNode<Resource> versionNode : versionsNode.getChildren()) {
+      Object stackVersion = versionNode.getObject().getPropertyValue("Versions/stack_version");
+
+      TreeNode<Resource> opSystemsNode = versionNode.getChild("operating_systems");
+      Assert.assertEquals(3, opSystemsNode.getChildren().size());
+
+      for (TreeNode<Resource> opSystemNode : opSystemsNode.getChildren()) {
+        Resource opSystem = opSystemNode.getObject();
+        Assert.assertEquals(stackVersion, opSystem.getPropertyValue("OperatingSystems/stack_version"));
+
+        TreeNode<Resource> repositoriesNode = opSystemNode.getChild("repositories");
+        Assert.assertEquals(2, repositoriesNode.getChildren().size());
+
+        for (TreeNode<Resource> repositoryNode : repositoriesNode.getChildren()) {
+          Resource repository = repositoryNode.getObject();
+          Assert.assertEquals(stackVersion, repository.getPropertyValue("Repositories/stack_version"));
+          Assert.assertEquals(opSystem.getPropertyValue("OperatingSystems/os_type"),
+              repository.getPropertyValue("Repositories/os_type"));
+        }
+      }
+    }
+  }
+
   @Test
   public void testExecute_StackVersionPageResourcePredicate()
     throws NoSuchParentResourceException, UnsupportedPropertyException,
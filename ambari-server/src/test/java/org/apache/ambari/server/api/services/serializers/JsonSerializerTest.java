@@ -25,13 +25,17 @@ import org.apache.ambari.server.api.util.TreeNode;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.junit.Test;
 
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import java.io.ByteArrayOutputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * JSONSerializer unit tests
@@ -209,4 +213,69 @@ public class JsonSerializerTest {
   }
     
   
+
+  @Test
+  public void testSerializeStreamingWithoutPrettyPrint() throws Exception {
+    Resource resource = createMock(Resource.class);
+
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> resourcesNode = result.getResultTree().addChild(null, "items");
+    resourcesNode.addChild(resource, "resource1");
+    resourcesNode.addChild(resource, "resource2");
+
+    Map<String, Object> mapRootProps = new LinkedHashMap<String, Object>();
+    mapRootProps.put("prop1", "value1");
+    mapRootProps.put("prop2", 2);
+
+    Map<String, Map<String, Object>> propertyMap = new HashMap<String, Map<String, Object>>();
+    propertyMap.put(null, mapRootProps);
+
+    expect(resource.getPropertiesMap()).andReturn(propertyMap).anyTimes();
+    expect(resource.getType()).andReturn(Resource.Type.Host).anyTimes();
+    replay(resource);
+
+    Object o = new JsonSerializer(false).serialize(result);
+    assertTrue(o instanceof StreamingOutput);
+
+    // written straight to the response stream
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) o).write(out);
+
+    String expected = "{\"items\":[{\"prop1\":\"value1\",\"prop2\":2}," +
+        "{\"prop1\":\"value1\",\"prop2\":2}]}";
+
+    assertEquals(expected, out.toString("UTF-8"));
+    assertEquals(expected, o.toString());
+
+    verify(resource);
+  }
+
+  @Test
+  public void testSerializeError() throws Exception {
+    Result result = new ResultImpl(new ResultStatus(ResultStatus.STATUS.NOT_FOUND, "not found"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) new JsonSerializer(false).serialize(result)).write(out);
+
+    assertEquals("{\"status\":404,\"message\":\"not found\"}", out.toString("UTF-8"));
+  }
+
+  @Test
+  public void testSerializeItemCountTwice() throws Exception {
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> tree = result.getResultTree();
+    tree.setName("items");
+    tree.setProperty("count", "2");
+
+    Object o = new JsonSerializer(false).serialize(result);
+    String json = o.toString();
+    assertEquals("{\"itemTotal\":\"2\",\"items\":[]}", json);
+
+    // rendering for a string does not change what is written to the stream
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) o).write(out);
+    assertEquals(json, out.toString("UTF-8"));
+  }
 }
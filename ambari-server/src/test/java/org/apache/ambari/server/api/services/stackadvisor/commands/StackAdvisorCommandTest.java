@@ -35,10 +35,20 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
 
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 
+import org.apache.ambari.server.api.resources.ResourceInstance;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.api.services.Request;
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.ResultImpl;
+import org.apache.ambari.server.api.services.ResultStatus;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorException;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequest;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequest.StackAdvisorRequestBuilder;
@@ -46,6 +56,9 @@ import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequestExc
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorResponse;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRunner;
 import org.apache.ambari.server.api.services.stackadvisor.commands.StackAdvisorCommand.StackAdvisorData;
+import org.apache.ambari.server.api.util.TreeNode;
+import org.apache.ambari.server.controller.internal.ResourceImpl;
+import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.commons.io.FileUtils;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.annotate.JsonProperty;
@@ -236,6 +249,48 @@ public class StackAdvisorCommandTest {
     assertEquals(0, stackVersions.size());
   }
 
+  @Test
+  public void testGetHostsInformation_serializedResponse() throws Exception {
+    File recommendationsDir = temp.newFolder("recommendationDir");
+    StackAdvisorRunner saRunner = mock(StackAdvisorRunner.class);
+    AmbariMetaInfo metaInfo = mock(AmbariMetaInfo.class);
+
+    // the response entity is produced by the default JSON serializer
+    StackAdvisorCommand<TestResource> command = new TestStackAdvisorCommand(
+        recommendationsDir, "echo", 0, saRunner, metaInfo) {
+      @Override
+      protected ResourceInstance createResource(Resource.Type type,
+          Map<Resource.Type, String> mapIds) {
+        return mock(ResourceInstance.class);
+      }
+
+      @Override
+      protected Response handleRequest(HttpHeaders headers, String body,
+          UriInfo uriInfo, Request.Type requestType, MediaType mediaType,
+          ResourceInstance resource) {
+        Resource host = new ResourceImpl(Resource.Type.Host);
+        host.setProperty("Hosts/host_name", "host1");
+
+        Result result = new ResultImpl(new ResultStatus(ResultStatus.STATUS.OK));
+        TreeNode<Resource> tree = result.getResultTree();
+        tree.setName("items");
+        tree.addChild(host, "Host:1");
+
+        return Response.status(Response.Status.OK).entity(
+            getResultSerializer().serialize(result)).build();
+      }
+    };
+
+    StackAdvisorRequest request = StackAdvisorRequestBuilder.forStack("stackName", "stackVersion")
+        .forHosts(Arrays.asList("host1")).build();
+
+    String hostsJSON = command.getHostsInformation(request);
+    JsonNode hosts = command.mapper.readTree(hostsJSON);
+    assertEquals("host1", hosts.get("items").get(0).get("Hosts").get("host_name").getTextValue());
+
+    assertEquals(hostsJSON, command.getServicesInformation(request));
+  }
+
   class TestStackAdvisorCommand extends StackAdvisorCommand<TestResource> {
     public TestStackAdvisorCommand(File recommendationsDir, String stackAdvisorScript,
         int requestId, StackAdvisorRunner saRunner, AmbariMetaInfo metaInfo) {
@@ -55,6 +55,8 @@ import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourceProvider;
 import org.apache.ambari.server.controller.utilities.PredicateBuilder;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.dao.HostRoleCommandStatusSummaryDTO;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.easymock.Capture;
@@ -182,34 +184,26 @@ public class RequestResourceProviderTest {
 
     AmbariManagementController managementController = createMock(AmbariManagementController.class);
     ActionManager actionManager = createNiceMock(ActionManager.class);
-    HostRoleCommand hostRoleCommand = createNiceMock(HostRoleCommand.class);
-    Stage stage = createNiceMock(Stage.class);
-
-    List<HostRoleCommand> hostRoleCommands = new LinkedList<HostRoleCommand>();
-    hostRoleCommands.add(hostRoleCommand);
-
-    Collection<Stage> stages = new HashSet<Stage>();
-    stages.add(stage);
+    HostRoleCommandDAO hostRoleCommandDAO = createNiceMock(HostRoleCommandDAO.class);
 
     org.apache.ambari.server.actionmanager.Request requestMock =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock.getCommands()).andReturn(hostRoleCommands).anyTimes();
-    expect(requestMock.getStages()).andReturn(stages).anyTimes();
     expect(requestMock.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock.getRequestId()).andReturn(100L).anyTimes();
 
-    expect(stage.getOrderedHostRoleCommands()).andReturn(hostRoleCommands).anyTimes();
-
     Capture<Collection<Long>> requestIdsCapture = new Capture<Collection<Long>>();
 
     // set expectations
     expect(managementController.getActionManager()).andReturn(actionManager);
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Collections.singletonList(requestMock)).anyTimes();
-    expect(hostRoleCommand.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand.getStatus()).andReturn(HostRoleStatus.IN_PROGRESS).anyTimes();
+
+    expect(hostRoleCommandDAO.findAggregateCounts(100L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.IN_PROGRESS})).anyTimes();
 
     // replay
-    replay(managementController, actionManager, hostRoleCommand, requestMock, stage);
+    replay(managementController, actionManager, requestMock, hostRoleCommandDAO);
+
+    RequestResourceProvider.init(hostRoleCommandDAO);
 
     ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
         type,
@@ -234,7 +228,7 @@ public class RequestResourceProviderTest {
     }
 
     // verify
-    verify(managementController, actionManager, hostRoleCommand, stage);
+    verify(managementController, actionManager, hostRoleCommandDAO);
   }
 
   @Test
@@ -243,35 +237,27 @@ public class RequestResourceProviderTest {
 
     AmbariManagementController managementController = createMock(AmbariManagementController.class);
     ActionManager actionManager = createNiceMock(ActionManager.class);
-    HostRoleCommand hostRoleCommand = createNiceMock(HostRoleCommand.class);
-    Stage stage = createNiceMock(Stage.class);
-
-    List<HostRoleCommand> hostRoleCommands = new LinkedList<HostRoleCommand>();
-    hostRoleCommands.add(hostRoleCommand);
-
-    Collection<Stage> stages = new HashSet<Stage>();
-    stages.add(stage);
+    HostRoleCommandDAO hostRoleCommandDAO = createNiceMock(HostRoleCommandDAO.class);
 
     org.apache.ambari.server.actionmanager.Request requestMock =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock.getCommands()).andReturn(hostRoleCommands).anyTimes();
-    expect(requestMock.getStages()).andReturn(stages).anyTimes();
     expect(requestMock.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock.getRequestId()).andReturn(100L).anyTimes();
     expect(requestMock.getRequestScheduleId()).andReturn(11L).anyTimes();
 
-    expect(stage.getOrderedHostRoleCommands()).andReturn(hostRoleCommands).anyTimes();
-
     Capture<Collection<Long>> requestIdsCapture = new Capture<Collection<Long>>();
 
     // set expectations
     expect(managementController.getActionManager()).andReturn(actionManager);
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Collections.singletonList(requestMock)).anyTimes();
-    expect(hostRoleCommand.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand.getStatus()).andReturn(HostRoleStatus.IN_PROGRESS).anyTimes();
+
+    expect(hostRoleCommandDAO.findAggregateCounts(100L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.IN_PROGRESS})).anyTimes();
 
     // replay
-    replay(managementController, actionManager, hostRoleCommand, requestMock, stage);
+    replay(managementController, actionManager, requestMock, hostRoleCommandDAO);
+
+    RequestResourceProvider.init(hostRoleCommandDAO);
 
     ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
         type,
@@ -285,7 +271,6 @@ public class RequestResourceProviderTest {
     propertyIds.add(RequestResourceProvider.REQUEST_STATUS_PROPERTY_ID);
     propertyIds.add(RequestResourceProvider.REQUEST_SOURCE_SCHEDULE);
 
-
     Predicate predicate = new PredicateBuilder().property(RequestResourceProvider.REQUEST_ID_PROPERTY_ID).equals("100").
         toPredicate();
     Request request = PropertyHelper.getReadRequest(propertyIds);
@@ -299,7 +284,7 @@ public class RequestResourceProviderTest {
     }
 
     // verify
-    verify(managementController, actionManager, hostRoleCommand, stage);
+    verify(managementController, actionManager, hostRoleCommandDAO);
   }
 
   @Test
@@ -308,35 +293,27 @@ public class RequestResourceProviderTest {
 
     AmbariManagementController managementController = createMock(AmbariManagementController.class);
     ActionManager actionManager = createNiceMock(ActionManager.class);
-    HostRoleCommand hostRoleCommand = createNiceMock(HostRoleCommand.class);
-    Stage stage = createNiceMock(Stage.class);
-
-    List<HostRoleCommand> hostRoleCommands = new LinkedList<HostRoleCommand>();
-    hostRoleCommands.add(hostRoleCommand);
-
-    Collection<Stage> stages = new HashSet<Stage>();
-    stages.add(stage);
+    HostRoleCommandDAO hostRoleCommandDAO = createNiceMock(HostRoleCommandDAO.class);
 
     org.apache.ambari.server.actionmanager.Request requestMock =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock.getCommands()).andReturn(hostRoleCommands).anyTimes();
-    expect(requestMock.getStages()).andReturn(stages).anyTimes();
     expect(requestMock.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock.getRequestId()).andReturn(100L).anyTimes();
     expect(requestMock.getRequestScheduleId()).andReturn(null).anyTimes();
 
-    expect(stage.getOrderedHostRoleCommands()).andReturn(hostRoleCommands).anyTimes();
-
     Capture<Collection<Long>> requestIdsCapture = new Capture<Collection<Long>>();
 
     // set expectations
     expect(managementController.getActionManager()).andReturn(actionManager);
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Collections.singletonList(requestMock)).anyTimes();
-    expect(hostRoleCommand.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand.getStatus()).andReturn(HostRoleStatus.IN_PROGRESS).anyTimes();
+
+    expect(hostRoleCommandDAO.findAggregateCounts(100L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.IN_PROGRESS})).anyTimes();
 
     // replay
-    replay(managementController, actionManager, hostRoleCommand, requestMock, stage);
+    replay(managementController, actionManager, requestMock, hostRoleCommandDAO);
+
+    RequestResourceProvider.init(hostRoleCommandDAO);
 
     ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
         type,
@@ -350,7 +327,6 @@ public class RequestResourceProviderTest {
     propertyIds.add(RequestResourceProvider.REQUEST_STATUS_PROPERTY_ID);
     propertyIds.add(RequestResourceProvider.REQUEST_SOURCE_SCHEDULE);
 
-
     Predicate predicate = new PredicateBuilder().property(RequestResourceProvider.REQUEST_ID_PROPERTY_ID).equals("100").
         toPredicate();
     Request request = PropertyHelper.getReadRequest(propertyIds);
@@ -364,7 +340,7 @@ public class RequestResourceProviderTest {
     }
 
     // verify
-    verify(managementController, actionManager, hostRoleCommand, stage);
+    verify(managementController, actionManager, hostRoleCommandDAO);
   }
 
   @Test
@@ -373,21 +349,12 @@ public class RequestResourceProviderTest {
 
     AmbariManagementController managementController = createMock(AmbariManagementController.class);
     ActionManager actionManager = createNiceMock(ActionManager.class);
-    HostRoleCommand hostRoleCommand = createNiceMock(HostRoleCommand.class);
-    Stage stage = createNiceMock(Stage.class);
+    HostRoleCommandDAO hostRoleCommandDAO = createNiceMock(HostRoleCommandDAO.class);
     Clusters clusters = createNiceMock(Clusters.class);
     Cluster cluster = createNiceMock(Cluster.class);
 
-    List<HostRoleCommand> hostRoleCommands = new LinkedList<HostRoleCommand>();
-    hostRoleCommands.add(hostRoleCommand);
-
-    Collection<Stage> stages = new HashSet<Stage>();
-    stages.add(stage);
-
     org.apache.ambari.server.actionmanager.Request requestMock =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock.getCommands()).andReturn(hostRoleCommands).anyTimes();
-    expect(requestMock.getStages()).andReturn(stages).anyTimes();
     expect(requestMock.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock.getClusterName()).andReturn("c1").anyTimes();
     expect(requestMock.getRequestId()).andReturn(100L).anyTimes();
@@ -400,13 +367,14 @@ public class RequestResourceProviderTest {
     expect(clusters.getCluster("c1")).andReturn(cluster).anyTimes();
     expect(clusters.getCluster("bad-cluster")).andThrow(new AmbariException("bad cluster!")).anyTimes();
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Collections.singletonList(requestMock));
-    expect(hostRoleCommand.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand.getStatus()).andReturn(HostRoleStatus.IN_PROGRESS).anyTimes();
 
-    expect(stage.getOrderedHostRoleCommands()).andReturn(hostRoleCommands).anyTimes();
+    expect(hostRoleCommandDAO.findAggregateCounts(100L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.IN_PROGRESS})).anyTimes();
 
     // replay
-    replay(managementController, actionManager, hostRoleCommand, clusters, cluster, requestMock, stage);
+    replay(managementController, actionManager, clusters, cluster, requestMock, hostRoleCommandDAO);
+
+    RequestResourceProvider.init(hostRoleCommandDAO);
 
     ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
         type,
@@ -444,7 +412,7 @@ public class RequestResourceProviderTest {
     }
 
     // verify
-    verify(managementController, actionManager, hostRoleCommand, clusters, cluster, stage);
+    verify(managementController, actionManager, clusters, cluster, hostRoleCommandDAO);
   }
 
   @Test
@@ -453,44 +421,34 @@ public class RequestResourceProviderTest {
 
     AmbariManagementController managementController = createMock(AmbariManagementController.class);
     ActionManager actionManager = createNiceMock(ActionManager.class);
-    HostRoleCommand hostRoleCommand = createNiceMock(HostRoleCommand.class);
-    Stage stage = createNiceMock(Stage.class);
-    Stage stage2 = createNiceMock(Stage.class);
-
-    List<HostRoleCommand> hostRoleCommands = new LinkedList<HostRoleCommand>();
-    hostRoleCommands.add(hostRoleCommand);
-
-    Collection<Stage> stages = new HashSet<Stage>();
-    stages.add(stage);
-    stages.add(stage2);
+    HostRoleCommandDAO hostRoleCommandDAO = createNiceMock(HostRoleCommandDAO.class);
 
     org.apache.ambari.server.actionmanager.Request requestMock =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock.getCommands()).andReturn(hostRoleCommands).anyTimes();
-    expect(requestMock.getStages()).andReturn(stages).anyTimes();
     expect(requestMock.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock.getRequestId()).andReturn(100L).anyTimes();
 
     org.apache.ambari.server.actionmanager.Request requestMock1 =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock1.getCommands()).andReturn(hostRoleCommands).anyTimes();
-    expect(requestMock1.getStages()).andReturn(stages).anyTimes();
     expect(requestMock1.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock1.getRequestId()).andReturn(101L).anyTimes();
 
     Capture<Collection<Long>> requestIdsCapture = new Capture<Collection<Long>>();
 
-    expect(stage.getOrderedHostRoleCommands()).andReturn(hostRoleCommands).anyTimes();
-    expect(stage2.getOrderedHostRoleCommands()).andReturn(hostRoleCommands).anyTimes();
-
     // set expectations
     expect(managementController.getActionManager()).andReturn(actionManager).anyTimes();
     expect(actionManager.getRequests(capture(requestIdsCapture))).
         andReturn(Arrays.asList(requestMock, requestMock1)).anyTimes();
-    expect(hostRoleCommand.getStatus()).andReturn(HostRoleStatus.IN_PROGRESS).anyTimes();
+
+    expect(hostRoleCommandDAO.findAggregateCounts(100L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.IN_PROGRESS})).anyTimes();
+    expect(hostRoleCommandDAO.findAggregateCounts(101L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.IN_PROGRESS})).anyTimes();
 
     // replay
-    replay(managementController, actionManager, hostRoleCommand, requestMock, requestMock1, stage, stage2);
+    replay(managementController, actionManager, requestMock, requestMock1, hostRoleCommandDAO);
+
+    RequestResourceProvider.init(hostRoleCommandDAO);
 
     ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
         type,
@@ -515,7 +473,7 @@ public class RequestResourceProviderTest {
     }
 
     // verify
-    verify(managementController, actionManager, hostRoleCommand, stage, stage2);
+    verify(managementController, actionManager, hostRoleCommandDAO);
   }
 
   @Test
@@ -524,61 +482,34 @@ public class RequestResourceProviderTest {
 
     AmbariManagementController managementController = createMock(AmbariManagementController.class);
     ActionManager actionManager = createNiceMock(ActionManager.class);
-    HostRoleCommand hostRoleCommand0 = createNiceMock(HostRoleCommand.class);
-    HostRoleCommand hostRoleCommand1 = createNiceMock(HostRoleCommand.class);
-    HostRoleCommand hostRoleCommand2 = createNiceMock(HostRoleCommand.class);
-    HostRoleCommand hostRoleCommand3 = createNiceMock(HostRoleCommand.class);
-    Stage stage = createNiceMock(Stage.class);
-    Stage stage2 = createNiceMock(Stage.class);
-
-    List<HostRoleCommand> hostRoleCommands0 = new LinkedList<HostRoleCommand>();
-    hostRoleCommands0.add(hostRoleCommand0);
-    hostRoleCommands0.add(hostRoleCommand1);
-
-    List<HostRoleCommand> hostRoleCommands1 = new LinkedList<HostRoleCommand>();
-    hostRoleCommands1.add(hostRoleCommand2);
-    hostRoleCommands1.add(hostRoleCommand3);
-
-    Collection<Stage> stages = new HashSet<Stage>();
-    stages.add(stage);
-    stages.add(stage2);
+    HostRoleCommandDAO hostRoleCommandDAO = createNiceMock(HostRoleCommandDAO.class);
 
     org.apache.ambari.server.actionmanager.Request requestMock0 =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock0.getCommands()).andReturn(hostRoleCommands0).anyTimes();
     expect(requestMock0.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock0.getRequestId()).andReturn(100L).anyTimes();
 
     org.apache.ambari.server.actionmanager.Request requestMock1 =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock1.getCommands()).andReturn(hostRoleCommands1).anyTimes();
     expect(requestMock1.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock1.getRequestId()).andReturn(101L).anyTimes();
 
-    expect(requestMock0.getStages()).andReturn(stages).anyTimes();
-    expect(requestMock1.getStages()).andReturn(stages).anyTimes();
-
-    expect(stage.getOrderedHostRoleCommands()).andReturn(hostRoleCommands0).anyTimes();
-    expect(stage2.getOrderedHostRoleCommands()).andReturn(hostRoleCommands1).anyTimes();
-
     Capture<Collection<Long>> requestIdsCapture = new Capture<Collection<Long>>();
 
     // set expectations
     expect(managementController.getActionManager()).andReturn(actionManager).anyTimes();
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Arrays.asList(requestMock0));
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Arrays.asList(requestMock1));
-    expect(hostRoleCommand0.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand1.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand2.getRequestId()).andReturn(101L).anyTimes();
-    expect(hostRoleCommand3.getRequestId()).andReturn(101L).anyTimes();
-    expect(hostRoleCommand0.getStatus()).andReturn(HostRoleStatus.COMPLETED).anyTimes();
-    expect(hostRoleCommand1.getStatus()).andReturn(HostRoleStatus.COMPLETED).anyTimes();
-    expect(hostRoleCommand2.getStatus()).andReturn(HostRoleStatus.COMPLETED).anyTimes();
-    expect(hostRoleCommand3.getStatus()).andReturn(HostRoleStatus.COMPLETED).anyTimes();
+
+    expect(hostRoleCommandDAO.findAggregateCounts(100L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.COMPLETED, HostRoleStatus.COMPLETED})).anyTimes();
+    expect(hostRoleCommandDAO.findAggregateCounts(101L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.COMPLETED, HostRoleStatus.COMPLETED})).anyTimes();
 
     // replay
-    replay(managementController, actionManager, hostRoleCommand0, hostRoleCommand1, hostRoleCommand2, hostRoleCommand3,
-        requestMock0, requestMock1, stage, stage2);
+    replay(managementController, actionManager, requestMock0, requestMock1, hostRoleCommandDAO);
+
+    RequestResourceProvider.init(hostRoleCommandDAO);
 
     ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
         type,
@@ -613,7 +544,7 @@ public class RequestResourceProviderTest {
     }
 
     // verify
-    verify(managementController, actionManager, hostRoleCommand0, hostRoleCommand1, hostRoleCommand2, hostRoleCommand3, stage, stage2);
+    verify(managementController, actionManager, hostRoleCommandDAO);
   }
 
   @Test
@@ -622,63 +553,34 @@ public class RequestResourceProviderTest {
 
     AmbariManagementController managementController = createMock(AmbariManagementController.class);
     ActionManager actionManager = createNiceMock(ActionManager.class);
-    HostRoleCommand hostRoleCommand0 = createNiceMock(HostRoleCommand.class);
-    HostRoleCommand hostRoleCommand1 = createNiceMock(HostRoleCommand.class);
-    HostRoleCommand hostRoleCommand2 = createNiceMock(HostRoleCommand.class);
-    HostRoleCommand hostRoleCommand3 = createNiceMock(HostRoleCommand.class);
-    Stage stage = createNiceMock(Stage.class);
-    Stage stage2 = createNiceMock(Stage.class);
-
-    List<HostRoleCommand> hostRoleCommands0 = new LinkedList<HostRoleCommand>();
-    hostRoleCommands0.add(hostRoleCommand0);
-    hostRoleCommands0.add(hostRoleCommand1);
-
-    List<HostRoleCommand> hostRoleCommands1 = new LinkedList<HostRoleCommand>();
-    hostRoleCommands1.add(hostRoleCommand2);
-    hostRoleCommands1.add(hostRoleCommand3);
-
-    Collection<Stage> stages = new HashSet<Stage>();
-    stages.add(stage);
-
-    Collection<Stage> stages2 = new HashSet<Stage>();
-    stages2.add(stage2);
+    HostRoleCommandDAO hostRoleCommandDAO = createNiceMock(HostRoleCommandDAO.class);
 
     org.apache.ambari.server.actionmanager.Request requestMock0 =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock0.getCommands()).andReturn(hostRoleCommands0).anyTimes();
     expect(requestMock0.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock0.getRequestId()).andReturn(100L).anyTimes();
 
     org.apache.ambari.server.actionmanager.Request requestMock1 =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock1.getCommands()).andReturn(hostRoleCommands1).anyTimes();
     expect(requestMock1.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock1.getRequestId()).andReturn(101L).anyTimes();
 
-    expect(requestMock0.getStages()).andReturn(stages).anyTimes();
-    expect(requestMock1.getStages()).andReturn(stages2).anyTimes();
-
-    expect(stage.getOrderedHostRoleCommands()).andReturn(hostRoleCommands0).anyTimes();
-    expect(stage2.getOrderedHostRoleCommands()).andReturn(hostRoleCommands1).anyTimes();
-
     Capture<Collection<Long>> requestIdsCapture = new Capture<Collection<Long>>();
 
     // set expectations
     expect(managementController.getActionManager()).andReturn(actionManager).anyTimes();
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Arrays.asList(requestMock0));
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Arrays.asList(requestMock1));
-    expect(hostRoleCommand0.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand1.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand2.getRequestId()).andReturn(101L).anyTimes();
-    expect(hostRoleCommand3.getRequestId()).andReturn(101L).anyTimes();
-    expect(hostRoleCommand0.getStatus()).andReturn(HostRoleStatus.IN_PROGRESS).anyTimes();
-    expect(hostRoleCommand1.getStatus()).andReturn(HostRoleStatus.PENDING).anyTimes();
-    expect(hostRoleCommand2.getStatus()).andReturn(HostRoleStatus.IN_PROGRESS).anyTimes();
-    expect(hostRoleCommand3.getStatus()).andReturn(HostRoleStatus.QUEUED).anyTimes();
+
+    expect(hostRoleCommandDAO.findAggregateCounts(100L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.IN_PROGRESS, HostRoleStatus.PENDING})).anyTimes();
+    expect(hostRoleCommandDAO.findAggregateCounts(101L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.IN_PROGRESS, HostRoleStatus.QUEUED})).anyTimes();
 
     // replay
-    replay(managementController, actionManager, hostRoleCommand0, hostRoleCommand1, hostRoleCommand2, hostRoleCommand3,
-        requestMock0, requestMock1, stage, stage2);
+    replay(managementController, actionManager, requestMock0, requestMock1, hostRoleCommandDAO);
+
+    RequestResourceProvider.init(hostRoleCommandDAO);
 
     ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
         type,
@@ -722,7 +624,7 @@ public class RequestResourceProviderTest {
     }
 
     // verify
-    verify(managementController, actionManager, hostRoleCommand0, hostRoleCommand1, hostRoleCommand2, hostRoleCommand3, stage, stage2);
+    verify(managementController, actionManager, hostRoleCommandDAO);
   }
 
   @Test
@@ -731,63 +633,34 @@ public class RequestResourceProviderTest {
 
     AmbariManagementController managementController = createMock(AmbariManagementController.class);
     ActionManager actionManager = createNiceMock(ActionManager.class);
-    HostRoleCommand hostRoleCommand0 = createNiceMock(HostRoleCommand.class);
-    HostRoleCommand hostRoleCommand1 = createNiceMock(HostRoleCommand.class);
-    HostRoleCommand hostRoleCommand2 = createNiceMock(HostRoleCommand.class);
-    HostRoleCommand hostRoleCommand3 = createNiceMock(HostRoleCommand.class);
-    Stage stage = createNiceMock(Stage.class);
-    Stage stage2 = createNiceMock(Stage.class);
-
-    List<HostRoleCommand> hostRoleCommands0 = new LinkedList<HostRoleCommand>();
-    hostRoleCommands0.add(hostRoleCommand0);
-    hostRoleCommands0.add(hostRoleCommand1);
-
-    List<HostRoleCommand> hostRoleCommands1 = new LinkedList<HostRoleCommand>();
-    hostRoleCommands1.add(hostRoleCommand2);
-    hostRoleCommands1.add(hostRoleCommand3);
-
-    Collection<Stage> stages = new HashSet<Stage>();
-    stages.add(stage);
-
-    Collection<Stage> stages2 = new HashSet<Stage>();
-    stages2.add(stage2);
+    HostRoleCommandDAO hostRoleCommandDAO = createNiceMock(HostRoleCommandDAO.class);
 
     org.apache.ambari.server.actionmanager.Request requestMock0 =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock0.getCommands()).andReturn(hostRoleCommands0).anyTimes();
     expect(requestMock0.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock0.getRequestId()).andReturn(100L).anyTimes();
 
     org.apache.ambari.server.actionmanager.Request requestMock1 =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock1.getCommands()).andReturn(hostRoleCommands1).anyTimes();
     expect(requestMock1.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock1.getRequestId()).andReturn(101L).anyTimes();
 
-    expect(requestMock0.getStages()).andReturn(stages).anyTimes();
-    expect(requestMock1.getStages()).andReturn(stages2).anyTimes();
-
-    expect(stage.getOrderedHostRoleCommands()).andReturn(hostRoleCommands0).anyTimes();
-    expect(stage2.getOrderedHostRoleCommands()).andReturn(hostRoleCommands1).anyTimes();
-
     Capture<Collection<Long>> requestIdsCapture = new Capture<Collection<Long>>();
 
     // set expectations
     expect(managementController.getActionManager()).andReturn(actionManager).anyTimes();
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Arrays.asList(requestMock0));
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Arrays.asList(requestMock1));
-    expect(hostRoleCommand0.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand1.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand2.getRequestId()).andReturn(101L).anyTimes();
-    expect(hostRoleCommand3.getRequestId()).andReturn(101L).anyTimes();
-    expect(hostRoleCommand0.getStatus()).andReturn(HostRoleStatus.FAILED).anyTimes();
-    expect(hostRoleCommand1.getStatus()).andReturn(HostRoleStatus.COMPLETED).anyTimes();
-    expect(hostRoleCommand2.getStatus()).andReturn(HostRoleStatus.ABORTED).anyTimes();
-    expect(hostRoleCommand3.getStatus()).andReturn(HostRoleStatus.TIMEDOUT).anyTimes();
+
+    expect(hostRoleCommandDAO.findAggregateCounts(100L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.FAILED, HostRoleStatus.COMPLETED})).anyTimes();
+    expect(hostRoleCommandDAO.findAggregateCounts(101L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.ABORTED, HostRoleStatus.TIMEDOUT})).anyTimes();
 
     // replay
-    replay(managementController, actionManager, hostRoleCommand0, hostRoleCommand1, hostRoleCommand2, hostRoleCommand3,
-        requestMock0, requestMock1, stage, stage2);
+    replay(managementController, actionManager, requestMock0, requestMock1, hostRoleCommandDAO);
+
+    RequestResourceProvider.init(hostRoleCommandDAO);
 
     ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
         type,
@@ -832,7 +705,7 @@ public class RequestResourceProviderTest {
     }
 
     // verify
-    verify(managementController, actionManager, hostRoleCommand0, hostRoleCommand1, hostRoleCommand2, hostRoleCommand3, stage, stage2);
+    verify(managementController, actionManager, hostRoleCommandDAO);
   }
 
   @Test
@@ -1263,26 +1136,15 @@ public class RequestResourceProviderTest {
 
     AmbariManagementController managementController = createMock(AmbariManagementController.class);
     ActionManager actionManager = createNiceMock(ActionManager.class);
-    HostRoleCommand hostRoleCommand = createNiceMock(HostRoleCommand.class);
-    Stage stage = createNiceMock(Stage.class);
+    HostRoleCommandDAO hostRoleCommandDAO = createNiceMock(HostRoleCommandDAO.class);
     Clusters clusters = createNiceMock(Clusters.class);
 
-    List<HostRoleCommand> hostRoleCommands = new LinkedList<HostRoleCommand>();
-    hostRoleCommands.add(hostRoleCommand);
-
-    Collection<Stage> stages = new HashSet<Stage>();
-    stages.add(stage);
-
     org.apache.ambari.server.actionmanager.Request requestMock =
         createNiceMock(org.apache.ambari.server.actionmanager.Request.class);
-    expect(requestMock.getCommands()).andReturn(hostRoleCommands).anyTimes();
-    expect(requestMock.getStages()).andReturn(stages).anyTimes();
     expect(requestMock.getRequestContext()).andReturn("this is a context").anyTimes();
     expect(requestMock.getClusterName()).andReturn(null).anyTimes();
     expect(requestMock.getRequestId()).andReturn(100L).anyTimes();
 
-    expect(stage.getOrderedHostRoleCommands()).andReturn(hostRoleCommands).anyTimes();
-
     Capture<Collection<Long>> requestIdsCapture = new Capture<Collection<Long>>();
 
     // set expectations
@@ -1290,11 +1152,14 @@ public class RequestResourceProviderTest {
     expect(managementController.getClusters()).andReturn(clusters).anyTimes();
     expect(clusters.getCluster(anyObject(String.class))).andReturn(null).anyTimes();
     expect(actionManager.getRequests(capture(requestIdsCapture))).andReturn(Collections.singletonList(requestMock));
-    expect(hostRoleCommand.getRequestId()).andReturn(100L).anyTimes();
-    expect(hostRoleCommand.getStatus()).andReturn(HostRoleStatus.IN_PROGRESS).anyTimes();
+
+    expect(hostRoleCommandDAO.findAggregateCounts(100L)).andReturn(
+        createSummaries(new HostRoleStatus[] {HostRoleStatus.IN_PROGRESS})).anyTimes();
 
     // replay
-    replay(managementController, actionManager, hostRoleCommand, clusters, requestMock, stage);
+    replay(managementController, actionManager, clusters, requestMock, hostRoleCommandDAO);
+
+    RequestResourceProvider.init(hostRoleCommandDAO);
 
     ResourceProvider provider = AbstractControllerResourceProvider.getResourceProvider(
         type,
@@ -1321,7 +1186,37 @@ public class RequestResourceProviderTest {
     }
 
     // verify
-    verify(managementController, actionManager, hostRoleCommand, clusters, stage);
+    verify(managementController, actionManager, clusters, hostRoleCommandDAO);
   }
 
+  /**
+   * Creates the stage summaries of a request, with one stage for each of the
+   * given arrays of task statuses.
+   *
+   * @param stages  the statuses of the tasks of each stage
+   *
+   * @return the map of stage-to-summary objects
+   */
+  private static Map<Long, HostRoleCommandStatusSummaryDTO> createSummaries(HostRoleStatus[]... stages) {
+    Map<Long, HostRoleCommandStatusSummaryDTO> summaries = new HashMap<Long, HostRoleCommandStatusSummaryDTO>();
+
+    for (int stageId = 0; stageId < stages.length; stageId++) {
+      Map<HostRoleStatus, Integer> counts = new HashMap<HostRoleStatus, Integer>();
+      for (HostRoleStatus status : HostRoleStatus.values()) {
+        counts.put(status, 0);
+      }
+      for (HostRoleStatus status : stages[stageId]) {
+        counts.put(status, counts.get(status) + 1);
+      }
+
+      summaries.put((long) stageId, new HostRoleCommandStatusSummaryDTO(0, 0L, 0L, stageId,
+          counts.get(HostRoleStatus.ABORTED), counts.get(HostRoleStatus.COMPLETED),
+          counts.get(HostRoleStatus.FAILED), counts.get(HostRoleStatus.HOLDING),
+          counts.get(HostRoleStatus.HOLDING_FAILED), counts.get(HostRoleStatus.HOLDING_TIMEDOUT),
+          counts.get(HostRoleStatus.IN_PROGRESS), counts.get(HostRoleStatus.PENDING),
+          counts.get(HostRoleStatus.QUEUED), counts.get(HostRoleStatus.TIMEDOUT)));
+    }
+
+    return summaries;
+  }
 }
@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.metrics.ganglia;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ambari.server.controller.utilities.TtlLoadingCache;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares parsing a canned rrd.py response line by line into boxed
+ * {@link GangliaMetric.TemporalMetric}s, as the Ganglia property provider used
+ * to, with the {@link GangliaFeedParser}. Then compares concurrent sessions
+ * that each parse the response with sessions that share it through a
+ * {@link TtlLoadingCache}.
+ *
+ * The response is read from the flume_ganglia_data.txt test resource, a feed
+ * of about 480,000 lines.
+ */
+@Ignore
+public class GangliaFeedParserPerformanceTest {
+
+  private static final int ITERATIONS = 5;
+  private static final int REQUESTS_PER_SESSION = 10;
+  private static final int SESSIONS = 8;
+
+  @Test
+  public void testParse() throws Exception {
+    String resource = "flume_ganglia_data.txt";
+    int sessions = SESSIONS;
+
+    final byte[] feed = read(resource);
+
+    List<GangliaMetric> lineMetrics = parseLines(new ByteArrayInputStream(feed));
+    List<GangliaMetric> parsedMetrics = parse(feed);
+    int points = 0;
+    for (int i = 0; i < parsedMetrics.size(); i++) {
+      Number[][] expected = lineMetrics.get(i).getDatapoints();
+      Assert.assertTrue("Parsed data points differ for " + parsedMetrics.get(i).getMetric_name(),
+          Arrays.deepEquals(expected, parsedMetrics.get(i).getDatapoints()));
+      points += expected.length;
+    }
+    System.out.println(resource + ": " + feed.length / 1024 + " KB, " +
+        parsedMetrics.size() + " metrics, " + points + " data points");
+
+    // the first iteration warms up the JIT
+    for (int i = 0; i <= ITERATIONS; i++) {
+      long start = System.nanoTime();
+      for (GangliaMetric metric : parseLines(new ByteArrayInputStream(feed))) {
+        metric.getDatapoints();
+      }
+      long lineTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (GangliaMetric metric : parse(feed)) {
+        metric.getLastValue();
+      }
+      long pointTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (GangliaMetric metric : parse(feed)) {
+        metric.getDatapoints();
+      }
+      long temporalTime = System.nanoTime() - start;
+
+      if (i > 0) {
+        System.out.println(String.format("iteration %d: line parse %.1f ms, " +
+            "feed parse %.1f ms (point in time), %.1f ms (temporal)",
+            i, lineTime / 1e6, pointTime / 1e6, temporalTime / 1e6));
+      }
+    }
+
+    final Callable<List<GangliaMetric>> loader = new Callable<List<GangliaMetric>>() {
+      @Override
+      public List<GangliaMetric> call() throws Exception {
+        return parse(feed);
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(sessions);
+    try {
+      for (int i = 0; i <= ITERATIONS; i++) {
+        long uncached = runSessions(executor, sessions, null, loader);
+        TtlLoadingCache<String, List<GangliaMetric>> cache =
+            new TtlLoadingCache<String, List<GangliaMetric>>("Ganglia metrics", 60000L);
+        long cached = runSessions(executor, sessions, cache, loader);
+
+        if (i > 0) {
+          System.out.println(String.format("iteration %d: %d sessions x %d " +
+              "requests, uncached %.1f ms, cached %.1f ms (%d fetches)",
+              i, sessions, REQUESTS_PER_SESSION, uncached / 1e6, cached / 1e6,
+              cache.getMissCount()));
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Run the given number of sessions that each make the same request
+   * {@link #REQUESTS_PER_SESSION} times.
+   *
+   * @return the elapsed time in nanoseconds
+   */
+  private static long runSessions(ExecutorService executor, int sessions,
+                                  final TtlLoadingCache<String, List<GangliaMetric>> cache,
+                                  final Callable<List<GangliaMetric>> loader)
+      throws Exception {
+
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    long start = System.nanoTime();
+    for (int i = 0; i < sessions; i++) {
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int j = 0; j < REQUESTS_PER_SESSION; j++) {
+            List<GangliaMetric> metrics = cache == null ?
+                loader.call() : cache.get("http://ganglia/cgi-bin/rrd.py?c=HDPFlumeServer", loader);
+            for (GangliaMetric metric : metrics) {
+              metric.getDatapoints();
+            }
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static List<GangliaMetric> parse(byte[] feed) throws IOException {
+    return new GangliaFeedParser(new ByteArrayInputStream(feed), "benchmark").parse();
+  }
+
+  /**
+   * Parse the feed the way the Ganglia property provider did before
+   * {@link GangliaFeedParser}.
+   */
+  private static List<GangliaMetric> parseLines(InputStream in) throws IOException {
+    List<GangliaMetric> metrics = new ArrayList<GangliaMetric>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+
+    reader.readLine();
+    String dsName = reader.readLine();
+
+    while (!"[~EOF]".equals(dsName)) {
+      GangliaMetric metric = new GangliaMetric();
+      List<GangliaMetric.TemporalMetric> listTemporalMetrics =
+          new ArrayList<GangliaMetric.TemporalMetric>();
+
+      metric.setDs_name(dsName);
+      metric.setCluster_name(reader.readLine());
+      metric.setHost_name(reader.readLine());
+      metric.setMetric_name(reader.readLine());
+
+      int time = Integer.parseInt(reader.readLine());
+      int step = Integer.parseInt(reader.readLine());
+
+      String val     = reader.readLine();
+      String lastVal = null;
+
+      while (val != null && !"[~EOM]".equals(val)) {
+        if (val.startsWith("[~r]")) {
+          Integer repeat = Integer.valueOf(val.substring(4)) - 1;
+          for (int i = 0; i < repeat; ++i) {
+            if (!"[~n]".equals(lastVal)) {
+              GangliaMetric.TemporalMetric tm = new GangliaMetric.TemporalMetric(lastVal, time);
+              if (tm.isValid()) listTemporalMetrics.add(tm);
+            }
+            time += step;
+          }
+        } else {
+          if (!"[~n]".equals(val)) {
+            GangliaMetric.TemporalMetric tm = new GangliaMetric.TemporalMetric(val, time);
+            if (tm.isValid()) listTemporalMetrics.add(tm);
+          }
+          time += step;
+        }
+        lastVal = val;
+        val = reader.readLine();
+      }
+      metric.setDatapointsFromList(listTemporalMetrics);
+      metrics.add(metric);
+
+      dsName = reader.readLine();
+    }
+    return metrics;
+  }
+
+  private static byte[] read(String resource) throws IOException {
+    InputStream in = ClassLoader.getSystemResourceAsStream(resource);
+    if (in == null) {
+      throw new IOException("Test resource " + resource + " not found");
+    }
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.metrics.ganglia;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Ganglia feed parser tests.
+ */
+public class GangliaFeedParserTest {
+
+  private static final String SPEC = "http://domU-12-31-39-0E-34-E1.compute-1.internal/cgi-bin/rrd.py";
+
+  @Test
+  public void testParse() throws Exception {
+    String feed =
+        "1358487599.0\n" +
+        "sum\nHDPSlaves\nhost1\ncpu_user\n1358434800\n360\n" +
+        "5.0\n[~r]3\n[~n]\n150.0\n7\n[~EOM]\n" +
+        "sum\nHDPSlaves\nhost1\nbytes_in\n1358434800\n15\n" +
+        "12\nabc\n-3.25\n[~EOM]\n" +
+        "[~EOF]\n1358487600.0\n";
+
+    List<GangliaMetric> metrics = parse(feed);
+
+    Assert.assertEquals(2, metrics.size());
+
+    GangliaMetric cpuUser = metrics.get(0);
+    Assert.assertEquals("sum", cpuUser.getDs_name());
+    Assert.assertEquals("HDPSlaves", cpuUser.getCluster_name());
+    Assert.assertEquals("host1", cpuUser.getHost_name());
+    Assert.assertEquals("cpu_user", cpuUser.getMetric_name());
+
+    // the repeated value, no value and the percentage above 100 are skipped
+    Number[][] dataPoints = cpuUser.getDatapoints();
+    Assert.assertEquals(4, dataPoints.length);
+    Assert.assertEquals(5.0, dataPoints[0][0]);
+    Assert.assertEquals(1358434800, dataPoints[0][1]);
+    Assert.assertEquals(5.0, dataPoints[2][0]);
+    Assert.assertEquals(1358435520, dataPoints[2][1]);
+    Assert.assertEquals(7L, dataPoints[3][0]);
+    Assert.assertEquals(1358436600, dataPoints[3][1]);
+
+    // the metrics may be cached, so each caller gets its own copy
+    dataPoints[0][0] = 0;
+    Assert.assertNotSame(dataPoints, cpuUser.getDatapoints());
+    Assert.assertEquals(5.0, cpuUser.getDatapoints()[0][0]);
+
+    GangliaMetric bytesIn = metrics.get(1);
+    dataPoints = bytesIn.getDatapoints();
+    Assert.assertEquals(2, dataPoints.length);
+    Assert.assertEquals(12L, dataPoints[0][0]);
+    Assert.assertEquals(-3.25, dataPoints[1][0]);
+    Assert.assertEquals(1358434830, dataPoints[1][1]);
+    Assert.assertEquals(-3.25, bytesIn.getLastValue());
+  }
+
+  @Test
+  public void testParseCarriageReturns() throws Exception {
+    String feed =
+        "1358487599.0\r\n" +
+        "sum\r\nHDPSlaves\r\nhost1\r\nbytes_in\r\n1358434800\r\n15\r\n" +
+        "1.5\r\n[~EOM]\r\n" +
+        "[~EOF]\r\n1358487600.0\r\n";
+
+    List<GangliaMetric> metrics = parse(feed);
+
+    Assert.assertEquals(1, metrics.size());
+    Assert.assertEquals("bytes_in", metrics.get(0).getMetric_name());
+    Assert.assertEquals(1.5, metrics.get(0).getLastValue());
+  }
+
+  @Test
+  public void testParseTruncated() throws Exception {
+    String feed =
+        "1358487599.0\n" +
+        "sum\nHDPSlaves\nhost1\nbytes_in\n1358434800\n15\n" +
+        "1\n[~EOM]\n" +
+        "sum\nHDPSlaves\nhost1\nbytes_out\n";
+
+    List<GangliaMetric> metrics = parse(feed);
+
+    Assert.assertEquals(1, metrics.size());
+    Assert.assertEquals("bytes_in", metrics.get(0).getMetric_name());
+
+    Assert.assertTrue(parse("").isEmpty());
+    Assert.assertTrue(parse("1358487599.0\n").isEmpty());
+  }
+
+  @Test
+  public void testParseValuesAsDouble() throws Exception {
+    Random random = new Random(1358487599L);
+    String[] values = new String[1000];
+    StringBuilder feed = new StringBuilder("1358487599.0\nsum\nHDPSlaves\nhost1\nbytes_in\n0\n15\n");
+    for (int i = 0; i < values.length; i++) {
+      values[i] = String.format(Locale.US, "%." + (random.nextInt(11) + 1) + "f",
+          (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12)));
+      if (i % 100 == 0) {
+        values[i] = String.valueOf(random.nextDouble() * 1e300);
+      }
+      feed.append(values[i]).append('\n');
+    }
+    feed.append("[~EOM]\n[~EOF]\n1358487600.0\n");
+
+    Number[][] dataPoints = parse(feed.toString()).get(0).getDatapoints();
+
+    Assert.assertEquals(values.length, dataPoints.length);
+    for (int i = 0; i < values.length; i++) {
+      Assert.assertEquals(values[i], Double.valueOf(values[i]), dataPoints[i][0]);
+    }
+  }
+
+  private static List<GangliaMetric> parse(String feed) throws Exception {
+    InputStream in = new ByteArrayInputStream(feed.getBytes("UTF-8"));
+    return new GangliaFeedParser(in, SPEC).parse();
+  }
+}
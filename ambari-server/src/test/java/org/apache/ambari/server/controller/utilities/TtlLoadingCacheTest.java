@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.utilities;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * TTL loading cache tests.
+ */
+public class TtlLoadingCacheTest {
+
+  private static final String SPEC = "http://host1:50070/jmx";
+
+  @Test
+  public void testGetWithinTTL() throws Exception {
+    TtlLoadingCache<String, Object> cache = new TtlLoadingCache<String, Object>("JMX snapshot", 60000L);
+    CountingLoader loader = new CountingLoader();
+
+    Object first = cache.get(SPEC, loader);
+    Object second = cache.get(SPEC, loader);
+
+    Assert.assertSame(first, second);
+    Assert.assertEquals(1, loader.count.get());
+    Assert.assertEquals(1, cache.getMissCount());
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertSame(first, cache.getIfFresh(SPEC));
+    Assert.assertNull(cache.getIfFresh("http://host2:50070/jmx"));
+  }
+
+  @Test
+  public void testGetAfterTTL() throws Exception {
+    TtlLoadingCache<String, Object> cache = new TtlLoadingCache<String, Object>("JMX snapshot", 1L);
+    CountingLoader loader = new CountingLoader();
+
+    cache.get(SPEC, loader);
+    Thread.sleep(10);
+    cache.get(SPEC, loader);
+
+    Assert.assertEquals(2, loader.count.get());
+    Assert.assertEquals(2, cache.getMissCount());
+    Assert.assertNull(cache.getIfFresh(SPEC));
+  }
+
+  @Test
+  public void testFailureNotCached() throws Exception {
+    TtlLoadingCache<String, Object> cache = new TtlLoadingCache<String, Object>("JMX snapshot", 60000L);
+
+    try {
+      cache.get(SPEC, new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          throw new IOException("connection refused");
+        }
+      });
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      Assert.assertEquals("connection refused", e.getMessage());
+    }
+
+    CountingLoader loader = new CountingLoader();
+    Assert.assertNotNull(cache.get(SPEC, loader));
+    Assert.assertEquals(1, loader.count.get());
+    Assert.assertEquals(1, cache.getFailureCount());
+  }
+
+  @Test
+  public void testConcurrentGetLoadsOnce() throws Exception {
+    final TtlLoadingCache<String, Object> cache = new TtlLoadingCache<String, Object>("JMX snapshot", 60000L);
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger count = new AtomicInteger();
+
+    final Callable<Object> loader = new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        count.incrementAndGet();
+        loading.countDown();
+        release.await(10, TimeUnit.SECONDS);
+        return new Object();
+      }
+    };
+
+    Callable<Object> getter = new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return cache.get(SPEC, loader);
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Object> first = executor.submit(getter);
+      Assert.assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+      // the second request should wait for the in flight load
+      Future<Object> second = executor.submit(getter);
+      Thread.sleep(50);
+      release.countDown();
+
+      Assert.assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+      Assert.assertEquals(1, count.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static class CountingLoader implements Callable<Object> {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Object call() throws Exception {
+      count.incrementAndGet();
+      return new Object();
+    }
+  }
+}
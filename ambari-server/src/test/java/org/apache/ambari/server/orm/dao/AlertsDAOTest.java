@@ -21,6 +21,7 @@ package org.apache.ambari.server.orm.dao;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -30,9 +31,11 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Properties;
 import java.util.TimeZone;
 import java.util.UUID;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.AlertHistoryRequest;
 import org.apache.ambari.server.controller.internal.AlertHistoryResourceProvider;
 import org.apache.ambari.server.controller.internal.PageRequestImpl;
@@ -101,7 +104,14 @@ public class AlertsDAOTest {
    */
   @Before
   public void setup() throws Exception {
-    m_injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    setup(new InMemoryDefaultTestModule());
+  }
+
+  /**
+   * Creates the injector from the specified module and populates the database.
+   */
+  private void setup(InMemoryDefaultTestModule module) throws Exception {
+    m_injector = Guice.createInjector(module);
     m_injector.getInstance(GuiceJpaInitializer.class);
     m_helper = m_injector.getInstance(OrmTestHelper.class);
     m_dao = m_injector.getInstance(AlertsDAO.class);
@@ -1302,4 +1312,177 @@ public class AlertsDAOTest {
     currentAlerts = m_dao.findCurrent();
     assertEquals(4, currentAlerts.size());
   }
+
+  /**
+   * Tests that current alerts are cached and that updates made with
+   * {@link AlertsDAO#mergeLatest(AlertCurrentEntity)} are written on flush.
+   */
+  @Test
+  public void testCachedCurrentAlerts() throws Exception {
+    teardown();
+
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    Properties properties = module.getProperties();
+    properties.setProperty(Configuration.ALERTS_CACHE_ENABLED_KEY, "true");
+    setup(module);
+
+    long clusterId = m_cluster.getClusterId();
+    AlertCurrentEntity current = m_dao.findCurrentByHostAndName(clusterId,
+        "h1", "Alert Definition 1");
+
+    assertNotNull(current);
+
+    // lookups return copies, so changes are not seen until they are merged
+    long latestTimestamp = current.getLatestTimestamp() + 1000L;
+    current.setLatestTimestamp(latestTimestamp);
+    current.setLatestText("Updated Text");
+
+    AlertCurrentEntity cached = m_dao.findCurrentByHostAndName(clusterId, "h1",
+        "Alert Definition 1");
+    assertNotSame(current, cached);
+    assertEquals(current.getAlertId(), cached.getAlertId());
+    assertEquals(latestTimestamp - 1000L, cached.getLatestTimestamp().longValue());
+
+    m_dao.mergeLatest(current);
+    m_dao.mergeLatest(current);
+
+    cached = m_dao.findCurrentByHostAndName(clusterId, "h1",
+        "Alert Definition 1");
+    assertEquals(latestTimestamp, cached.getLatestTimestamp().longValue());
+    assertEquals("Updated Text", cached.getLatestText());
+
+    assertEquals(1, m_dao.getUnflushedCurrentAlertCount());
+    assertEquals(1, m_dao.flushCurrentAlerts());
+    assertEquals(0, m_dao.getUnflushedCurrentAlertCount());
+
+    AlertCurrentEntity persisted = m_dao.findCurrentById(current.getAlertId());
+    m_dao.refresh(persisted);
+    assertEquals(latestTimestamp, persisted.getLatestTimestamp().longValue());
+    assertEquals("Updated Text", persisted.getLatestText());
+
+    // removing alerts must invalidate the cache and any pending updates
+    current.setLatestTimestamp(latestTimestamp + 1000L);
+    m_dao.mergeLatest(current);
+    m_dao.removeCurrentByHost("h1");
+
+    assertNull(m_dao.findCurrentByHostAndName(clusterId, "h1",
+        "Alert Definition 1"));
+
+    m_dao.flushCurrentAlerts();
+    assertEquals(0, m_dao.getUnflushedCurrentAlertCount());
+    assertEquals(0, m_dao.findCurrentByHost(clusterId, "h1").size());
+  }
+
+  /**
+   * Tests that alert summaries which are counted in memory follow changes to
+   * current alerts and are rebuilt after current alerts are removed.
+   */
+  @Test
+  public void testCountedCurrentSummary() throws Exception {
+    teardown();
+
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    Properties properties = module.getProperties();
+    properties.setProperty(Configuration.ALERTS_SUMMARY_CACHE_ENABLED_KEY, "true");
+    setup(module);
+
+    long clusterId = m_cluster.getClusterId();
+    AlertSummaryDTO summary = m_dao.findCurrentCounts(clusterId, null, null);
+    assertEquals(5, summary.getOkCount());
+    assertEquals(1, m_dao.findCurrentHostCounts(clusterId).getOkCount());
+
+    // move a current alert to a new CRITICAL history as a state change does
+    AlertCurrentEntity current = m_dao.findCurrentByCluster(clusterId).get(0);
+    AlertHistoryEntity history = createHistory(current.getAlertHistory(),
+        AlertState.CRITICAL, "h1");
+    current.setAlertHistory(history);
+    current = m_dao.merge(current);
+
+    summary = m_dao.findCurrentCounts(clusterId, null, null);
+    assertEquals(4, summary.getOkCount());
+    assertEquals(1, summary.getCriticalCount());
+    assertEquals(0, summary.getMaintenanceCount());
+
+    summary = m_dao.findCurrentCounts(clusterId, "YARN", null);
+    assertEquals(4, summary.getOkCount());
+    assertEquals(1, summary.getCriticalCount());
+
+    summary = m_dao.findCurrentCounts(clusterId, null, "h1");
+    assertEquals(4, summary.getOkCount());
+    assertEquals(1, summary.getCriticalCount());
+
+    summary = m_dao.findCurrentCounts(clusterId, "foo", null);
+    assertEquals(0, summary.getOkCount());
+    assertEquals(0, summary.getCriticalCount());
+
+    AlertHostSummaryDTO hostSummary = m_dao.findCurrentHostCounts(clusterId);
+    assertEquals(0, hostSummary.getOkCount());
+    assertEquals(1, hostSummary.getCriticalCount());
+
+    // maintenance mode hides the state of the alert and of its host
+    current.setMaintenanceState(MaintenanceState.ON);
+    current = m_dao.merge(current);
+
+    summary = m_dao.findCurrentCounts(clusterId, null, null);
+    assertEquals(4, summary.getOkCount());
+    assertEquals(0, summary.getCriticalCount());
+    assertEquals(1, summary.getMaintenanceCount());
+
+    hostSummary = m_dao.findCurrentHostCounts(clusterId);
+    assertEquals(1, hostSummary.getOkCount());
+    assertEquals(0, hostSummary.getCriticalCount());
+
+    // a new alert on another host
+    AlertCurrentEntity newCurrent = new AlertCurrentEntity();
+    newCurrent.setAlertHistory(createHistory(current.getAlertHistory(),
+        AlertState.WARNING, "h2"));
+    newCurrent.setLatestTimestamp(new Date().getTime());
+    newCurrent.setOriginalTimestamp(new Date().getTime());
+    newCurrent.setMaintenanceState(MaintenanceState.OFF);
+    m_dao.create(newCurrent);
+
+    summary = m_dao.findCurrentCounts(clusterId, null, null);
+    assertEquals(4, summary.getOkCount());
+    assertEquals(1, summary.getWarningCount());
+    assertEquals(1, summary.getMaintenanceCount());
+
+    summary = m_dao.findCurrentCounts(clusterId, null, "h2");
+    assertEquals(0, summary.getOkCount());
+    assertEquals(1, summary.getWarningCount());
+
+    hostSummary = m_dao.findCurrentHostCounts(clusterId);
+    assertEquals(1, hostSummary.getOkCount());
+    assertEquals(1, hostSummary.getWarningCount());
+
+    // removing alerts discards the counts, which are built again
+    m_dao.removeCurrentByHost("h2");
+
+    summary = m_dao.findCurrentCounts(clusterId, null, null);
+    assertEquals(4, summary.getOkCount());
+    assertEquals(0, summary.getWarningCount());
+    assertEquals(1, summary.getMaintenanceCount());
+
+    hostSummary = m_dao.findCurrentHostCounts(clusterId);
+    assertEquals(1, hostSummary.getOkCount());
+    assertEquals(0, hostSummary.getWarningCount());
+  }
+
+  /**
+   * Creates a new history entry for the same definition as an existing one.
+   */
+  private AlertHistoryEntity createHistory(AlertHistoryEntity source,
+      AlertState state, String hostName) {
+    AlertHistoryEntity history = new AlertHistoryEntity();
+    history.setServiceName(source.getServiceName());
+    history.setClusterId(source.getClusterId());
+    history.setAlertDefinition(source.getAlertDefinition());
+    history.setAlertLabel(source.getAlertLabel());
+    history.setAlertText(source.getAlertText());
+    history.setAlertTimestamp(new Date().getTime());
+    history.setComponentName(source.getComponentName());
+    history.setHostName(hostName);
+    history.setAlertState(state);
+    m_dao.create(history);
+    return history;
+  }
 }
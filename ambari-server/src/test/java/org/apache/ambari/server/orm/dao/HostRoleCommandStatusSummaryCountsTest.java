@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.orm.dao;
+
+import java.util.Map;
+
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * HostRoleCommandStatusSummaryCounts unit tests
+ */
+public class HostRoleCommandStatusSummaryCountsTest {
+
+  @Test
+  public void testCountTasks() {
+    HostRoleCommandStatusSummaryCounts counts = new HostRoleCommandStatusSummaryCounts();
+    counts.put(1L, 10L, true, HostRoleStatus.PENDING, null, null);
+    counts.put(2L, 10L, true, HostRoleStatus.COMPLETED, 100L, 200L);
+    counts.put(3L, 11L, false, HostRoleStatus.QUEUED, null, null);
+
+    Map<Long, HostRoleCommandStatusSummaryDTO> summaries = counts.getSummaries();
+    Assert.assertEquals(2, summaries.size());
+
+    HostRoleCommandStatusSummaryDTO stage = summaries.get(10L);
+    Assert.assertEquals(2, stage.getTaskTotal());
+    Assert.assertEquals(1, stage.getCounts().get(HostRoleStatus.PENDING).intValue());
+    Assert.assertEquals(1, stage.getCounts().get(HostRoleStatus.COMPLETED).intValue());
+    Assert.assertTrue(stage.isStageSkippable());
+    Assert.assertEquals(Long.valueOf(100L), stage.getStartTime());
+    Assert.assertEquals(Long.valueOf(200L), stage.getEndTime());
+
+    stage = summaries.get(11L);
+    Assert.assertEquals(1, stage.getTaskTotal());
+    Assert.assertEquals(1, stage.getCounts().get(HostRoleStatus.QUEUED).intValue());
+    Assert.assertFalse(stage.isStageSkippable());
+    Assert.assertNull(stage.getStartTime());
+    Assert.assertNull(stage.getEndTime());
+  }
+
+  @Test
+  public void testRecountTask() {
+    HostRoleCommandStatusSummaryCounts counts = new HostRoleCommandStatusSummaryCounts();
+    counts.put(1L, 10L, false, HostRoleStatus.PENDING, null, null);
+    counts.put(1L, 10L, false, HostRoleStatus.IN_PROGRESS, 100L, null);
+    counts.put(1L, 10L, false, HostRoleStatus.COMPLETED, 100L, 200L);
+
+    HostRoleCommandStatusSummaryDTO stage = counts.getSummaries().get(10L);
+    Assert.assertEquals(1, stage.getTaskTotal());
+    Assert.assertEquals(0, stage.getCounts().get(HostRoleStatus.PENDING).intValue());
+    Assert.assertEquals(0, stage.getCounts().get(HostRoleStatus.IN_PROGRESS).intValue());
+    Assert.assertEquals(1, stage.getCounts().get(HostRoleStatus.COMPLETED).intValue());
+    Assert.assertEquals(Long.valueOf(100L), stage.getStartTime());
+    Assert.assertEquals(Long.valueOf(200L), stage.getEndTime());
+  }
+
+  @Test
+  public void testRemoveTask() {
+    HostRoleCommandStatusSummaryCounts counts = new HostRoleCommandStatusSummaryCounts();
+    counts.put(1L, 10L, false, HostRoleStatus.COMPLETED, 100L, 200L);
+    counts.put(2L, 10L, false, HostRoleStatus.FAILED, 150L, 250L);
+    counts.put(3L, 11L, false, HostRoleStatus.PENDING, null, null);
+
+    counts.remove(2L);
+    HostRoleCommandStatusSummaryDTO stage = counts.getSummaries().get(10L);
+    Assert.assertEquals(1, stage.getTaskTotal());
+    Assert.assertEquals(0, stage.getCounts().get(HostRoleStatus.FAILED).intValue());
+
+    // removing the last task of a stage removes the stage
+    counts.remove(3L);
+    Assert.assertFalse(counts.getSummaries().containsKey(11L));
+
+    // removing a task that is not counted does nothing
+    counts.remove(4L);
+    Assert.assertEquals(1, counts.getSummaries().size());
+  }
+
+  @Test
+  public void testStaleTimes() {
+    HostRoleCommandStatusSummaryCounts counts = new HostRoleCommandStatusSummaryCounts();
+    counts.put(1L, 10L, false, HostRoleStatus.COMPLETED, 100L, 300L);
+    counts.put(2L, 10L, false, HostRoleStatus.COMPLETED, 150L, 250L);
+
+    HostRoleCommandStatusSummaryDTO stage = counts.getSummaries().get(10L);
+    Assert.assertEquals(Long.valueOf(100L), stage.getStartTime());
+    Assert.assertEquals(Long.valueOf(300L), stage.getEndTime());
+
+    // the task holding the min and max times changes; both are recalculated
+    counts.put(1L, 10L, false, HostRoleStatus.COMPLETED, 200L, 220L);
+    stage = counts.getSummaries().get(10L);
+    Assert.assertEquals(Long.valueOf(150L), stage.getStartTime());
+    Assert.assertEquals(Long.valueOf(250L), stage.getEndTime());
+
+    // the task holding them is removed
+    counts.remove(2L);
+    stage = counts.getSummaries().get(10L);
+    Assert.assertEquals(Long.valueOf(200L), stage.getStartTime());
+    Assert.assertEquals(Long.valueOf(220L), stage.getEndTime());
+
+    // times of tasks that have none are ignored, as SQL's MIN and MAX do
+    counts.put(3L, 10L, false, HostRoleStatus.PENDING, null, null);
+    stage = counts.getSummaries().get(10L);
+    Assert.assertEquals(Long.valueOf(200L), stage.getStartTime());
+    Assert.assertEquals(Long.valueOf(220L), stage.getEndTime());
+  }
+}
@@ -22,12 +22,14 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.Role;
 import org.apache.ambari.server.RoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.CalculatedStatus;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
@@ -128,6 +130,45 @@ public class RequestDAOTest {
     Assert.assertEquals(calc3.getStatus(), calc4.getStatus());
   }
 
+  @Test
+  public void testAggregateCountsFollowTaskChanges() throws Exception {
+    createGraph();
+
+    // counts the tasks in memory
+    Map<Long, HostRoleCommandStatusSummaryDTO> map = hostRoleCommandDAO.findAggregateCounts(100L);
+    Assert.assertEquals(HostRoleStatus.IN_PROGRESS,
+        CalculatedStatus.statusFromStageSummary(map, map.keySet()).getStatus());
+
+    for (HostRoleCommandEntity task : hostRoleCommandDAO.findByRequest(100L)) {
+      if (task.getStatus() != HostRoleStatus.COMPLETED) {
+        task.setStatus(HostRoleStatus.COMPLETED);
+        task.setEndTime(5000L);
+        hostRoleCommandDAO.merge(task);
+      }
+    }
+
+    // always aggregates the tasks in the database
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.TASK_STATUS_SUMMARY_CACHE_ENABLED_KEY, "false");
+    HostRoleCommandDAO uncachedDAO = new HostRoleCommandDAO(new Configuration(properties));
+    injector.injectMembers(uncachedDAO);
+
+    map = hostRoleCommandDAO.findAggregateCounts(100L);
+    Map<Long, HostRoleCommandStatusSummaryDTO> expected = uncachedDAO.findAggregateCounts(100L);
+
+    Assert.assertEquals(expected.keySet(), map.keySet());
+    for (Long stageId : expected.keySet()) {
+      Assert.assertEquals(expected.get(stageId).getCounts(), map.get(stageId).getCounts());
+      Assert.assertEquals(expected.get(stageId).isStageSkippable(), map.get(stageId).isStageSkippable());
+      Assert.assertEquals(expected.get(stageId).getStartTime(), map.get(stageId).getStartTime());
+      Assert.assertEquals(expected.get(stageId).getEndTime(), map.get(stageId).getEndTime());
+    }
+
+    CalculatedStatus calc = CalculatedStatus.statusFromStageSummary(map, map.keySet());
+    Assert.assertEquals(HostRoleStatus.COMPLETED, calc.getStatus());
+    Assert.assertEquals(100d, calc.getPercent(), 0.01d);
+  }
+
   private void createGraph() {
     OrmTestHelper helper = injector.getInstance(OrmTestHelper.class);
     helper.createDefaultData();
@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.security.ldap;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.security.authorization.AmbariLdapAuthenticationProviderBaseTest;
+import org.apache.ambari.server.security.authorization.Group;
+import org.apache.ambari.server.security.authorization.User;
+import org.apache.ambari.server.security.authorization.Users;
+import org.apache.directory.server.annotations.CreateLdapServer;
+import org.apache.directory.server.annotations.CreateTransport;
+import org.apache.directory.server.core.annotations.ApplyLdifFiles;
+import org.apache.directory.server.core.annotations.ContextEntry;
+import org.apache.directory.server.core.annotations.CreateDS;
+import org.apache.directory.server.core.annotations.CreatePartition;
+import org.apache.directory.server.core.integ.FrameworkRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Synchronizes users and groups from an embedded LDAP server, reading the
+ * entries one per page and looking up the group members in parallel.
+ */
+@RunWith(FrameworkRunner.class)
+@CreateDS(allowAnonAccess = true,
+    name = "AmbariLdapDataPopulatorEmbeddedTest",
+    partitions = {
+        @CreatePartition(name = "Root",
+            suffix = "dc=apache,dc=org",
+            contextEntry = @ContextEntry(
+                entryLdif =
+                    "dn: dc=apache,dc=org\n" +
+                        "dc: apache\n" +
+                        "objectClass: top\n" +
+                        "objectClass: domain\n\n" +
+                        "dn: dc=ambari,dc=apache,dc=org\n" +
+                        "dc: ambari\n" +
+                        "objectClass: top\n" +
+                        "objectClass: domain\n\n"))
+    })
+@CreateLdapServer(allowAnonymousAccess = true,
+    transports = {@CreateTransport(protocol = "LDAP", port = 33389)})
+@ApplyLdifFiles("users.ldif")
+public class AmbariLdapDataPopulatorEmbeddedTest extends AmbariLdapAuthenticationProviderBaseTest {
+
+  private AmbariLdapDataPopulator populator;
+
+  @Before
+  public void setUp() {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.LDAP_PRIMARY_URL_KEY, "localhost:33389");
+    properties.setProperty(Configuration.LDAP_BASE_DN_KEY, "dc=ambari,dc=apache,dc=org");
+    properties.setProperty(Configuration.LDAP_BIND_ANONYMOUSLY_KEY, "true");
+    properties.setProperty(Configuration.LDAP_USER_OBJECT_CLASS_KEY, "person");
+    properties.setProperty(Configuration.LDAP_USERNAME_ATTRIBUTE_KEY, "uid");
+    properties.setProperty(Configuration.LDAP_GROUP_OBJECT_CLASS_KEY, "groupOfNames");
+    properties.setProperty(Configuration.LDAP_GROUP_NAMING_ATTR_KEY, "cn");
+    properties.setProperty(Configuration.LDAP_GROUP_MEMEBERSHIP_ATTR_KEY, "member");
+    // smaller pages than there are entries, and more threads than members per group
+    properties.setProperty(Configuration.LDAP_SYNC_PAGE_SIZE_KEY, "1");
+    properties.setProperty(Configuration.LDAP_SYNC_THREADS_KEY, "4");
+
+    Users users = createNiceMock(Users.class);
+    expect(users.getAllUsers()).andReturn(Collections.<User>emptyList()).anyTimes();
+    expect(users.getAllGroups()).andReturn(Collections.<Group>emptyList()).anyTimes();
+    expect(users.getGroupMembers((String) anyObject())).andReturn(null).anyTimes();
+    replay(users);
+
+    populator = new AmbariLdapDataPopulator(new Configuration(properties), users);
+  }
+
+  @Test
+  public void testSynchronizeAllLdapUsers() throws Exception {
+    LdapBatchDto batchInfo = populator.synchronizeAllLdapUsers(new LdapBatchDto());
+
+    assertEquals(3, batchInfo.getUsersToBeCreated().size());
+    assertTrue(batchInfo.getUsersToBeCreated().contains("alloweduser"));
+    assertTrue(batchInfo.getUsersToBeCreated().contains("denieduser"));
+    assertTrue(batchInfo.getUsersToBeCreated().contains("allowedadmin"));
+    assertTrue(batchInfo.getUsersToBeRemoved().isEmpty());
+  }
+
+  @Test
+  public void testSynchronizeAllLdapGroups() throws Exception {
+    LdapBatchDto batchInfo = populator.synchronizeAllLdapGroups(new LdapBatchDto());
+
+    assertEquals(2, batchInfo.getGroupsToBeCreated().size());
+    assertTrue(batchInfo.getGroupsToBeCreated().contains("admin"));
+    assertTrue(batchInfo.getGroupsToBeCreated().contains("ambari administrators"));
+
+    assertEquals(2, batchInfo.getUsersToBeCreated().size());
+    assertTrue(batchInfo.getUsersToBeCreated().contains("alloweduser"));
+    assertTrue(batchInfo.getUsersToBeCreated().contains("allowedadmin"));
+
+    assertEquals(2, batchInfo.getMembershipToAdd().size());
+    assertTrue(batchInfo.getMembershipToAdd().contains(new LdapUserGroupMemberDto("admin", "alloweduser")));
+    assertTrue(batchInfo.getMembershipToAdd().contains(
+        new LdapUserGroupMemberDto("ambari administrators", "allowedadmin")));
+    assertTrue(batchInfo.getMembershipToRemove().isEmpty());
+  }
+
+  @Test
+  public void testSynchronizeLdapGroups() throws Exception {
+    LdapBatchDto batchInfo = populator.synchronizeLdapGroups(Collections.singleton("admin"), new LdapBatchDto());
+
+    assertEquals(Collections.singleton("admin"), batchInfo.getGroupsToBeCreated());
+    assertEquals(Collections.singleton("alloweduser"), batchInfo.getUsersToBeCreated());
+    assertEquals(Collections.singleton(new LdapUserGroupMemberDto("admin", "alloweduser")),
+        batchInfo.getMembershipToAdd());
+  }
+}
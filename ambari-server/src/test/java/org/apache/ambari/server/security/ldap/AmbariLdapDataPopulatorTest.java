@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.security.ldap;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -30,8 +31,10 @@ import java.util.Set;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.MetainfoDAO;
 import org.apache.ambari.server.orm.entities.GroupEntity;
 import org.apache.ambari.server.orm.entities.MemberEntity;
+import org.apache.ambari.server.orm.entities.MetainfoEntity;
 import org.apache.ambari.server.orm.entities.PrincipalEntity;
 import org.apache.ambari.server.orm.entities.PrivilegeEntity;
 import org.apache.ambari.server.orm.entities.UserEntity;
@@ -1553,6 +1556,164 @@ public class AmbariLdapDataPopulatorTest {
 
   private static int userIdCounter = 1;
 
+  @Test
+  public void testSynchronizeAllLdapGroups_incremental() throws Exception {
+    Group group1 = createNiceMock(Group.class);
+    Group group2 = createNiceMock(Group.class);
+    expect(group1.getGroupName()).andReturn("group1").anyTimes();
+    expect(group2.getGroupName()).andReturn("group2").anyTimes();
+    expect(group1.isLdapGroup()).andReturn(true).anyTimes();
+    expect(group2.isLdapGroup()).andReturn(true).anyTimes();
+
+    LdapServerProperties ldapServerProperties = new LdapServerProperties();
+    Configuration configuration = createNiceMock(Configuration.class);
+    expect(configuration.getLdapServerProperties()).andReturn(ldapServerProperties).anyTimes();
+    expect(configuration.isLdapSyncIncremental()).andReturn(true).anyTimes();
+    expect(configuration.getLdapSyncChangeAttribute()).andReturn("modifyTimestamp").anyTimes();
+
+    Users users = createNiceMock(Users.class);
+    expect(users.getAllGroups()).andReturn(Arrays.asList(group1, group2));
+    expect(users.getAllUsers()).andReturn(Collections.EMPTY_LIST);
+
+    MetainfoEntity highWaterMark = new MetainfoEntity();
+    highWaterMark.setMetainfoValue(Integer.toHexString(ldapServerProperties.hashCode()) +
+        ":modifyTimestamp:20150101000000Z");
+    MetainfoDAO metainfoDAO = createNiceMock(MetainfoDAO.class);
+    expect(metainfoDAO.findByKey("ldap.sync.groups.highWaterMark")).andReturn(highWaterMark);
+
+    replay(configuration, users, metainfoDAO, group1, group2);
+
+    AmbariLdapDataPopulatorTestInstance populator = createMockBuilder(AmbariLdapDataPopulatorTestInstance.class)
+        .addMockedMethod("getExternalLdapGroupInfo")
+        .addMockedMethod("refreshGroupMembers")
+        .addMockedMethod("getInternalMembers")
+        .withConstructor(configuration, users)
+        .createMock();
+    setMetainfoDAO(populator, metainfoDAO);
+
+    // unchanged since the last synchronization
+    LdapGroupDto externalGroup1 = new LdapGroupDto();
+    externalGroup1.setGroupName("group1");
+    externalGroup1.setChangeMark("20140101000000Z");
+    externalGroup1.getMemberAttributes().add("uid=user1");
+    // changed since the last synchronization
+    LdapGroupDto externalGroup2 = new LdapGroupDto();
+    externalGroup2.setGroupName("group2");
+    externalGroup2.setChangeMark("20150601000000Z");
+    // new group
+    LdapGroupDto externalGroup3 = new LdapGroupDto();
+    externalGroup3.setGroupName("group3");
+    externalGroup3.setChangeMark("20150301000000Z");
+
+    LdapBatchDto batchInfo = new LdapBatchDto();
+    expect(populator.getExternalLdapGroupInfo()).andReturn(createSet(externalGroup1, externalGroup2, externalGroup3));
+    expect(populator.getInternalMembers("group1")).andReturn(Collections.singletonMap("user1", createNiceMock(User.class)));
+    populator.refreshGroupMembers(eq(batchInfo), eq(externalGroup2), anyObject(Map.class));
+    expectLastCall();
+    populator.refreshGroupMembers(eq(batchInfo), eq(externalGroup3), anyObject(Map.class));
+    expectLastCall();
+    replay(populator);
+
+    LdapBatchDto result = populator.synchronizeAllLdapGroups(batchInfo);
+
+    assertEquals(Collections.singleton("group3"), result.getGroupsToBeCreated());
+    assertTrue(result.getGroupsToBeRemoved().isEmpty());
+    assertEquals("20150601000000Z", result.getGroupsHighWaterMark());
+    verify(populator);
+  }
+
+  @Test
+  public void testSynchronizeAllLdapGroups_incrementalMembersChanged() throws Exception {
+    Group group1 = createNiceMock(Group.class);
+    expect(group1.getGroupName()).andReturn("group1").anyTimes();
+    expect(group1.isLdapGroup()).andReturn(true).anyTimes();
+
+    LdapServerProperties ldapServerProperties = new LdapServerProperties();
+    Configuration configuration = createNiceMock(Configuration.class);
+    expect(configuration.getLdapServerProperties()).andReturn(ldapServerProperties).anyTimes();
+    expect(configuration.isLdapSyncIncremental()).andReturn(true).anyTimes();
+    expect(configuration.getLdapSyncChangeAttribute()).andReturn("uSNChanged").anyTimes();
+
+    Users users = createNiceMock(Users.class);
+    expect(users.getAllGroups()).andReturn(Arrays.asList(group1));
+    expect(users.getAllUsers()).andReturn(Collections.EMPTY_LIST);
+
+    MetainfoEntity highWaterMark = new MetainfoEntity();
+    highWaterMark.setMetainfoValue(Integer.toHexString(ldapServerProperties.hashCode()) + ":uSNChanged:1000");
+    MetainfoDAO metainfoDAO = createNiceMock(MetainfoDAO.class);
+    expect(metainfoDAO.findByKey("ldap.sync.groups.highWaterMark")).andReturn(highWaterMark);
+
+    replay(configuration, users, metainfoDAO, group1);
+
+    AmbariLdapDataPopulatorTestInstance populator = createMockBuilder(AmbariLdapDataPopulatorTestInstance.class)
+        .addMockedMethod("getExternalLdapGroupInfo")
+        .addMockedMethod("refreshGroupMembers")
+        .addMockedMethod("getInternalMembers")
+        .withConstructor(configuration, users)
+        .createMock();
+    setMetainfoDAO(populator, metainfoDAO);
+
+    // the group entry is unchanged but a member was removed in Ambari
+    LdapGroupDto externalGroup1 = new LdapGroupDto();
+    externalGroup1.setGroupName("group1");
+    externalGroup1.setChangeMark("999");
+    externalGroup1.getMemberAttributes().add("uid=user1");
+
+    LdapBatchDto batchInfo = new LdapBatchDto();
+    expect(populator.getExternalLdapGroupInfo()).andReturn(createSet(externalGroup1));
+    expect(populator.getInternalMembers("group1")).andReturn(Collections.<String, User>emptyMap());
+    populator.refreshGroupMembers(eq(batchInfo), eq(externalGroup1), anyObject(Map.class));
+    expectLastCall();
+    replay(populator);
+
+    LdapBatchDto result = populator.synchronizeAllLdapGroups(batchInfo);
+
+    assertEquals("999", result.getGroupsHighWaterMark());
+    verify(populator);
+  }
+
+  @Test
+  public void testStoreGroupsHighWaterMark() throws Exception {
+    LdapServerProperties ldapServerProperties = new LdapServerProperties();
+    Configuration configuration = createNiceMock(Configuration.class);
+    expect(configuration.getLdapServerProperties()).andReturn(ldapServerProperties).anyTimes();
+    expect(configuration.getLdapSyncChangeAttribute()).andReturn("modifyTimestamp").anyTimes();
+    Users users = createNiceMock(Users.class);
+
+    Capture<MetainfoEntity> entityCapture = new Capture<MetainfoEntity>();
+    MetainfoDAO metainfoDAO = createStrictMock(MetainfoDAO.class);
+    expect(metainfoDAO.findByKey("ldap.sync.groups.highWaterMark")).andReturn(null);
+    metainfoDAO.create(capture(entityCapture));
+    expectLastCall();
+
+    replay(configuration, users, metainfoDAO);
+
+    AmbariLdapDataPopulator populator = new AmbariLdapDataPopulator(configuration, users);
+    setMetainfoDAO(populator, metainfoDAO);
+
+    populator.storeGroupsHighWaterMark("20150601000000Z");
+
+    assertEquals("ldap.sync.groups.highWaterMark", entityCapture.getValue().getMetainfoName());
+    assertEquals(Integer.toHexString(ldapServerProperties.hashCode()) + ":modifyTimestamp:20150601000000Z",
+        entityCapture.getValue().getMetainfoValue());
+    verify(metainfoDAO);
+  }
+
+  @Test
+  public void testCompareChangeMarks() throws Exception {
+    assertTrue(AmbariLdapDataPopulator.compareChangeMarks("999", "1000") < 0);
+    assertTrue(AmbariLdapDataPopulator.compareChangeMarks("1000", "999") > 0);
+    assertEquals(0, AmbariLdapDataPopulator.compareChangeMarks("1000", "1000"));
+    assertTrue(AmbariLdapDataPopulator.compareChangeMarks("20141231235959Z", "20150101000000Z") < 0);
+    assertTrue(AmbariLdapDataPopulator.compareChangeMarks("20150101000001Z", "20150101000000Z") > 0);
+  }
+
+  private void setMetainfoDAO(AmbariLdapDataPopulator populator, MetainfoDAO metainfoDAO) throws Exception {
+    Field field = AmbariLdapDataPopulator.class.getDeclaredField("metainfoDAO");
+    field.setAccessible(true);
+    field.set(populator, metainfoDAO);
+  }
+
   private User createUser(String name, boolean ldapUser, GroupEntity group) {
     final UserEntity userEntity = new UserEntity();
     userEntity.setUserId(userIdCounter++);
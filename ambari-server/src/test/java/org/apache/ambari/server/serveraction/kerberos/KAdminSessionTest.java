@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.serveraction.kerberos;
+
+import junit.framework.Assert;
+import org.apache.ambari.server.utils.ShellCommandUtil;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+public class KAdminSessionTest {
+
+  /**
+   * A fake kadmin that reads queries from STDIN like kadmin does when no query is given on the
+   * command line.  It answers get_privs, add_principal and get_principal queries and fails the
+   * authentication of the "baduser" administrator.
+   */
+  static final String FAKE_KADMIN_SCRIPT = "#!/bin/sh\n" +
+      "set -f\n" +
+      "admin=\"\"\n" +
+      "while [ $# -gt 0 ]; do\n" +
+      "  if [ \"$1\" = \"-p\" ]; then admin=\"$2\"; fi\n" +
+      "  shift\n" +
+      "done\n" +
+      "if [ \"$admin\" = \"baduser\" ]; then\n" +
+      "  echo \"kadmin: Incorrect password while initializing kadmin interface\" >&2\n" +
+      "  exit 1\n" +
+      "fi\n" +
+      "created=\"\"\n" +
+      "echo \"Authenticating as principal $admin with password.\"\n" +
+      "printf 'kadmin:  '\n" +
+      "while read -r query; do\n" +
+      "  set -- $query\n" +
+      "  case \"$1\" in\n" +
+      "    get_privs)\n" +
+      "      echo \"current privileges: GET ADD MODIFY DELETE\" ;;\n" +
+      "    add_principal)\n" +
+      "      eval \"p=\\${$#}\"\n" +
+      "      created=\"$created $p\"\n" +
+      "      echo \"WARNING: no policy specified for $p; defaulting to no policy\" >&2\n" +
+      "      echo \"Principal \\\"$p\\\" created.\" ;;\n" +
+      "    get_principal)\n" +
+      "      case \"$created \" in\n" +
+      "        *\" $2 \"*)\n" +
+      "          echo \"Principal: $2\"\n" +
+      "          echo \"Key: vno 1, aes256-cts-hmac-sha1-96, no salt\" ;;\n" +
+      "        *)\n" +
+      "          echo \"get_principal: Principal does not exist while retrieving \\\"$2\\\".\" >&2 ;;\n" +
+      "      esac ;;\n" +
+      "    exit)\n" +
+      "      exit 0 ;;\n" +
+      "    *)\n" +
+      "      echo \"kadmin: Unknown request \\\"$1\\\".  Type \\\"?\\\" for a request list.\" >&2 ;;\n" +
+      "  esac\n" +
+      "  printf 'kadmin:  '\n" +
+      "done\n";
+
+  private File temporaryDirectory;
+  private File kadmin;
+
+  @Before
+  public void setUp() throws Exception {
+    Assume.assumeTrue(ShellCommandUtil.UNIX_LIKE);
+
+    temporaryDirectory = File.createTempFile("ambari_ut_", ".d");
+    Assert.assertTrue(temporaryDirectory.delete());
+    Assert.assertTrue(temporaryDirectory.mkdirs());
+
+    kadmin = createFakeKAdmin(temporaryDirectory);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (temporaryDirectory != null) {
+      if (kadmin != null) {
+        kadmin.delete();
+      }
+      temporaryDirectory.delete();
+    }
+  }
+
+  @Test
+  public void testExecute() throws Exception {
+    KAdminSession session = new KAdminSession(new String[]{kadmin.getAbsolutePath(), "-p", "admin/admin"});
+
+    try {
+      ShellCommandUtil.Result result = session.execute("get_principal user1@EXAMPLE.COM");
+      Assert.assertEquals(0, result.getExitCode());
+      Assert.assertEquals("", result.getStdout());
+      Assert.assertTrue(result.getStderr().contains("Principal does not exist"));
+
+      result = session.execute("add_principal -pw secret user1@EXAMPLE.COM");
+      Assert.assertEquals("Principal \"user1@EXAMPLE.COM\" created.", result.getStdout());
+      Assert.assertTrue(result.getStderr().contains("no policy specified"));
+
+      result = session.execute("get_principal user1@EXAMPLE.COM");
+      Assert.assertEquals("Principal: user1@EXAMPLE.COM\nKey: vno 1, aes256-cts-hmac-sha1-96, no salt",
+          result.getStdout());
+      Assert.assertEquals("", result.getStderr());
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testExecuteMultipleLines() throws Exception {
+    KAdminSession session = new KAdminSession(new String[]{kadmin.getAbsolutePath(), "-p", "admin/admin"});
+
+    try {
+      session.execute("get_principal user1@EXAMPLE.COM\ndelete_principal -force user1@EXAMPLE.COM");
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test
+  public void testAuthenticationFailure() throws Exception {
+    try {
+      new KAdminSession(new String[]{kadmin.getAbsolutePath(), "-p", "baduser"});
+      Assert.fail("IOException not thrown for failed authentication");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("Incorrect password while initializing"));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testProcessEnded() throws Exception {
+    KAdminSession session = new KAdminSession(new String[]{kadmin.getAbsolutePath(), "-p", "admin/admin"});
+
+    try {
+      session.execute("exit");
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testClosed() throws Exception {
+    KAdminSession session = new KAdminSession(new String[]{kadmin.getAbsolutePath(), "-p", "admin/admin"});
+    session.close();
+    session.execute("get_principal user1@EXAMPLE.COM");
+  }
+
+  /**
+   * Writes the fake kadmin script to the specified directory.
+   *
+   * @param directory the directory to write the script to
+   * @return the executable script, named kadmin
+   */
+  static File createFakeKAdmin(File directory) throws IOException {
+    File script = new File(directory, "kadmin");
+    FileWriter writer = new FileWriter(script);
+    try {
+      writer.write(FAKE_KADMIN_SCRIPT);
+    } finally {
+      writer.close();
+    }
+    Assert.assertTrue(script.setExecutable(true));
+    return script;
+  }
+}
@@ -30,11 +30,17 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public abstract class KerberosOperationHandlerTest extends EasyMockSupport {
 
@@ -114,6 +120,49 @@ public abstract class KerberosOperationHandlerTest extends EasyMockSupport {
     Assert.assertEquals(count * 2, entries.size());
   }
 
+  @Test
+  public void testCreateKeytabFileConcurrently() throws Exception {
+    // Two principals sharing one keytab file, written by different handlers on different threads
+    final KerberosOperationHandler handler1 = createHandler();
+    final KerberosOperationHandler handler2 = createHandler();
+    final String principal1 = "principal1@REALM.COM";
+    final String principal2 = "principal2@REALM.COM";
+
+    for (int i = 0; i < 20; i++) {
+      final File file = folder.newFile();
+      final CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+        Future<Boolean> future1 = executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            start.await();
+            return handler1.createKeytabFile(principal1, handler1.createSecurePassword(), 0, file);
+          }
+        });
+        Future<Boolean> future2 = executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            start.await();
+            return handler2.createKeytabFile(principal2, handler2.createSecurePassword(), 0, file);
+          }
+        });
+        start.countDown();
+
+        Assert.assertTrue(future1.get());
+        Assert.assertTrue(future2.get());
+      } finally {
+        executor.shutdownNow();
+      }
+
+      Set<String> principals = new HashSet<String>();
+      for (KeytabEntry entry : Keytab.read(file).getEntries()) {
+        principals.add(entry.getPrincipalName());
+      }
+      Assert.assertEquals(new HashSet<String>(Arrays.asList(principal1, principal2)), principals);
+    }
+  }
+
   @Test
   public void testEnsureKeytabFileContainsNoDuplicates() throws Exception {
     KerberosOperationHandler handler = createHandler();
@@ -27,6 +27,7 @@ import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.agent.CommandReport;
 import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.junit.After;
@@ -36,6 +37,7 @@ import org.junit.Test;
 import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -46,6 +48,7 @@ import static org.mockito.Mockito.when;
 public class KerberosServerActionTest {
 
   Map<String, String> commandParams = new HashMap<String, String>();
+  Properties properties = new Properties();
   File temporaryDirectory;
   private Injector injector;
   private KerberosServerAction action;
@@ -89,6 +92,7 @@ public class KerberosServerActionTest {
         });
 
         bind(Clusters.class).toInstance(clusters);
+        bind(Configuration.class).toInstance(new Configuration(properties));
       }
     });
 
@@ -198,6 +202,38 @@ public class KerberosServerActionTest {
     Assert.assertEquals(HostRoleStatus.FAILED.toString(), report.getStatus());
   }
 
+  @Test
+  public void testProcessIdentitiesInParallel() throws Exception {
+    properties.setProperty(Configuration.KERBEROS_OPERATION_THREADS_KEY, "4");
+
+    ConcurrentMap<String, Object> sharedMap = new ConcurrentHashMap<String, Object>();
+    CommandReport report = action.processIdentities(sharedMap);
+    Assert.assertNotNull(report);
+    Assert.assertEquals(HostRoleStatus.COMPLETED.toString(), report.getStatus());
+
+    int processed = 0;
+    for (Map.Entry<String, Object> entry : sharedMap.entrySet()) {
+      if (entry.getKey().startsWith("principal|")) {
+        Assert.assertEquals(entry.getValue(),
+            entry.getKey().replace("_HOST", "hostName").replace("_REALM", "REALM.COM"));
+        processed++;
+      }
+    }
+    Assert.assertEquals(10, processed);
+  }
+
+  @Test
+  public void testProcessIdentitiesInParallelFail() throws Exception {
+    properties.setProperty(Configuration.KERBEROS_OPERATION_THREADS_KEY, "4");
+
+    ConcurrentMap<String, Object> sharedMap = new ConcurrentHashMap<String, Object>();
+    sharedMap.put("FAIL", "true");
+
+    CommandReport report = action.processIdentities(sharedMap);
+    Assert.assertNotNull(report);
+    Assert.assertEquals(HostRoleStatus.FAILED.toString(), report.getStatus());
+  }
+
   @Test
   public void testGetAdministrativeCredentials() throws AmbariException {
     KerberosCredential credentials = action.getAdministratorCredential(commandParams);
@@ -28,12 +28,16 @@ import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.utils.ShellCommandUtil;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
+import org.junit.Assume;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.expect;
@@ -440,6 +444,84 @@ public class MITKerberosOperationHandlerTest extends KerberosOperationHandlerTes
     handler.close();
   }
 
+  @Test
+  public void testKAdminSession() throws Exception {
+    Assume.assumeTrue(ShellCommandUtil.UNIX_LIKE);
+
+    File temporaryDirectory = createTemporaryDirectory();
+    final File kadmin = KAdminSessionTest.createFakeKAdmin(temporaryDirectory);
+    final AtomicInteger sessionCount = new AtomicInteger();
+
+    MITKerberosOperationHandler handler = new MITKerberosOperationHandler() {
+      @Override
+      protected KAdminSession createKAdminSession(String[] command) throws IOException {
+        sessionCount.incrementAndGet();
+        command[0] = kadmin.getAbsolutePath();
+        return super.createKAdminSession(command);
+      }
+
+      @Override
+      protected ShellCommandUtil.Result executeCommand(String[] command) throws KerberosOperationException {
+        Assert.fail("kadmin invoked outside of the kadmin session");
+        return null;
+      }
+    };
+
+    setConfiguration(handler, "redhat6", true);
+
+    try {
+      handler.open(new KerberosCredential(DEFAULT_ADMIN_PRINCIPAL, DEFAULT_ADMIN_PASSWORD, null), DEFAULT_REALM, KERBEROS_ENV_MAP);
+
+      Assert.assertFalse(handler.principalExists("user1@EXAMPLE.COM"));
+      Assert.assertEquals(Integer.valueOf(1), handler.createPrincipal("user1@EXAMPLE.COM", "secret", false));
+      Assert.assertTrue(handler.principalExists("user1@EXAMPLE.COM"));
+      handler.close();
+
+      Assert.assertEquals(1, sessionCount.get());
+    } finally {
+      kadmin.delete();
+      temporaryDirectory.delete();
+    }
+  }
+
+  @Test(expected = KerberosAdminAuthenticationException.class)
+  public void testKAdminSessionFallback() throws Exception {
+    Assume.assumeTrue(ShellCommandUtil.UNIX_LIKE);
+
+    File temporaryDirectory = createTemporaryDirectory();
+    final File kadmin = KAdminSessionTest.createFakeKAdmin(temporaryDirectory);
+    final AtomicInteger commandCount = new AtomicInteger();
+
+    MITKerberosOperationHandler handler = new MITKerberosOperationHandler() {
+      @Override
+      protected KAdminSession createKAdminSession(String[] command) throws IOException {
+        command[0] = kadmin.getAbsolutePath();
+        return super.createKAdminSession(command);
+      }
+
+      @Override
+      protected ShellCommandUtil.Result executeCommand(String[] command) throws KerberosOperationException {
+        commandCount.incrementAndGet();
+        return new ShellCommandUtil.Result(1, "",
+            "kadmin: Incorrect password while initializing kadmin interface\n");
+      }
+    };
+
+    setConfiguration(handler, "redhat6", true);
+
+    try {
+      // The kadmin session fails to authenticate, so kadmin is invoked for the query to find out why
+      handler.open(new KerberosCredential("baduser", DEFAULT_ADMIN_PASSWORD, null), DEFAULT_REALM, KERBEROS_ENV_MAP);
+      handler.principalExists("user1@EXAMPLE.COM");
+    } finally {
+      Assert.assertEquals(1, commandCount.get());
+
+      handler.close();
+      kadmin.delete();
+      temporaryDirectory.delete();
+    }
+  }
+
   @Test
   @Ignore
   public void testTestAdministratorCredentialsLive() throws KerberosOperationException {
@@ -468,10 +550,25 @@ public class MITKerberosOperationHandlerTest extends KerberosOperationHandlerTes
   }
 
   private static void setConfiguration(MITKerberosOperationHandler handler, String osType) throws Exception {
+    setConfiguration(handler, osType, false);
+  }
+
+  private static void setConfiguration(MITKerberosOperationHandler handler, String osType,
+                                       boolean kadminSessionEnabled) throws Exception {
     Configuration configuration = EasyMock.createNiceMock(Configuration.class);
     expect(configuration.getServerOsFamily()).andReturn("redhat6").anyTimes();
+    expect(configuration.isKerberosKAdminSessionEnabled()).andReturn(kadminSessionEnabled).anyTimes();
     replay(configuration);
 
     handler.init(configuration);
   }
+
+  private static File createTemporaryDirectory() throws IOException {
+    File temporaryDirectory = File.createTempFile("ambari_ut_", ".d");
+
+    Assert.assertTrue(temporaryDirectory.delete());
+    Assert.assertTrue(temporaryDirectory.mkdirs());
+
+    return temporaryDirectory;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.stack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.ambari.server.state.ComponentInfo;
+import org.apache.ambari.server.state.PropertyInfo;
+import org.apache.ambari.server.state.PropertyInfo.PropertyType;
+import org.apache.ambari.server.state.ServiceInfo;
+import org.apache.ambari.server.state.StackInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * StackIndex unit tests.
+ */
+public class StackIndexTest {
+
+  private PropertyInfo hdfsUser;
+  private PropertyInfo nameDir;
+  private PropertyInfo smokeUser;
+  private StackIndex index;
+
+  @Before
+  public void setup() {
+    hdfsUser = createProperty("hdfs_user", "hadoop-env.xml", PropertyType.USER);
+    nameDir = createProperty("dfs.namenode.name.dir", "hdfs-site.xml", null);
+    smokeUser = createProperty("smokeuser", "cluster-env.xml", PropertyType.USER);
+
+    ServiceInfo hdfs = createService("HDFS", "NAMENODE", "DATANODE");
+    hdfs.getProperties().add(hdfsUser);
+    hdfs.getProperties().add(nameDir);
+    ServiceInfo zookeeper = createService("ZOOKEEPER", "ZOOKEEPER_SERVER");
+
+    StackInfo stack = new StackInfo();
+    stack.setName("HDP");
+    stack.setVersion("2.2");
+    stack.getServices().add(hdfs);
+    stack.getServices().add(zookeeper);
+    stack.getProperties().add(smokeUser);
+
+    index = new StackIndex(stack);
+  }
+
+  @Test
+  public void testGetServiceForComponent() {
+    assertEquals("HDFS", index.getServiceForComponent("NAMENODE"));
+    assertEquals("HDFS", index.getServiceForComponent("DATANODE"));
+    assertEquals("ZOOKEEPER", index.getServiceForComponent("ZOOKEEPER_SERVER"));
+    assertNull(index.getServiceForComponent("HBASE_MASTER"));
+  }
+
+  @Test
+  public void testPropertiesByName() {
+    assertEquals(Collections.singleton(nameDir),
+        index.getServicePropertiesByName("HDFS", "dfs.namenode.name.dir"));
+    assertTrue(index.getServicePropertiesByName("ZOOKEEPER", "dfs.namenode.name.dir").isEmpty());
+    assertTrue(index.getServicePropertiesByName("HBASE", "dfs.namenode.name.dir").isEmpty());
+    assertEquals(Collections.singleton(smokeUser), index.getStackPropertiesByName("smokeuser"));
+    assertTrue(index.getStackPropertiesByName("hdfs_user").isEmpty());
+
+    assertTrue(index.hasService("ZOOKEEPER"));
+    assertFalse(index.hasService("HBASE"));
+    assertTrue(index.hasServiceProperties("HDFS"));
+    assertFalse(index.hasServiceProperties("ZOOKEEPER"));
+    assertTrue(index.hasStackProperties());
+  }
+
+  @Test
+  public void testPropertiesByType() {
+    assertEquals(Collections.singleton(hdfsUser),
+        index.getServicePropertiesByType("HDFS", PropertyType.USER));
+    assertTrue(index.getServicePropertiesByType("HDFS", PropertyType.PASSWORD).isEmpty());
+    assertEquals(Collections.singleton(smokeUser), index.getStackPropertiesByType(PropertyType.USER));
+  }
+
+  @Test
+  public void testPropertiesByConfigType() {
+    assertEquals(Collections.singleton(nameDir), index.getPropertiesByConfigType("hdfs-site"));
+    assertEquals(Collections.singleton(smokeUser), index.getPropertiesByConfigType("cluster-env"));
+    assertTrue(index.getPropertiesByConfigType("core-site").isEmpty());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testImmutable() {
+    Set<PropertyInfo> properties = index.getServicePropertiesByName("HDFS", "hdfs_user");
+    properties.clear();
+  }
+
+  private static ServiceInfo createService(String name, String... componentNames) {
+    ServiceInfo service = new ServiceInfo();
+    service.setName(name);
+    for (String componentName : componentNames) {
+      ComponentInfo component = new ComponentInfo();
+      component.setName(componentName);
+      service.getComponents().add(component);
+    }
+    return service;
+  }
+
+  private static PropertyInfo createProperty(String name, String filename, PropertyType propertyType) {
+    PropertyInfo property = new PropertyInfo();
+    property.setName(name);
+    property.setFilename(filename);
+    property.setValue(name + "-value");
+    if (propertyType != null) {
+      property.getPropertyTypes().add(propertyType);
+    }
+    return property;
+  }
+}
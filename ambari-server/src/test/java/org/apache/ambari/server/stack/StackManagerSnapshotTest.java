@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.stack;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Collections;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metadata.ActionMetadata;
+import org.apache.ambari.server.orm.dao.MetainfoDAO;
+import org.apache.ambari.server.state.PropertyInfo;
+import org.apache.ambari.server.state.ServiceInfo;
+import org.apache.ambari.server.state.StackInfo;
+import org.apache.ambari.server.state.stack.OsFamily;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests loading the stacks from a stack snapshot.
+ */
+public class StackManagerSnapshotTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testLoadFromSnapshot() throws Exception {
+    File stackRoot = new File(ClassLoader.getSystemClassLoader().getResource("stacks").getPath());
+    File snapshotFile = new File(temporaryFolder.getRoot(), "stacks.snapshot");
+
+    StackContext parsedContext = createStackContext();
+    StackManager parsed = new StackManager(stackRoot, null, parsedContext, 2, snapshotFile);
+    assertTrue(snapshotFile.isFile());
+
+    StackContext loadedContext = createStackContext();
+    StackManager loaded = new StackManager(stackRoot, null, loadedContext, 2, snapshotFile);
+
+    assertEquals(parsed.getStacks().size(), loaded.getStacks().size());
+    assertEquals(parsedContext.getRegisteredServiceChecks(), loadedContext.getRegisteredServiceChecks());
+    for (StackInfo parsedStack : parsed.getStacks()) {
+      StackInfo loadedStack = loaded.getStack(parsedStack.getName(), parsedStack.getVersion());
+      assertNotNull(loadedStack);
+      assertEquals(parsedStack.getServices().size(), loadedStack.getServices().size());
+      assertEquals(parsedStack.getProperties().size(), loadedStack.getProperties().size());
+      assertEquals(parsedStack.getRepositories().size(), loadedStack.getRepositories().size());
+      assertEquals(parsedStack.getParentStackVersion(), loadedStack.getParentStackVersion());
+      assertEquals(parsedStack.getUpgradePacks() == null ? null : parsedStack.getUpgradePacks().keySet(),
+          loadedStack.getUpgradePacks() == null ? null : loadedStack.getUpgradePacks().keySet());
+
+      for (ServiceInfo parsedService : parsedStack.getServices()) {
+        ServiceInfo loadedService = loadedStack.getService(parsedService.getName());
+        assertNotNull(loadedService);
+        assertEquals(parsedService.getComponents().size(), loadedService.getComponents().size());
+        assertEquals(parsedService.getProperties().size(), loadedService.getProperties().size());
+        for (PropertyInfo parsedProperty : parsedService.getProperties()) {
+          PropertyInfo loadedProperty = findProperty(loadedService, parsedProperty);
+          assertNotNull(loadedProperty);
+          assertEquals(parsedProperty.getAttributesMap(), loadedProperty.getAttributesMap());
+          assertEquals(parsedProperty.getPropertyTypes(), loadedProperty.getPropertyTypes());
+        }
+      }
+    }
+
+    StackInfo stack = loaded.getStack("HDP", "2.1.1");
+    assertNotNull(stack.getUpgradePacks());
+    assertFalse(loaded.getStack("HDP", "0.1").getRepositories().isEmpty());
+  }
+
+  @Test
+  public void testSnapshotOfChangedStackDefinition() throws Exception {
+    File stackRoot = temporaryFolder.newFolder("stacks");
+    File metainfo = new File(stackRoot, "metainfo.xml");
+    write(metainfo, "<metainfo/>");
+    File snapshotFile = new File(temporaryFolder.getRoot(), "stacks.snapshot");
+
+    new StackSnapshot(snapshotFile, stackRoot, null).write(new StackSnapshot.Contents(
+        Collections.<String, StackInfo>emptyMap(), Collections.singleton("HDFS")));
+
+    StackSnapshot.Contents contents = new StackSnapshot(snapshotFile, stackRoot, null).read();
+    assertNotNull(contents);
+    assertEquals(Collections.singletonList("HDFS"), contents.getServiceChecks());
+
+    write(metainfo, "<metainfo><versions/></metainfo>");
+    assertNull(new StackSnapshot(snapshotFile, stackRoot, null).read());
+  }
+
+  private static PropertyInfo findProperty(ServiceInfo service, PropertyInfo property) {
+    for (PropertyInfo candidate : service.getProperties()) {
+      if (candidate.equals(property)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  private static StackContext createStackContext() throws Exception {
+    MetainfoDAO dao = createNiceMock(MetainfoDAO.class);
+    ActionMetadata actionMetadata = createNiceMock(ActionMetadata.class);
+    Configuration config = createNiceMock(Configuration.class);
+    expect(config.getSharedResourcesDirPath()).andReturn(
+        ClassLoader.getSystemClassLoader().getResource("").getPath()).anyTimes();
+    replay(config, dao, actionMetadata);
+    return new StackContext(dao, actionMetadata, new OsFamily(config));
+  }
+
+  private static void write(File file, String content) throws Exception {
+    FileWriter writer = new FileWriter(file);
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.stack;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.io.File;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metadata.ActionMetadata;
+import org.apache.ambari.server.orm.dao.MetainfoDAO;
+import org.apache.ambari.server.state.stack.OsFamily;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares the time taken to load the stack definitions by parsing them on a
+ * single thread, by parsing them in parallel and by reading them from a
+ * {@link StackSnapshot}, using the test stacks.
+ */
+@Ignore
+public class StackManagerStartupPerformanceTest {
+
+  private static final int ITERATIONS = 5;
+
+  @Test
+  public void testLoadStacks() throws Exception {
+    File stackRoot = new File(
+        ClassLoader.getSystemClassLoader().getResource("stacks").getPath());
+    File commonServicesRoot = null;
+
+    File snapshotFile = File.createTempFile("stacks", ".snapshot");
+    snapshotFile.deleteOnExit();
+
+    int parallelism = Runtime.getRuntime().availableProcessors();
+    System.out.println("loading stacks from " + stackRoot + ", " + parallelism + " processors");
+
+    // the first iteration warms up the JIT
+    for (int i = 0; i <= ITERATIONS; i++) {
+      long start = System.nanoTime();
+      StackManager stackManager = new StackManager(stackRoot, commonServicesRoot,
+          createStackContext(), 1, null);
+      long serial = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      new StackManager(stackRoot, commonServicesRoot, createStackContext(), parallelism, null);
+      long parallel = System.nanoTime() - start;
+
+      // write the snapshot outside of the timed section
+      snapshotFile.delete();
+      new StackManager(stackRoot, commonServicesRoot, createStackContext(), parallelism, snapshotFile);
+
+      start = System.nanoTime();
+      new StackManager(stackRoot, commonServicesRoot, createStackContext(), parallelism, snapshotFile);
+      long snapshot = System.nanoTime() - start;
+
+      if (i > 0) {
+        System.out.println(String.format("iteration %d: %d stacks, parse serial %.1f ms, " +
+            "parallel %.1f ms, snapshot %.1f ms (%d KB)",
+            i, stackManager.getStacks().size(), serial / 1e6, parallel / 1e6,
+            snapshot / 1e6, snapshotFile.length() / 1024));
+      }
+    }
+  }
+
+  private static StackContext createStackContext() {
+    MetainfoDAO dao = createNiceMock(MetainfoDAO.class);
+    ActionMetadata actionMetadata = createNiceMock(ActionMetadata.class);
+    Configuration config = createNiceMock(Configuration.class);
+    expect(config.getSharedResourcesDirPath()).andReturn(
+        ClassLoader.getSystemClassLoader().getResource("").getPath()).anyTimes();
+    replay(config, dao, actionMetadata);
+    return new StackContext(dao, actionMetadata, new OsFamily(config));
+  }
+}
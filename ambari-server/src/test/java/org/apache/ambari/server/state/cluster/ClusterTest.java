@@ -795,6 +795,52 @@ public class ClusterTest {
     Assert.assertEquals("Expect one host-level override", 1, dc.getHostOverrides().size());
   }
 
+  @Test
+  public void testDesiredConfigsSnapshot() throws Exception {
+    createDefaultCluster();
+
+    Config config1 = configFactory.createNew(c1, "global",
+        new HashMap<String, String>() {{ put("a", "b"); }}, new HashMap<String, Map<String,String>>());
+    config1.setTag("version1");
+
+    Config config2 = configFactory.createNew(c1, "global",
+        new HashMap<String, String>() {{ put("x", "y"); }}, new HashMap<String, Map<String,String>>());
+    config2.setTag("version2");
+
+    c1.addConfig(config1);
+    c1.addConfig(config2);
+
+    c1.addDesiredConfig("_test1", Collections.singleton(config1));
+    long version = c1.getDesiredConfigsVersion();
+
+    // unchanged desired configs are shared between calls
+    Map<String, DesiredConfig> desiredConfigs = c1.getDesiredConfigs();
+    Assert.assertSame(desiredConfigs, c1.getDesiredConfigs());
+    Assert.assertEquals(version, c1.getDesiredConfigsVersion());
+    Assert.assertEquals("version1", c1.getDesiredConfigByType("global").getTag());
+
+    try {
+      desiredConfigs.remove("global");
+      fail("Expected the desired configs to be unmodifiable");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    c1.addDesiredConfig("_test2", Collections.singleton(config2));
+    Assert.assertTrue(c1.getDesiredConfigsVersion() > version);
+    Assert.assertNotSame(desiredConfigs, c1.getDesiredConfigs());
+    Assert.assertEquals("version2", c1.getDesiredConfigs().get("global").getTag());
+    Assert.assertEquals("version2", c1.getDesiredConfigByType("global").getTag());
+
+    // the previous snapshot is not modified
+    Assert.assertEquals("version1", desiredConfigs.get("global").getTag());
+
+    version = c1.getDesiredConfigsVersion();
+    clusters.getHost("h1").addDesiredConfig(c1.getClusterId(), true, "_test2", config1);
+    Assert.assertTrue(c1.getDesiredConfigsVersion() > version);
+    Assert.assertEquals(1, c1.getDesiredConfigs().get("global").getHostOverrides().size());
+  }
+
   @Test
   public void testClusterRecovery() throws AmbariException {
     ClusterEntity entity = createDummyData();
@@ -29,6 +29,7 @@ import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.ServiceComponentNotFoundException;
 import org.apache.ambari.server.ServiceNotFoundException;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.ServiceComponentHostResponse;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
@@ -62,6 +63,7 @@ import org.apache.ambari.server.state.State;
 import org.apache.ambari.server.state.configgroup.ConfigGroup;
 import org.apache.ambari.server.state.configgroup.ConfigGroupFactory;
 import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
+import org.easymock.EasyMock;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -102,7 +104,11 @@ public class ServiceComponentHostTest {
 
   @Before
   public void setup() throws Exception {
-    injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    setup(new InMemoryDefaultTestModule());
+  }
+
+  private void setup(InMemoryDefaultTestModule module) throws Exception {
+    injector = Guice.createInjector(module);
     injector.getInstance(GuiceJpaInitializer.class);
     injector.injectMembers(this);
     clusters.addCluster("C1");
@@ -198,6 +204,111 @@ public class ServiceComponentHostTest {
     createNewServiceComponentHost("HDFS", "HDFS_CLIENT", "h1", true);
   }
 
+  @Test
+  public void testWriteBehind() throws Exception {
+    teardown();
+
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(
+        Configuration.HOST_COMPONENT_WRITE_BEHIND_ENABLED_KEY, "true");
+    setup(module);
+
+    ServiceComponentHostStateWriter stateWriter =
+        injector.getInstance(ServiceComponentHostStateWriter.class);
+    HostComponentStateDAO stateDAO = injector.getInstance(HostComponentStateDAO.class);
+
+    ServiceComponentHost sch = createNewServiceComponentHost("HDFS", "DATANODE", "h1", false);
+
+    sch.setState(State.INSTALLING);
+    sch.setState(State.INSTALLED);
+    sch.setVersion("2.2.0.0-1");
+    sch.setSecurityState(SecurityState.SECURED_KERBEROS);
+
+    // the changes are coalesced and visible before they are written
+    Assert.assertEquals(1, stateWriter.getDirtyCount());
+    Assert.assertEquals(State.INSTALLED, sch.getState());
+    Assert.assertEquals("2.2.0.0-1", sch.getVersion());
+    Assert.assertEquals(SecurityState.SECURED_KERBEROS, sch.getSecurityState());
+
+    Assert.assertEquals(1, stateWriter.flush());
+    Assert.assertEquals(0, stateWriter.getDirtyCount());
+    Assert.assertEquals(0, stateWriter.flush());
+
+    // a flush with nothing dirty is not counted
+    Assert.assertEquals(1, stateWriter.getFlushCount());
+    Assert.assertEquals(1, stateWriter.getWrittenCount());
+    Assert.assertEquals(stateWriter.getLastFlushTime(), stateWriter.getMaxFlushTime());
+
+    HostComponentStateEntityPK pk = new HostComponentStateEntityPK();
+    pk.setClusterId(sch.getClusterId());
+    pk.setServiceName("HDFS");
+    pk.setComponentName("DATANODE");
+    pk.setHostName("h1");
+
+    entityManagerProvider.get().clear();
+    HostComponentStateEntity stateEntity = stateDAO.findByPK(pk);
+    Assert.assertEquals(State.INSTALLED, stateEntity.getCurrentState());
+    Assert.assertEquals("2.2.0.0-1", stateEntity.getVersion());
+    Assert.assertEquals(SecurityState.SECURED_KERBEROS, stateEntity.getSecurityState());
+  }
+
+  @Test
+  public void testWriteBehindFailedFlush() throws Exception {
+    teardown();
+
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(
+        Configuration.HOST_COMPONENT_WRITE_BEHIND_ENABLED_KEY, "true");
+    setup(module);
+
+    ServiceComponentHostStateWriter stateWriter =
+        injector.getInstance(ServiceComponentHostStateWriter.class);
+
+    ServiceComponentHostImpl sch = (ServiceComponentHostImpl)
+        createNewServiceComponentHost("HDFS", "DATANODE", "h1", false);
+    HostComponentStateDAO stateDAO = sch.hostComponentStateDAO;
+
+    HostComponentStateDAO failingDAO = EasyMock.createNiceMock(HostComponentStateDAO.class);
+    EasyMock.expect(failingDAO.merge(EasyMock.anyObject(HostComponentStateEntity.class)))
+        .andThrow(new RuntimeException("merge failed"));
+    EasyMock.replay(failingDAO);
+    sch.hostComponentStateDAO = failingDAO;
+
+    sch.setState(State.INSTALLING);
+    sch.setVersion("2.2.0.0-1");
+
+    try {
+      stateWriter.flush();
+      Assert.fail("Expected the flush to fail");
+    } catch (RuntimeException e) {
+      // expected
+    }
+
+    // the changes are still pending and are not replaced by the stored state
+    Assert.assertEquals(1, stateWriter.getDirtyCount());
+    Assert.assertEquals(1, stateWriter.getFlushCount());
+    Assert.assertEquals(0, stateWriter.getWrittenCount());
+    Assert.assertEquals(State.INSTALLING, sch.getState());
+    Assert.assertEquals("2.2.0.0-1", sch.getVersion());
+
+    sch.hostComponentStateDAO = stateDAO;
+    Assert.assertEquals(1, stateWriter.flush());
+    Assert.assertEquals(0, stateWriter.getDirtyCount());
+    Assert.assertEquals(2, stateWriter.getFlushCount());
+    Assert.assertEquals(1, stateWriter.getWrittenCount());
+
+    HostComponentStateEntityPK pk = new HostComponentStateEntityPK();
+    pk.setClusterId(sch.getClusterId());
+    pk.setServiceName("HDFS");
+    pk.setComponentName("DATANODE");
+    pk.setHostName("h1");
+
+    entityManagerProvider.get().clear();
+    HostComponentStateEntity stateEntity = stateDAO.findByPK(pk);
+    Assert.assertEquals(State.INSTALLING, stateEntity.getCurrentState());
+    Assert.assertEquals("2.2.0.0-1", stateEntity.getVersion());
+  }
+
   private ServiceComponentHostEvent createEvent(ServiceComponentHostImpl impl,
       long timestamp, ServiceComponentHostEventType eventType)
       throws AmbariException {
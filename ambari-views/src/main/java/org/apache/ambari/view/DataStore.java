@@ -19,6 +19,8 @@
 package org.apache.ambari.view;
 
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * View data store.
@@ -35,6 +37,17 @@ public interface DataStore {
    */
   public void store(Object entity) throws PersistenceException;
 
+  /**
+   * Save the given entities to persistent storage in a single transaction.  Either
+   * all of the entities are persisted or none of them are.  Each entity must be
+   * declared as an <entity> in the <persistence> element of the view.xml.
+   *
+   * @param entities  the entities to be persisted.
+   *
+   * @throws PersistenceException thrown if the given entities can not be persisted
+   */
+  public void storeAll(Collection<?> entities) throws PersistenceException;
+
   /**
    * Remove the given entity from persistent storage.
    *
@@ -44,6 +57,16 @@ public interface DataStore {
    */
   public void remove(Object entity) throws PersistenceException;
 
+  /**
+   * Remove the given entities from persistent storage in a single transaction.  Either
+   * all of the entities are removed or none of them are.
+   *
+   * @param entities  the entities to be removed.
+   *
+   * @throws PersistenceException thrown if the given entities can not be removed
+   */
+  public void removeAll(Collection<?> entities) throws PersistenceException;
+
   /**
    * Find the entity of the given class type that is uniquely identified by the
    * given primary key.
@@ -72,4 +95,47 @@ public interface DataStore {
    * @throws PersistenceException
    */
   public <T> Collection<T> findAll(Class<T> clazz, String whereClause) throws PersistenceException;
+
+  /**
+   * Find a range of the entities for the given where clause in the given order.
+   * Specifying null for the where clause should select all entities of the given
+   * class type.  The order by clause is a comma separated list of entity property
+   * names, each optionally followed by ASC or DESC.
+   *
+   * @param clazz          the entity class
+   * @param whereClause    the where clause; may be null
+   * @param orderByClause  the order by clause; may be null
+   * @param offset         the position of the first entity to return
+   * @param limit          the maximum number of entities to return; a negative
+   *                       value for no limit
+   * @param <T>            the entity type
+   *
+   * @return the entities in the given order; empty list if no entities can be found
+   *
+   * @throws PersistenceException thrown if an error occurs trying to find the entities
+   */
+  public <T> List<T> findAll(Class<T> clazz, String whereClause, String orderByClause,
+                             int offset, int limit) throws PersistenceException;
+
+  /**
+   * Iterate over the entities for the given where clause in the given order
+   * without loading all of them at once.  The entities are read from storage a
+   * page at a time as the iterator advances, so entities that are stored or
+   * removed while iterating may or may not be returned.  The iterator does not hold
+   * any resources between pages and does not need to be exhausted.  An error
+   * reading a page is thrown from the iterator as an {@link IllegalStateException}
+   * caused by a {@link PersistenceException}.
+   *
+   * @param clazz          the entity class
+   * @param whereClause    the where clause; may be null
+   * @param orderByClause  the order by clause; may be null
+   * @param <T>            the entity type
+   *
+   * @return an iterator over the entities; empty iterator if the entity class is
+   *         not declared as an entity of the view
+   *
+   * @throws PersistenceException thrown if the data store can not be initialized
+   */
+  public <T> Iterator<T> iterate(Class<T> clazz, String whereClause, String orderByClause)
+      throws PersistenceException;
 }
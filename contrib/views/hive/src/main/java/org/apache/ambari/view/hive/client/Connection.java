@@ -34,9 +34,13 @@ import org.slf4j.LoggerFactory;
 import javax.security.sasl.Sasl;
 import javax.security.sasl.SaslException;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Holds session
@@ -48,13 +52,24 @@ public class Connection {
   private int port;
   private Map<String, String> authParams;
 
-  private TCLIService.Client client = null;
+  private TCLIService.Iface client = null;
   private TSessionHandle sessHandle = null;
   private TProtocolVersion protocol = null;
   private TTransport transport;
 
   private DDLDelegator ddl;
 
+  /**
+   * Asynchronous operations started in the session whose end was not seen yet
+   */
+  private final Set<TOperationHandle> runningOperations =
+      Collections.synchronizedSet(new HashSet<TOperationHandle>());
+
+  /**
+   * Number of result blocks fetched by cursors of the session
+   */
+  private final AtomicLong fetchCount = new AtomicLong();
+
   public Connection(String host, int port, Map<String, String> authParams) throws HiveClientException {
     this.host = host;
     this.port = port;
@@ -64,11 +79,30 @@ public class Connection {
     ddl = new DDLDelegator(this);
   }
 
+  /**
+   * Opens a session with a client that is not backed by a transport of this
+   * connection, such as a stub of the Thrift service.
+   * @param client Thrift client
+   * @throws HiveClientException
+   */
+  Connection(TCLIService.Iface client) throws HiveClientException {
+    this.client = client;
+    this.authParams = new HashMap<String, String>();
+
+    openSession();
+    ddl = new DDLDelegator(this);
+  }
+
   public DDLDelegator ddl() {
     return ddl;
   }
 
   public synchronized void openConnection() throws HiveClientException {
+    if (client != null && transport == null) {
+      // the client was given to the connection, only the session is reopened
+      openSession();
+      return;
+    }
     try {
       transport = getTransport();
       transport.open();
@@ -225,11 +259,14 @@ public class Connection {
     } catch (HiveClientException e) {
       LOG.error("Unable to close Hive session: " + e.getMessage());
     } finally {
-      transport.close();
-      transport = null;
-      client = null;
+      if (transport != null) {
+        transport.close();
+        transport = null;
+        client = null;
+      }
       sessHandle = null;
       protocol = null;
+      runningOperations.clear();
     }
     LOG.info("Connection to Hive closed");
   }
@@ -269,6 +306,9 @@ public class Connection {
     if (handle == null) {
       throw new HiveClientException("Empty command given", null);
     }
+    if (async) {
+      runningOperations.add(handle);
+    }
     return handle;
   }
 
@@ -307,7 +347,7 @@ public class Connection {
    * @throws HiveClientException
    */
   public TGetOperationStatusResp getOperationStatus(final TOperationHandle operationHandle) throws HiveClientException {
-    return new HiveCall<TGetOperationStatusResp>(this) {
+    TGetOperationStatusResp statusResp = new HiveCall<TGetOperationStatusResp>(this) {
       @Override
       public TGetOperationStatusResp body() throws HiveClientException {
 
@@ -320,6 +360,10 @@ public class Connection {
 
       }
     }.call();
+    if (statusResp.isSetOperationState() && isEnded(statusResp.getOperationState())) {
+      runningOperations.remove(operationHandle);
+    }
+    return statusResp;
 //    transportLock.lock();
 //    try {
 //      return client.GetOperationStatus(statusReq);
@@ -347,6 +391,61 @@ public class Connection {
       }
     }.call();
     Utils.verifySuccess(cancelResp.getStatus(), "Unable to cancel operation");
+    runningOperations.remove(operationHandle);
+  }
+
+  private static boolean isEnded(TOperationState state) {
+    switch (state) {
+      case INITIALIZED_STATE:
+      case PENDING_STATE:
+      case RUNNING_STATE:
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * @return true if an asynchronous operation of the session may still be running
+   */
+  public boolean hasRunningOperations() {
+    return !runningOperations.isEmpty();
+  }
+
+  /**
+   * Called by the cursors of the session when they fetch a block of results
+   */
+  void fetched() {
+    fetchCount.incrementAndGet();
+  }
+
+  /**
+   * @return number of result blocks fetched by cursors of the session, which
+   * changes as long as results of the session are paged through
+   */
+  public long getFetchCount() {
+    return fetchCount.get();
+  }
+
+  /**
+   * Checks that the session can still be used by asking the server for its
+   * name. Unlike other calls, the connection is not reopened on failure.
+   * @return true if the server answered
+   */
+  public synchronized boolean isAlive() {
+    if (client == null || sessHandle == null) {
+      return false;
+    }
+    try {
+      TGetInfoResp infoResp = client.GetInfo(new TGetInfoReq(sessHandle, TGetInfoType.CLI_SERVER_NAME));
+      Utils.verifySuccess(infoResp.getStatus(), "Unable to get server info");
+      return true;
+    } catch (TException e) {
+      LOG.warn("Hive session check failed: " + e.toString());
+    } catch (HiveClientException e) {
+      LOG.warn("Hive session check failed: " + e.getMessage());
+    }
+    return false;
   }
 
   public int getPort() {
@@ -375,11 +474,11 @@ public class Connection {
     this.sessHandle = sessHandle;
   }
 
-  public TCLIService.Client getClient() {
+  public TCLIService.Iface getClient() {
     return client;
   }
 
-  public void setClient(TCLIService.Client client) {
+  public void setClient(TCLIService.Iface client) {
     this.client = client;
   }
 
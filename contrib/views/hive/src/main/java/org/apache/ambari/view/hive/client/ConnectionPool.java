@@ -25,33 +25,95 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Hands out Hive connections by view instance and user, see {@link SessionPool}
+ */
 public class ConnectionPool {
   private final static Logger LOG =
       LoggerFactory.getLogger(ConnectionPool.class);
 
-  private static Map<String, Connection> viewSingletonObjects = new HashMap<String, Connection>();
+  private static final int DEFAULT_POOL_SIZE = 20;
+  private static final long DEFAULT_IDLE_TIMEOUT = 30 * 60;  // 30 minutes
+  private static final long CHECK_INTERVAL = 60 * 1000;  // 1 minute
+  private static final long CURSOR_TIMEOUT = 10 * 60 * 1000;  // 10 minutes, as results are kept by ResultsPaginationController
+
+  private static Map<String, SessionPool> viewSingletonObjects = new ConcurrentHashMap<String, SessionPool>();
+  private static Map<String, Connection> instanceConnections = new ConcurrentHashMap<String, Connection>();
+
   /**
-   * Returns HdfsApi object specific to instance
+   * Returns connection of the current user specific to instance
    * @param context View Context instance
-   * @return Hdfs business delegate object
+   * @return Hive connection
    */
   public static Connection getConnection(ViewContext context) {
-    if (!viewSingletonObjects.containsKey(context.getInstanceName()))
-      viewSingletonObjects.put(context.getInstanceName(), connectToHive(context));
-    return viewSingletonObjects.get(context.getInstanceName());
-  }
-
-  private static Connection connectToHive(ViewContext context) {
+    Connection connection = instanceConnections.get(context.getInstanceName());
+    if (connection != null)
+      return connection;
     try {
-      return new Connection(getHiveHost(context), Integer.valueOf(getHivePort(context)), getHiveAuthParams(context));
+      return getSessionPool(context).getConnection(context.getUsername());
     } catch (HiveClientException e) {
       throw new ServiceFormattedException("Couldn't open connection to Hive: " + e.toString(), e);
     }
   }
 
+  private static synchronized SessionPool getSessionPool(final ViewContext context) {
+    SessionPool pool = viewSingletonObjects.get(context.getInstanceName());
+    if (pool == null) {
+      SessionPool.ConnectionFactory factory = new SessionPool.ConnectionFactory() {
+        @Override
+        public Connection create(String username) throws HiveClientException {
+          return connectToHive(context);
+        }
+      };
+      pool = new SessionPool(factory, getPoolSize(context), getIdleTimeout(context) * 1000, CHECK_INTERVAL,
+          CURSOR_TIMEOUT);
+      viewSingletonObjects.put(context.getInstanceName(), pool);
+    }
+    return pool;
+  }
+
+  /**
+   * Closes the connections of the instance
+   * @param instanceName name of the view instance
+   */
+  public static synchronized void close(String instanceName) {
+    instanceConnections.remove(instanceName);
+    SessionPool pool = viewSingletonObjects.remove(instanceName);
+    if (pool != null) {
+      pool.close();
+    }
+  }
+
+  private static Connection connectToHive(ViewContext context) throws HiveClientException {
+    return new Connection(getHiveHost(context), Integer.valueOf(getHivePort(context)), getHiveAuthParams(context));
+  }
+
+  /**
+   * Use the given connection for all users of the instance
+   * @param context View Context instance
+   * @param api connection, or null to use the session pool
+   */
   public static void setInstance(ViewContext context, Connection api) {
-    viewSingletonObjects.put(context.getInstanceName(), api);
+    if (api == null)
+      instanceConnections.remove(context.getInstanceName());
+    else
+      instanceConnections.put(context.getInstanceName(), api);
+  }
+
+  private static int getPoolSize(ViewContext context) {
+    String size = context.getProperties().get("hive.session.pool.size");
+    if (size == null || size.isEmpty())
+      return DEFAULT_POOL_SIZE;
+    return Integer.valueOf(size);
+  }
+
+  private static long getIdleTimeout(ViewContext context) {
+    String timeout = context.getProperties().get("hive.session.idle.timeout");
+    if (timeout == null || timeout.isEmpty())
+      return DEFAULT_IDLE_TIMEOUT;
+    return Long.valueOf(timeout);
   }
 
   private static String getHiveHost(ViewContext context) {
@@ -28,11 +28,23 @@ import org.apache.thrift.TException;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 public class Cursor implements Iterator<Row>, Iterable<Row> {
   private final int FETCH_SIZE = 50;
+  private static final int PREFETCH_THREADS = 4;
+
+  /**
+   * Fetches the next blocks of cursors with prefetching enabled, created on
+   * first use
+   */
+  private static ExecutorService prefetchExecutor = null;
 
-  private TCLIService.Client client;
   private TOperationHandle opHandle;
 
   private RowSet fetched = null;
@@ -42,10 +54,11 @@ public class Cursor implements Iterator<Row>, Iterable<Row> {
   private ArrayList<ColumnDescription> schema;
   private long offset;
   private HashSet<Integer> selectedColumns = new LinkedHashSet<Integer>();
+  private boolean prefetch = false;
+  private Future<RowSet> prefetched = null;
 
   public Cursor(Connection connection, TOperationHandle opHandle) {
     this.connection = connection;
-    this.client = connection.getClient();
     this.opHandle = opHandle;
   }
 
@@ -58,6 +71,52 @@ public class Cursor implements Iterator<Row>, Iterable<Row> {
   }
 
   private void fetchNextBlock() throws HiveClientException {
+    if (prefetched != null) {
+      fetched = takePrefetched();
+    } else {
+      fetched = fetchBlock();
+    }
+    fetchedIterator = fetched.iterator();
+
+    // a block shorter than the fetch size is the last one
+    if (prefetch && fetched.numRows() >= FETCH_SIZE) {
+      prefetched = getPrefetchExecutor().submit(new Callable<RowSet>() {
+        @Override
+        public RowSet call() throws HiveClientException {
+          return fetchBlock();
+        }
+      });
+    }
+  }
+
+  private static synchronized ExecutorService getPrefetchExecutor() {
+    if (prefetchExecutor == null) {
+      prefetchExecutor = Executors.newFixedThreadPool(PREFETCH_THREADS,
+          new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "hive-cursor-prefetch");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+    return prefetchExecutor;
+  }
+
+  /**
+   * Stops the prefetch threads once the fetches already started are done.
+   * Called when the view instances are destroyed; a later prefetch starts
+   * new threads.
+   */
+  public static synchronized void shutdownPrefetch() {
+    if (prefetchExecutor != null) {
+      prefetchExecutor.shutdown();
+      prefetchExecutor = null;
+    }
+  }
+
+  private RowSet fetchBlock() throws HiveClientException {
     //fetch another bunch
     TFetchResultsResp fetchResp = new HiveCall<TFetchResultsResp>(connection) {
       @Override
@@ -71,7 +130,7 @@ public class Cursor implements Iterator<Row>, Iterable<Row> {
 
         TFetchResultsReq fetchReq = getFetchResultsReq(orientation);
         try {
-          return client.FetchResults(fetchReq);
+          return connection.getClient().FetchResults(fetchReq);
         } catch (TException e) {
           throw new HiveClientException("Unable to fetch results", e);
         }
@@ -79,9 +138,60 @@ public class Cursor implements Iterator<Row>, Iterable<Row> {
       }
     }.call();
     Utils.verifySuccess(fetchResp.getStatus(), "Unable to fetch results");
+    connection.fetched();
     TRowSet results = fetchResp.getResults();
-    fetched = RowSetFactory.create(results, connection.getProtocol());
-    fetchedIterator = fetched.iterator();
+    return RowSetFactory.create(results, connection.getProtocol());
+  }
+
+  /**
+   * Waits for the block that is fetched in the background.
+   */
+  private RowSet takePrefetched() throws HiveClientException {
+    Future<RowSet> future = prefetched;
+    prefetched = null;
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new HiveClientException("Interrupted while fetching results", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof HiveClientException) {
+        throw (HiveClientException) e.getCause();
+      }
+      throw new HiveClientException("Unable to fetch results", e.getCause());
+    }
+  }
+
+  /**
+   * Drops the block that is fetched in the background. A fetch that already
+   * started is waited for, so that it does not move the server side cursor
+   * after the next fetch.
+   */
+  private void discardPrefetched() {
+    Future<RowSet> future = prefetched;
+    prefetched = null;
+    if (future != null && !future.cancel(false)) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // the block is not used anyway
+      }
+    }
+  }
+
+  /**
+   * Enables fetching the next block of results in the background while the
+   * current block is read, so that paging through the results does not wait
+   * for the server.
+   * @param prefetch true to prefetch blocks
+   */
+  public void setPrefetch(boolean prefetch) {
+    this.prefetch = prefetch;
+    if (!prefetch) {
+      discardPrefetched();
+    }
   }
 
   protected TFetchResultsReq getFetchResultsReq(TFetchOrientation orientation) {
@@ -97,7 +207,7 @@ public class Cursor implements Iterator<Row>, Iterable<Row> {
 
           TGetResultSetMetadataReq fetchReq = new TGetResultSetMetadataReq(opHandle);
           try {
-            return client.GetResultSetMetadata(fetchReq);
+            return connection.getClient().GetResultSetMetadata(fetchReq);
           } catch (TException e) {
             throw new HiveClientException("Unable to fetch results metadata", e);
           }
@@ -151,6 +261,7 @@ public class Cursor implements Iterator<Row>, Iterable<Row> {
   }
 
   public void reset() {
+    discardPrefetched();
     fetchedIterator = null;
     fetched = null;
     resetCursor = true;
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded pool of connections, each with its own HiveServer2 session, by user.
+ * Operations are only known to the session which started them, so a user
+ * always gets the same connection while it stays in the pool.
+ * Connections which were not used for the idle timeout are closed, as is the
+ * least recently used one when the pool is full. A connection is not closed
+ * while it is in use, that is while an asynchronous operation started in it may
+ * be running, or while results of it were fetched within the cursor timeout;
+ * if all connections are in use the pool grows beyond its maximum size until
+ * one is released. A pooled connection is checked before it is handed out if
+ * it was not checked for the check interval, and is replaced if the check
+ * fails.
+ */
+public class SessionPool {
+  private final static Logger LOG =
+      LoggerFactory.getLogger(SessionPool.class);
+
+  /**
+   * Opens connections for users of the pool
+   */
+  public interface ConnectionFactory {
+    Connection create(String username) throws HiveClientException;
+  }
+
+  private final ConnectionFactory factory;
+  private final int maxSessions;
+  private final long idleTimeout;
+  private final long checkInterval;
+  private final long cursorTimeout;
+
+  /**
+   * Pooled sessions by user in access order
+   */
+  private final LinkedHashMap<String, PooledSession> sessions =
+      new LinkedHashMap<String, PooledSession>(16, 0.75f, true);
+
+  /**
+   * @param factory opens connections
+   * @param maxSessions maximum number of pooled sessions
+   * @param idleTimeout milliseconds after which an unused session is closed
+   * @param checkInterval milliseconds between checks of a session
+   * @param cursorTimeout milliseconds after the last fetch of results during
+   *                      which a session is in use
+   */
+  public SessionPool(ConnectionFactory factory, int maxSessions, long idleTimeout, long checkInterval,
+                     long cursorTimeout) {
+    this.factory = factory;
+    this.maxSessions = maxSessions;
+    this.idleTimeout = idleTimeout;
+    this.checkInterval = checkInterval;
+    this.cursorTimeout = cursorTimeout;
+  }
+
+  /**
+   * Returns the connection of the user, opening it if needed
+   * @param username user name
+   * @return connection
+   * @throws HiveClientException if the connection could not be opened
+   */
+  public Connection getConnection(String username) throws HiveClientException {
+    List<PooledSession> evicted = new ArrayList<PooledSession>();
+    PooledSession session;
+    synchronized (this) {
+      long now = currentTimeMillis();
+      evictIdle(now, evicted);
+
+      session = sessions.get(username);
+      if (session == null) {
+        session = new PooledSession(username);
+        sessions.put(username, session);
+        evictOverflow(now, evicted);
+      }
+      session.lastUsed = now;
+    }
+
+    close(evicted);
+    return session.getConnection();
+  }
+
+  /**
+   * Closes the sessions which were not used for the idle timeout
+   */
+  public void evictIdle() {
+    List<PooledSession> evicted = new ArrayList<PooledSession>();
+    synchronized (this) {
+      evictIdle(currentTimeMillis(), evicted);
+    }
+    close(evicted);
+  }
+
+  /**
+   * Closes all sessions, including the ones in use
+   */
+  public void close() {
+    List<PooledSession> evicted;
+    synchronized (this) {
+      evicted = new ArrayList<PooledSession>(sessions.values());
+      sessions.clear();
+    }
+    close(evicted);
+  }
+
+  /**
+   * @return number of pooled sessions
+   */
+  public synchronized int size() {
+    return sessions.size();
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private void evictIdle(long now, List<PooledSession> evicted) {
+    Iterator<PooledSession> iterator = sessions.values().iterator();
+    while (iterator.hasNext()) {
+      PooledSession session = iterator.next();
+      // results fetched meanwhile count as use, so all sessions are checked
+      if (session.isInUse(now) || now - session.lastUsed < idleTimeout) {
+        continue;
+      }
+      iterator.remove();
+      evicted.add(session);
+    }
+  }
+
+  private void evictOverflow(long now, List<PooledSession> evicted) {
+    Iterator<PooledSession> iterator = sessions.values().iterator();
+    while (sessions.size() > maxSessions && iterator.hasNext()) {
+      PooledSession session = iterator.next();
+      if (session.isInUse(now)) {
+        continue;
+      }
+      evicted.add(session);
+      iterator.remove();
+    }
+    if (sessions.size() > maxSessions) {
+      LOG.info("All " + sessions.size() + " Hive sessions are in use, exceeding the pool size of " + maxSessions);
+    }
+  }
+
+  private void close(List<PooledSession> evicted) {
+    for (PooledSession session : evicted) {
+      session.close();
+    }
+  }
+
+  /**
+   * Connection of one user. The connection is opened and checked under the
+   * lock of the session, so that other users are not blocked meanwhile.
+   */
+  private class PooledSession {
+    private final String username;
+    private long lastUsed;
+    private long lastChecked;
+    private long lastFetched;
+    private boolean fetched = false;
+    private long fetchCount;
+    private volatile Connection connection;
+    private boolean closed = false;
+
+    private PooledSession(String username) {
+      this.username = username;
+    }
+
+    /**
+     * Called under the lock of the pool
+     */
+    private boolean isInUse(long now) {
+      Connection current = connection;
+      if (current == null) {
+        return false;
+      }
+      long currentFetchCount = current.getFetchCount();
+      if (currentFetchCount != fetchCount) {
+        // a replaced connection starts over
+        if (currentFetchCount > 0) {
+          fetched = true;
+          lastFetched = now;
+          lastUsed = now;
+        }
+        fetchCount = currentFetchCount;
+      }
+      return current.hasRunningOperations() || (fetched && now - lastFetched < cursorTimeout);
+    }
+
+    private synchronized Connection getConnection() throws HiveClientException {
+      if (closed) {
+        // evicted after it was handed out by the pool
+        return SessionPool.this.getConnection(username);
+      }
+      long now = currentTimeMillis();
+      if (connection != null && now - lastChecked >= checkInterval) {
+        lastChecked = now;
+        if (!connection.isAlive()) {
+          LOG.info("Replacing broken Hive session of " + username);
+          closeConnection();
+        }
+      }
+      if (connection == null) {
+        connection = factory.create(username);
+        lastChecked = now;
+      }
+      return connection;
+    }
+
+    private synchronized void close() {
+      closed = true;
+      closeConnection();
+    }
+
+    private void closeConnection() {
+      if (connection == null) return;
+      try {
+        connection.closeConnection();
+      } catch (HiveClientException e) {
+        LOG.error("Unable to close Hive connection of " + username + ": " + e.getMessage());
+      }
+      connection = null;
+    }
+  }
+}
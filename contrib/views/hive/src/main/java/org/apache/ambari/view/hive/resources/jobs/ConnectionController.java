@@ -30,12 +30,10 @@ import java.util.Map;
 
 public class ConnectionController {
   private ViewContext context;
-  private Connection connection;
   private OperationHandleControllerFactory operationHandleControllerFactory;
 
   private ConnectionController(ViewContext context) {
     this.context = context;
-    connection = ConnectionPool.getConnection(context);
     operationHandleControllerFactory = OperationHandleControllerFactory.getInstance(context);
   }
 
@@ -53,6 +51,8 @@ public class ConnectionController {
   public OperationHandleController executeQuery(String cmd) {
     TOperationHandle operationHandle = null;
     try {
+      // the connection of the current user, it is used for the operation later
+      Connection connection = ConnectionPool.getConnection(context);
       operationHandle = connection.executeAsync(cmd);
     } catch (HiveClientException e) {
       throw new ServiceFormattedException(e.toString(), e);
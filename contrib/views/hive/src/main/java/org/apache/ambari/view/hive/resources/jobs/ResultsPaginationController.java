@@ -99,6 +99,8 @@ public class ResultsPaginationController {
       } catch (Exception ex) {
         throw new ServiceFormattedException(ex.getMessage(), ex);
       }
+      // results are paged through, so the next page is fetched in background
+      resultSet.setPrefetch(true);
       getResultsCache().put(key, resultSet);
     }
 
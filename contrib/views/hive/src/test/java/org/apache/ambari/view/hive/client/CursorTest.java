@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive.client;
+
+import org.apache.hive.service.cli.thrift.*;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class CursorTest {
+  private static final int ROWS = 120;
+
+  private TCLIService.Iface client;
+  private int position;
+  private int fetches;
+
+  @Before
+  public void setUp() throws Exception {
+    client = createNiceMock(TCLIService.Iface.class);
+    TOpenSessionResp openResp = new TOpenSessionResp(new TStatus(TStatusCode.SUCCESS_STATUS),
+        TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V1);
+    openResp.setSessionHandle(new TSessionHandle());
+    expect(client.OpenSession(anyObject(TOpenSessionReq.class))).andReturn(openResp).anyTimes();
+    expect(client.FetchResults(anyObject(TFetchResultsReq.class))).andAnswer(new IAnswer<TFetchResultsResp>() {
+      @Override
+      public TFetchResultsResp answer() throws Throwable {
+        return fetch((TFetchResultsReq) getCurrentArguments()[0]);
+      }
+    }).anyTimes();
+    replay(client);
+  }
+
+  /**
+   * Stub of a result set with one string column holding the row number
+   */
+  private synchronized TFetchResultsResp fetch(TFetchResultsReq req) {
+    fetches++;
+    if (req.getOrientation() == TFetchOrientation.FETCH_FIRST) {
+      position = 0;
+    }
+    List<TRow> rows = new ArrayList<TRow>();
+    for (int i = 0; i < req.getMaxRows() && position < ROWS; i++, position++) {
+      rows.add(new TRow(Collections.singletonList(TColumnValue.stringVal(new TStringValue()
+          .setValue(String.valueOf(position))))));
+    }
+    TFetchResultsResp resp = new TFetchResultsResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+    resp.setResults(new TRowSet(0, rows));
+    return resp;
+  }
+
+  private synchronized int getFetches() {
+    return fetches;
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    Connection connection = new Connection(client);
+    Cursor cursor = connection.getResults(new TOperationHandle());
+    cursor.setPrefetch(true);
+
+    // page through the results as the UI does
+    List<Object> values = new ArrayList<Object>();
+    while (cursor.hasNext()) {
+      ArrayList<Object[]> rows = new ArrayList<Object[]>();
+      cursor.readRaw(rows, 50);
+      for (Object[] row : rows) {
+        values.add(row[0]);
+      }
+    }
+
+    assertEquals(ROWS, values.size());
+    for (int i = 0; i < ROWS; i++) {
+      assertEquals(String.valueOf(i), values.get(i));
+    }
+    // the two blocks after the first one were prefetched, and nothing was
+    // prefetched after the partial last block; the two empty fetches at the
+    // end are done by hasNext() as without prefetching
+    assertEquals(5, getFetches());
+
+    // reading from the beginning must not be affected by prefetched blocks
+    cursor.reset();
+    assertTrue(cursor.hasNext());
+    assertEquals("0", cursor.next().getRow()[0]);
+    assertEquals("1", cursor.next().getRow()[0]);
+  }
+
+  @Test
+  public void testNoPrefetch() throws Exception {
+    Connection connection = new Connection(client);
+    Cursor cursor = connection.getResults(new TOperationHandle());
+
+    ArrayList<Object[]> rows = new ArrayList<Object[]>();
+    assertEquals(50, cursor.readRaw(rows, 50));
+    assertEquals(1, getFetches());
+    assertEquals(70, cursor.readRaw(rows, 100));
+    assertEquals("119", rows.get(119)[0]);
+  }
+}
@@ -0,0 +1,219 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive.client;
+
+import org.apache.hive.service.cli.thrift.*;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class SessionPoolTest {
+  private TCLIService.Iface client;
+  private AtomicInteger openedSessions;
+  private AtomicInteger closedSessions;
+  private AtomicBoolean alive;
+  private long now;
+  private TOperationState operationState;
+  private SessionPool pool;
+
+  @Before
+  public void setUp() throws Exception {
+    openedSessions = new AtomicInteger();
+    closedSessions = new AtomicInteger();
+    alive = new AtomicBoolean(true);
+    now = 0;
+    operationState = TOperationState.RUNNING_STATE;
+
+    client = createNiceMock(TCLIService.Iface.class);
+    expect(client.OpenSession(anyObject(TOpenSessionReq.class))).andAnswer(new IAnswer<TOpenSessionResp>() {
+      @Override
+      public TOpenSessionResp answer() throws Throwable {
+        openedSessions.incrementAndGet();
+        TOpenSessionResp resp = new TOpenSessionResp(new TStatus(TStatusCode.SUCCESS_STATUS),
+            TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V1);
+        resp.setSessionHandle(new TSessionHandle());
+        return resp;
+      }
+    }).anyTimes();
+    expect(client.CloseSession(anyObject(TCloseSessionReq.class))).andAnswer(new IAnswer<TCloseSessionResp>() {
+      @Override
+      public TCloseSessionResp answer() throws Throwable {
+        closedSessions.incrementAndGet();
+        return new TCloseSessionResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+      }
+    }).anyTimes();
+    expect(client.GetInfo(anyObject(TGetInfoReq.class))).andAnswer(new IAnswer<TGetInfoResp>() {
+      @Override
+      public TGetInfoResp answer() throws Throwable {
+        TStatusCode code = alive.get() ? TStatusCode.SUCCESS_STATUS : TStatusCode.ERROR_STATUS;
+        return new TGetInfoResp(new TStatus(code), TGetInfoValue.stringValue("Hive"));
+      }
+    }).anyTimes();
+    expect(client.ExecuteStatement(anyObject(TExecuteStatementReq.class))).andAnswer(new IAnswer<TExecuteStatementResp>() {
+      @Override
+      public TExecuteStatementResp answer() throws Throwable {
+        TExecuteStatementResp resp = new TExecuteStatementResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+        resp.setOperationHandle(new TOperationHandle(new THandleIdentifier(), TOperationType.EXECUTE_STATEMENT, true));
+        return resp;
+      }
+    }).anyTimes();
+    expect(client.GetOperationStatus(anyObject(TGetOperationStatusReq.class))).andAnswer(new IAnswer<TGetOperationStatusResp>() {
+      @Override
+      public TGetOperationStatusResp answer() throws Throwable {
+        TGetOperationStatusResp resp = new TGetOperationStatusResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+        resp.setOperationState(operationState);
+        return resp;
+      }
+    }).anyTimes();
+    replay(client);
+
+    SessionPool.ConnectionFactory factory = new SessionPool.ConnectionFactory() {
+      @Override
+      public Connection create(String username) throws HiveClientException {
+        return new Connection(client);
+      }
+    };
+    pool = new SessionPool(factory, 2, 1000, 100, 200) {
+      @Override
+      protected long currentTimeMillis() {
+        return now;
+      }
+    };
+  }
+
+  @Test
+  public void testSessionPerUser() throws Exception {
+    Connection admin = pool.getConnection("admin");
+    assertSame(admin, pool.getConnection("admin"));
+    assertNotSame(admin, pool.getConnection("user"));
+    assertEquals(2, openedSessions.get());
+    assertEquals(2, pool.size());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEvicted() throws Exception {
+    Connection admin = pool.getConnection("admin");
+    Connection user = pool.getConnection("user");
+    now += 10;
+    assertSame(admin, pool.getConnection("admin"));
+
+    pool.getConnection("guest");
+    assertEquals(2, pool.size());
+    assertEquals(1, closedSessions.get());
+
+    assertSame(admin, pool.getConnection("admin"));
+    assertNotSame(user, pool.getConnection("user"));
+  }
+
+  @Test
+  public void testIdleEvicted() throws Exception {
+    Connection admin = pool.getConnection("admin");
+    now += 500;
+    Connection user = pool.getConnection("user");
+    now += 600;
+
+    pool.evictIdle();
+    assertEquals(1, pool.size());
+    assertEquals(1, closedSessions.get());
+
+    assertSame(user, pool.getConnection("user"));
+    assertNotSame(admin, pool.getConnection("admin"));
+  }
+
+  @Test
+  public void testBrokenSessionReplaced() throws Exception {
+    Connection admin = pool.getConnection("admin");
+
+    // not checked again within the check interval
+    alive.set(false);
+    now += 50;
+    assertSame(admin, pool.getConnection("admin"));
+
+    now += 100;
+    Connection replaced = pool.getConnection("admin");
+    assertNotSame(admin, replaced);
+    assertEquals(2, openedSessions.get());
+
+    alive.set(true);
+    now += 100;
+    assertSame(replaced, pool.getConnection("admin"));
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    pool.getConnection("admin");
+    pool.getConnection("user");
+    pool.close();
+    assertEquals(0, pool.size());
+    assertEquals(2, closedSessions.get());
+  }
+
+  @Test
+  public void testRunningOperationNotEvicted() throws Exception {
+    Connection admin = pool.getConnection("admin");
+    TOperationHandle handle = admin.executeAsync("select 1");
+    Connection user = pool.getConnection("user");
+    now += 10;
+
+    // admin is the least recently used, but its query is still running
+    pool.getConnection("guest");
+    assertEquals(2, pool.size());
+    assertEquals(1, closedSessions.get());
+    assertSame(admin, pool.getConnection("admin"));
+    assertNotSame(user, pool.getConnection("user"));
+
+    now += 2000;
+    pool.evictIdle();
+    assertEquals(1, pool.size());
+    assertSame(admin, pool.getConnection("admin"));
+
+    // evicted once the end of the query was seen
+    operationState = TOperationState.FINISHED_STATE;
+    admin.getOperationStatus(handle);
+    now += 2000;
+    pool.evictIdle();
+    assertEquals(0, pool.size());
+  }
+
+  @Test
+  public void testFetchedSessionNotEvicted() throws Exception {
+    Connection admin = pool.getConnection("admin");
+    pool.getConnection("user");
+    now += 10;
+
+    // results of admin are paged through without asking the pool
+    admin.fetched();
+    pool.getConnection("guest");
+    assertEquals(2, pool.size());
+    assertSame(admin, pool.getConnection("admin"));
+    pool.getConnection("guest");
+
+    // no fetch within the cursor timeout
+    now += 300;
+    pool.getConnection("other");
+    assertEquals(2, pool.size());
+    assertNotSame(admin, pool.getConnection("admin"));
+  }
+}
@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.WebApplicationException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -95,13 +96,18 @@ public class DataStoreStorage implements Storage {
     LinkedList<T> list = new LinkedList<T>();
     LOG.debug(String.format("Loading all %s-s", model.getName()));
     try {
-      for(T item: context.getDataStore().findAll(model, null)) {
+      // stream the entities so that only the conforming ones are kept in memory
+      Iterator<? extends T> items = context.getDataStore().iterate(model, null, null);
+      while (items.hasNext()) {
+        T item = items.next();
         if ((filter == null) || filter.isConform(item)) {
           list.add(item);
         }
       }
     } catch (PersistenceException e) {
       throw new ServiceFormattedException("Error while finding all objects in DataStorage", e);
+    } catch (IllegalStateException e) {
+      throw new ServiceFormattedException("Error while finding all objects in DataStorage", e);
     }
     return list;
   }